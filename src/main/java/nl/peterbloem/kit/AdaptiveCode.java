@@ -0,0 +1,475 @@
+package nl.peterbloem.kit;
+
+import static nl.peterbloem.kit.ArithmeticEncoder.MAX_TOTAL;
+import static nl.peterbloem.kit.Functions.log2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * An adaptive code over the integers 0, 1, 2, ..., which turns the 
+ * probabilities of {@link OnlineModel}, {@link IntegerModel} and 
+ * {@link PitmanYorModel} into an actual bit stream, by driving an 
+ * {@link ArithmeticEncoder} or {@link ArithmeticDecoder} one symbol at a time.
+ * </p><p>
+ * Two kinds of code are supported:
+ * <ul>
+ * <li>A KT (Dirichlet-multinomial) code over a fixed alphabet of n symbols, 
+ *   in which symbol i has probability (f_i + s)/(N + s n), as in 
+ *   {@link OnlineModel} and {@link IntegerModel}.</li>
+ * <li>A Pitman-Yor code, in which a symbol that has been seen has probability
+ *   (f_i - d)/(N + alpha), and a new symbol has probability 
+ *   (alpha + d k)/(N + alpha) for k symbols seen so far. New symbols are 
+ *   numbered in order of first appearance: a new symbol is always symbol k. 
+ *   The code does not say which symbol is new; as in {@link PitmanYorModel}, 
+ *   that should be established separately.</li>
+ * </ul>
+ * </p><p>
+ * The frequencies are kept in a Fenwick tree of integer counts, so that 
+ * encoding and decoding a symbol takes O(log n) time, and no objects are 
+ * allocated per symbol. The model probabilities are quantized to integer 
+ * frequencies with a total of {@link ArithmeticEncoder#MAX_TOTAL}, with every
+ * symbol receiving a frequency of at least one. For alphabets that are small 
+ * relative to this total, the size of the code is within a fraction of a 
+ * percent (plus a few bits) of the sum of the models' codelengths.
+ * </p><p>
+ * An AdaptiveCode copies the parameters and the counts of a model when it is 
+ * created, but does not update that model: it keeps its own counts. 
+ * </p>
+ * 
+ * @author Peter
+ */
+public class AdaptiveCode
+{
+	// * Whether this is a Pitman-Yor code, which has an escape symbol for new
+	//   symbols
+	private boolean escape;
+	
+	// * The pseudocount added to the frequency of each symbol: the smoothing 
+	//   for the KT code, and -d for the Pitman-Yor code
+	private double pseudo;
+	private double alpha;
+	
+	private int size;
+	private long total = 0;
+	
+	private long[] counts;
+	// * Fenwick tree over the counts (1-based)
+	private long[] tree;
+	
+	private AdaptiveCode(boolean escape, double pseudo, double alpha, int size)
+	{
+		this.escape = escape;
+		this.pseudo = pseudo;
+		this.alpha = alpha;
+		this.size = size;
+		
+		int capacity = Integer.highestOneBit(Math.max(size + 1, 16) - 1) << 1;
+		counts = new long[capacity];
+		tree = new long[capacity + 1];
+	}
+	
+	/**
+	 * A KT code over a fixed alphabet. 
+	 * 
+	 * @param size The number of symbols.
+	 * @param smoothing The pseudocount of each symbol (0.5 for the KT estimator).
+	 */
+	public static AdaptiveCode kt(int size, double smoothing)
+	{
+		if(size < 1 || size >= MAX_TOTAL / 2)
+			throw new IllegalArgumentException("Alphabet size ("+size+") should be positive and smaller than "+(MAX_TOTAL/2)+".");
+		
+		return new AdaptiveCode(false, smoothing, 0.0, size);
+	}
+	
+	/**
+	 * A Pitman-Yor code, starting with no symbols. 
+	 */
+	public static AdaptiveCode pitmanYor(double alpha, double d)
+	{
+		return new AdaptiveCode(true, -d, alpha, 0);
+	}
+	
+	/**
+	 * A code with the same parameters and current counts as the given model.
+	 */
+	public static AdaptiveCode of(IntegerModel model)
+	{
+		AdaptiveCode code = kt(model.max() + 1, model.smoothing());
+		for(int symbol = 0; symbol <= model.max(); symbol++)
+			code.add(symbol, (long) model.frequency(symbol));
+		
+		return code;
+	}
+	
+	/**
+	 * A code with the same parameters and current counts as the given model. 
+	 * Symbol i is the i-th token of the model (in the order of 
+	 * {@link FrequencyModel#tokens()}).
+	 */
+	public static AdaptiveCode of(OnlineModel<?> model)
+	{
+		return of(model, model.smoothing());
+	}
+
+	private static <T> AdaptiveCode of(OnlineModel<T> model, double smoothing)
+	{
+		AdaptiveCode code = kt(model.tokens().size(), smoothing);
+		int symbol = 0;
+		for(T token : model.tokens())
+			code.add(symbol++, (long) model.frequency(token));
+		
+		return code;
+	}
+	
+	/**
+	 * A code with the same parameters and current counts as the given model. 
+	 * Symbol i is the i-th token of the model (in the order of 
+	 * {@link FrequencyModel#tokens()}).
+	 */
+	public static AdaptiveCode of(PitmanYorModel<?> model)
+	{
+		return of(model, model.alpha(), model.d());
+	}
+	
+	private static <T> AdaptiveCode of(PitmanYorModel<T> model, double alpha, double d)
+	{
+		AdaptiveCode code = pitmanYor(alpha, d);
+		int symbol = 0;
+		for(T token : model.tokens())
+			code.add(symbol++, (long) model.frequency(token));
+		
+		return code;
+	}
+	
+	/**
+	 * Encodes the given symbol, and adds it to the counts.
+	 * 
+	 * @param symbol A symbol in [0, size()), or, for a Pitman-Yor code, 
+	 * 	size() to encode a new symbol.
+	 */
+	public void encode(int symbol, ArithmeticEncoder encoder)
+	{
+		if(symbol < 0 || symbol >= symbols())
+			throw new IllegalArgumentException("Symbol ("+symbol+") should be in [0, "+symbols()+").");
+		
+		double scale = scale();
+		long prefix = prefix(symbol);
+		long low = cumulative(prefix, symbol, scale);
+		long high = symbol + 1 == symbols() ? 
+				MAX_TOTAL : cumulative(prefix + counts[symbol], symbol + 1, scale);
+		
+		encoder.encode(low, high, MAX_TOTAL);
+		
+		add(symbol, 1);
+	}
+	
+	/**
+	 * Decodes the next symbol, and adds it to the counts.
+	 * 
+	 * @return The symbol. For a Pitman-Yor code, a return value equal to the 
+	 * 	size before the call indicates a new symbol.
+	 */
+	public int decode(ArithmeticDecoder decoder)
+	{
+		double scale = scale();
+		long target = decoder.target(MAX_TOTAL);
+		
+		// * Find the last symbol whose cumulative frequency is at most the 
+		//   target, by descending the Fenwick tree
+		int last = symbols() - 1;
+		int symbol = 0;
+		long prefix = 0, low = 0;
+		for(int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1)
+		{
+			int next = symbol + step;
+			if(next > last)
+				continue;
+			
+			long cumulative = cumulative(prefix + tree[next], next, scale);
+			if(cumulative <= target)
+			{
+				symbol = next;
+				prefix += tree[next];
+				low = cumulative;
+			}
+		}
+		
+		long high = symbol == last ? 
+				MAX_TOTAL : cumulative(prefix + counts[symbol], symbol + 1, scale);
+		
+		decoder.decode(low, high, MAX_TOTAL);
+		
+		add(symbol, 1);
+		
+		return symbol;
+	}
+	
+	/**
+	 * The ideal codelength (in bits) of the given symbol under the current 
+	 * counts. This does not add the symbol.
+	 */
+	public double codelength(int symbol)
+	{
+		double num = escape && symbol == size ? 
+				alpha - pseudo * size : counts[symbol] + pseudo;
+		
+		return - log2(num / normalization());
+	}
+	
+	/**
+	 * Adds a symbol to the counts without encoding it. 
+	 */
+	public void add(int symbol)
+	{
+		add(symbol, 1);
+	}
+	
+	/**
+	 * The number of symbols: the size of the alphabet for a KT code, and the 
+	 * number of symbols seen so far for a Pitman-Yor code. 
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * The number of symbols added so far.
+	 */
+	public long total()
+	{
+		return total;
+	}
+	
+	/**
+	 * Encodes a sequence of integers with a copy of the given model. The model 
+	 * is not modified. 
+	 */
+	public static BitString encode(IntegerModel model, int[] sequence)
+	{
+		AdaptiveCode code = of(model);
+		
+		BitString out = new BitString();
+		ArithmeticEncoder encoder = new ArithmeticEncoder(out);
+		for(int symbol : sequence)
+			code.encode(symbol, encoder);
+		encoder.finish();
+		
+		return out;
+	}
+	
+	/**
+	 * Decodes a sequence of the given length, encoded with 
+	 * {@link #encode(IntegerModel, int[])} from a model in the same state.
+	 */
+	public static int[] decode(IntegerModel model, BitString in, int length)
+	{
+		AdaptiveCode code = of(model);
+		
+		int[] sequence = new int[length];
+		ArithmeticDecoder decoder = new ArithmeticDecoder(in);
+		for(int i = 0; i < length; i++)
+			sequence[i] = code.decode(decoder);
+		
+		return sequence;
+	}
+	
+	/**
+	 * Encodes a sequence of tokens with a copy of the given model. The model 
+	 * is not modified, and must contain all tokens of the sequence. 
+	 */
+	public static <T> BitString encode(OnlineModel<T> model, List<T> sequence)
+	{
+		AdaptiveCode code = of(model);
+		Map<T, Integer> index = index(model);
+		
+		BitString out = new BitString();
+		ArithmeticEncoder encoder = new ArithmeticEncoder(out);
+		for(T token : sequence)
+		{
+			Integer symbol = index.get(token);
+			if(symbol == null)
+				throw new IllegalArgumentException("Token ("+token+") is not in the model.");
+			
+			code.encode(symbol, encoder);
+		}
+		encoder.finish();
+		
+		return out;
+	}
+	
+	/**
+	 * Decodes a sequence of the given length, encoded with 
+	 * {@link #encode(OnlineModel, List)} from a model in the same state.
+	 */
+	public static <T> List<T> decode(OnlineModel<T> model, BitString in, int length)
+	{
+		AdaptiveCode code = of(model);
+		List<T> tokens = new ArrayList<T>(model.tokens());
+		
+		List<T> sequence = new ArrayList<T>(length);
+		ArithmeticDecoder decoder = new ArithmeticDecoder(in);
+		for(int i = 0; i < length; i++)
+			sequence.add(tokens.get(code.decode(decoder)));
+		
+		return sequence;
+	}
+	
+	/**
+	 * Encodes a sequence of tokens with a copy of the given model. The model 
+	 * is not modified. 
+	 * 
+	 * The tokens that are new to the model are not encoded: to decode, the 
+	 * new tokens must be given, in order of first appearance.
+	 */
+	public static <T> BitString encode(PitmanYorModel<T> model, List<T> sequence)
+	{
+		AdaptiveCode code = of(model);
+		Map<T, Integer> index = index(model);
+		
+		BitString out = new BitString();
+		ArithmeticEncoder encoder = new ArithmeticEncoder(out);
+		for(T token : sequence)
+		{
+			Integer symbol = index.get(token);
+			if(symbol == null)
+			{
+				symbol = code.size();
+				index.put(token, symbol);
+			}
+			
+			code.encode(symbol, encoder);
+		}
+		encoder.finish();
+		
+		return out;
+	}
+	
+	/**
+	 * Decodes a sequence of the given length, encoded with 
+	 * {@link #encode(PitmanYorModel, List)} from a model in the same state.
+	 * 
+	 * @param newTokens The tokens that did not occur in the model, in order of 
+	 * 	first appearance in the sequence.
+	 */
+	public static <T> List<T> decode(
+			PitmanYorModel<T> model, BitString in, int length, List<T> newTokens)
+	{
+		AdaptiveCode code = of(model);
+		List<T> tokens = new ArrayList<T>(model.tokens());
+		int next = 0;
+		
+		List<T> sequence = new ArrayList<T>(length);
+		ArithmeticDecoder decoder = new ArithmeticDecoder(in);
+		for(int i = 0; i < length; i++)
+		{
+			int symbol = code.decode(decoder);
+			if(symbol == tokens.size())
+				tokens.add(newTokens.get(next++));
+			
+			sequence.add(tokens.get(symbol));
+		}
+		
+		return sequence;
+	}
+	
+	private static <T> Map<T, Integer> index(FrequencyModel<T> model)
+	{
+		Map<T, Integer> index = new HashMap<T, Integer>();
+		for(T token : model.tokens())
+			index.put(token, index.size());
+		
+		return index;
+	}
+	
+	/**
+	 * The number of symbols that can be coded: including the escape symbol for 
+	 * a Pitman-Yor code.
+	 */
+	private int symbols()
+	{
+		return escape ? size + 1 : size;
+	}
+	
+	private double normalization()
+	{
+		return escape ? total + alpha : total + pseudo * size;
+	}
+	
+	/**
+	 * The factor by which the model's cumulative frequencies are scaled to 
+	 * the quantized total. 
+	 */
+	private double scale()
+	{
+		double normalization = normalization();
+		if(normalization <= 0.0)
+			return 0.0;
+		
+		return (MAX_TOTAL - symbols()) / normalization;
+	}
+	
+	/**
+	 * The quantized cumulative frequency of all symbols before the given one. 
+	 * Adding the index ensures that every symbol has a frequency of at least 
+	 * one. The encoder and decoder must compute this with exactly the same 
+	 * arithmetic.
+	 */
+	private long cumulative(long prefix, int symbol, double scale)
+	{
+		return (long) ((prefix + pseudo * symbol) * scale) + symbol;
+	}
+	
+	/**
+	 * The sum of the counts of all symbols before the given one.
+	 */
+	private long prefix(int symbol)
+	{
+		long sum = 0;
+		for(int i = symbol; i > 0; i -= i & -i)
+			sum += tree[i];
+		
+		return sum;
+	}
+	
+	private void add(int symbol, long count)
+	{
+		if(escape && symbol == size)
+		{
+			size++;
+			if(size + 1 > counts.length)
+				grow();
+		}
+		
+		if(count == 0)
+			return;
+		
+		counts[symbol] += count;
+		total += count;
+		
+		for(int i = symbol + 1; i < tree.length; i += i & -i)
+			tree[i] += count;
+	}
+	
+	private void grow()
+	{
+		long[] old = counts;
+		counts = new long[old.length * 2];
+		System.arraycopy(old, 0, counts, 0, old.length);
+		
+		// * Rebuild the Fenwick tree in linear time
+		tree = new long[counts.length + 1];
+		for(int i = 1; i < tree.length; i++)
+		{
+			tree[i] += counts[i - 1];
+			int parent = i + (i & -i);
+			if(parent < tree.length)
+				tree[parent] += tree[i];
+		}
+	}
+}
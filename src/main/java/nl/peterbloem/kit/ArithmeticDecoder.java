@@ -0,0 +1,187 @@
+package nl.peterbloem.kit;
+
+import static nl.peterbloem.kit.ArithmeticEncoder.HALF;
+import static nl.peterbloem.kit.ArithmeticEncoder.MASK;
+import static nl.peterbloem.kit.ArithmeticEncoder.MAX_TOTAL;
+import static nl.peterbloem.kit.ArithmeticEncoder.QUARTER;
+import static nl.peterbloem.kit.ArithmeticEncoder.STATE_BITS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * The decoding half of the arithmetic coder implemented by 
+ * {@link ArithmeticEncoder}.
+ * 
+ * Decoding a symbol takes two steps: {@link #target(long)} returns a value in 
+ * [0, total), the caller finds the symbol whose interval of cumulative 
+ * frequencies contains that value, and passes the interval to 
+ * {@link #decode(long, long, long)}. The totals and intervals must be the same 
+ * as those used in encoding. Reading past the end of the input yields zero 
+ * bits.
+ * 
+ * @author Peter
+ */
+public class ArithmeticDecoder
+{
+	private static final int BUFFER_SIZE = 4096;
+	
+	private long low = 0, high = MASK;
+	private long code = 0;
+	
+	private BitString bitString = null;
+	private long position = 0;
+	
+	private InputStream stream = null;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferBytes = 0, bufferPosition = 0;
+	
+	// * The next bits of input
+	private long window = 0;
+	private int windowBits = 0;
+	
+	public ArithmeticDecoder(BitString in)
+	{
+		this.bitString = in;
+		init();
+	}
+	
+	/**
+	 * Creates a decoder that reads from the given stream. The stream is not 
+	 * closed by the decoder. Since the input is buffered, the decoder may read
+	 * past the end of the code.
+	 */
+	public ArithmeticDecoder(InputStream in)
+	{
+		this.stream = in;
+		init();
+	}
+	
+	private void init()
+	{
+		code = read(STATE_BITS);
+	}
+	
+	/**
+	 * Returns the cumulative frequency targeted by the code at the current 
+	 * position: the next symbol is the one whose interval contains this value.
+	 * 
+	 * @param total The sum of the frequencies of all symbols. 
+	 */
+	public long target(long total)
+	{
+		if(total > MAX_TOTAL)
+			throw new IllegalArgumentException("Total ("+total+") is larger than the maximum ("+MAX_TOTAL+").");
+		
+		long range = high - low + 1;
+		long offset = code - low;
+		
+		return ((offset + 1) * total - 1) / range;
+	}
+	
+	/**
+	 * Consumes the symbol with the given interval of cumulative frequencies.
+	 */
+	public void decode(long low, long high, long total)
+	{
+		long range = this.high - this.low + 1;
+		if((total & (total - 1)) == 0)
+		{
+			int shift = Long.numberOfTrailingZeros(total);
+			this.high = this.low + (high * range >>> shift) - 1;
+			this.low  = this.low + (low  * range >>> shift);
+		} else
+		{
+			this.high = this.low + high * range / total - 1;
+			this.low  = this.low + low  * range / total;
+		}
+		
+		int equal = Long.numberOfLeadingZeros(this.low ^ this.high) - (64 - STATE_BITS);
+		if(equal > 0)
+		{
+			code = ((code << equal) & MASK) | read(equal);
+			
+			this.low  = (this.low << equal) & MASK;
+			this.high = ((this.high << equal) & MASK) | ((1L << equal) - 1);
+		}
+		
+		while((this.low & ~this.high & QUARTER) != 0)
+		{
+			code = (code & HALF) | ((code << 1) & (MASK >>> 1)) | read(1);
+			
+			this.low  = (this.low << 1) ^ HALF;
+			this.high = ((this.high ^ HALF) << 1) | HALF | 1;
+		}
+	}
+	
+	/**
+	 * Reads the next n bits (at most 32) as an integer, the first bit read 
+	 * being the most significant.
+	 */
+	private long read(int n)
+	{
+		if(windowBits < n)
+			fill();
+		
+		windowBits -= n;
+		
+		return (window >>> windowBits) & ((1L << n) - 1);
+	}
+	
+	/**
+	 * Tops up the window with at least 32 bits. Past the end of the input, 
+	 * the window is filled with zeros.
+	 */
+	private void fill()
+	{
+		while(windowBits <= 56)
+		{
+			window = (window << 8) | nextByte();
+			windowBits += 8;
+		}
+	}
+	
+	/**
+	 * The next 8 bits of input, the first bit as the most significant.
+	 */
+	private int nextByte()
+	{
+		if(bitString != null)
+		{
+			int size = bitString.size();
+			if(position >= size)
+				return 0;
+			
+			// * BitString stores the first bit of each byte in the least 
+			//   significant position
+			int b = Integer.reverse(bitString.rawData()[(int) (position >> 3)] & 0xFF) >>> 24;
+			
+			int rest = (int) (size - position);
+			if(rest < 8)
+				b &= 0xFF << (8 - rest);
+			
+			position += 8;
+			return b & 0xFF;
+		}
+		
+		if(bufferPosition == bufferBytes)
+		{
+			try {
+				bufferBytes = stream.read(buffer);
+			} catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			bufferPosition = 0;
+			
+			if(bufferBytes <= 0)
+			{
+				bufferBytes = 0;
+				return 0;
+			}
+		}
+		
+		return buffer[bufferPosition++] & 0xFF;
+	}
+}
@@ -0,0 +1,256 @@
+package nl.peterbloem.kit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * <p>
+ * The encoding half of an arithmetic coder. Each call to 
+ * {@link #encode(long, long, long)} narrows the current interval to the 
+ * sub-interval of a single symbol, and writes out the bits that have become 
+ * fixed. The number of bits written for a sequence of symbols is within a few 
+ * bits of the sum of their codelengths.
+ * </p><p>
+ * The coder keeps 32 bits of state and follows the standard construction with 
+ * underflow (straddle) handling, as described by Witten, Neal and Cleary in 
+ * "Arithmetic coding for data compression". Symbol intervals are given as 
+ * integer cumulative frequencies, with a total of at most {@link #MAX_TOTAL}.
+ * For adaptive codes based on the models in this package, see 
+ * {@link AdaptiveCode}.
+ * </p><p>
+ * Bits are buffered internally, and only passed on to the output when a buffer
+ * fills up, or when {@link #finish()} is called. The output is either a 
+ * {@link BitString}, which receives exactly the bits of the code, or an 
+ * OutputStream, which receives the bits packed into bytes (most significant bit
+ * first), with the final byte padded with zeros.
+ * </p>
+ * 
+ * @author Peter
+ */
+public class ArithmeticEncoder
+{
+	public static final int STATE_BITS = 32;
+	
+	/**
+	 * The largest total frequency that may be passed to 
+	 * {@link #encode(long, long, long)}. 
+	 */
+	public static final long MAX_TOTAL = 1L << (STATE_BITS - 2);
+	
+	static final long FULL = 1L << STATE_BITS;
+	static final long HALF = FULL >>> 1;
+	static final long QUARTER = HALF >>> 1;
+	static final long MASK = FULL - 1;
+	
+	private static final int BUFFER_SIZE = 4096;
+	
+	private long low = 0, high = MASK;
+	private long underflow = 0;
+	
+	private BitString bitString = null;
+	private OutputStream stream = null;
+	
+	// * The bits written but not yet passed on: the last few in an 
+	//   accumulator, the rest in a buffer
+	private long accumulator = 0;
+	private int accumulatorBits = 0;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferBits = 0;
+	
+	private long bits = 0;
+	private boolean finished = false;
+	
+	/**
+	 * Creates an encoder that appends its output to the given bitstring. 
+	 */
+	public ArithmeticEncoder(BitString out)
+	{
+		this.bitString = out;
+	}
+	
+	/**
+	 * Creates an encoder that writes its output to the given stream. The 
+	 * stream is not closed by the encoder.
+	 */
+	public ArithmeticEncoder(OutputStream out)
+	{
+		this.stream = out;
+	}
+	
+	/**
+	 * Encodes a symbol, given by its interval [low, high) of cumulative 
+	 * frequencies.
+	 * 
+	 * @param low The sum of the frequencies of all symbols before this one.
+	 * @param high low plus the frequency of this symbol. Must be greater than 
+	 * 	low. 
+	 * @param total The sum of the frequencies of all symbols. At most 
+	 * 	{@link #MAX_TOTAL}.
+	 */
+	public void encode(long low, long high, long total)
+	{
+		if(finished)
+			throw new IllegalStateException("Encoder has been finished.");
+		if(low < 0 || high <= low || high > total || total > MAX_TOTAL)
+			throw new IllegalArgumentException("Illegal interval ["+low+", "+high+") for total "+total+".");
+		
+		long range = this.high - this.low + 1;
+		if((total & (total - 1)) == 0)
+		{
+			// * Avoid the divisions for power-of-two totals
+			int shift = Long.numberOfTrailingZeros(total);
+			this.high = this.low + (high * range >>> shift) - 1;
+			this.low  = this.low + (low  * range >>> shift);
+		} else
+		{
+			this.high = this.low + high * range / total - 1;
+			this.low  = this.low + low  * range / total;
+		}
+		
+		// * Write out the top bits once they are equal (all at once)
+		int equal = Long.numberOfLeadingZeros(this.low ^ this.high) - (64 - STATE_BITS);
+		if(equal > 0)
+		{
+			int bit = (int) (this.low >>> (STATE_BITS - 1));
+			write(bit, 1);
+			writeUnderflow(bit ^ 1);
+			
+			// * The remaining equal bits
+			write((this.low >>> (STATE_BITS - equal)) & ((1L << (equal - 1)) - 1), equal - 1);
+			
+			this.low  = (this.low << equal) & MASK;
+			this.high = ((this.high << equal) & MASK) | ((1L << equal) - 1);
+		}
+		
+		// * If the interval straddles the midpoint closely, remove the second 
+		//   bit, and remember that it should be written later
+		while((this.low & ~this.high & QUARTER) != 0)
+		{
+			underflow++;
+			
+			this.low  = (this.low << 1) ^ HALF;
+			this.high = ((this.high ^ HALF) << 1) | HALF | 1;
+		}
+	}
+	
+	/**
+	 * Writes the final bits of the code and flushes all output. The encoder
+	 * cannot be used after this method has been called.
+	 * 
+	 * @return The total number of bits written.
+	 */
+	public long finish()
+	{
+		if(finished)
+			return bits;
+		
+		// * A single one bit (followed by implicit zeros) lies within the 
+		//   final interval 
+		write(1, 1);
+		writeUnderflow(0);
+		
+		flush();
+		finished = true;
+		
+		return bits;
+	}
+	
+	/**
+	 * The number of bits written so far.
+	 */
+	public long bits()
+	{
+		return bits;
+	}
+	
+	private void writeUnderflow(int bit)
+	{
+		long value = bit == 0 ? 0L : -1L;
+		for(; underflow > 0; underflow -= Math.min(underflow, 32))
+			write(value, (int) Math.min(underflow, 32));
+	}
+	
+	/**
+	 * Writes the lowest n bits of the given value, most significant first. 
+	 *
+	 * @param n At most 32 
+	 */
+	private void write(long value, int n)
+	{
+		if(n == 0)
+			return;
+		
+		value &= (1L << n) - 1;
+		bits += n;
+		
+		int free = 64 - accumulatorBits;
+		if(n < free)
+		{
+			accumulator = (accumulator << n) | value;
+			accumulatorBits += n;
+			return;
+		}
+		
+		int rest = n - free;
+		accumulator = (free == 64 ? 0 : accumulator << free) | (value >>> rest);
+		emit(accumulator, 64);
+		
+		accumulator = value & ((1L << rest) - 1);
+		accumulatorBits = rest;
+	}
+	
+	/**
+	 * Moves the top n bits of the given word into the buffer.
+	 */
+	private void emit(long word, int n)
+	{
+		if(bufferBits + 64 > BUFFER_SIZE * 8)
+			flushBuffer();
+		
+		for(int i = 0; i < n; i += 8)
+			buffer[(bufferBits + i) >> 3] = (byte) (word >>> (56 - i));
+		
+		bufferBits += n;
+	}
+	
+	private void flush()
+	{
+		if(accumulatorBits > 0)
+			emit(accumulator << (64 - accumulatorBits), accumulatorBits);
+		
+		accumulator = 0;
+		accumulatorBits = 0;
+		
+		flushBuffer();
+	}
+	
+	private void flushBuffer()
+	{
+		int numBytes = (bufferBits + 7) >> 3;
+		
+		if(bitString != null)
+		{
+			int full = bufferBits >> 3;
+			for(int i = 0; i < full; i++)
+				bitString.append(buffer[i], 8);
+			
+			int rest = bufferBits & 7;
+			if(rest > 0)
+				bitString.append((buffer[full] & 0xFF) >>> (8 - rest), rest);
+		} else
+		{
+			try {
+				stream.write(buffer, 0, numBytes);
+				stream.flush();
+			} catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		for(int i = 0; i < numBytes; i++)
+			buffer[i] = 0;
+		bufferBits = 0;
+	}
+}
@@ -59,10 +59,9 @@ public class BitString extends AbstractList<Boolean> implements Serializable
 		if(byteSize <= array.length) 
 			return;
 		
-		byte[] newArray = new byte[byteSize];
-		
-		for(int i = 0; i < array.length; i++)
-			newArray[i] = array[i];
+		// * Grow geometrically, so that appending is amortized constant time
+		byte[] newArray = new byte[Math.max(byteSize, array.length * 2)];
+		System.arraycopy(array, 0, newArray, 0, array.length);
 		
 		array = newArray;
 	}
@@ -85,6 +84,47 @@ public class BitString extends AbstractList<Boolean> implements Serializable
 		return true;
 	}
 
+	/**
+	 * Appends the lowest numBits bits of the given value, the most significant 
+	 * bit first.
+	 * 
+	 * @param bits
+	 * @param numBits A value between 0 and 64
+	 */
+	public void append(long bits, int numBits)
+	{
+		if(numBits < 0 || numBits > 64)
+			throw new IllegalArgumentException("Number of bits ("+numBits+") should be between 0 and 64.");
+		
+		ensureCapacity(maxIndex + numBits);
+		
+		int i = numBits - 1;
+		
+		// * Whole bytes, if we're at a byte boundary
+		if(((maxIndex + 1) & 7) == 0)
+			for(; i >= 7; i -= 8)
+			{
+				int b = (int) (bits >>> (i - 7)) & 0xFF;
+				array[(maxIndex + 1) >> 3] = (byte) (Integer.reverse(b) >>> 24);
+				maxIndex += 8;
+			}
+		
+		for(; i >= 0; i--)
+		{
+			maxIndex++;
+			
+			int whichByte = maxIndex >> 3;
+			byte mask = (byte) (1 << (maxIndex & 7));
+			
+			if(((bits >>> i) & 1L) != 0)
+				array[whichByte] |= mask;
+			else
+				array[whichByte] &= ~mask;
+		}
+		
+		modCount++;
+	}
+
 	@Override
 	public Boolean get(int index) {
 		checkIndex(index);
@@ -140,7 +180,7 @@ public class BitString extends AbstractList<Boolean> implements Serializable
 	@Override
 	public void clear()
 	{
-		for(int i : Series.series(array.length))
+		for(int i = 0; i < array.length; i++)
 			array[i] = 0;
 			
 		maxIndex = 0;
@@ -160,10 +200,12 @@ public class BitString extends AbstractList<Boolean> implements Serializable
 	 */
 	public byte[] byteArray()
 	{
-		byte[] out = new byte[array.length + 1];
-		System.arraycopy(array, 0, out, 0, array.length);
+		int numBytes = (size() + 7) / 8;
 		
-		out[array.length] = (byte) padding();
+		byte[] out = new byte[numBytes + 1];
+		System.arraycopy(array, 0, out, 0, numBytes);
+		
+		out[numBytes] = (byte) padding();
 		
 		return out;
 	}
@@ -227,8 +269,11 @@ public class BitString extends AbstractList<Boolean> implements Serializable
 		int n = size();
 		n = n%32 == 0 ? n : ((n/32)+1) * 32;
 		
-		List<Integer> integers = new ArrayList<Integer>(array.length + 1);
-		for(int i = 0; i < array.length; i += 4)
+		// * Only the bytes in use (the array may have spare capacity)
+		int numBytes = (size() + 7) / 8;
+		
+		List<Integer> integers = new ArrayList<Integer>(numBytes / 4 + 1);
+		for(int i = 0; i < numBytes; i += 4)
 		{
 	        int next = (array(i) << 24)
 	                + ((array(i+1) & 0xFF) << 16)
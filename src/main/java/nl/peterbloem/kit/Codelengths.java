@@ -0,0 +1,396 @@
+package nl.peterbloem.kit;
+
+import static nl.peterbloem.kit.Functions.log2;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>
+ * Computes the codelengths of many sequences at once, split over the threads
+ * of {@link Global#pool()}.
+ * </p><p>
+ * The codelength of each sequence is the same as that returned by the
+ * single-sequence method of the chosen {@link Code}, but instead of creating
+ * fresh models for each sequence, each thread keeps one model (or, for
+ * sequences of primitive integers, one table of counts) which is reset
+ * between sequences. For many short sequences, this avoids most of the
+ * allocation.
+ * </p>
+ *
+ * @author Peter
+ */
+public class Codelengths
+{
+	/**
+	 * Below this number of sequences, a task is not split any further.
+	 */
+	public static int GRAIN = 64;
+
+	public static enum Code {
+		/**
+		 * KT estimator over the symbols occurring in the sequence. See
+		 * {@link OnlineModel#storeSequence(List)}.
+		 */
+		KT,
+		/**
+		 * Maximum likelihood model. See
+		 * {@link OnlineModel#storeSequenceML(List)}.
+		 */
+		ML,
+		/**
+		 * Pitman-Yor model with default parameters. See
+		 * {@link PitmanYorModel#storeSequence(List)}.
+		 */
+		PITMAN_YOR,
+		/**
+		 * KT estimator over the integers from 0 to the maximum of the sequence.
+		 * Only defined for sequences of nonnegative integers. See
+		 * {@link IntegerModel#store(List)}.
+		 */
+		INTEGER
+	}
+
+	private static final ThreadLocal<Counts> COUNTS = new ThreadLocal<Counts>() {
+		@Override
+		protected Counts initialValue()
+		{
+			return new Counts();
+		}
+	};
+
+	private static final ThreadLocal<Models> MODELS = new ThreadLocal<Models>() {
+		@Override
+		protected Models initialValue()
+		{
+			return new Models();
+		}
+	};
+
+	/**
+	 * The codelengths of the given integer sequences (in bits).
+	 */
+	public static double[] store(List<int[]> sequences, Code code)
+	{
+		return store(sequences.toArray(new int[sequences.size()][]), code);
+	}
+
+	/**
+	 * The codelengths of the given integer sequences (in bits).
+	 */
+	public static double[] store(final int[][] sequences, final Code code)
+	{
+		final double[] result = new double[sequences.length];
+
+		Job job = new Job() {
+			@Override
+			protected void compute(int from, int to)
+			{
+				Counts counts = COUNTS.get();
+				for(int i = from; i < to; i++)
+					result[i] = counts.codelength(sequences[i], code);
+			}
+		};
+
+		Global.pool().invoke(new Task(job, 0, sequences.length));
+
+		return result;
+	}
+
+	/**
+	 * The codelengths of the given sequences of arbitrary tokens (in bits).
+	 * The {@link Code#INTEGER} code is only supported for sequences of
+	 * Integers.
+	 */
+	public static double[] storeSequences(final List<? extends List<?>> sequences, final Code code)
+	{
+		final double[] result = new double[sequences.size()];
+
+		Job job = new Job() {
+			@Override
+			protected void compute(int from, int to)
+			{
+				Models models = MODELS.get();
+				for(int i = from; i < to; i++)
+					result[i] = models.codelength(sequences.get(i), code);
+			}
+		};
+
+		Global.pool().invoke(new Task(job, 0, sequences.size()));
+
+		return result;
+	}
+
+	/**
+	 * Computes the codelengths of a range of sequences.
+	 */
+	private static abstract class Job
+	{
+		protected abstract void compute(int from, int to);
+	}
+
+	/**
+	 * Splits a range of sequences in halves until it is smaller than
+	 * {@link #GRAIN}.
+	 */
+	private static class Task extends RecursiveAction
+	{
+		private static final long serialVersionUID = -7553512049573216513L;
+
+		private final Job job;
+		private final int from, to;
+
+		public Task(Job job, int from, int to)
+		{
+			this.job = job;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from <= GRAIN)
+			{
+				job.compute(from, to);
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(new Task(job, from, mid), new Task(job, mid, to));
+		}
+	}
+
+	/**
+	 * Per-thread models for sequences of objects.
+	 */
+	private static class Models
+	{
+		private OnlineModel<Object> kt = new OnlineModel<Object>(Collections.emptyList());
+		private FrequencyModel<Object> ml = new FrequencyModel<Object>();
+		private PitmanYorModel<Object> py = new PitmanYorModel<Object>();
+		// * Integer sequences are copied here, and counted in the thread's 
+		//   Counts table
+		private int[] buffer = new int[16];
+
+		public double codelength(List<?> sequence, Code code)
+		{
+			double bits = 0.0;
+
+			switch(code)
+			{
+			case KT:
+				kt.reset();
+				for(Object symbol : sequence)
+					kt.addToken(symbol);
+				for(Object symbol : sequence)
+					bits += - log2(kt.observe(symbol));
+				return bits;
+			case ML:
+				ml.reset();
+				for(Object symbol : sequence)
+					ml.add(symbol);
+				for(Object symbol : sequence)
+					bits += - log2(ml.probability(symbol));
+				return bits;
+			case PITMAN_YOR:
+				py.reset();
+				for(Object symbol : sequence)
+					bits += - log2(py.observe(symbol));
+				return bits;
+			case INTEGER:
+				int n = sequence.size();
+				if(n > buffer.length)
+					buffer = new int[Math.max(n, 2 * buffer.length)];
+
+				int i = 0;
+				for(Object symbol : sequence)
+					buffer[i++] = (Integer) symbol;
+
+				return COUNTS.get().codelength(buffer, n, code);
+			default:
+				throw new IllegalArgumentException("Code " + code + " not recognized.");
+			}
+		}
+	}
+
+	/**
+	 * A table of counts for integer symbols, with open addressing. Resetting
+	 * the table takes constant time: each slot records the generation in which
+	 * it was last written, and slots from earlier generations count as empty.
+	 */
+	private static class Counts
+	{
+		private int[] keys = new int[64];
+		private int[] counts = new int[64];
+		private int[] generations = new int[64];
+
+		private int generation = 1;
+		private int distinct = 0;
+
+		public void reset()
+		{
+			generation++;
+			distinct = 0;
+
+			if(generation == Integer.MAX_VALUE)
+			{
+				Arrays.fill(generations, 0);
+				generation = 1;
+			}
+		}
+
+		public int distinct()
+		{
+			return distinct;
+		}
+
+		public int get(int key)
+		{
+			int slot = slot(key);
+			return generations[slot] == generation ? counts[slot] : 0;
+		}
+
+		public void increment(int key)
+		{
+			int slot = slot(key);
+			if(generations[slot] == generation)
+			{
+				counts[slot]++;
+				return;
+			}
+
+			generations[slot] = generation;
+			keys[slot] = key;
+			counts[slot] = 1;
+			distinct++;
+
+			if(distinct * 2 > keys.length)
+				grow();
+		}
+
+		/**
+		 * The slot containing the key, or the empty slot where it should go.
+		 */
+		private int slot(int key)
+		{
+			int mask = keys.length - 1;
+			int hash = key * 0x9E3779B9;
+			int slot = (hash ^ (hash >>> 16)) & mask;
+
+			while(generations[slot] == generation && keys[slot] != key)
+				slot = (slot + 1) & mask;
+
+			return slot;
+		}
+
+		private void grow()
+		{
+			int[] oldKeys = keys, oldCounts = counts, oldGenerations = generations;
+
+			keys = new int[oldKeys.length * 2];
+			counts = new int[oldKeys.length * 2];
+			generations = new int[oldKeys.length * 2];
+
+			for(int i = 0; i < oldKeys.length; i++)
+				if(oldGenerations[i] == generation)
+				{
+					int slot = slot(oldKeys[i]);
+					generations[slot] = generation;
+					keys[slot] = oldKeys[i];
+					counts[slot] = oldCounts[i];
+				}
+		}
+
+		/**
+		 * Computes the codelength with the same arithmetic as the
+		 * corresponding model classes, so that the results are identical.
+		 */
+		public double codelength(int[] sequence, Code code)
+		{
+			return codelength(sequence, sequence.length, code);
+		}
+
+		/**
+		 * The codelength of the first n symbols of the given sequence.
+		 */
+		public double codelength(int[] sequence, int n, Code code)
+		{
+			if(n == 0)
+				return 0.0;
+
+			double bits = 0.0;
+
+			switch(code)
+			{
+			case KT:
+			{
+				reset();
+				for(int i = 0; i < n; i++)
+					increment(sequence[i]);
+
+				double smoothing = OnlineModel.SMOOTHING, size = distinct();
+
+				reset();
+				for(int i = 0; i < n; i++)
+				{
+					bits += - log2((get(sequence[i]) + smoothing) / (i + smoothing * size));
+					increment(sequence[i]);
+				}
+				return bits;
+			}
+			case ML:
+			{
+				reset();
+				for(int i = 0; i < n; i++)
+					increment(sequence[i]);
+
+				double total = n;
+				for(int i = 0; i < n; i++)
+					bits += - log2(get(sequence[i]) / total);
+				return bits;
+			}
+			case PITMAN_YOR:
+			{
+				double alpha = PitmanYorModel.ALPHA, d = PitmanYorModel.DISCOUNT;
+
+				reset();
+				for(int i = 0; i < n; i++)
+				{
+					int frequency = get(sequence[i]);
+					if(frequency > 0)
+						bits += - log2((frequency - d) / (i + alpha));
+					else
+						bits += - log2((alpha + d * distinct()) / (i + alpha));
+
+					increment(sequence[i]);
+				}
+				return bits;
+			}
+			case INTEGER:
+			{
+				double smoothing = IntegerModel.SMOOTHING;
+				int max = Integer.MIN_VALUE;
+				for(int i = 0; i < n; i++)
+				{
+					if(sequence[i] < 0)
+						throw new IllegalArgumentException("Input ("+sequence[i]+") outside of legal range (0, ...).");
+					max = Math.max(max, sequence[i]);
+				}
+
+				reset();
+				for(int i = 0; i < n; i++)
+				{
+					bits += - log2((get(sequence[i]) + smoothing) / (i + smoothing * (max + 1.0)));
+					increment(sequence[i]);
+				}
+				return bits;
+			}
+			default:
+				throw new IllegalArgumentException("Code " + code + " not recognized.");
+			}
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package nl.peterbloem.kit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A frequency model that can be updated by multiple threads at once, without
+ * external locking.
+ * </p><p>
+ * Each token has its own striped counter (a {@link DoubleAdder}) in a 
+ * {@link ConcurrentHashMap}, and the total is kept in a separate striped 
+ * counter, so that threads adding the same tokens rarely contend. 
+ * </p><p>
+ * The read methods can be called while other threads are adding tokens, but 
+ * their results are then only weakly consistent: for instance, the sum of the 
+ * frequencies may briefly differ from the total. Once all threads have 
+ * finished adding, the model behaves exactly like a {@link FrequencyModel}. 
+ * </p><p>
+ * For map-reduce style counting, threads may also count into their own 
+ * models and combine them with {@link #merge(FrequencyModel)}.
+ * </p><p>
+ * As in FrequencyModel, tokens of equal frequency are sorted in the order in 
+ * which they were first added (for tokens first added concurrently, the 
+ * order between them is arbitrary). Unlike in FrequencyModel, 
+ * {@link #tokens()} iterates in no particular order. The class extends 
+ * FrequencyModel so that it can be used in its place; the storage of the 
+ * superclass is left empty.
+ * </p>
+ * 
+ * @author Peter
+ *
+ * @param <T>
+ */
+public class ConcurrentFrequencyModel<T> extends FrequencyModel<T>
+{
+	private ConcurrentHashMap<T, Count> counts = 
+			new ConcurrentHashMap<T, Count>();
+	private DoubleAdder sum = new DoubleAdder();
+	private LongAdder modifications = new LongAdder();
+	
+	// * The order in which tokens were first added, to break ties
+	private AtomicLong sequence = new AtomicLong();
+	
+	// * The last snapshot used by sorted() and rank(), with the state it was 
+	//   taken at
+	private volatile Cache<T> cache = null;
+	
+	public ConcurrentFrequencyModel()
+	{
+	}
+	
+	public ConcurrentFrequencyModel(Collection<T> corpus)
+	{
+		add(corpus);
+	}
+	
+	/**
+	 * Constructs an independent copy of a given FrequencyModel
+	 */
+	public ConcurrentFrequencyModel(FrequencyModel<T> model)
+	{
+		merge(model);
+	}
+	
+	@Override
+	public void add(T token, double weight)
+	{
+		Count count = counts.get(token);
+		if(count == null)
+		{
+			count = new Count(sequence.getAndIncrement());
+			Count existing = counts.putIfAbsent(token, count);
+			if(existing != null)
+				count = existing;
+		}
+		
+		count.value.add(weight);
+		sum.add(weight);
+		modifications.increment();
+	}
+	
+	/**
+	 * Removes all tokens from the model. This should not be called while other
+	 * threads are adding tokens.
+	 */
+	@Override
+	public void reset()
+	{
+		counts.clear();
+		sum.reset();
+		modifications.increment();
+	}
+	
+	@Override
+	public double frequency(T token)
+	{
+		Count count = counts.get(token);
+		
+		return count == null ? 0.0 : count.value.sum();
+	}
+	
+	@Override
+	public double total()
+	{
+		return sum.sum();
+	}
+	
+	@Override
+	public double distinct()
+	{
+		return counts.size();
+	}
+	
+	/**
+	 * All the tokens encountered so far. The set returned is unmodifiable, and
+	 * is backed by the model. Its iterator is weakly consistent: it may or may 
+	 * not reflect tokens added during iteration.
+	 */
+	@Override
+	public Set<T> tokens()
+	{
+		return Collections.unmodifiableSet(counts.keySet());
+	}
+	
+	@Override
+	public long state()
+	{
+		return modifications.sum();
+	}
+	
+	/**
+	 * All the tokens encountered so far, sorted by frequency. The order is 
+	 * computed from a snapshot of the frequencies, so that concurrent updates
+	 * cannot invalidate the sort. Taking the snapshot costs O(n log n) time. 
+	 * The snapshot is kept until the model changes, so that repeated calls to
+	 * this method and to {@link #rank(Object)} on an unchanged model take 
+	 * O(log n) time.
+	 */
+	@Override
+	public List<T> sorted()
+	{
+		return cached().sorted();
+	}
+	
+	/**
+	 * The rank of the token in {@link #sorted()}. See that method for the 
+	 * cost.
+	 */
+	@Override
+	public int rank(T token)
+	{
+		return cached().rank(token);
+	}
+	
+	/**
+	 * The token with the highest frequency (ties go to the token that was 
+	 * added first). This takes O(n) time, in one pass over the counts.
+	 */
+	@Override
+	public T maxToken()
+	{
+		T max = null;
+		double maxFrequency = Double.NEGATIVE_INFINITY;
+		long maxOrder = Long.MAX_VALUE;
+		double total = 0.0;
+		
+		for(Map.Entry<T, Count> entry : counts.entrySet())
+		{
+			double frequency = entry.getValue().value.sum();
+			long order = entry.getValue().order;
+			total += frequency;
+			
+			if(frequency > maxFrequency || (frequency == maxFrequency && order < maxOrder))
+			{
+				max = entry.getKey();
+				maxFrequency = frequency;
+				maxOrder = order;
+			}
+		}
+		
+		return maxFrequency / total > Double.MIN_VALUE ? max : null;
+	}
+	
+	/**
+	 * Calculates the entropy of the relative frequencies. Unlike in the 
+	 * superclass, this takes O(n) time, in one pass over the counts.
+	 */
+	@Override
+	public double entropy()
+	{
+		double total = 0.0, sumNLogN = 0.0;
+		for(Count count : counts.values())
+		{
+			double n = count.value.sum();
+			total += n;
+			if(n > 0.0)
+				sumNLogN += n * Functions.log2(n);
+		}
+		
+		if(total <= 0.0)
+			return 0.0;
+		
+		// * H = log2(N) - (1/N) sum_i n_i log2(n_i)
+		return Math.max(0.0, Functions.log2(total) - sumNLogN / total);
+	}
+	
+	/**
+	 * Returns a (non-concurrent) copy of the current state of this model. The 
+	 * tokens are added to the copy in the order in which they were first 
+	 * added to this model.
+	 */
+	public FrequencyModel<T> snapshot()
+	{
+		List<Map.Entry<T, Count>> entries = new ArrayList<Map.Entry<T, Count>>(counts.entrySet());
+		Collections.sort(entries, new java.util.Comparator<Map.Entry<T, Count>>() {
+			@Override
+			public int compare(Map.Entry<T, Count> first, Map.Entry<T, Count> second)
+			{
+				return Long.compare(first.getValue().order, second.getValue().order);
+			}
+		});
+		
+		FrequencyModel<T> model = new FrequencyModel<T>();
+		for(Map.Entry<T, Count> entry : entries)
+			model.add(entry.getKey(), entry.getValue().value.sum());
+		
+		return model;
+	}
+	
+	/**
+	 * Returns the cached snapshot, or takes a new one if the model has changed
+	 * since. The returned model is shared between threads, so it is ordered 
+	 * before it is published, and must not be modified.
+	 */
+	private FrequencyModel<T> cached()
+	{
+		Cache<T> cache = this.cache;
+		
+		// * The state is read before the snapshot is taken, so that changes 
+		//   made while it is taken invalidate it
+		long state = state();
+		if(cache == null || cache.state != state)
+		{
+			FrequencyModel<T> model = snapshot();
+			model.sorted();
+			
+			cache = new Cache<T>(state, model);
+			this.cache = cache;
+		}
+		
+		return cache.model;
+	}
+	
+	private static final class Cache<T>
+	{
+		final long state;
+		final FrequencyModel<T> model;
+		
+		Cache(long state, FrequencyModel<T> model)
+		{
+			this.state = state;
+			this.model = model;
+		}
+	}
+	
+	private static final class Count
+	{
+		final DoubleAdder value = new DoubleAdder();
+		final long order;
+		
+		Count(long order)
+		{
+			this.order = order;
+		}
+	}
+}
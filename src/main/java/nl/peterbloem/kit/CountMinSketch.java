@@ -0,0 +1,336 @@
+package nl.peterbloem.kit;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * <p>
+ * A Count-Min sketch: an approximate frequency model that uses a fixed amount 
+ * of memory, regardless of the number of distinct tokens.
+ * </p><p>
+ * The sketch consists of a table of depth x width counters. Each row has its 
+ * own hash function, which maps each token to one counter in that row. The 
+ * frequency of a token is estimated as the minimum of its counters. This 
+ * estimate never underestimates the true frequency, and with probability at 
+ * least 1 - delta it overestimates it by no more than epsilon * total, where 
+ * epsilon = e/width and delta = exp(-depth). 
+ * </p><p>
+ * The row hashes are derived from a single hash of the token (by default its
+ * hashCode()), which is mixed with an independent seed for each row by the 
+ * SplitMix64 finalizer. Tokens with the same hash therefore collide in every 
+ * row, and the bound above only holds if the hashes of distinct tokens are 
+ * well distributed. For tokens with weak or 32-bit hashCodes, a better 64-bit
+ * hash can be given with {@link #CountMinSketch(int, int, long, Hash)}.
+ * </p><p>
+ * Counters are updated conservatively: a counter is only raised as far as 
+ * necessary to keep the estimate of the token that was added correct (Estan 
+ * and Varghese). This reduces the error considerably for skewed streams, but
+ * means that weights cannot be negative.
+ * </p><p>
+ * The number of distinct tokens is estimated from the number of counters in 
+ * the first row that are still zero (linear counting). 
+ * </p><p>
+ * Sketches with the same width, depth, seed and hash can be merged, so that a stream 
+ * can be counted by multiple threads, each with its own sketch. This class is
+ * not thread-safe.
+ * </p>
+ * 
+ * @author Peter
+ *
+ * @param <T>
+ */
+public class CountMinSketch<T> implements ProbabilityModel<T>, Serializable
+{
+	private static final long serialVersionUID = 8137626484069311226L;
+	
+	private int width, depth;
+	private long seed;
+	
+	private Hash<? super T> hash;
+	private long[] seeds;
+	// * The counters, flat and row-major
+	private double[] table;
+	private double total = 0.0;
+	
+	// * The number of zero counters in the first row
+	private int zeros;
+	
+	private transient int[] indices;
+	
+	/**
+	 * Creates a sketch that overestimates frequencies by at most 
+	 * epsilon * total, with probability at least 1 - delta. 
+	 * 
+	 * @param epsilon
+	 * @param delta
+	 */
+	public CountMinSketch(double epsilon, double delta)
+	{
+		this(
+			(int) Math.ceil(Math.E / epsilon), 
+			(int) Math.ceil(Math.log(1.0 / delta)), 
+			0L);
+	}
+	
+	/**
+	 * 
+	 * @param width The number of counters per row.
+	 * @param depth The number of rows (ie. hash functions).
+	 * @param seed The seed for the hash functions. Only sketches with the same 
+	 * 	seed can be merged.
+	 */
+	public CountMinSketch(int width, int depth, long seed)
+	{
+		this(width, depth, seed, HashCode.INSTANCE);
+	}
+	
+	/**
+	 * 
+	 * @param width The number of counters per row.
+	 * @param depth The number of rows (ie. hash functions).
+	 * @param seed The seed for the hash functions. Only sketches with the same 
+	 * 	seed can be merged.
+	 * @param hash The hash of the tokens, which the row hashes are derived 
+	 * 	from. Only sketches with the same hash can be merged.
+	 */
+	public CountMinSketch(int width, int depth, long seed, Hash<? super T> hash)
+	{
+		if(width < 1 || depth < 1)
+			throw new IllegalArgumentException("Width ("+width+") and depth ("+depth+") should be positive.");
+		
+		this.width = width;
+		this.depth = depth;
+		this.seed = seed;
+		this.hash = hash;
+		
+		seeds = new long[depth];
+		long s = seed;
+		for(int row = 0; row < depth; row++)
+		{
+			s += 0x9E3779B97F4A7C15L;
+			seeds[row] = mix(s);
+		}
+		
+		table = new double[width * depth];
+		zeros = width;
+	}
+	
+	public void add(T token)
+	{
+		add(token, 1.0);
+	}
+	
+	public void add(T token, double weight)
+	{
+		if(weight < 0.0)
+			throw new IllegalArgumentException("Weight ("+weight+") cannot be negative.");
+		if(weight == 0.0)
+			return;
+		
+		if(indices == null)
+			indices = new int[depth];
+		
+		long hash = hash(token);
+		
+		double min = Double.POSITIVE_INFINITY;
+		for(int row = 0; row < depth; row++)
+		{
+			indices[row] = row * width + index(hash, row);
+			min = Math.min(min, table[indices[row]]);
+		}
+		
+		// * Conservative update
+		double target = min + weight;
+		for(int row = 0; row < depth; row++)
+			if(table[indices[row]] < target)
+			{
+				if(row == 0 && table[indices[row]] == 0.0)
+					zeros--;
+				
+				table[indices[row]] = target;
+			}
+		
+		total += weight;
+	}
+	
+	/**
+	 * An estimate of the frequency of the given token. The estimate is never 
+	 * lower than the true frequency.
+	 */
+	public double frequency(T token)
+	{
+		long hash = hash(token);
+		
+		double min = Double.POSITIVE_INFINITY;
+		for(int row = 0; row < depth; row++)
+			min = Math.min(min, table[row * width + index(hash, row)]);
+		
+		return min;
+	}
+	
+	public double total()
+	{
+		return total;
+	}
+	
+	/**
+	 * An estimate of the number of distinct tokens added (with nonzero weight). 
+	 * The estimate is only reliable if the number of distinct tokens is 
+	 * small compared to width * log(width).
+	 */
+	public double distinct()
+	{
+		// * If the first row is saturated, we return the largest value we can
+		//   distinguish
+		int z = Math.max(zeros, 1);
+		
+		return - width * Math.log(z / (double) width);
+	}
+	
+	public double probability(T token)
+	{
+		return frequency(token) / total;
+	}
+	
+	/**
+	 * The maximal overestimate of the frequency of any token (with probability 
+	 * 1 - delta) given the current total.
+	 */
+	public double error()
+	{
+		return epsilon() * total;
+	}
+	
+	public double epsilon()
+	{
+		return Math.E / width;
+	}
+	
+	public double delta()
+	{
+		return Math.exp(- depth);
+	}
+	
+	public int width()
+	{
+		return width;
+	}
+	
+	public int depth()
+	{
+		return depth;
+	}
+	
+	/**
+	 * Adds the counts of another sketch to this one. Both sketches should have
+	 * the same width, depth and seed, and use the same hash (which is not 
+	 * checked). 
+	 * 
+	 * The result never underestimates the frequency of a token, and obeys the 
+	 * same error bounds as a single sketch that has seen both streams.
+	 * 
+	 * @param other
+	 * @return This sketch.
+	 */
+	public CountMinSketch<T> merge(CountMinSketch<T> other)
+	{
+		if(other.width != width || other.depth != depth || other.seed != seed)
+			throw new IllegalArgumentException("Sketches can only be merged if they have the same width, depth and seed.");
+		
+		for(int i = 0; i < table.length; i++)
+			table[i] += other.table[i];
+		
+		zeros = 0;
+		for(int i = 0; i < width; i++)
+			if(table[i] == 0.0)
+				zeros++;
+		
+		total += other.total;
+		
+		return this;
+	}
+	
+	/**
+	 * Resets all counts to zero.
+	 */
+	public void clear()
+	{
+		for(int i = 0; i < table.length; i++)
+			table[i] = 0.0;
+		
+		zeros = width;
+		total = 0.0;
+	}
+	
+	private void readObject(ObjectInputStream in) 
+			throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		
+		// * Sketches serialized before the hash was configurable
+		if(hash == null)
+			hash = HashCode.INSTANCE;
+	}
+	
+	private long hash(T token)
+	{
+		return token == null ? 0 : hash.hash(token);
+	}
+	
+	/**
+	 * The counter for the given hash in the given row: the hash is offset by 
+	 * the seed of the row, and mixed.
+	 */
+	private int index(long hash, int row)
+	{
+		long h = mix(hash + seeds[row]);
+		
+		return (int) ((h >>> 1) % width);
+	}
+	
+	/**
+	 * The finalizer of the splitmix64 generator: a cheap bijection that 
+	 * spreads the bits of the input over the output.
+	 */
+	private static long mix(long x)
+	{
+		x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+		x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+		
+		return x ^ (x >>> 31);
+	}
+	
+	/**
+	 * A 64-bit hash for the tokens of a sketch. Implementations should be 
+	 * serializable, so that the sketch can be.
+	 */
+	public static interface Hash<T> extends Serializable
+	{
+		public long hash(T token);
+	}
+	
+	private static final class HashCode implements Hash<Object>
+	{
+		private static final long serialVersionUID = -2412950297467303924L;
+		
+		static final HashCode INSTANCE = new HashCode();
+		
+		@Override
+		public long hash(Object token)
+		{
+			return token.hashCode();
+		}
+		
+		private Object readResolve()
+		{
+			return INSTANCE;
+		}
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "[count-min sketch, width=" + width + ", depth=" + depth + ", total=" + total + "]";
+	}
+}
@@ -0,0 +1,510 @@
+package nl.peterbloem.kit;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.sqrt;
+
+/**
+ * <p>
+ * Dense linear algebra on matrices stored row-major in flat double arrays:
+ * element (i, j) of an m by n matrix is at index i * n + j.
+ * </p><p>
+ * This is meant for the small and medium matrices (up to a few hundred rows)
+ * that the kit works with, where the per-element bounds checks and the
+ * intermediate matrices of commons-math dominate the cost. Most methods
+ * write their result into an array given by the caller, so that a hot loop
+ * can reuse its buffers. {@link DenseMatrix} adapts a flat matrix to the
+ * commons-math RealMatrix interface.
+ * </p><p>
+ * The decompositions are Jacobi methods (for the symmetric eigendecomposition
+ * and the SVD), which are simple, and accurate to within a few ulps for
+ * matrices of this size.
+ * </p>
+ *
+ * @author Peter
+ */
+public class Dense
+{
+	/**
+	 * The size of the (square) blocks in matrix multiplication.
+	 */
+	public static int BLOCK = 64;
+
+	/**
+	 * Pivots smaller than this make a matrix singular (as in commons-math's
+	 * LUDecomposition).
+	 */
+	public static final double SINGULARITY_THRESHOLD = 1.0e-11;
+
+	private static final int MAX_SWEEPS = 100;
+
+	/**
+	 * y += alpha * x, for n elements starting at the given offsets.
+	 */
+	public static void axpy(int n, double alpha, double[] x, int xOffset, double[] y, int yOffset)
+	{
+		for(int i = 0; i < n; i++)
+			y[yOffset + i] += alpha * x[xOffset + i];
+	}
+
+	/**
+	 * The inner product of n elements starting at the given offsets.
+	 */
+	public static double dot(int n, double[] x, int xOffset, double[] y, int yOffset)
+	{
+		double sum = 0.0;
+		for(int i = 0; i < n; i++)
+			sum += x[xOffset + i] * y[yOffset + i];
+		return sum;
+	}
+
+	/**
+	 * y = alpha * A x + beta * y, for an m by n matrix A.
+	 */
+	public static void gemv(int m, int n, double alpha, double[] a, double[] x, double beta, double[] y)
+	{
+		for(int i = 0; i < m; i++)
+			y[i] = beta * y[i] + alpha * dot(n, a, i * n, x, 0);
+	}
+
+	/**
+	 * A += alpha * x y^T, in place, for an m by n matrix A.
+	 */
+	public static void ger(int m, int n, double alpha, double[] x, double[] y, double[] a)
+	{
+		for(int i = 0; i < m; i++)
+			axpy(n, alpha * x[i], y, 0, a, i * n);
+	}
+
+	/**
+	 * C = alpha * A B + beta * C, for an m by k matrix A and a k by n matrix
+	 * B. The multiplication proceeds in blocks of {@link #BLOCK}, so that the
+	 * parts of A, B and C in use stay in cache. C should not share an array
+	 * with A or B.
+	 */
+	public static void gemm(int m, int n, int k, double alpha, double[] a, double[] b, double beta, double[] c)
+	{
+		if(beta != 1.0)
+			for(int i = 0; i < m * n; i++)
+				c[i] = beta == 0.0 ? 0.0 : beta * c[i];
+
+		int block = BLOCK;
+		for(int i0 = 0; i0 < m; i0 += block)
+			for(int p0 = 0; p0 < k; p0 += block)
+				for(int j0 = 0; j0 < n; j0 += block)
+				{
+					int i1 = Math.min(i0 + block, m),
+					    p1 = Math.min(p0 + block, k),
+					    j1 = Math.min(j0 + block, n);
+
+					for(int i = i0; i < i1; i++)
+						for(int p = p0; p < p1; p++)
+						{
+							double aip = alpha * a[i * k + p];
+							if(aip == 0.0)
+								continue;
+
+							int ci = i * n, bp = p * n;
+							for(int j = j0; j < j1; j++)
+								c[ci + j] += aip * b[bp + j];
+						}
+				}
+	}
+
+	/**
+	 * The product of an m by k matrix and a k by n matrix.
+	 */
+	public static double[] multiply(double[] a, double[] b, int m, int k, int n)
+	{
+		double[] c = new double[m * n];
+		gemm(m, n, k, 1.0, a, b, 0.0, c);
+		return c;
+	}
+
+	/**
+	 * The transpose of an m by n matrix.
+	 */
+	public static double[] transpose(double[] a, int m, int n)
+	{
+		double[] t = new double[m * n];
+		for(int i = 0; i < m; i++)
+			for(int j = 0; j < n; j++)
+				t[j * m + i] = a[i * n + j];
+		return t;
+	}
+
+	public static double[] identity(int n)
+	{
+		double[] id = new double[n * n];
+		for(int i = 0; i < n; i++)
+			id[i * n + i] = 1.0;
+		return id;
+	}
+
+	/**
+	 * Computes the Cholesky decomposition A = L L^T of a symmetric, positive
+	 * definite n by n matrix in place: afterwards, the lower triangle holds L
+	 * and the upper triangle is zero. Only the lower triangle of the input is
+	 * read.
+	 *
+	 * @return false if the matrix is not positive definite (in which case the
+	 * 	contents of the array are undefined).
+	 */
+	public static boolean cholesky(double[] a, int n)
+	{
+		return cholesky(a, n, 0.0);
+	}
+
+	/**
+	 * Computes the Cholesky decomposition in place, as
+	 * {@link #cholesky(double[], int)}, but fails if any pivot (the square of
+	 * a diagonal element of L) is at most the given threshold, as 
+	 * commons-math's CholeskyDecomposition does.
+	 */
+	public static boolean cholesky(double[] a, int n, double threshold)
+	{
+		for(int j = 0; j < n; j++)
+		{
+			double diag = a[j * n + j] - dot(j, a, j * n, a, j * n);
+			if(! (diag > threshold))
+				return false;
+
+			double ljj = sqrt(diag);
+			a[j * n + j] = ljj;
+
+			for(int i = j + 1; i < n; i++)
+				a[i * n + j] = (a[i * n + j] - dot(j, a, i * n, a, j * n)) / ljj;
+
+			for(int i = j + 1; i < n; i++)
+				a[j * n + i] = 0.0;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Computes the LU decomposition of an n by n matrix in place, with
+	 * partial pivoting (Crout's method, as in commons-math's
+	 * LUDecomposition). Afterwards, the strict lower triangle holds L (which
+	 * has a unit diagonal) and the upper triangle holds U.
+	 *
+	 * @param pivot If not null, receives the row permutation: row i of LU is
+	 * 	row pivot[i] of the input.
+	 * @return The sign of the permutation (1 or -1), or 0 if the matrix is
+	 * 	singular (in which case the decomposition is incomplete).
+	 */
+	public static int lu(double[] a, int n, int[] pivot)
+	{
+		if(pivot != null)
+			for(int i = 0; i < n; i++)
+				pivot[i] = i;
+
+		int sign = 1;
+		for(int col = 0; col < n; col++)
+		{
+			for(int row = 0; row < col; row++)
+			{
+				double sum = a[row * n + col];
+				for(int i = 0; i < row; i++)
+					sum -= a[row * n + i] * a[i * n + col];
+				a[row * n + col] = sum;
+			}
+
+			int max = col;
+			double largest = Double.NEGATIVE_INFINITY;
+			for(int row = col; row < n; row++)
+			{
+				double sum = a[row * n + col];
+				for(int i = 0; i < col; i++)
+					sum -= a[row * n + i] * a[i * n + col];
+				a[row * n + col] = sum;
+
+				if(abs(sum) > largest)
+				{
+					largest = abs(sum);
+					max = row;
+				}
+			}
+
+			if(abs(a[max * n + col]) < SINGULARITY_THRESHOLD)
+				return 0;
+
+			if(max != col)
+			{
+				for(int i = 0; i < n; i++)
+				{
+					double tmp = a[max * n + i];
+					a[max * n + i] = a[col * n + i];
+					a[col * n + i] = tmp;
+				}
+
+				if(pivot != null)
+				{
+					int tmp = pivot[max];
+					pivot[max] = pivot[col];
+					pivot[col] = tmp;
+				}
+				sign = -sign;
+			}
+
+			double diag = a[col * n + col];
+			for(int row = col + 1; row < n; row++)
+				a[row * n + col] /= diag;
+		}
+
+		return sign;
+	}
+
+	/**
+	 * Solves A x = b in place, given the LU decomposition of A computed by
+	 * {@link #lu(double[], int, int[])}.
+	 *
+	 * @param b The right-hand side, replaced by the solution x.
+	 * @param work A scratch array of length at least n.
+	 */
+	public static void solve(double[] lu, int[] pivot, int n, double[] b, double[] work)
+	{
+		for(int i = 0; i < n; i++)
+			work[i] = b[pivot[i]];
+
+		// * forward substitution with the unit lower triangle
+		for(int i = 0; i < n; i++)
+			work[i] -= dot(i, lu, i * n, work, 0);
+
+		// * backward substitution with the upper triangle
+		for(int i = n - 1; i >= 0; i--)
+		{
+			double sum = work[i];
+			for(int j = i + 1; j < n; j++)
+				sum -= lu[i * n + j] * work[j];
+			work[i] = sum / lu[i * n + i];
+		}
+
+		System.arraycopy(work, 0, b, 0, n);
+	}
+
+	/**
+	 * The determinant of an n by n matrix (the input is not changed). Zero
+	 * for matrices that are singular by {@link #SINGULARITY_THRESHOLD}.
+	 */
+	public static double determinant(double[] a, int n)
+	{
+		double[] lu = a.clone();
+		int sign = lu(lu, n, null);
+
+		double det = sign;
+		for(int i = 0; i < n; i++)
+			det *= lu[i * n + i];
+		return det;
+	}
+
+	/**
+	 * The inverse of an n by n matrix (the input is not changed).
+	 *
+	 * @return null if the matrix is singular.
+	 */
+	public static double[] inverse(double[] a, int n)
+	{
+		double[] lu = a.clone();
+		int[] pivot = new int[n];
+		if(lu(lu, n, pivot) == 0)
+			return null;
+
+		double[] inverse = new double[n * n], column = new double[n], work = new double[n];
+		for(int j = 0; j < n; j++)
+		{
+			for(int i = 0; i < n; i++)
+				column[i] = i == j ? 1.0 : 0.0;
+			solve(lu, pivot, n, column, work);
+			for(int i = 0; i < n; i++)
+				inverse[i * n + j] = column[i];
+		}
+
+		return inverse;
+	}
+
+	/**
+	 * Computes the eigendecomposition A = V diag(values) V^T of a symmetric n
+	 * by n matrix by the cyclic Jacobi method.
+	 *
+	 * @param a The matrix (not changed).
+	 * @param values Receives the eigenvalues, in decreasing order.
+	 * @param vectors Receives the eigenvectors as the columns of an n by n
+	 * 	matrix, in the order of the eigenvalues.
+	 */
+	public static void eigenSymmetric(double[] a, int n, double[] values, double[] vectors)
+	{
+		double[] m = a.clone();
+		System.arraycopy(identity(n), 0, vectors, 0, n * n);
+
+		for(int sweep = 0; sweep < MAX_SWEEPS; sweep++)
+		{
+			double off = 0.0, total = 0.0;
+			for(int i = 0; i < n; i++)
+				for(int j = 0; j < n; j++)
+				{
+					double sq = m[i * n + j] * m[i * n + j];
+					total += sq;
+					if(i != j)
+						off += sq;
+				}
+			if(off <= 1e-30 * total)
+				break;
+
+			for(int p = 0; p < n - 1; p++)
+				for(int q = p + 1; q < n; q++)
+				{
+					double apq = m[p * n + q];
+					if(apq == 0.0)
+						continue;
+
+					double theta = (m[q * n + q] - m[p * n + p]) / (2.0 * apq);
+					double t = Math.signum(theta) / (abs(theta) + sqrt(theta * theta + 1.0));
+					if(theta == 0.0)
+						t = 1.0;
+					double c = 1.0 / sqrt(t * t + 1.0), s = t * c;
+
+					// * m = J^T m J, with J the rotation in the (p, q) plane
+					for(int k = 0; k < n; k++)
+					{
+						double mkp = m[k * n + p], mkq = m[k * n + q];
+						m[k * n + p] = c * mkp - s * mkq;
+						m[k * n + q] = s * mkp + c * mkq;
+					}
+					for(int k = 0; k < n; k++)
+					{
+						double mpk = m[p * n + k], mqk = m[q * n + k];
+						m[p * n + k] = c * mpk - s * mqk;
+						m[q * n + k] = s * mpk + c * mqk;
+					}
+					for(int k = 0; k < n; k++)
+					{
+						double vkp = vectors[k * n + p], vkq = vectors[k * n + q];
+						vectors[k * n + p] = c * vkp - s * vkq;
+						vectors[k * n + q] = s * vkp + c * vkq;
+					}
+				}
+		}
+
+		for(int i = 0; i < n; i++)
+			values[i] = m[i * n + i];
+
+		sortColumns(values, vectors, n, n, null, 0);
+	}
+
+	/**
+	 * Computes the thin singular value decomposition A = U diag(s) V^T of an
+	 * m by n matrix by the one-sided Jacobi method. With r = min(m, n), U is
+	 * m by r and V is n by r, both with orthonormal columns (except for
+	 * columns belonging to zero singular values, which are zero).
+	 *
+	 * @param a The matrix (not changed).
+	 * @param u Receives U (row-major, m by r).
+	 * @param s Receives the singular values, in decreasing order.
+	 * @param v Receives V (row-major, n by r).
+	 */
+	public static void svd(double[] a, int m, int n, double[] u, double[] s, double[] v)
+	{
+		if(m < n)
+		{
+			// * A^T = V S U^T
+			svd(transpose(a, m, n), n, m, v, s, u);
+			return;
+		}
+
+		// * Orthogonalize the columns of w = A V by rotations
+		double[] w = a.clone();
+		System.arraycopy(identity(n), 0, v, 0, n * n);
+
+		for(int sweep = 0; sweep < MAX_SWEEPS; sweep++)
+		{
+			boolean rotated = false;
+			for(int p = 0; p < n - 1; p++)
+				for(int q = p + 1; q < n; q++)
+				{
+					double alpha = 0.0, beta = 0.0, gamma = 0.0;
+					for(int i = 0; i < m; i++)
+					{
+						double wp = w[i * n + p], wq = w[i * n + q];
+						alpha += wp * wp;
+						beta += wq * wq;
+						gamma += wp * wq;
+					}
+
+					if(gamma == 0.0 || abs(gamma) <= 1e-15 * sqrt(alpha * beta))
+						continue;
+					rotated = true;
+
+					double zeta = (beta - alpha) / (2.0 * gamma);
+					double t = (zeta >= 0.0 ? 1.0 : -1.0) / (abs(zeta) + sqrt(1.0 + zeta * zeta));
+					double c = 1.0 / sqrt(1.0 + t * t), sn = c * t;
+
+					for(int i = 0; i < m; i++)
+					{
+						double wp = w[i * n + p], wq = w[i * n + q];
+						w[i * n + p] = c * wp - sn * wq;
+						w[i * n + q] = sn * wp + c * wq;
+					}
+					for(int i = 0; i < n; i++)
+					{
+						double vp = v[i * n + p], vq = v[i * n + q];
+						v[i * n + p] = c * vp - sn * vq;
+						v[i * n + q] = sn * vp + c * vq;
+					}
+				}
+
+			if(! rotated)
+				break;
+		}
+
+		for(int j = 0; j < n; j++)
+		{
+			double norm = 0.0;
+			for(int i = 0; i < m; i++)
+				norm += w[i * n + j] * w[i * n + j];
+			norm = sqrt(norm);
+
+			s[j] = norm;
+			for(int i = 0; i < m; i++)
+				u[i * n + j] = norm == 0.0 ? 0.0 : w[i * n + j] / norm;
+		}
+
+		sortColumns(s, v, n, n, u, m);
+	}
+
+	/**
+	 * Sorts the values in decreasing order, and permutes the columns of the
+	 * given matrices (with the given number of rows and n columns) along with
+	 * them.
+	 */
+	private static void sortColumns(double[] values, double[] a, int aRows, int n, double[] b, int bRows)
+	{
+		for(int i = 0; i < n - 1; i++)
+		{
+			int max = i;
+			for(int j = i + 1; j < n; j++)
+				if(values[j] > values[max])
+					max = j;
+
+			if(max == i)
+				continue;
+
+			double tmp = values[i];
+			values[i] = values[max];
+			values[max] = tmp;
+
+			swapColumns(a, aRows, n, i, max);
+			if(b != null)
+				swapColumns(b, bRows, n, i, max);
+		}
+	}
+
+	private static void swapColumns(double[] a, int rows, int n, int i, int j)
+	{
+		for(int r = 0; r < rows; r++)
+		{
+			double tmp = a[r * n + i];
+			a[r * n + i] = a[r * n + j];
+			a[r * n + j] = tmp;
+		}
+	}
+}
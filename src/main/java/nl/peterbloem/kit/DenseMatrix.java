@@ -0,0 +1,193 @@
+package nl.peterbloem.kit;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * A RealMatrix backed by a row-major flat array, as used by {@link Dense}.
+ * Multiplications, transposes and matrix-vector products with other
+ * DenseMatrices go through the kernels in Dense; everything else falls back
+ * to the generic implementations of commons-math.
+ *
+ * @author Peter
+ */
+public class DenseMatrix extends AbstractRealMatrix
+{
+	private final int rows, columns;
+	private final double[] data;
+
+	public DenseMatrix(int rows, int columns)
+	{
+		this(new double[rows * columns], rows, columns);
+	}
+
+	/**
+	 * Wraps the given array (without copying it).
+	 */
+	public DenseMatrix(double[] data, int rows, int columns)
+	{
+		super(rows, columns);
+		if(data.length != rows * columns)
+			throw new IllegalArgumentException("Array length ("+data.length+") does not match dimensions ("+rows+" by "+columns+").");
+
+		this.rows = rows;
+		this.columns = columns;
+		this.data = data;
+	}
+
+	/**
+	 * Copies a RealMatrix into a DenseMatrix.
+	 */
+	public static DenseMatrix of(RealMatrix matrix)
+	{
+		if(matrix instanceof DenseMatrix)
+			return (DenseMatrix) matrix.copy();
+
+		return new DenseMatrix(flat(matrix), matrix.getRowDimension(), matrix.getColumnDimension());
+	}
+
+	/**
+	 * The entries of a RealMatrix as a new row-major flat array.
+	 */
+	public static double[] flat(RealMatrix matrix)
+	{
+		int r = matrix.getRowDimension(), c = matrix.getColumnDimension();
+		double[] flat = new double[r * c];
+		for(int i = 0; i < r; i++)
+			for(int j = 0; j < c; j++)
+				flat[i * c + j] = matrix.getEntry(i, j);
+
+		return flat;
+	}
+
+	/**
+	 * The backing array of this matrix. Changes to the array are reflected in
+	 * the matrix.
+	 */
+	public double[] data()
+	{
+		return data;
+	}
+
+	@Override
+	public int getRowDimension()
+	{
+		return rows;
+	}
+
+	@Override
+	public int getColumnDimension()
+	{
+		return columns;
+	}
+
+	@Override
+	public DenseMatrix createMatrix(int rowDimension, int columnDimension)
+	{
+		return new DenseMatrix(rowDimension, columnDimension);
+	}
+
+	@Override
+	public DenseMatrix copy()
+	{
+		return new DenseMatrix(data.clone(), rows, columns);
+	}
+
+	@Override
+	public double getEntry(int row, int column)
+	{
+		check(row, column);
+		return data[row * columns + column];
+	}
+
+	@Override
+	public void setEntry(int row, int column, double value)
+	{
+		check(row, column);
+		data[row * columns + column] = value;
+	}
+
+	@Override
+	public void addToEntry(int row, int column, double increment)
+	{
+		check(row, column);
+		data[row * columns + column] += increment;
+	}
+
+	@Override
+	public double[][] getData()
+	{
+		double[][] out = new double[rows][];
+		for(int i = 0; i < rows; i++)
+		{
+			out[i] = new double[columns];
+			System.arraycopy(data, i * columns, out[i], 0, columns);
+		}
+
+		return out;
+	}
+
+	@Override
+	public RealMatrix multiply(RealMatrix m)
+	{
+		if(! (m instanceof DenseMatrix))
+			return super.multiply(m);
+
+		if(m.getRowDimension() != columns)
+			throw new DimensionMismatchException(m.getRowDimension(), columns);
+
+		DenseMatrix other = (DenseMatrix) m;
+		return new DenseMatrix(
+				Dense.multiply(data, other.data, rows, columns, other.columns),
+				rows, other.columns);
+	}
+
+	@Override
+	public RealMatrix add(RealMatrix m)
+	{
+		if(! (m instanceof DenseMatrix))
+			return super.add(m);
+
+		if(m.getRowDimension() != rows || m.getColumnDimension() != columns)
+			throw new DimensionMismatchException(m.getRowDimension() * m.getColumnDimension(), data.length);
+
+		double[] sum = data.clone();
+		Dense.axpy(sum.length, 1.0, ((DenseMatrix) m).data, 0, sum, 0);
+		return new DenseMatrix(sum, rows, columns);
+	}
+
+	@Override
+	public RealMatrix scalarMultiply(double d)
+	{
+		double[] product = new double[data.length];
+		Dense.axpy(data.length, d, data, 0, product, 0);
+		return new DenseMatrix(product, rows, columns);
+	}
+
+	@Override
+	public RealMatrix transpose()
+	{
+		return new DenseMatrix(Dense.transpose(data, rows, columns), columns, rows);
+	}
+
+	@Override
+	public double[] operate(double[] v)
+	{
+		if(v.length != columns)
+			throw new DimensionMismatchException(v.length, columns);
+
+		double[] out = new double[rows];
+		Dense.gemv(rows, columns, 1.0, data, v, 0.0, out);
+		return out;
+	}
+
+	private void check(int row, int column)
+	{
+		if(row < 0 || row >= rows)
+			throw new OutOfRangeException(row, 0, rows - 1);
+		if(column < 0 || column >= columns)
+			throw new OutOfRangeException(column, 0, columns - 1);
+	}
+}
@@ -0,0 +1,119 @@
+package nl.peterbloem.kit;
+
+import nl.peterbloem.kit.jfr.Recorder;
+
+/**
+ * <p>
+ * Emits Java Flight Recorder events around long-running operations (EM
+ * iterations, fitting similitudes and affine maps, reading CSV files and the
+ * hyperparameter search of {@link PitmanYorModel#storeIntegersOpt(java.util.List)}),
+ * so that slow fits can be correlated with GC and CPU activity in a
+ * recording.
+ * </p><p>
+ * Events are off by default. They are switched on by {@link #enable()}, or by
+ * starting the JVM with <code>-Dnl.peterbloem.kit.jfr=true</code>. While off,
+ * each instrumented operation costs a single check of a static flag. The
+ * event classes (in {@link nl.peterbloem.kit.jfr}) are only loaded once
+ * events are enabled, so the kit still runs on JVMs without JFR.
+ * </p><p>
+ * An operation is instrumented as:
+ * </p>
+ * <pre>
+ * Object event = Events.begin(Events.EM_ITERATION);
+ * ...
+ * Events.end(event, data.size(), dimension, components, true);
+ * </pre>
+ *
+ * @author Peter
+ */
+public class Events
+{
+	public static final int EM_ITERATION = 0;
+	public static final int SIMILITUDE_FIND = 1;
+	public static final int AFFINE_MAP_FIND = 2;
+	public static final int READ_CSV = 3;
+	public static final int STORE_INTEGERS_OPT = 4;
+
+	public static final String PROPERTY = "nl.peterbloem.kit.jfr";
+
+	private static volatile boolean enabled = Boolean.getBoolean(PROPERTY) && available();
+
+	/**
+	 * Whether this JVM supports flight recorder events.
+	 */
+	public static boolean available()
+	{
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Starts emitting events. The events are only recorded while a flight
+	 * recording is running.
+	 *
+	 * @throws UnsupportedOperationException If this JVM does not support
+	 * 	flight recorder events.
+	 */
+	public static void enable()
+	{
+		if(! available())
+			throw new UnsupportedOperationException("This JVM does not support flight recorder events.");
+
+		enabled = true;
+	}
+
+	public static void disable()
+	{
+		enabled = false;
+	}
+
+	public static boolean enabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Starts timing an operation of the given type.
+	 *
+	 * @return A handle to pass to {@link #end(Object, long, int, int,
+	 * 	boolean)}, or null if events are disabled.
+	 */
+	public static Object begin(int type)
+	{
+		if(! enabled)
+			return null;
+
+		return Recorder.begin(type);
+	}
+
+	/**
+	 * Counts a retry (for instance of a failed decomposition) in the given
+	 * operation.
+	 */
+	public static void retry(Object event)
+	{
+		if(event != null)
+			Recorder.retry(event);
+	}
+
+	/**
+	 * Ends the operation and commits its event, if the event is enabled in
+	 * the running recording.
+	 *
+	 * @param size The size of the data (for instance the number of points)
+	 * @param dimension The dimension of the data, or 0 if not applicable.
+	 * @param components The number of components (or candidate models), or
+	 * 	0 if not applicable.
+	 * @param success Whether the operation produced a result.
+	 */
+	public static void end(Object event, long size, int dimension, int components, boolean success)
+	{
+		if(event != null)
+			Recorder.end(event, size, dimension, components, success);
+	}
+}
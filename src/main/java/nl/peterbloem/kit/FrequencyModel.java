@@ -5,18 +5,29 @@ import java.util.*;
 import static java.util.Collections.*;
 import static nl.peterbloem.kit.Functions.*;
 
-public class FrequencyModel<T> {
+public class FrequencyModel<T> implements ProbabilityModel<T>
+{
 
 	protected Map<T, Double> frequencies = new LinkedHashMap<T, Double>();
 	protected double total = 0;
 	
-	// * A sorted list of the tokens in this model
+	// * A view of the tokens in this model, sorted by frequency, valid while
+	//   the state is sortedState
 	protected List<T> sorted = null;
-	// * The mod count the last time the sorted list was recomputed
-	private long modsAtLastSort = -1;
+	private long sortedState = -1;
 	
 	private long mods = 0;
 	
+	// * The sum of n log2 n over all token frequencies n, for the entropy
+	private double sumNLogN = 0.0;
+	
+	// * An order statistics tree (a treap) of the tokens, ordered by frequency
+	//   and then by order of insertion. This is only built when the order is
+	//   first requested, so that models that are never ranked don't pay for it.
+	private Map<T, Node<T>> nodes = null;
+	private Node<T> root = null;
+	private long sequence = 0;
+	
 	public FrequencyModel()
 	{
 	}
@@ -60,12 +71,56 @@ public class FrequencyModel<T> {
 	{
 		mods++;
 		
-		if(frequencies.containsKey(token))
-			frequencies.put(token, frequencies.get(token) + weight);
-		else
-			frequencies.put(token, weight);
+		Double old = frequencies.get(token);
+		double frequency = old == null ? weight : old + weight;
+		frequencies.put(token, frequency);
 		
 		total += weight;
+		sumNLogN += nLogN(frequency) - (old == null ? 0.0 : nLogN(old));
+		
+		if(nodes != null)
+		{
+			Node<T> node = nodes.get(token);
+			if(node == null)
+			{
+				node = new Node<T>(token, frequency, sequence++);
+				nodes.put(token, node);
+				root = insert(root, node);
+			} else if(weight != 0.0)
+			{
+				root = remove(root, node);
+				node.frequency = frequency;
+				root = insert(root, node);
+			}
+		}
+	}
+	
+	/**
+	 * Adds all counts of the given model to this one. 
+	 * 
+	 * @param other
+	 */
+	public void merge(FrequencyModel<T> other)
+	{
+		for(T token : other.tokens())
+			add(token, other.frequency(token));
+	}
+	
+	/**
+	 * Removes all tokens from the model, so that it can be reused without 
+	 * reallocation. Parameters set at construction (like smoothing) are kept.
+	 */
+	public void reset()
+	{
+		mods++;
+		
+		frequencies.clear();
+		total = 0.0;
+		sumNLogN = 0.0;
+		
+		nodes = null;
+		root = null;
+		sequence = 0;
 	}
 	
 	public double distinct()
@@ -99,30 +154,84 @@ public class FrequencyModel<T> {
 	
 	/**
 	 * All the tokens encountered so far, sorted by frequency. The list
-	 * is unmodifiable and backed by the model.
+	 * is unmodifiable and backed by the model. It is fail-fast: once the 
+	 * model is changed, any access to the list throws a 
+	 * ConcurrentModificationException, and sorted() should be called again. 
 	 * 
-	 * The list is recomputed when necessary. This means that successive calls to
-	 * this method will only be computationally expensive if the model is 
-	 * modified in between.
+	 * The order is maintained incrementally as tokens are added, so that 
+	 * retrieving an element by index takes O(log n) time, and adding a token 
+	 * takes O(log n) time once this method (or {@link #rank(Object)} or 
+	 * {@link #maxToken()}) has been called for the first time.
 	 * 
 	 * The list is reverse-sorted by frequency, so that the highest frequency 
-	 * token has the lowest index (and vice versa). 
+	 * token has the lowest index (and vice versa). Tokens with equal frequency
+	 * are in the order in which they were first added. 
 	 * 
 	 * @return A list of all tokens encountered so far.
 	 */
 	public List<T> sorted()
 	{
-		if(modsAtLastSort != mods || sorted == null)
+		order();
+		
+		if(sorted == null || sortedState != mods)
 		{
-			sorted = new ArrayList<T>(tokens());
-			Collections.sort(sorted,
-				Collections.reverseOrder(new FrequencyModel.Comparator<T>(this)));
-			sorted = Collections.unmodifiableList(sorted);
+			final long expected = mods;
+			
+			sortedState = expected;
+			sorted = new AbstractList<T>() 
+			{
+				@Override
+				public T get(int index)
+				{
+					if(index < 0 || index >= size())
+						throw new IndexOutOfBoundsException("Index ("+index+") should be in [0, "+size()+").");
+					
+					return select(root, index).token;
+				}
+
+				@Override
+				public int size()
+				{
+					if(mods != expected)
+						throw new ConcurrentModificationException("The model has changed since the list was created.");
+					
+					return root == null ? 0 : root.size;
+				}
+			};
 		}
 		
 		return sorted;
 	}	
 	
+	/**
+	 * The index of the given token in {@link #sorted()}. This takes O(log n) 
+	 * time.
+	 * 
+	 * @return The rank of the token (0 for the highest frequency), or -1 if 
+	 * 	the token has not been encountered.
+	 */
+	public int rank(T token)
+	{
+		order();
+		
+		Node<T> node = nodes.get(token);
+		if(node == null)
+			return -1;
+		
+		int rank = 0;
+		Node<T> current = root;
+		while(current != node)
+			if(before(node, current))
+				current = current.left;
+			else
+			{
+				rank += size(current.left) + 1;
+				current = current.right;
+			}
+		
+		return rank + size(node.left);
+	}
+	
 	/**
 	 * Returns the tokens with the highest probability
 	 * 
@@ -130,20 +239,14 @@ public class FrequencyModel<T> {
 	 */
 	public T maxToken()
 	{
+		order();
 		
-		double maxValue = Double.MIN_VALUE;
-		T maxToken = null;
-		for(T key : frequencies.keySet())
-		{
-			double prob = probability(key);
-			if(prob > maxValue)
-			{
-				maxToken = key;
-				maxValue = prob;
-			}
-		}
+		if(root == null)
+			return null;
 		
-		return maxToken;
+		T token = select(root, 0).token;
+		
+		return probability(token) > Double.MIN_VALUE ? token : null;
 	}
 
 	/**
@@ -159,7 +262,7 @@ public class FrequencyModel<T> {
 		int op = 0;
 		
 		T choice = null;
-		for(T token : frequencies.keySet())
+		for(T token : tokens())
 		{
 			choice = token;
 			
@@ -200,12 +303,29 @@ public class FrequencyModel<T> {
 	}
 	
 	/**
-	 * Calculates the entropy
+	 * Calculates the entropy of the relative frequencies. 
+	 * 
+	 * This is maintained incrementally, and takes constant time. Subclasses 
+	 * that override {@link #probability(Object)} should override this method 
+	 * to return {@link #probabilityEntropy()}.
 	 * 
 	 * @return A non-negative finite value representing the entropy of the
 	 * probability model.
 	 */
 	public double entropy()
+	{
+		if(total <= 0.0)
+			return 0.0;
+		
+		// * H = log2(N) - (1/N) sum_i n_i log2(n_i)
+		return Math.max(0.0, log2(total) - sumNLogN / total);
+	}
+	
+	/**
+	 * Calculates the entropy by summing over {@link #probability(Object)} for 
+	 * all tokens in the model. This takes O(n) time.
+	 */
+	protected double probabilityEntropy()
 	{
 		double sum = 0.0;
 		for(T token : tokens())
@@ -248,7 +368,7 @@ public class FrequencyModel<T> {
 		StringBuilder sb = new StringBuilder();
 		sb.append('[');
 			
-		List<T> keyList = new ArrayList<T>(frequencies.keySet());
+		List<T> keyList = new ArrayList<T>(tokens());
 		
 		if(! keyList.isEmpty())
 			if(keyList.get(0) instanceof Comparable<?>)
@@ -278,8 +398,8 @@ public class FrequencyModel<T> {
 	{
 		StringBuffer buff = new StringBuffer();
 		buff.append('[');
-		for(T key : frequencies.keySet())
-			buff.append(buff.length() == 1? "":", ").append(key + ":" + frequencies.get(key));
+		for(T key : tokens())
+			buff.append(buff.length() == 1? "":", ").append(key + ":" + frequency(key));
 		
 		buff.append(']');		
 		
@@ -327,6 +447,156 @@ public class FrequencyModel<T> {
 	}
 
 
+	private static double nLogN(double n)
+	{
+		return n > 0.0 ? n * log2(n) : 0.0;
+	}
+	
+	/**
+	 * Builds the order statistics tree, if it doesn't exist yet.
+	 */
+	private void order()
+	{
+		if(nodes != null)
+			return;
+		
+		nodes = new HashMap<T, Node<T>>();
+		for(T token : tokens())
+		{
+			Node<T> node = new Node<T>(token, frequency(token), sequence++);
+			nodes.put(token, node);
+			root = insert(root, node);
+		}
+	}
+	
+	private static class Node<T>
+	{
+		T token;
+		double frequency;
+		long sequence;
+		int priority;
+		int size = 1;
+		Node<T> left, right;
+		
+		Node(T token, double frequency, long sequence)
+		{
+			this.token = token;
+			this.frequency = frequency;
+			this.sequence = sequence;
+			
+			// * A hash of the sequence number serves as the random heap 
+			//   priority
+			long h = (sequence + 1) * 0x9E3779B97F4A7C15L;
+			this.priority = (int) (h ^ (h >>> 32));
+		}
+	}
+	
+	/**
+	 * Whether a comes before b in the sorted order.
+	 */
+	private static <T> boolean before(Node<T> a, Node<T> b)
+	{
+		if(a.frequency != b.frequency)
+			return a.frequency > b.frequency;
+		
+		return a.sequence < b.sequence;
+	}
+	
+	private static <T> int size(Node<T> node)
+	{
+		return node == null ? 0 : node.size;
+	}
+	
+	private static <T> Node<T> update(Node<T> node)
+	{
+		node.size = size(node.left) + size(node.right) + 1;
+		return node;
+	}
+	
+	private static <T> Node<T> insert(Node<T> root, Node<T> node)
+	{
+		if(root == null)
+		{
+			node.left = null;
+			node.right = null;
+			return update(node);
+		}
+		
+		if(before(node, root))
+		{
+			root.left = insert(root.left, node);
+			if(root.left.priority > root.priority)
+			{
+				Node<T> left = root.left;
+				root.left = left.right;
+				left.right = update(root);
+				root = left;
+			}
+		} else
+		{
+			root.right = insert(root.right, node);
+			if(root.right.priority > root.priority)
+			{
+				Node<T> right = root.right;
+				root.right = right.left;
+				right.left = update(root);
+				root = right;
+			}
+		}
+		
+		return update(root);
+	}
+	
+	private static <T> Node<T> remove(Node<T> root, Node<T> node)
+	{
+		if(root == node)
+			return join(root.left, root.right);
+		
+		if(before(node, root))
+			root.left = remove(root.left, node);
+		else
+			root.right = remove(root.right, node);
+		
+		return update(root);
+	}
+	
+	/**
+	 * Joins two trees, where all nodes of a come before all nodes of b.
+	 */
+	private static <T> Node<T> join(Node<T> a, Node<T> b)
+	{
+		if(a == null)
+			return b;
+		if(b == null)
+			return a;
+		
+		if(a.priority > b.priority)
+		{
+			a.right = join(a.right, b);
+			return update(a);
+		}
+		
+		b.left = join(a, b.left);
+		return update(b);
+	}
+	
+	private static <T> Node<T> select(Node<T> node, int index)
+	{
+		while(true)
+		{
+			int left = size(node.left);
+			if(index < left)
+				node = node.left;
+			else if(index == left)
+				return node;
+			else
+			{
+				index -= left + 1;
+				node = node.right;
+			}
+		}
+	}
+
 	public static class Comparator<T> implements java.util.Comparator<T>
 	{
 		private FrequencyModel<T> model;
@@ -23,6 +23,8 @@ import org.apache.commons.math3.linear.LUDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.util.ArithmeticUtils;
 
+import nl.peterbloem.kit.data.Moments;
+
 /**
  * This class contains several static functions (mainly mathematical)
  * That are used throughout the library.
@@ -228,36 +230,14 @@ public class Functions
 	 */
 	public static Pair<Double, Double> getMeanAndVariance(Collection<? extends Number> in, boolean sample)
 	{
-		Iterator<? extends Number> it = in.iterator();
-		int n = 0;
-		double total = 0.0;
-		while(it.hasNext())
-		{
-			n++;
-			total += it.next().doubleValue();
-		}
+		Moments moments = new Moments(1, false);
+		for(Number number : in)
+			moments.add(number.doubleValue());
 		
-		double mean;
-		if(n == 0)
-			mean = 0.0;				
-		else		
-			mean = total / (double)n;
- 		
-		it = in.iterator();
-		total = 0.0;
-		// compute variance
-		while(it.hasNext())
-			total += Math.pow((it.next().doubleValue() - mean), 2.0);
-		
-		double variance;
-		if(sample)
-			if(n == 1) variance = 0.0;
-			else variance = total / (double)(n-1);
-		else 		
-			if(n == 0) variance = 0.0; 
-			else variance = total / (double)(n);
+		double mean = moments.mean(0);
+		double variance = moments.variance(0, ! sample);
 		
-		return new Pair<Double, Double>(new Double(mean), new Double(variance));
+		return new Pair<Double, Double>(mean, variance);
 	}
 	
 	/**
@@ -288,7 +268,9 @@ public class Functions
 	 * Returns the number of seconds since tic was last called. <br/>
 	 * <br/>
 	 * The behavior of tic()/toc() is thread-local, so different threads
-	 * can call this function simultaneously.
+	 * can call this function simultaneously. Calls cannot be nested: for 
+	 * nested timing, or timing aggregated over threads, use a 
+	 * {@link Metrics.Timer}.
 	 * 
 	 * @return A double representing the number of seconds since the last call 
 	 *         to tic(). 
@@ -504,13 +486,13 @@ public class Functions
 	public static List<Double> randomMultinomial(int n)
 	{
 		List<Double> x = new ArrayList<Double>(n-1);
-		for(int i : series(n-1))
+		for(int i = 0; i < n-1; i++)
 			x.add(Global.random().nextDouble());
 		
 		Collections.sort(x);
 		
 		List<Double> w = new ArrayList<Double>(n);
-		for(int i : series(n))
+		for(int i = 0; i < n; i++)
 			if (i == 0)
 				w.add(x.get(0));
 			else if (i == n - 1)
@@ -623,36 +605,15 @@ public class Functions
 	 * @param size The maximum integer possible + 1
 	 * @return A uniform random choice from all sets of size k of distinct 
 	 * 	integers below the 'size' parameter. The result is not sorted.
+	 * @see Sampling
 	 */
 	public static List<Long> sample(int k, long size)
 	{
-		if(0 > k || k > size)
-			throw new IllegalArgumentException("Argument k ("+k+") must be non-negative and smaller than size ("+size+")");
-		// * The algorithm we use basically simulates having an array with the 
-		//   values of 0 to n - 1 at their own indices, and for each i, choosing
-		//   a random index above it and swapping the two entries.
-		//
-		//   Since we expect low k, most entries in this array will stay at 
-		//   their original index and we only stores the values that deviate.
-		
-		Map<Long, Long> map = new HashMap<Long, Long>();
-				
-		for(long i : series(k))
-		{
-			// Sample a random integer above or equal to i and below 'size'
-			long draw = randomLong(size - i) + i;
-			
-			long drawValue = map.containsKey(draw) ? map.get(draw) : draw;
-			long iValue = map.containsKey(i) ? map.get(i) : i; 
-			
-			// swap the values
-			map.put(i, drawValue);
-			map.put(draw, iValue);
-		}
+		long[] sample = Sampling.sample(k, size);
 		
 		List<Long> result = new ArrayList<Long>(k);
-		for(long i : series(k))
-			result.add(map.get(i));
+		for(long value : sample)
+			result.add(value);
 		
 		return result;
 	}
@@ -667,33 +628,11 @@ public class Functions
 	 */
 	public static List<Integer> sampleInts(int k, int size)
 	{
-		if(0 > k || k > size)
-			throw new IllegalArgumentException("Argument k ("+k+") must be non-negative and smaller than size ("+size+")");
-		// * The algorithm we use basically simulates having an array with the 
-		//   values of 0 to n - 1 at their own indices, and for each i, choosing
-		//   a random index above it and swapping the two entries.
-		//
-		//   Since we expect low k, most entries in this array will stay at 
-		//   their original index and we only stores the values that deviate.
-		
-		Map<Integer, Integer> map = new HashMap<Integer, Integer>();
-				
-		for(int i : series(k))
-		{
-			// Sample a random integer above or equal to i and below 'size'
-			int draw = Global.random().nextInt(size - i) + i;
-			
-			int drawValue = map.containsKey(draw) ? map.get(draw) : draw;
-			int iValue = map.containsKey(i) ? map.get(i) : i; 
-			
-			// swap the values
-			map.put(i, drawValue);
-			map.put(draw, iValue);
-		}
+		int[] sample = Sampling.sample(k, size);
 		
 		List<Integer> result = new ArrayList<Integer>(k);
-		for(int i : series(k))
-			result.add(map.get(i));
+		for(int value : sample)
+			result.add(value);
 		
 		return result;
 	}
@@ -897,9 +836,9 @@ public class Functions
 	public static String toString(RealMatrix s, int dec)
 	{
 		String result = "";
-		for(int i : series(s.getRowDimension()))
+		for(int i = 0; i < s.getRowDimension(); i++)
 		{
-			for(int j : series(s.getColumnDimension()))
+			for(int j = 0; j < s.getColumnDimension(); j++)
 				result += String.format("%."+dec+"f\t", s.getEntry(i, j));
 			result += "\n";
 		}
@@ -1223,7 +1162,7 @@ public class Functions
     private static double[] uniform(int n)
     {
     	double[] res = new double[n];
-    	for(int i : series(n))
+    	for(int i = 0; i < n; i++)
     		res[i] = 1.0/n;
     	
     	return res;
@@ -1232,38 +1171,20 @@ public class Functions
 
     /**
      * Sorts both lists by the corresponding values in V.
+     * 
+     * The sort is stable, and the comparator is only called from the calling 
+     * thread. For large or primitive data, or to sort in parallel, see 
+     * {@link Sorting}.
      *
      * @param things
      * @param values
      */
     public static <T, V> void sort(List<T> things, List<V> values, final Comparator<V> comp)
     {   
-        class Comp implements Comparator<Pair<T, V>>
-        {
-			@Override
-			public int compare(Pair<T, V> a, Pair<T, V> b)
-			{
-				return comp.compare(a.second(), b.second());
-			}
-        }
-        
-        int n = things.size();
         assert(things.size() == values.size());
         
-        List<Pair<T, V>> pairs = new ArrayList<Pair<T, V>>(n);
-        for(int i : series(n))
-        	pairs.add(new Pair<T, V>(things.get(i), values.get(i)));
-        
-        Collections.sort(pairs, new Comp());
-        
-        things.clear();
-        values.clear();
-        
-        for(Pair<T, V> pair : pairs)
-        {
-        	things.add(pair.first());
-        	values.add(pair.second());
-        }
+        int[] order = Sorting.argsort(values, comp, false);
+        Sorting.permute(order, things, values);
     }
     
     /**
@@ -1275,6 +1196,9 @@ public class Functions
      * 
      * Note that the same list should not occur in the arguments multiple times,
      * or the results will be ill-defined.
+     * 
+     * The comparator is only called from the calling thread. For large or 
+     * primitive data, or to sort in parallel, see {@link Sorting}.
      *
      * @param things
      * @param values
@@ -1282,42 +1206,31 @@ public class Functions
     public static <V> void sort(final List<V> values, final Comparator<V> comp, final List... lists)
     {   
     	int n = values.size();
-    	for(int i : series(lists.length))
+    	for(int i = 0; i < lists.length; i++)
     		if(lists[i].size() != n)
     			throw new IllegalArgumentException("List "+i+" has size "+lists[i].size() +", but values has size "+ values.size()+". All lists should have the same size.");
     	
-    	class Tuple
-    	{
-    		V value;
-    		Object[] things;
-    		
-    		public Tuple(int i)
-    		{
-    			value = values.get(i);
-    			
-    			things = new Object[lists.length];
-    			for(int j : series(lists.length))
-    				things[j] = lists[j].get(i);
-    		}
-    		
-    		public V value(){return value;}
-    		public Object thing(int j){return things[j];}
-    	}
+    	// * Copy the lists to arrays for fast random access
+    	final Object[] vs = values.toArray();
+    	final Object[][] columns = new Object[lists.length][];
+    	for(int j = 0; j < lists.length; j++)
+    		columns[j] = lists[j].toArray();
     	
-        class Comp implements Comparator<Tuple>
+        class Comp implements Sorting.IndexComparator
         {
+			@SuppressWarnings("unchecked")
 			@Override
-			public int compare(Tuple a, Tuple b)
+			public int compare(int a, int b)
 			{
-				int vcomp = comp.compare(a.value(), b.value());
+				int vcomp = comp.compare((V)vs[a], (V)vs[b]);
 				
 				if(vcomp != 0)
 					return vcomp;
 				
-				for(int j : series(lists.length))
+				for(int j = 0; j < lists.length; j++)
 				{
-					Object oa = a.thing(j);
-					Object ob = b.thing(j);
+					Object oa = columns[j][a];
+					Object ob = columns[j][b];
 					
 					if(oa instanceof Comparable<?>)
 					{
@@ -1338,23 +1251,10 @@ public class Functions
 			}
         }
                 
-        List<Tuple> tuples = new ArrayList<Tuple>(values.size());
-        for(int i : series(values.size()))
-        	tuples.add(new Tuple(i));
-        
-        Collections.sort(tuples, new Comp());
+        int[] order = Sorting.argsort(n, new Comp(), false);
         
-        values.clear();
-        for(int j : series(lists.length))
-        	lists[j].clear();
-        
-        for(Tuple tuple : tuples)
-        {
-        	values.add(tuple.value());
-
-            for(int j : series(lists.length))
-            	(lists[j]).add(tuple.thing(j));
-        }
+        Sorting.permute(order, values);
+        Sorting.permute(order, lists);
     }
 
     public static int sumInts(Collection<Integer> numbers)
@@ -4,6 +4,7 @@ import java.io.File;
 import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 /**
@@ -105,11 +106,43 @@ public class Global
 	}
 	
 	/**
-	 * Set the suggested number of threads.
+	 * Set the suggested number of threads. 
+	 * 
+	 * Later calls to {@link #pool()} return a new pool of the new size. The 
+	 * old pool is not shut down: it finishes the tasks that were submitted to 
+	 * it (and accepts new ones from code that still holds a reference), and 
+	 * its threads exit once it is idle.
+	 * 
 	 * @return
 	 */
 	public static void setNumThreads(int numThreads)
 	{
-		Global.numThreads = numThreads;
+		synchronized(Global.class)
+		{
+			Global.numThreads = numThreads;
+			pool = null;
+		}
+	}
+	
+	private static ForkJoinPool pool = null;
+	
+	/**
+	 * A shared thread pool with numThreads() threads, for the methods of this 
+	 * library that split their work over multiple threads. The pool is 
+	 * created when it is first requested, and replaced when the number of 
+	 * threads is changed (see {@link #setNumThreads(int)}). Callers should 
+	 * not cache the pool across such a change if they want the new size.
+	 * 
+	 * The threads of the pool are daemon threads, so they will not keep the 
+	 * JVM alive.
+	 * 
+	 * @return
+	 */
+	public static synchronized ForkJoinPool pool()
+	{
+		if(pool == null)
+			pool = new ForkJoinPool(numThreads);
+		
+		return pool;
 	}
 }
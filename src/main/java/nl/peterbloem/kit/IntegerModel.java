@@ -21,7 +21,12 @@ import java.util.Set;
  */
 public class IntegerModel extends FrequencyModel<Integer>
 {
-	private double smoothing = 0.5;
+	/**
+	 * The default smoothing: 0.5 gives the KT estimator.
+	 */
+	public static final double SMOOTHING = 0.5;
+	
+	private double smoothing = SMOOTHING;
 	private int max;
 	
 	/**
@@ -48,6 +53,19 @@ public class IntegerModel extends FrequencyModel<Integer>
 		this.smoothing = smoothing;
 	}
 	
+	public double smoothing()
+	{
+		return smoothing;
+	}
+	
+	/**
+	 * The largest integer this model can encode.
+	 */
+	public int max()
+	{
+		return max;
+	}
+
 	/**
 	 * Combines the act of calculating the probability under the online model 
 	 * and observing it
@@ -117,6 +135,16 @@ public class IntegerModel extends FrequencyModel<Integer>
 		return bits;
 	}
 	
+	/**
+	 * The entropy of the smoothed probabilities of the tokens in the model. 
+	 * This takes O(n) time.
+	 */
+	@Override
+	public double entropy()
+	{
+		return probabilityEntropy();
+	}
+	
 	@Override
 	public double probability(Integer symbol)
 	{
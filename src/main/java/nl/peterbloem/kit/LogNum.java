@@ -101,6 +101,9 @@ public class LogNum extends Number implements Comparable<LogNum>
 	{
 		boolean even = i % 2 == 0;
 		
+		if(i == 0)
+			return new LogNum(0.0, true, base);
+		
 		return new LogNum(i * logMag, even ? true : positive, base);
 	}
 
@@ -193,27 +196,26 @@ public class LogNum extends Number implements Comparable<LogNum>
 	/**
 	 * Sums a list of lognums and returns the result.
 	 * 
+	 * For long sums, a {@link LogNumArray.Accumulator} avoids creating the 
+	 * list.
+	 * 
 	 * @param base The base of the resulting LogNum
 	 */
 	public static LogNum sum(List<LogNum> values, double base)
 	{
-		// * Re-base everything
-		List<LogNum> vals = new ArrayList<LogNum>(values.size());
-		for(LogNum old : values)
-			vals.add(old.toBase(base));
-		values = null; // safety
-		
-		List<LogNum> pos = new ArrayList<LogNum>(vals.size());
-		List<LogNum> neg = new ArrayList<LogNum>(vals.size());
-		
-		for(LogNum num : vals)
-			if(num.positive())
-				pos.add(num);
-			else
-				neg.add(num);
+		// * Iterate over the list once, so that linked lists aren't quadratic
+		double[] mags = new double[values.size()];
+		boolean[] signs = new boolean[values.size()];
+		int i = 0;
+		for(LogNum value : values)
+		{
+			mags[i] = value.logMag(base);
+			signs[i] = value.positive();
+			i++;
+		}
 		
-		double posMag = magSum(pos),
-		       negMag = magSum(neg);
+		double posMag = magSum(mags, signs, base, true),
+		       negMag = magSum(mags, signs, base, false);
 						
 		if(posMag == negMag)
 			return new LogNum(0.0, base);
@@ -224,32 +226,34 @@ public class LogNum extends Number implements Comparable<LogNum>
 	}
 
 	/**
-	 * The log magnitude of the sum of the supplied values, assuming that they
-	 * all have the same sign and base.
-	 * 
-	 * @param values
-	 * @param base
-	 * @return
+	 * The log magnitude of the sum of the supplied magnitudes with the given 
+	 * sign, in the given base.
 	 */
-	private static double magSum(List<LogNum> values)
+	private static double magSum(double[] mags, boolean[] signs, double base, boolean positive)
 	{
-		if(values.isEmpty())
-			return Double.NEGATIVE_INFINITY; 
-		
-		double base = values.get(0).base();
 		double max = Double.NEGATIVE_INFINITY;
-		for(LogNum v : values)
-			max = max(max, v.logMag());
+		for(int i = 0; i < mags.length; i++)
+			if(signs[i] == positive)
+				max = max(max, mags[i]);
 		
 		if(max == Double.NEGATIVE_INFINITY)
 			return Double.NEGATIVE_INFINITY;
 		
 		double sum = 0.0;
-		for(LogNum v : values)
-			sum += Math.pow(base, v.logMag() - max);
+		for(int i = 0; i < mags.length; i++)
+			if(signs[i] == positive)
+				sum += Math.pow(base, mags[i] - max);
 		
 		return Functions.log(sum, base) + max;
 	}
+	
+	/**
+	 * The log magnitude of this number in the given base.
+	 */
+	private double logMag(double newBase)
+	{
+		return logMag * Functions.log(base, newBase);
+	}
 
 	public static LogNum fromDouble(double value, double base)
 	{
@@ -0,0 +1,472 @@
+package nl.peterbloem.kit;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * <p>
+ * A growable array of numbers stored as the logarithms of their magnitudes
+ * and their signs, in a fixed base. The magnitudes are kept in a double[]
+ * and the signs in a bitset, so that bulk arithmetic (the in-place
+ * {@link #times(LogNumArray)} and {@link #plus(LogNumArray)}, and
+ * {@link #sum()}, {@link #mean()} and {@link #skewness()}) does not create
+ * an object per element as {@link LogNum} does.
+ * </p><p>
+ * Single values go in and out as {@link LogNum}s (converted to the base of
+ * the array), and {@link #asList()} gives a list view for code that expects
+ * a List&lt;LogNum&gt;. For signed sums of a stream of values that don't
+ * need to be stored, use an {@link Accumulator}.
+ * </p>
+ *
+ * @author Peter
+ */
+public class LogNumArray implements Serializable
+{
+	private static final long serialVersionUID = -1730911062014474573L;
+
+	private final double base;
+	private final double lnBase;
+
+	private double[] mags;
+	// * A set bit means a negative value
+	private BitSet negative;
+	private int size = 0;
+
+	public LogNumArray(double base)
+	{
+		this(base, 16);
+	}
+
+	/**
+	 * @param base The base of the logarithms. Should be larger than one.
+	 * @param capacity The initial capacity.
+	 */
+	public LogNumArray(double base, int capacity)
+	{
+		if(! (base > 1.0))
+			throw new IllegalArgumentException("Base ("+base+") should be larger than one.");
+		
+		this.base = base;
+		this.lnBase = Math.log(base);
+
+		mags = new double[Math.max(capacity, 1)];
+		negative = new BitSet(mags.length);
+	}
+
+	/**
+	 * Converts a list of LogNums to the given base.
+	 */
+	public static LogNumArray from(List<LogNum> values, double base)
+	{
+		LogNumArray array = new LogNumArray(base, values.size());
+		for(int i = 0; i < values.size(); i++)
+			array.add(values.get(i));
+
+		return array;
+	}
+
+	/**
+	 * Stores the given values as logarithms.
+	 */
+	public static LogNumArray fromDoubles(double[] values, double base)
+	{
+		LogNumArray array = new LogNumArray(base, values.length);
+		for(double value : values)
+			array.addDouble(value);
+
+		return array;
+	}
+
+	public double base()
+	{
+		return base;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Adds a value, given by the logarithm of its magnitude (in the base of
+	 * this array) and its sign.
+	 */
+	public void add(double logMag, boolean positive)
+	{
+		if(size == mags.length)
+			mags = Arrays.copyOf(mags, size * 2);
+
+		mags[size] = logMag;
+		negative.set(size, ! positive);
+		size++;
+	}
+
+	public void add(LogNum value)
+	{
+		add(rebase(value, base), value.positive());
+	}
+
+	public void addDouble(double value)
+	{
+		add(Math.log(Math.abs(value)) / lnBase, value >= 0.0);
+	}
+
+	public void set(int i, double logMag, boolean positive)
+	{
+		check(i);
+		mags[i] = logMag;
+		negative.set(i, ! positive);
+	}
+
+	public void set(int i, LogNum value)
+	{
+		set(i, rebase(value, base), value.positive());
+	}
+
+	public double logMag(int i)
+	{
+		check(i);
+		return mags[i];
+	}
+
+	/**
+	 * Zero is counted as positive.
+	 */
+	public boolean positive(int i)
+	{
+		check(i);
+		return ! negative.get(i);
+	}
+
+	public double doubleValue(int i)
+	{
+		double magnitude = Math.exp(logMag(i) * lnBase);
+		return positive(i) ? magnitude : - magnitude;
+	}
+
+	public LogNum get(int i)
+	{
+		return new LogNum(logMag(i), positive(i), base);
+	}
+
+	/**
+	 * A read-only view of this array as a list of LogNums. The LogNums are
+	 * created when they are requested.
+	 */
+	public List<LogNum> asList()
+	{
+		return new AbstractList<LogNum>()
+		{
+			@Override
+			public LogNum get(int index)
+			{
+				return LogNumArray.this.get(index);
+			}
+
+			@Override
+			public int size()
+			{
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Multiplies each element by the corresponding element of the other
+	 * array, in place.
+	 */
+	public void times(LogNumArray other)
+	{
+		checkSize(other);
+		double factor = factor(other.base, base);
+
+		for(int i = 0; i < size; i++)
+			mags[i] += other.mags[i] * factor;
+		negative.xor(other.negative);
+	}
+
+	/**
+	 * Multiplies each element by the given value, in place.
+	 */
+	public void times(LogNum value)
+	{
+		double mag = rebase(value, base);
+		for(int i = 0; i < size; i++)
+			mags[i] += mag;
+
+		if(! value.positive())
+			negative.flip(0, size);
+	}
+
+	/**
+	 * Adds the corresponding element of the other array to each element, in
+	 * place.
+	 */
+	public void plus(LogNumArray other)
+	{
+		checkSize(other);
+		double factor = factor(other.base, base);
+
+		for(int i = 0; i < size; i++)
+			plus(i, other.mags[i] * factor, ! other.negative.get(i));
+	}
+
+	/**
+	 * Adds the given value to each element, in place.
+	 */
+	public void plus(LogNum value)
+	{
+		double mag = rebase(value, base);
+		for(int i = 0; i < size; i++)
+			plus(i, mag, value.positive());
+	}
+
+	private void plus(int i, double mag, boolean positive)
+	{
+		boolean pos = ! negative.get(i);
+
+		negative.set(i, ! sumPositive(mags[i], pos, mag, positive));
+		mags[i] = sumMag(mags[i], pos, mag, positive);
+	}
+
+	/**
+	 * Raises each element to the given power, in place. As with Math.pow, any
+	 * value (including zero) to the power zero is one.
+	 */
+	public void pow(int exponent)
+	{
+		// * for zero entries, -inf * 0 would give NaN
+		if(exponent == 0)
+			Arrays.fill(mags, 0, size, 0.0);
+		else
+			for(int i = 0; i < size; i++)
+				mags[i] *= exponent;
+
+		if(exponent % 2 == 0)
+			negative.clear();
+	}
+
+	/**
+	 * The sum of all elements.
+	 */
+	public LogNum sum()
+	{
+		Accumulator accumulator = new Accumulator(base);
+		for(int i = 0; i < size; i++)
+			accumulator.add(mags[i], ! negative.get(i));
+
+		return accumulator.result();
+	}
+
+	public LogNum mean()
+	{
+		LogNum sum = sum();
+		return new LogNum(sum.logMag() - Math.log(size) / lnBase, sum.positive(), base);
+	}
+
+	/**
+	 * The sample skewness, computed as in {@link LogNum#skewness(List)}.
+	 */
+	public LogNum skewness()
+	{
+		LogNum mean = mean();
+		double meanMag = mean.logMag();
+		boolean meanPositive = mean.positive();
+
+		Accumulator squares = new Accumulator(base), cubes = new Accumulator(base);
+		for(int i = 0; i < size; i++)
+		{
+			// * the difference with the mean
+			boolean pos = ! negative.get(i);
+			double mag = sumMag(mags[i], pos, meanMag, ! meanPositive);
+			pos = sumPositive(mags[i], pos, meanMag, ! meanPositive);
+
+			squares.add(2.0 * mag, true);
+			cubes.add(3.0 * mag, pos);
+		}
+
+		double num = cubes.logMag() - Math.log(size) / lnBase;
+		double den = 1.5 * (squares.logMag() - Math.log(size - 1) / lnBase);
+
+		return new LogNum(num - den, cubes.positive(), base);
+	}
+
+	/**
+	 * The log magnitude of the sum of two signed values in the given base.
+	 */
+	private double sumMag(double a, boolean aPositive, double b, boolean bPositive)
+	{
+		double max = Math.max(a, b), min = Math.min(a, b);
+		if(max == Double.NEGATIVE_INFINITY)
+			return Double.NEGATIVE_INFINITY;
+
+		double ratio = Math.exp((min - max) * lnBase);
+		if(aPositive == bPositive)
+			return max + Math.log1p(ratio) / lnBase;
+
+		if(a == b)
+			return Double.NEGATIVE_INFINITY;
+		return max + Math.log1p(- ratio) / lnBase;
+	}
+
+	/**
+	 * The sign of the sum of two signed values. Zero is positive.
+	 */
+	private static boolean sumPositive(double a, boolean aPositive, double b, boolean bPositive)
+	{
+		if(aPositive == bPositive)
+			return aPositive;
+		if(a == b)
+			return true;
+
+		return a > b ? aPositive : bPositive;
+	}
+
+	private void check(int i)
+	{
+		if(i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Index "+i+" out of bounds for size "+size+".");
+	}
+
+	private void checkSize(LogNumArray other)
+	{
+		if(other.size != size)
+			throw new IllegalArgumentException("Sizes do not match ("+size+", "+other.size+").");
+	}
+
+	/**
+	 * The factor to convert a log magnitude from one base to another.
+	 */
+	private static double factor(double from, double to)
+	{
+		return from == to ? 1.0 : Functions.log(from, to);
+	}
+
+	private static double rebase(LogNum value, double base)
+	{
+		return value.logMag() * factor(value.base(), base);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder("[");
+		for(int i = 0; i < size; i++)
+			sb.append(i == 0 ? "" : ", ").append(positive(i) ? "" : "-").append(base).append("^").append(mags[i]);
+
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * <p>
+	 * Accumulates a signed sum of values given in log-space, without storing
+	 * them. Positive and negative values are summed separately, each scaled
+	 * by the largest magnitude seen so far, so that the sum doesn't
+	 * underflow or overflow.
+	 * </p>
+	 */
+	public static class Accumulator implements Serializable
+	{
+		private static final long serialVersionUID = 1929468306934262217L;
+
+		private final double base, lnBase;
+
+		// * The sums are scaled by base^-max
+		private double posMax = Double.NEGATIVE_INFINITY, posSum = 0.0;
+		private double negMax = Double.NEGATIVE_INFINITY, negSum = 0.0;
+
+		public Accumulator(double base)
+		{
+			if(! (base > 1.0))
+				throw new IllegalArgumentException("Base ("+base+") should be larger than one.");
+			
+			this.base = base;
+			this.lnBase = Math.log(base);
+		}
+
+		/**
+		 * Adds a value given by the logarithm of its magnitude (in the base of
+		 * this accumulator) and its sign.
+		 */
+		public void add(double logMag, boolean positive)
+		{
+			if(logMag == Double.NEGATIVE_INFINITY)
+				return;
+
+			if(positive)
+			{
+				if(logMag <= posMax)
+					posSum += Math.exp((logMag - posMax) * lnBase);
+				else
+				{
+					posSum = posSum == 0.0 ? 1.0 : posSum * Math.exp((posMax - logMag) * lnBase) + 1.0;
+					posMax = logMag;
+				}
+			} else
+			{
+				if(logMag <= negMax)
+					negSum += Math.exp((logMag - negMax) * lnBase);
+				else
+				{
+					negSum = negSum == 0.0 ? 1.0 : negSum * Math.exp((negMax - logMag) * lnBase) + 1.0;
+					negMax = logMag;
+				}
+			}
+		}
+
+		public void add(LogNum value)
+		{
+			add(rebase(value, base), value.positive());
+		}
+
+		public void addDouble(double value)
+		{
+			add(Math.log(Math.abs(value)) / lnBase, value >= 0.0);
+		}
+
+		/**
+		 * The log magnitude of the sum so far.
+		 */
+		public double logMag()
+		{
+			double pos = posMag(), neg = negMag();
+			if(pos == neg)
+				return Double.NEGATIVE_INFINITY;
+
+			double max = Math.max(pos, neg);
+			return max + Math.log1p(- Math.exp((Math.min(pos, neg) - max) * lnBase)) / lnBase;
+		}
+
+		/**
+		 * The sign of the sum so far. Zero is positive.
+		 */
+		public boolean positive()
+		{
+			return posMag() >= negMag();
+		}
+
+		public LogNum result()
+		{
+			return new LogNum(logMag(), positive(), base);
+		}
+
+		public void clear()
+		{
+			posMax = negMax = Double.NEGATIVE_INFINITY;
+			posSum = negSum = 0.0;
+		}
+
+		private double posMag()
+		{
+			return posSum == 0.0 ? Double.NEGATIVE_INFINITY : posMax + Math.log(posSum) / lnBase;
+		}
+
+		private double negMag()
+		{
+			return negSum == 0.0 ? Double.NEGATIVE_INFINITY : negMax + Math.log(negSum) / lnBase;
+		}
+	}
+}
@@ -13,7 +13,6 @@ import org.apache.commons.math3.linear.RealVector;
 import nl.peterbloem.kit.data.Point;
 
 import static java.lang.Math.*;
-import static nl.peterbloem.kit.Series.series;
 
 /**
  * Some basic static matrix functions to provide functionality that Apache
@@ -177,6 +176,18 @@ public class MatrixFunctions
 		return new LUDecomposition(in).getSolver().isNonSingular();
 	}
 	
+	/**
+	 * Equivalent to {@link #isInvertible(RealMatrix)} for an n by n matrix
+	 * stored row-major in a flat array, but without allocating: the LU
+	 * decomposition is computed in the given work array (of length at least
+	 * n * n). The input is not changed.
+	 */
+	public static boolean isInvertible(double[] in, int n, double[] work)
+	{
+		System.arraycopy(in, 0, work, 0, n * n);
+		return Dense.lu(work, n, null) != 0;
+	}
+
 	public static double getDeterminant(RealMatrix in)
 	{
 		return new LUDecomposition(in).getDeterminant();
@@ -203,8 +214,8 @@ public class MatrixFunctions
 		RealMatrix matrix =
 				new Array2DRowRealMatrix(a.getDimension(), b.getDimension());
 		
-		for(int row : series(a.getDimension()))
-			for(int column : series(b.getDimension()))
+		for(int row = 0; row < a.getDimension(); row++)
+			for(int column = 0; column < b.getDimension(); column++)
 				matrix.setEntry(row, column, a.getEntry(row) * b.getEntry(column));
 		
 		return matrix;
@@ -218,9 +229,9 @@ public class MatrixFunctions
 	public static String toString(RealMatrix s, int dec)
 	{
 		String result = "";
-		for(int i : series(s.getRowDimension()))
+		for(int i = 0; i < s.getRowDimension(); i++)
 		{
-			for(int j : series(s.getColumnDimension()))
+			for(int j = 0; j < s.getColumnDimension(); j++)
 				result += String.format("%."+dec+"f\t", s.getEntry(i, j));
 			result += "\n";
 		}
@@ -237,8 +248,8 @@ public class MatrixFunctions
 		int columns = a.getColumnDimension();
 		
 		RealMatrix c = new Array2DRowRealMatrix(rows, columns);
-		for(int row : series(rows))
-			for(int column : series(columns))
+		for(int row = 0; row < rows; row++)
+			for(int column = 0; column < columns; column++)
 			{
 				c.setEntry(row, column, a.getEntry(row, column) * b.getEntry(row, column));
 			}
@@ -253,7 +264,7 @@ public class MatrixFunctions
 		
 		RealMatrix result = new Array2DRowRealMatrix(rows, columns);
 		
-		for(int j : series(data.size()))
+		for(int j = 0; j < data.size(); j++)
 			result.setColumn(j, data.get(j).getBackingData());
 		
 		return result;
@@ -263,7 +274,7 @@ public class MatrixFunctions
 	{
 		List<Point> out = new ArrayList<Point>(m.getColumnDimension());
 		
-		for(int j : series(m.getColumnDimension()))
+		for(int j = 0; j < m.getColumnDimension(); j++)
 			out.add(new Point(m.getColumn(j)));
 		
 		return out;
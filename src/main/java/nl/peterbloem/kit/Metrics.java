@@ -0,0 +1,720 @@
+package nl.peterbloem.kit;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A registry of named counters, histograms and timers, to see where the time
+ * goes in long-running computations.
+ * </p><p>
+ * Metrics are disabled by default. While disabled, recording costs a single
+ * check of a static flag (timers don't read the clock). Each thread records
+ * into its own cells, which are merged when a {@link #snapshot()} is taken,
+ * so recording never contends between threads. Metrics are usually kept in
+ * static fields at the place where they are recorded:
+ * </p>
+ * <pre>
+ * private static final Metrics.Timer TIMER = Metrics.timer("MogEM.iterate");
+ * ...
+ * long start = TIMER.start();
+ * try {
+ *     ...
+ * } finally {
+ *     TIMER.stop(start, data.size());
+ * }
+ * </pre>
+ * <p>
+ * The call to stop() should be in a finally block, so that an exception does
+ * not leave the allocation tracking of the thread out of step.
+ * </p>
+ * <p>
+ * Histograms use logarithmic buckets with 16 sub-buckets per power of two
+ * (as in HdrHistogram), so percentiles are accurate to within about 6%
+ * over the whole range of long values.
+ * </p>
+ *
+ * @author Peter
+ */
+public class Metrics
+{
+	// * The number of sub-buckets per power of two is 2^SUB_BITS
+	private static final int SUB_BITS = 4;
+	private static final int SUB = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+	// * The value returned by Timer.start() when metrics are disabled
+	private static final long OFF = Long.MIN_VALUE;
+
+	private static volatile boolean enabled = false;
+	private static volatile boolean allocation = false;
+
+	private static final java.util.Map<String, Metric> metrics = new LinkedHashMap<String, Metric>();
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Starts recording.
+	 */
+	public static void enable()
+	{
+		enabled = true;
+	}
+
+	/**
+	 * Stops recording. Values recorded so far are kept.
+	 */
+	public static void disable()
+	{
+		enabled = false;
+	}
+
+	public static boolean enabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Whether timers should also record the number of bytes allocated by the
+	 * timed thread. This requires a HotSpot JVM, and costs an extra call to
+	 * the thread MXBean at the start and end of each timed operation. It
+	 * should only be changed while no timers are running.
+	 */
+	public static void trackAllocation(boolean track)
+	{
+		allocation = track;
+	}
+
+	/**
+	 * Returns the counter with the given name, creating it if necessary.
+	 */
+	public static synchronized Counter counter(String name)
+	{
+		Metric metric = metrics.get(name);
+		if(metric == null)
+			metrics.put(name, metric = new Counter(name));
+
+		return check(metric, Counter.class);
+	}
+
+	/**
+	 * Returns the histogram with the given name, creating it if necessary.
+	 */
+	public static synchronized Histogram histogram(String name)
+	{
+		Metric metric = metrics.get(name);
+		if(metric == null)
+			metrics.put(name, metric = new Histogram(name));
+
+		return check(metric, Histogram.class);
+	}
+
+	/**
+	 * Returns the timer with the given name, creating it if necessary.
+	 */
+	public static synchronized Timer timer(String name)
+	{
+		Metric metric = metrics.get(name);
+		if(metric == null)
+			metrics.put(name, metric = new Timer(name));
+
+		return check(metric, Timer.class);
+	}
+
+	private static <M extends Metric> M check(Metric metric, Class<M> type)
+	{
+		if(metric.getClass() != type)
+			throw new IllegalArgumentException("Metric "+metric.name()+" is a "+metric.type()+", not a "+type.getSimpleName().toLowerCase()+".");
+
+		return type.cast(metric);
+	}
+
+	/**
+	 * Clears the values of all metrics. Values recorded concurrently with a
+	 * reset may or may not be kept.
+	 */
+	public static synchronized void reset()
+	{
+		for(Metric metric : metrics.values())
+			metric.reset();
+	}
+
+	/**
+	 * The current values of all metrics, merged over all threads, in the
+	 * order in which the metrics were created.
+	 */
+	public static synchronized Snapshot snapshot()
+	{
+		List<Stat> stats = new ArrayList<Stat>(metrics.size());
+		for(Metric metric : metrics.values())
+			stats.add(metric.stat());
+
+		return new Snapshot(stats);
+	}
+
+	private static long allocatedBytes()
+	{
+		if(threads instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) threads)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+
+	/**
+	 * The bucket for a given (nonnegative) value.
+	 */
+	static int bucket(long value)
+	{
+		if(value < SUB)
+			return (int) Math.max(value, 0);
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (shift + 1) * SUB + (int)((value >>> shift) - SUB);
+	}
+
+	/**
+	 * The smallest value in the given bucket.
+	 */
+	static long lower(int bucket)
+	{
+		if(bucket < SUB)
+			return bucket;
+
+		int shift = bucket / SUB - 1;
+		return (long)(SUB + bucket % SUB) << shift;
+	}
+
+	/**
+	 * The largest value in the given bucket.
+	 */
+	static long upper(int bucket)
+	{
+		if(bucket < SUB)
+			return bucket;
+
+		int shift = bucket / SUB - 1;
+		return lower(bucket) + ((1L << shift) - 1);
+	}
+
+	public static abstract class Metric
+	{
+		private final String name;
+
+		Metric(String name)
+		{
+			this.name = name;
+		}
+
+		public String name()
+		{
+			return name;
+		}
+
+		abstract String type();
+
+		abstract void reset();
+
+		abstract Stat stat();
+	}
+
+	/**
+	 * A count of events.
+	 */
+	public static class Counter extends Metric
+	{
+		private final LongAdder count = new LongAdder();
+
+		Counter(String name)
+		{
+			super(name);
+		}
+
+		public void increment()
+		{
+			if(enabled)
+				count.increment();
+		}
+
+		public void add(long n)
+		{
+			if(enabled)
+				count.add(n);
+		}
+
+		@Override
+		String type()
+		{
+			return "counter";
+		}
+
+		@Override
+		void reset()
+		{
+			count.reset();
+		}
+
+		@Override
+		Stat stat()
+		{
+			return new Stat(name(), type(), count.sum());
+		}
+	}
+
+	/**
+	 * The distribution of a nonnegative long value, like a size or a
+	 * latency.
+	 */
+	public static class Histogram extends Metric
+	{
+		private final Queue<Cell> cells = new ConcurrentLinkedQueue<Cell>();
+
+		private final ThreadLocal<Cell> local = new ThreadLocal<Cell>() {
+			@Override
+			protected Cell initialValue()
+			{
+				Cell cell = new Cell();
+				cells.add(cell);
+				return cell;
+			}
+		};
+
+		Histogram(String name)
+		{
+			super(name);
+		}
+
+		public void record(long value)
+		{
+			if(enabled)
+				local.get().record(value, 0, 0);
+		}
+
+		Cell cell()
+		{
+			return local.get();
+		}
+
+		@Override
+		String type()
+		{
+			return "histogram";
+		}
+
+		@Override
+		void reset()
+		{
+			for(Cell cell : cells)
+				cell.reset();
+		}
+
+		@Override
+		Stat stat()
+		{
+			long[] buckets = new long[BUCKETS];
+			long count = 0, sum = 0, items = 0, bytes = 0;
+			long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+
+			for(Cell cell : cells)
+			{
+				for(int i = 0; i < BUCKETS; i++)
+					buckets[i] += cell.buckets.get(i);
+
+				count += cell.stats.get(COUNT);
+				sum += cell.stats.get(SUM);
+				items += cell.stats.get(ITEMS);
+				bytes += cell.stats.get(BYTES);
+				min = Math.min(min, cell.stats.get(MIN));
+				max = Math.max(max, cell.stats.get(MAX));
+			}
+
+			return new Stat(name(), type(), count, sum, min, max, items, bytes, buckets);
+		}
+	}
+
+	/**
+	 * A histogram of durations in nanoseconds. Each timed operation can also
+	 * record a number of items processed (for a throughput), and the bytes
+	 * allocated (see {@link Metrics#trackAllocation(boolean)}). Timers may be
+	 * nested.
+	 */
+	public static class Timer extends Histogram
+	{
+		Timer(String name)
+		{
+			super(name);
+		}
+
+		/**
+		 * Starts timing an operation in the current thread.
+		 *
+		 * @return A value to pass to {@link #stop(long)}.
+		 */
+		public long start()
+		{
+			if(! enabled)
+				return OFF;
+
+			if(allocation)
+				cell().push(allocatedBytes());
+
+			return System.nanoTime();
+		}
+
+		public void stop(long start)
+		{
+			stop(start, 0);
+		}
+
+		/**
+		 * Stops timing an operation started in the current thread.
+		 *
+		 * @param start The value returned by {@link #start()}.
+		 * @param items The number of items processed by the operation.
+		 */
+		public void stop(long start, long items)
+		{
+			if(start == OFF)
+				return;
+
+			long time = System.nanoTime() - start;
+
+			Cell cell = cell();
+			long bytes = cell.depth > 0 ? allocatedBytes() - cell.pop() : 0;
+
+			cell.record(time, items, bytes);
+		}
+
+		@Override
+		String type()
+		{
+			return "timer";
+		}
+	}
+
+	private static final int COUNT = 0, SUM = 1, MIN = 2, MAX = 3, ITEMS = 4, BYTES = 5;
+
+	/**
+	 * The values recorded by a single thread. Only the owning thread writes,
+	 * so the atomic arrays are only used to publish the values to the thread
+	 * taking a snapshot.
+	 */
+	private static class Cell
+	{
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLongArray stats = new AtomicLongArray(6);
+
+		// * Allocation counts at the start of the running timers
+		private long[] stack = new long[4];
+		private int depth = 0;
+
+		public Cell()
+		{
+			reset();
+		}
+
+		public void record(long value, long items, long bytes)
+		{
+			int bucket = bucket(value);
+			buckets.lazySet(bucket, buckets.get(bucket) + 1);
+
+			stats.lazySet(COUNT, stats.get(COUNT) + 1);
+			stats.lazySet(SUM, stats.get(SUM) + value);
+			stats.lazySet(ITEMS, stats.get(ITEMS) + items);
+			stats.lazySet(BYTES, stats.get(BYTES) + bytes);
+
+			if(value < stats.get(MIN))
+				stats.lazySet(MIN, value);
+			if(value > stats.get(MAX))
+				stats.lazySet(MAX, value);
+		}
+
+		public void push(long bytes)
+		{
+			if(depth == stack.length)
+				stack = java.util.Arrays.copyOf(stack, depth * 2);
+			stack[depth++] = bytes;
+		}
+
+		public long pop()
+		{
+			return stack[--depth];
+		}
+
+		public void reset()
+		{
+			for(int i = 0; i < BUCKETS; i++)
+				buckets.set(i, 0);
+
+			for(int i = 0; i < 6; i++)
+				stats.set(i, 0);
+			stats.set(MIN, Long.MAX_VALUE);
+			stats.set(MAX, Long.MIN_VALUE);
+		}
+	}
+
+	/**
+	 * The merged values of a single metric at the time of a snapshot.
+	 */
+	public static class Stat
+	{
+		private final String name, type;
+		private final long count, sum, min, max, items, bytes;
+		private final long[] buckets;
+
+		Stat(String name, String type, long count)
+		{
+			this(name, type, count, 0, 0, 0, 0, 0, null);
+		}
+
+		Stat(String name, String type, long count, long sum, long min, long max, long items, long bytes, long[] buckets)
+		{
+			this.name = name;
+			this.type = type;
+			this.count = count;
+			this.sum = sum;
+			this.min = count == 0 ? 0 : min;
+			this.max = count == 0 ? 0 : max;
+			this.items = items;
+			this.bytes = bytes;
+			this.buckets = buckets;
+		}
+
+		public String name()
+		{
+			return name;
+		}
+
+		/**
+		 * "counter", "histogram" or "timer".
+		 */
+		public String type()
+		{
+			return type;
+		}
+
+		/**
+		 * The value of a counter, or the number of values recorded in a
+		 * histogram.
+		 */
+		public long count()
+		{
+			return count;
+		}
+
+		/**
+		 * The sum of the values (for timers, the total time in nanoseconds).
+		 */
+		public long sum()
+		{
+			return sum;
+		}
+
+		public long min()
+		{
+			return min;
+		}
+
+		public long max()
+		{
+			return max;
+		}
+
+		public double mean()
+		{
+			return count == 0 ? 0.0 : sum / (double) count;
+		}
+
+		/**
+		 * The total number of items processed by the timed operations.
+		 */
+		public long items()
+		{
+			return items;
+		}
+
+		/**
+		 * The number of items processed per second of timed operation.
+		 */
+		public double itemsPerSecond()
+		{
+			return sum == 0 ? 0.0 : items / (sum * 1E-9);
+		}
+
+		/**
+		 * The mean number of bytes allocated per timed operation (zero if
+		 * allocation wasn't tracked).
+		 */
+		public double bytesPerCall()
+		{
+			return count == 0 ? 0.0 : bytes / (double) count;
+		}
+
+		/**
+		 * An estimate of the given quantile of the recorded values (exact to
+		 * within the width of a bucket).
+		 *
+		 * @param q A value between 0 and 1.
+		 */
+		public long quantile(double q)
+		{
+			if(buckets == null || count == 0)
+				return 0;
+
+			long rank = Math.max(1, (long) Math.ceil(q * count));
+			long seen = 0;
+			for(int i = 0; i < BUCKETS; i++)
+			{
+				seen += buckets[i];
+				if(seen >= rank)
+				{
+					long mid = lower(i) + (upper(i) - lower(i)) / 2;
+					return Math.max(min, Math.min(max, mid));
+				}
+			}
+
+			return max;
+		}
+	}
+
+	/**
+	 * The values of all metrics at a given moment.
+	 */
+	public static class Snapshot
+	{
+		private static final String[] COLUMNS = {
+				"name", "type", "count", "sum", "min", "mean", "p50", "p90",
+				"p99", "max", "items", "items_per_second", "bytes_per_call"};
+
+		private final List<Stat> stats;
+
+		Snapshot(List<Stat> stats)
+		{
+			this.stats = Collections.unmodifiableList(stats);
+		}
+
+		public List<Stat> stats()
+		{
+			return stats;
+		}
+
+		/**
+		 * The stat for the given metric, or null if no such metric exists.
+		 */
+		public Stat get(String name)
+		{
+			for(Stat stat : stats)
+				if(stat.name().equals(name))
+					return stat;
+			return null;
+		}
+
+		/**
+		 * One line per metric, with a header. Counters only fill in the
+		 * count column.
+		 */
+		public String toCSV()
+		{
+			StringBuilder sb = new StringBuilder();
+			for(int i = 0; i < COLUMNS.length; i++)
+				sb.append(i == 0 ? "" : ",").append(COLUMNS[i]);
+			sb.append('\n');
+
+			for(Stat stat : stats)
+			{
+				String[] values = values(stat);
+				for(int i = 0; i < values.length; i++)
+				{
+					if(i > 0)
+						sb.append(',');
+					if(values[i] != null)
+						sb.append(i == 0 ? csv(values[i]) : values[i]);
+				}
+				sb.append('\n');
+			}
+
+			return sb.toString();
+		}
+
+		/**
+		 * A JSON object with a member for each metric.
+		 */
+		public String toJSON()
+		{
+			StringBuilder sb = new StringBuilder("{");
+			for(int s = 0; s < stats.size(); s++)
+			{
+				String[] values = values(stats.get(s));
+
+				sb.append(s == 0 ? "\n  " : ",\n  ").append(json(values[0])).append(": {");
+				boolean first = true;
+				for(int i = 1; i < values.length; i++)
+					if(values[i] != null)
+					{
+						sb.append(first ? "" : ", ").append('"').append(COLUMNS[i]).append("\": ");
+						sb.append(i == 1 ? json(values[i]) : values[i]);
+						first = false;
+					}
+				sb.append('}');
+			}
+
+			return sb.append("\n}").toString();
+		}
+
+		private static String[] values(Stat stat)
+		{
+			if(stat.buckets == null)
+				return new String[] {
+						stat.name(), stat.type(), "" + stat.count(),
+						null, null, null, null, null, null, null, null, null, null};
+
+			boolean timer = stat.type().equals("timer");
+			return new String[] {
+					stat.name(), stat.type(), "" + stat.count(), "" + stat.sum(),
+					"" + stat.min(), format(stat.mean()), "" + stat.quantile(0.5),
+					"" + stat.quantile(0.9), "" + stat.quantile(0.99), "" + stat.max(),
+					timer ? "" + stat.items() : null,
+					timer ? format(stat.itemsPerSecond()) : null,
+					timer ? format(stat.bytesPerCall()) : null};
+		}
+
+		private static String format(double value)
+		{
+			return String.format(Locale.US, "%.3f", value);
+		}
+
+		private static String csv(String value)
+		{
+			if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+				return value;
+			return '"' + value.replace("\"", "\"\"") + '"';
+		}
+
+		private static String json(String value)
+		{
+			StringBuilder sb = new StringBuilder("\"");
+			for(char c : value.toCharArray())
+				if(c == '"' || c == '\\')
+					sb.append('\\').append(c);
+				else if(c < 0x20)
+					sb.append(String.format("\\u%04x", (int) c));
+				else
+					sb.append(c);
+			return sb.append('"').toString();
+		}
+
+		@Override
+		public String toString()
+		{
+			return toCSV();
+		}
+	}
+}
@@ -44,7 +44,12 @@ import java.util.Set;
  */
 public class OnlineModel<T> extends FrequencyModel<T>
 {
-	private double smoothing = 0.5;
+	/**
+	 * The default smoothing: 0.5 gives the KT estimator.
+	 */
+	public static final double SMOOTHING = 0.5;
+	
+	private double smoothing = SMOOTHING;
 	
 	public OnlineModel(Collection<T> symbols)
 	{
@@ -76,6 +81,11 @@ public class OnlineModel<T> extends FrequencyModel<T>
 		this.smoothing = smoothing;
 	}
 	
+	public double smoothing()
+	{
+		return smoothing;
+	}
+
 	/**
 	 * Combines the act of calculating the probability under the online model 
 	 * and observing it
@@ -145,6 +155,39 @@ public class OnlineModel<T> extends FrequencyModel<T>
 		return bits;
 	}
 	
+	/**
+	 * Encodes a symbol with the KT estimator defined by the counts of any
+	 * probability model, and then adds the symbol to the model. This is the
+	 * same as {@link #encode(Object)}, but the counts may come from a sketch
+	 * like {@link CountMinSketch}, so that codelengths can be estimated over
+	 * an unbounded vocabulary in bounded memory.
+	 *
+	 * Since the vocabulary is not fixed in advance, the number of distinct
+	 * symbols is taken to be one more than the (estimated) number seen so
+	 * far, which reserves probability mass for an unseen symbol.
+	 *
+	 * @return The number of bits required to encode the symbol.
+	 */
+	public static <L> double encode(ProbabilityModel<L> model, L symbol, double smoothing)
+	{
+		double num = log2(model.frequency(symbol) + smoothing);
+		double den = log2(model.total() + smoothing * (model.distinct() + 1.0));
+
+		model.add(symbol);
+
+		return - (num - den);
+	}
+
+	/**
+	 * The entropy of the smoothed probabilities of the tokens in the model. 
+	 * This takes O(n) time.
+	 */
+	@Override
+	public double entropy()
+	{
+		return probabilityEntropy();
+	}
+	
 	@Override
 	public double probability(T symbol)
 	{
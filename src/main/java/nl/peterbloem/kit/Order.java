@@ -37,10 +37,10 @@ public final class Order
 		master = new ArrayList<Integer>(values);
 		List<Integer> inverseMaster = new ArrayList<Integer>();
 		
-		for(int i : series(values.size()))
+		for(int i = 0; i < values.size(); i++)
 			inverseMaster.add(-1);
 		
-		for(int i : series(values.size()))
+		for(int i = 0; i < values.size(); i++)
 			inverseMaster.set(values.get(i), i);
 		
 		inverse = new Order();
@@ -92,7 +92,7 @@ public final class Order
 	{
 		List<L> out = new ArrayList<L>(original.size());
 		
-		for(int newIndex : Series.series(original.size()))
+		for(int newIndex = 0; newIndex < original.size(); newIndex++)
 			out.add(original.get(originalIndex(newIndex)));
 		
 		return out;
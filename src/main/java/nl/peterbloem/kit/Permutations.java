@@ -1,9 +1,36 @@
 package nl.peterbloem.kit;
 
 import java.util.*;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * From http://stackoverflow.com/questions/2000048/stepping-through-all-permutations-one-swap-at-a-time
+ * <p>
+ * Enumerates all permutations of the integers 0, ..., size - 1.
+ * </p><p>
+ * The iterator uses Heap's algorithm, which moves from one permutation to the
+ * next with a single swap, in constant amortised time. It returns a fresh
+ * array for each permutation. For exhaustive searches, where this allocation
+ * matters, {@link #visit(Consumer)} passes the same array to the visitor for
+ * each permutation instead.
+ * </p><p>
+ * Permutations can also be enumerated in lexicographic order, by their rank
+ * (see {@link #rank(int[])} and {@link #unrank(long, int)}). The
+ * {@link #spliterator()} and {@link #visitParallel(Consumer)} use this to
+ * split the permutation space into ranges of ranks, which are processed
+ * independently. Ranks are longs, so these methods are limited to
+ * permutations of at most {@link #MAX_RANKED} elements.
+ * </p><p>
+ * NOTE: Earlier versions of {@link #iterator()} used the 
+ * Steinhaus-Johnson-Trotter algorithm, which enumerates the permutations in a
+ * different order, and returned the same array for every permutation. That 
+ * iterator, from
+ * http://stackoverflow.com/questions/2000048/stepping-through-all-permutations-one-swap-at-a-time
+ * is retained as {@link PermIterator}, and returned by 
+ * {@link #johnsonTrotter()}.
+ * </p>
  * 
  * Based on https://en.wikipedia.org/wiki/Steinhaus%E2%80%93Johnson%E2%80%93Trotter_algorithm#Even.27s_speedup
  * @author peter
@@ -12,13 +39,46 @@ import java.util.*;
 
 public class Permutations implements Iterable<int[]>
 {
+	/**
+	 * The largest number of elements for which the number of permutations 
+	 * fits in a long.
+	 */
+	public static final int MAX_RANKED = 20;
+	
+	/**
+	 * Below this number of permutations, a parallel task is not split any 
+	 * further.
+	 */
+	public static long GRAIN = 4096;
+	
 	private int size;
 	
 	public Permutations(int size) 
 	{
 		this.size = size;
 	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * The number of permutations enumerated (size!, or 0 if size is not 
+	 * positive).
+	 */
+	public long count()
+	{
+		if(size <= 0)
+			return 0;
+		
+		return factorial(size);
+	}
 
+	/**
+	 * The Steinhaus-Johnson-Trotter iterator. Note that this iterator returns
+	 * the same array for each permutation.
+	 */
 	public class PermIterator implements Iterator<int[]> 
 	{
 		private int[] next = null;
@@ -102,11 +162,400 @@ public class Permutations implements Iterable<int[]>
 
 	}
 
+	/**
+	 * Iterates over the permutations with Heap's algorithm. 
+	 */
+	private class HeapIterator implements Iterator<int[]>
+	{
+		private int[] perm;
+		private int[] counters;
+		private boolean first = true;
+		
+		public HeapIterator()
+		{
+			if(size > 0)
+			{
+				perm = identity(size);
+				counters = new int[size];
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			if(perm == null)
+				return false;
+			if(first)
+				return true;
+			
+			if(! step(perm, counters))
+				perm = null;
+			
+			first = perm != null;
+			return first;
+		}
+
+		@Override
+		public int[] next()
+		{
+			if(! hasNext())
+				throw new NoSuchElementException();
+			
+			first = false;
+			return perm.clone();
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	/**
+	 * Moves to the next permutation in the order of Heap's algorithm. 
+	 * 
+	 * @param counters The state of the algorithm, all zeroes for the first 
+	 *   permutation.
+	 * @return false if the last permutation has been reached.
+	 */
+	private static boolean step(int[] perm, int[] counters)
+	{
+		int i = 1;
+		while(i < perm.length && counters[i] >= i)
+			counters[i++] = 0;
+		
+		if(i >= perm.length)
+			return false;
+		
+		swap((i & 1) == 0 ? 0 : counters[i], i, perm);
+		counters[i]++;
+		
+		return true;
+	}
+
+	/**
+	 * Returns an iterator over all permutations, in the order of Heap's 
+	 * algorithm. Each call to next() returns a new array.
+	 * 
+	 * NOTE: This is not the order of earlier versions, which used the 
+	 * Steinhaus-Johnson-Trotter algorithm and reused a single array. For that 
+	 * behaviour, use {@link #johnsonTrotter()}.
+	 */
 	@Override
 	public Iterator<int[]> iterator() 
+	{
+		return new HeapIterator();
+	}
+	
+	/**
+	 * Returns an iterator over all permutations in the order of the 
+	 * Steinhaus-Johnson-Trotter algorithm (the order of {@link #iterator()} 
+	 * in earlier versions). Note that this iterator returns the same array 
+	 * for each permutation.
+	 */
+	public Iterator<int[]> johnsonTrotter()
 	{
 		return new PermIterator(size);
-	}	
+	}
+	
+	/**
+	 * Passes each permutation to the given visitor, in the order of Heap's
+	 * algorithm. The visitor receives the same array each time: it should 
+	 * not modify it, or hold on to it after it returns.
+	 */
+	public void visit(Consumer<? super int[]> visitor)
+	{
+		if(size <= 0)
+			return;
+		
+		int[] perm = identity(size);
+		int[] counters = new int[size];
+		
+		do {
+			visitor.accept(perm);
+		} while(step(perm, counters));
+	}
+	
+	/**
+	 * Passes the permutations with lexicographic ranks from (inclusive) to
+	 * (exclusive) to the given visitor, in lexicographic order. The visitor 
+	 * receives the same array each time: it should not modify it, or hold on 
+	 * to it after it returns.
+	 */
+	public void visit(long from, long to, Consumer<? super int[]> visitor)
+	{
+		if(from < 0 || to > count() || from > to)
+			throw new IndexOutOfBoundsException("Range ["+from+", "+to+") out of bounds for "+count()+" permutations.");
+		if(from == to)
+			return;
+		
+		int[] perm = unrank(from, size);
+		for(long r = from; r < to; r++)
+		{
+			visitor.accept(perm);
+			next(perm);
+		}
+	}
+	
+	/**
+	 * Passes each permutation to the given visitor, splitting the ranks over 
+	 * the threads of {@link Global#pool()}. The visitor must be thread-safe. 
+	 * Each thread passes its own array to the visitor: it should not modify 
+	 * it, or hold on to it after it returns.
+	 */
+	public void visitParallel(Consumer<? super int[]> visitor)
+	{
+		if(size <= 0)
+			return;
+		
+		Global.pool().invoke(new Task(visitor, 0, count()));
+	}
+	
+	private class Task extends RecursiveAction
+	{
+		private static final long serialVersionUID = 3270883165212736475L;
+		
+		private final Consumer<? super int[]> visitor;
+		private final long from, to;
+		
+		public Task(Consumer<? super int[]> visitor, long from, long to)
+		{
+			this.visitor = visitor;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from <= GRAIN)
+			{
+				visit(from, to, visitor);
+				return;
+			}
+			
+			long mid = (from + to) >>> 1;
+			invokeAll(new Task(visitor, from, mid), new Task(visitor, mid, to));
+		}
+	}
+	
+	/**
+	 * A spliterator over all permutations in lexicographic order. It splits 
+	 * the permutation space into two ranges of ranks of equal size. Each 
+	 * permutation is returned as a new array. 
+	 */
+	@Override
+	public Spliterator<int[]> spliterator()
+	{
+		return new RankSpliterator(0, count());
+	}
+	
+	public Stream<int[]> stream()
+	{
+		return StreamSupport.stream(spliterator(), false);
+	}
+	
+	public Stream<int[]> parallelStream()
+	{
+		return StreamSupport.stream(spliterator(), true);
+	}
+	
+	private class RankSpliterator implements Spliterator<int[]>
+	{
+		private long from;
+		private final long to;
+		// * The permutation with rank 'from', created when first needed
+		private int[] perm = null;
+		
+		public RankSpliterator(long from, long to)
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super int[]> action)
+		{
+			if(from >= to)
+				return false;
+			
+			if(perm == null)
+				perm = unrank(from, size);
+			
+			action.accept(perm.clone());
+			next(perm);
+			from++;
+			
+			return true;
+		}
+		
+		@Override
+		public void forEachRemaining(Consumer<? super int[]> action)
+		{
+			if(from >= to)
+				return;
+			
+			if(perm == null)
+				perm = unrank(from, size);
+			
+			for(; from < to; from++)
+			{
+				action.accept(perm.clone());
+				next(perm);
+			}
+		}
+
+		@Override
+		public Spliterator<int[]> trySplit()
+		{
+			// * Once iteration has started, we don't split anymore
+			if(perm != null || to - from < 2)
+				return null;
+			
+			long mid = (from + to) >>> 1;
+			Spliterator<int[]> prefix = new RankSpliterator(from, mid);
+			from = mid;
+			
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			return to - from;
+		}
+
+		@Override
+		public int characteristics()
+		{
+			return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+		}
+	}
+	
+	/**
+	 * The rank of the given permutation of 0, ..., n-1 in the lexicographic 
+	 * order of all permutations of n elements. 
+	 */
+	public static long rank(int[] perm)
+	{
+		int n = perm.length;
+		if(n > MAX_RANKED)
+			throw new IllegalArgumentException("Permutations of more than "+MAX_RANKED+" elements (" + n + ") cannot be ranked.");
+		
+		// * A bitmask of the elements seen so far
+		long seen = 0L;
+		long rank = 0;
+		for(int i = 0; i < n; i++)
+		{
+			int e = perm[i];
+			if(e < 0 || e >= n || (seen & (1L << e)) != 0)
+				throw new IllegalArgumentException("Input " + Arrays.toString(perm) + " is not a permutation.");
+			
+			// * The number of smaller elements not seen yet
+			int smaller = e - Long.bitCount(seen & ((1L << e) - 1L));
+			rank = rank * (n - i) + smaller;
+			
+			seen |= 1L << e;
+		}
+		
+		return rank;
+	}
+	
+	/**
+	 * The permutation of 0, ..., n-1 with the given lexicographic rank.
+	 */
+	public static int[] unrank(long rank, int n)
+	{
+		int[] perm = new int[n];
+		unrank(rank, perm);
+		return perm;
+	}
+	
+	/**
+	 * Writes the permutation of 0, ..., perm.length-1 with the given 
+	 * lexicographic rank into the given array.
+	 */
+	public static void unrank(long rank, int[] perm)
+	{
+		int n = perm.length;
+		if(n > MAX_RANKED)
+			throw new IllegalArgumentException("Permutations of more than "+MAX_RANKED+" elements (" + n + ") cannot be ranked.");
+		if(rank < 0 || (n > 0 && rank >= factorial(n)))
+			throw new IndexOutOfBoundsException("Rank " + rank + " out of bounds for permutations of " + n + " elements.");
+		
+		// * Write the digits of the rank in the factorial number system
+		for(int i = n - 1; i >= 0; i--)
+		{
+			int base = n - i;
+			perm[i] = (int)(rank % base);
+			rank /= base;
+		}
+		
+		// * Replace each digit d by the d-th smallest element not used yet
+		long unused = n == 0 ? 0L : -1L >>> (64 - n);
+		for(int i = 0; i < n; i++)
+		{
+			long bits = unused;
+			for(int d = perm[i]; d > 0; d--)
+				bits &= bits - 1;
+			
+			int e = Long.numberOfTrailingZeros(bits);
+			perm[i] = e;
+			unused &= ~(1L << e);
+		}
+	}
+	
+	/**
+	 * Rearranges the given permutation into the next one in lexicographic 
+	 * order, in constant amortised time.
+	 * 
+	 * @return false if the given permutation was the last one, in which case 
+	 * 	it is rearranged into the first (the identity).
+	 */
+	public static boolean next(int[] perm)
+	{
+		int i = perm.length - 2;
+		while(i >= 0 && perm[i] >= perm[i + 1])
+			i--;
+		
+		if(i >= 0)
+		{
+			int j = perm.length - 1;
+			while(perm[j] <= perm[i])
+				j--;
+			swap(i, j, perm);
+		}
+		
+		// * Reverse the suffix
+		for(int a = i + 1, b = perm.length - 1; a < b; a++, b--)
+			swap(a, b, perm);
+		
+		return i >= 0;
+	}
+	
+	/**
+	 * n! as a long.
+	 */
+	public static long factorial(int n)
+	{
+		if(n > MAX_RANKED)
+			throw new IllegalArgumentException("The factorial of " + n + " does not fit in a long.");
+		
+		long f = 1;
+		for(int i = 2; i <= n; i++)
+			f *= i;
+		
+		return f;
+	}
+	
+	private static int[] identity(int n)
+	{
+		int[] perm = new int[n];
+		for(int i = 0; i < n; i++)
+			perm[i] = i;
+		return perm;
+	}
 		
 	protected static void swap(int i, int j, int[] arr) 
 	{
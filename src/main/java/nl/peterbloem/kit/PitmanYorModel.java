@@ -36,8 +36,20 @@ import java.util.Set;
  */
 public class PitmanYorModel<T> extends FrequencyModel<T>
 {
-	private double alpha = 0.5;
-	private double d = 0.1;
+	private static final Metrics.Timer STORE_OPT = Metrics.timer("PitmanYorModel.storeIntegersOpt");
+	
+	/**
+	 * The default concentration parameter.
+	 */
+	public static final double ALPHA = 0.5;
+	
+	/**
+	 * The default discount parameter.
+	 */
+	public static final double DISCOUNT = 0.1;
+	
+	private double alpha = ALPHA;
+	private double d = DISCOUNT;
 	
 	public PitmanYorModel()
 	{
@@ -72,6 +84,16 @@ public class PitmanYorModel<T> extends FrequencyModel<T>
 		super.add(token);
 	}
 	
+	public double alpha()
+	{
+		return alpha;
+	}
+	
+	public double d()
+	{
+		return d;
+	}
+
 	/**
 	 * Combines the act of calculating the probability under the online model 
 	 * and observing it
@@ -120,6 +142,16 @@ public class PitmanYorModel<T> extends FrequencyModel<T>
 		throw new UnsupportedOperationException("TODO.");
 	}
 	
+	/**
+	 * The entropy of the smoothed probabilities of the tokens in the model. 
+	 * This takes O(n) time.
+	 */
+	@Override
+	public double entropy()
+	{
+		return probabilityEntropy();
+	}
+	
 	@Override
 	public double probability(T symbol)
 	{
@@ -156,7 +188,7 @@ public class PitmanYorModel<T> extends FrequencyModel<T>
 	 */
 	public static double storeIntegers(List<Integer> sequence)
 	{
-		return storeIntegers(sequence, 0.5, 0.1);
+		return storeIntegers(sequence, ALPHA, DISCOUNT);
 	}	
 	
 	public static double storeIntegers(List<Integer> sequence, double alpha, double d)
@@ -199,53 +231,66 @@ public class PitmanYorModel<T> extends FrequencyModel<T>
 	{
 		if(sequence.isEmpty())
 			return 0.0;
+		
+		long start = STORE_OPT.start();
+		Object event = Events.begin(Events.STORE_INTEGERS_OPT);
 
-		double preamble = 0.0;
+		int distinct = 0;
+		boolean success = false;
+		try {
+			double preamble = 0.0;
 
-		ArrayList<Integer> members = new ArrayList<>(new LinkedHashSet<>(sequence));
+			ArrayList<Integer> members = new ArrayList<>(new LinkedHashSet<>(sequence));
 		
-		// * Store the ordering of the members 
-		// System.out.println("ORDERING " + Functions.log2Factorial(members.size()));
-		// preamble += Functions.log2Factorial(members.size());
+			// * Store the ordering of the members 
+			// System.out.println("ORDERING " + Functions.log2Factorial(members.size()));
+			// preamble += Functions.log2Factorial(members.size());
 		
-		// Collections.sort(members); // cheating
-		// Collections.shuffle(members);
+			// Collections.sort(members); // cheating
+			// Collections.shuffle(members);
 		
-		// * Store the dimensions
-		// bits += prefix(sequence.size());
-		preamble += prefix(members.size());
-		// * store the members
-		preamble += prefixNeg(members.get(0));
+			// * Store the dimensions
+			// bits += prefix(sequence.size());
+			preamble += prefix(members.size());
+			// * store the members
+			preamble += prefixNeg(members.get(0));
 //		int min = Functions.min(members), max = Functions.max(members);
 //		int range = max - min;
 //		
 //		preamble += prefixNeg((int)Functions.min(members));
 //		preamble += prefixNeg((int)Functions.max(members));
 		
-		for(int i : Series.series(1, members.size()))
-			preamble += prefixNeg(members.get(i) - members.get(i - 1)); 
+			for(int i : Series.series(1, members.size()))
+				preamble += prefixNeg(members.get(i) - members.get(i - 1)); 
 //			// preamble += prefixNeg(members.get(i));
 //			preamble += Functions.log2(range);
 		
 //		if(range > 0)
 //			preamble += Functions.log2(range) * members.size();
 				
-		double shortest = Double.POSITIVE_INFINITY;
-		for(double alpha : Series.series(1/16.0, 1/16.0, 1.0))
-			for(double d : Series.series(0.0, 1/16.0, 1.0))
-			{
-				PitmanYorModel<Integer> model = new PitmanYorModel<Integer>(alpha, d);
-				
-				double cl = 0.0;
-				for(int symbol : sequence)
-					cl += - log2(model.observe(symbol)); 
+			double shortest = Double.POSITIVE_INFINITY;
+			for(double alpha : Series.series(1/16.0, 1/16.0, 1.0))
+				for(double d : Series.series(0.0, 1/16.0, 1.0))
+				{
+					PitmanYorModel<Integer> model = new PitmanYorModel<Integer>(alpha, d);
 				
-				shortest = Math.min(shortest, cl + preamble);
+					double cl = 0.0;
+					for(int symbol : sequence)
+						cl += - log2(model.observe(symbol)); 
 				
-			}
+					shortest = Math.min(shortest, cl + preamble);
 				
-		return shortest + 8; // return the shortest codelength, plus 8 bits to 
-							 // store the two parameter values
+				}
+			
+			distinct = members.size();
+			success = true;
+			
+			return shortest + 8; // return the shortest codelength, plus 8 bits to 
+								 // store the two parameter values
+		} finally {
+			Events.end(event, sequence.size(), 0, distinct, success);
+			STORE_OPT.stop(start, sequence.size());
+		}
 	}
 	
 	/**
@@ -0,0 +1,38 @@
+package nl.peterbloem.kit;
+
+/**
+ * A model that counts the (weighted) occurrences of tokens, and derives 
+ * probabilities from those counts.
+ * 
+ * This is the part of the interface of {@link FrequencyModel} that can also
+ * be answered (approximately) in bounded memory, by sketches like
+ * {@link CountMinSketch} and {@link SpaceSaving}.
+ * 
+ * @author Peter
+ *
+ * @param <T>
+ */
+public interface ProbabilityModel<T>
+{
+	public void add(T token);
+	
+	public void add(T token, double weight);
+	
+	/**
+	 * The (possibly estimated) total weight with which the given token has 
+	 * been added.
+	 */
+	public double frequency(T token);
+	
+	/**
+	 * The total weight of all tokens added.
+	 */
+	public double total();
+	
+	/**
+	 * The (possibly estimated) number of distinct tokens added.
+	 */
+	public double distinct();
+	
+	public double probability(T token);
+}
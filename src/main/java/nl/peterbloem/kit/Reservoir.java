@@ -0,0 +1,307 @@
+package nl.peterbloem.kit;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.floor;
+import static java.lang.Math.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+import org.apache.commons.math3.distribution.BetaDistribution;
+import org.apache.commons.math3.random.JDKRandomGenerator;
+
+/**
+ * <p>
+ * A uniform sample of k elements from a sequence of unknown length, in O(k)
+ * memory.
+ * </p><p>
+ * This is Li's Algorithm L: after the reservoir has filled up, the number of
+ * elements to skip before the next one enters the reservoir is drawn
+ * directly from its (geometric) distribution. The cost per skipped element
+ * is a single comparison, and the number of random draws is
+ * O(k (1 + log(n/k))) for a sequence of length n.
+ * </p><p>
+ * Two reservoirs over disjoint parts of the data can be merged into a
+ * reservoir over all of it (see {@link #merge(Reservoir)}), so that the
+ * sampling can be split over threads. {@link #collector(int)} uses this to
+ * sample from parallel streams.
+ * </p><p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Peter
+ */
+public class Reservoir<T>
+{
+	private final int k;
+	private final Random random;
+
+	private final Object[] sample;
+	private int size = 0;
+
+	// * The number of elements seen
+	private long seen = 0;
+
+	// * The state of algorithm L: the largest of the k smallest random keys,
+	//   and the index of the next element to enter the reservoir.
+	private double w;
+	private long next;
+
+	/**
+	 * Creates a reservoir with a random generator seeded from
+	 * {@link Global#random()}.
+	 */
+	public Reservoir(int k)
+	{
+		this(k, new Random(Global.random().nextLong()));
+	}
+
+	public Reservoir(int k, Random random)
+	{
+		if(k < 1)
+			throw new IllegalArgumentException("Sample size ("+k+") must be positive.");
+
+		this.k = k;
+		this.random = random;
+
+		sample = new Object[k];
+	}
+
+	public void add(T element)
+	{
+		if(size < k)
+		{
+			sample[size++] = element;
+			seen++;
+
+			if(size == k)
+			{
+				w = exp(log(uniform()) / k);
+				skip();
+			}
+
+			return;
+		}
+
+		if(seen++ == next)
+		{
+			sample[random.nextInt(k)] = element;
+
+			w *= exp(log(uniform()) / k);
+			skip();
+		}
+	}
+
+	public void addAll(Iterator<? extends T> elements)
+	{
+		while(elements.hasNext())
+			add(elements.next());
+	}
+
+	public void addAll(Iterable<? extends T> elements)
+	{
+		addAll(elements.iterator());
+	}
+
+	/**
+	 * Sets the index of the next element to enter the reservoir.
+	 */
+	private void skip()
+	{
+		double skip = floor(log(uniform()) / log(1.0 - w));
+		next = skip >= Long.MAX_VALUE - seen ? Long.MAX_VALUE : seen + (long) skip;
+	}
+
+	/**
+	 * A uniform random value in (0, 1).
+	 */
+	private double uniform()
+	{
+		double u;
+		do {
+			u = random.nextDouble();
+		} while(u == 0.0);
+
+		return u;
+	}
+
+	/**
+	 * Merges another reservoir, which has sampled from a different part of the
+	 * data, into this one. Afterwards, this reservoir holds a uniform sample
+	 * from the elements seen by both, and more elements can be added to it.
+	 *
+	 * The other reservoir should not be used after the merge.
+	 *
+	 * @return This reservoir
+	 */
+	@SuppressWarnings("unchecked")
+	public Reservoir<T> merge(Reservoir<T> other)
+	{
+		if(other.k != k)
+			throw new IllegalArgumentException("Sample size of other reservoir ("+other.k+") does not match this one's ("+k+").");
+
+		if(other.seen == 0)
+			return this;
+
+		long total = seen + other.seen;
+
+		if(total <= k)
+		{
+			// * Both reservoirs hold all of their elements
+			for(int i = 0; i < other.size; i++)
+				add((T) other.sample[i]);
+			return this;
+		}
+
+		// * Choose how many elements to take from each reservoir. This is the
+		//   hypergeometric number of elements from the first part of the data
+		//   in a sample of k without replacement.
+		long a = seen, b = other.seen;
+		int fromThis = 0;
+		for(int i = 0; i < k; i++)
+			if(nextLong(a + b) < a)
+			{
+				fromThis++;
+				a--;
+			} else
+				b--;
+
+		// * Take random subsets of both samples. A random subset of a uniform
+		//   sample is a uniform sample.
+		Object[] mine = Arrays.copyOf(sample, size), theirs = Arrays.copyOf(other.sample, other.size);
+		partialShuffle(mine, fromThis);
+		partialShuffle(theirs, k - fromThis);
+
+		System.arraycopy(mine, 0, sample, 0, fromThis);
+		System.arraycopy(theirs, 0, sample, fromThis, k - fromThis);
+		size = k;
+		seen = total;
+
+		// * The largest of the k smallest keys out of 'seen' uniform keys is
+		//   Beta(k, seen - k + 1) distributed, independently of which elements
+		//   they belong to.
+		JDKRandomGenerator generator = new JDKRandomGenerator();
+		generator.setSeed(random.nextLong());
+		w = new BetaDistribution(generator, k, seen - k + 1).sample();
+		skip();
+
+		return this;
+	}
+
+	/**
+	 * Moves a random subset of m elements to the front of the array.
+	 */
+	private void partialShuffle(Object[] array, int m)
+	{
+		for(int i = 0; i < m; i++)
+		{
+			int draw = i + random.nextInt(array.length - i);
+			Object tmp = array[i];
+			array[i] = array[draw];
+			array[draw] = tmp;
+		}
+	}
+
+	private long nextLong(long bound)
+	{
+		return Sampling.nextLong(random, bound);
+	}
+
+	/**
+	 * The sample so far (a copy). If fewer than k elements have been seen, it
+	 * contains all of them. The order of the elements is not random.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> sample()
+	{
+		List<T> result = new ArrayList<T>(size);
+		for(int i = 0; i < size; i++)
+			result.add((T) sample[i]);
+
+		return result;
+	}
+
+	/**
+	 * The number of elements seen.
+	 */
+	public long seen()
+	{
+		return seen;
+	}
+
+	/**
+	 * The maximum sample size.
+	 */
+	public int k()
+	{
+		return k;
+	}
+
+	/**
+	 * Samples k elements uniformly from the given iterator, in O(k) memory.
+	 */
+	public static <T> List<T> sample(Iterator<? extends T> elements, int k)
+	{
+		Reservoir<T> reservoir = new Reservoir<T>(k);
+		reservoir.addAll(elements);
+		return reservoir.sample();
+	}
+
+	/**
+	 * Samples k elements uniformly from the given stream, in O(k) memory per
+	 * thread. Parallel streams are sampled in parallel.
+	 */
+	public static <T> List<T> sample(Stream<? extends T> elements, int k)
+	{
+		return elements.collect(Reservoir.<T>collector(k));
+	}
+
+	/**
+	 * A collector that samples k elements from a stream. For parallel streams,
+	 * each thread fills its own reservoir, and the reservoirs are merged.
+	 */
+	public static <T> Collector<T, Reservoir<T>, List<T>> collector(final int k)
+	{
+		return Collector.of(
+			new Supplier<Reservoir<T>>() {
+				@Override
+				public Reservoir<T> get()
+				{
+					return new Reservoir<T>(k);
+				}
+			},
+			new BiConsumer<Reservoir<T>, T>() {
+				@Override
+				public void accept(Reservoir<T> reservoir, T element)
+				{
+					reservoir.add(element);
+				}
+			},
+			new BinaryOperator<Reservoir<T>>() {
+				@Override
+				public Reservoir<T> apply(Reservoir<T> a, Reservoir<T> b)
+				{
+					return a.merge(b);
+				}
+			},
+			new Function<Reservoir<T>, List<T>>() {
+				@Override
+				public List<T> apply(Reservoir<T> reservoir)
+				{
+					List<T> sample = reservoir.sample();
+					Collections.shuffle(sample, reservoir.random);
+					return sample;
+				}
+			});
+	}
+}
@@ -0,0 +1,210 @@
+package nl.peterbloem.kit;
+
+import java.util.Random;
+
+/**
+ * <p>
+ * Samples k distinct integers from 0, ..., n-1, uniformly and in random order.
+ * </p><p>
+ * Both methods simulate the first k steps of a Fisher-Yates shuffle of the
+ * array [0, ..., n-1]. If k is a sizeable fraction of n, the array is
+ * created explicitly. Otherwise, only the entries that have been moved are
+ * stored, in a primitive hash table of O(k) size, so that k values can be
+ * sampled from a range of any size.
+ * </p><p>
+ * For sampling from a sequence of unknown length, see {@link Reservoir}.
+ * </p>
+ *
+ * @author Peter
+ */
+public class Sampling
+{
+	/**
+	 * If k is at least n divided by this value, the shuffle uses a full array.
+	 */
+	private static final int DENSE_RATIO = 4;
+
+	/**
+	 * Samples k distinct integers from 0, ..., n-1, using {@link Global#random()}.
+	 */
+	public static int[] sample(int k, int n)
+	{
+		return sample(k, n, Global.random());
+	}
+
+	/**
+	 * Samples k distinct integers from 0, ..., n-1.
+	 *
+	 * @return A uniform random choice from all sets of k distinct integers
+	 * 	below n, in random order.
+	 */
+	public static int[] sample(int k, int n, Random random)
+	{
+		if(k < 0 || k > n)
+			throw new IllegalArgumentException("Argument k ("+k+") must be non-negative and not larger than n ("+n+")");
+
+		int[] result = new int[k];
+
+		if((long)k * DENSE_RATIO >= n)
+		{
+			int[] values = new int[n];
+			for(int i = 0; i < n; i++)
+				values[i] = i;
+
+			for(int i = 0; i < k; i++)
+			{
+				int draw = i + random.nextInt(n - i);
+				result[i] = values[draw];
+				values[draw] = values[i];
+			}
+
+			return result;
+		}
+
+		SwapTable table = new SwapTable(k);
+		for(int i = 0; i < k; i++)
+		{
+			int draw = i + random.nextInt(n - i);
+			result[i] = (int) table.get(draw);
+			table.put(draw, table.get(i));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Samples k distinct longs from 0, ..., n-1, using {@link Global#random()}.
+	 */
+	public static long[] sample(int k, long n)
+	{
+		return sample(k, n, Global.random());
+	}
+
+	/**
+	 * Samples k distinct longs from 0, ..., n-1.
+	 *
+	 * @return A uniform random choice from all sets of k distinct integers
+	 * 	below n, in random order.
+	 */
+	public static long[] sample(int k, long n, Random random)
+	{
+		if(k < 0 || k > n)
+			throw new IllegalArgumentException("Argument k ("+k+") must be non-negative and not larger than n ("+n+")");
+
+		long[] result = new long[k];
+
+		if(n <= Integer.MAX_VALUE && (long)k * DENSE_RATIO >= n)
+		{
+			int[] ints = sample(k, (int) n, random);
+			for(int i = 0; i < k; i++)
+				result[i] = ints[i];
+			return result;
+		}
+
+		SwapTable table = new SwapTable(k);
+		for(int i = 0; i < k; i++)
+		{
+			long draw = i + nextLong(random, n - i);
+			result[i] = table.get(draw);
+			table.put(draw, table.get(i));
+		}
+
+		return result;
+	}
+
+	/**
+	 * A uniform random long in [0, bound).
+	 */
+	public static long nextLong(Random random, long bound)
+	{
+		if(bound <= 0)
+			throw new IllegalArgumentException("Bound ("+bound+") must be positive.");
+
+		if((bound & (bound - 1)) == 0)
+			return random.nextLong() & (bound - 1);
+
+		long bits, value;
+		do {
+			bits = random.nextLong() >>> 1;
+			value = bits % bound;
+		} while(bits - value + (bound - 1) < 0);
+
+		return value;
+	}
+
+	/**
+	 * The entries of the simulated array that differ from their index, stored
+	 * with open addressing. Entries are never removed.
+	 */
+	private static class SwapTable
+	{
+		private long[] keys, values;
+		private boolean[] used;
+		private int size = 0;
+
+		public SwapTable(int k)
+		{
+			// * Each step writes at most two entries
+			int capacity = Integer.highestOneBit(Math.max(4 * k, 16) - 1) << 1;
+
+			keys = new long[capacity];
+			values = new long[capacity];
+			used = new boolean[capacity];
+		}
+
+		/**
+		 * The value at the given index of the simulated array.
+		 */
+		public long get(long key)
+		{
+			int slot = slot(key);
+			return used[slot] ? values[slot] : key;
+		}
+
+		public void put(long key, long value)
+		{
+			int slot = slot(key);
+			if(! used[slot])
+			{
+				used[slot] = true;
+				keys[slot] = key;
+				size++;
+			}
+			values[slot] = value;
+
+			if(size * 2 > keys.length)
+				grow();
+		}
+
+		private int slot(long key)
+		{
+			int mask = keys.length - 1;
+			long hash = key * 0x9E3779B97F4A7C15L;
+			int slot = (int)(hash ^ (hash >>> 32)) & mask;
+
+			while(used[slot] && keys[slot] != key)
+				slot = (slot + 1) & mask;
+
+			return slot;
+		}
+
+		private void grow()
+		{
+			long[] oldKeys = keys, oldValues = values;
+			boolean[] oldUsed = used;
+
+			keys = new long[oldKeys.length * 2];
+			values = new long[oldKeys.length * 2];
+			used = new boolean[oldKeys.length * 2];
+
+			for(int i = 0; i < oldKeys.length; i++)
+				if(oldUsed[i])
+				{
+					int slot = slot(oldKeys[i]);
+					used[slot] = true;
+					keys[slot] = oldKeys[i];
+					values[slot] = oldValues[i];
+				}
+		}
+	}
+}
@@ -10,6 +10,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 import nl.peterbloem.kit.ranges.Range;
 
@@ -35,7 +44,10 @@ import nl.peterbloem.kit.ranges.Range;
  * 
  * It should be noted, however, that this is slower than the traditional for 
  * loop, especially for many nested loops. This is in part due to compiler 
- * optimizations and partly due to the cost of creating iterators.
+ * optimizations and partly due to the cost of creating iterators and boxing 
+ * the elements. Where this matters, use the primitive views of the series 
+ * ({@link IntSeries#intIterator()}, {@link IntSeries#intStream()}, etc.) or 
+ * a plain for loop.
  * 
  * <h2>TODO</h2>
  * <ul>
@@ -69,10 +81,10 @@ public class Series
 	 * @param to The upper bound for the series
 	 * @return An unmodifiable list of integers
 	 */
-	public static List<Integer> series(int to)
+	public static IntSeries series(int to)
 	{
 		if(to == 0)
-			return Collections.emptyList();
+			return IntSeries.EMPTY;
 		if(to < 0)
 			return new IntSeries(0, -1, to);
 		
@@ -94,12 +106,12 @@ public class Series
 	 * @return An unmodifiable list of numbers containing all integers between 
 	 *         and the parameters.
 	 */
-	public static List<Integer> series(int from, int to)
+	public static IntSeries series(int from, int to)
 	{
 		if(from > to)
 			return new IntSeries(from, -1, to);
 		if(from == to)
-			return Collections.emptyList();
+			return IntSeries.EMPTY;
 		
 		return new IntSeries(from, 1, to);
 	}
@@ -121,7 +133,7 @@ public class Series
 	 *            <li>the step size is positive and from &gt; li </li>
 	 *         </ul>          
 	 */
-	public static List<Integer> series(int from, int step, int to)
+	public static IntSeries series(int from, int step, int to)
 	{
 		if(step == 0)
 			throw new IllegalArgumentException("Step value ("+step+") cannot be zero");
@@ -131,7 +143,7 @@ public class Series
 			throw new IllegalArgumentException("If from ("+from+") > to("+to+"), step("+step+") should be negative."); 
 	
 		if(from == to)
-			return Collections.emptyList();
+			return IntSeries.EMPTY;
 		
 		return new IntSeries(from, step, to);
 	}
@@ -143,10 +155,10 @@ public class Series
 	 * @param to The upper bound for the series
 	 * @return An unmodifiable list of integers
 	 */
-	public static List<Double> series(double to)
+	public static DoubleSeries series(double to)
 	{
 		if(to == 0)
-			return Collections.emptyList();
+			return DoubleSeries.EMPTY;
 		if(to < 0)
 			return new DoubleSeries(0, -1.0, to);
 		
@@ -167,12 +179,12 @@ public class Series
 	 *         returns an empty list. 
 	 * @throws IllegalArgumentException if from > to.
 	 */
-	public static List<Double> series(double from, double to)
+	public static DoubleSeries series(double from, double to)
 	{
 		if(from > to)
 			return new DoubleSeries(from, -1, to);
 		if(from == to)
-			return Collections.emptyList();		
+			return DoubleSeries.EMPTY;
 		
 		return new DoubleSeries(from, 1, to);
 	}
@@ -188,7 +200,7 @@ public class Series
 	 *         and including the parameters for the given step size. If 
 	 *         to <= from then the method returns an empty list.
 	 */
-	public static List<Double> series(double from, double step,double to)
+	public static DoubleSeries series(double from, double step, double to)
 	{
 		if(step == 0.0)
 			throw new IllegalArgumentException("Step value ("+step+") cannot be zero");
@@ -198,36 +210,53 @@ public class Series
 			throw new IllegalArgumentException("If from ("+from+") > to("+to+"), step("+step+") should be negative."); 
 	
 		if(from == to)
-			return Collections.emptyList();		
+			return DoubleSeries.EMPTY;
 		
 		return new DoubleSeries(from, step, to);
 	}	
 	
-	private static final class IntSeries extends AbstractList<Integer>
+	/**
+	 * <p>
+	 * An arithmetic series of integers. Besides the list interface (which boxes
+	 * every element), the series can be traversed without boxing through 
+	 * {@link #intIterator()} and {@link #intStream()}. 
+	 * </p><p>
+	 * Its spliterator is sized and splits the series exactly in half, so that 
+	 * {@link #parallelStream()} and {@link #parallelIntStream()} divide the
+	 * work evenly over threads. 
+	 * </p>
+	 */
+	public static final class IntSeries extends AbstractList<Integer>
 	{
+		private static final IntSeries EMPTY = new IntSeries(0, 1, 0);
+		
 		private int from;
 		private int to;
 		private int step;
+		private int size;
 
-		public IntSeries(int from, int step, int to)
+		private IntSeries(int from, int step, int to)
 		{
 			this.from = from;
 			this.to = to;
 			this.step = step;
+			
+			// * Round up: the last element may lie less than a step from the 
+			//   bound
+			long span = (long) to - from;
+			this.size = (int) ((span + step + (step > 0 ? -1 : 1)) / step);
 		}
 
 		@Override
 		public int size()
 		{
-			return (to - from)/step;
+			return size;
 		}
 
 		@Override
 		public boolean isEmpty()
 		{
-			// * The static factory methods return an empty list if the parameters
-			//   require one, so this type of list is never empty
-			return false;
+			return size == 0;
 		}
 
 		@Override
@@ -257,23 +286,33 @@ public class Series
 			return new Iterator();
 		}
 		
-		private class Iterator implements java.util.Iterator<Integer>
+		/**
+		 * An iterator over the elements of this series as primitive ints.
+		 */
+		public PrimitiveIterator.OfInt intIterator()
+		{
+			return new Iterator();
+		}
+		
+		private class Iterator implements PrimitiveIterator.OfInt
 		{
+			private int index = 0;
 			private int next = from;
 
 			public boolean hasNext()
 			{
-				if(step >= 0)
-					return next < to;
-				else
-					return next > to;
+				return index < size;
 			}
 
 			@Override
-			public Integer next()
+			public int nextInt()
 			{
+				if(index >= size)
+					throw new NoSuchElementException();
+				
 				int result = next;
 				next += step;
+				index++;
 				
 				return result;
 			}
@@ -289,39 +328,163 @@ public class Series
 		@Override
 		public Integer get(int index)
 		{
-			if(index > size() -1 || index < 0)
+			return getInt(index);
+		}
+		
+		public int getInt(int index)
+		{
+			if(index > size -1 || index < 0)
 				throw new IndexOutOfBoundsException(
-					"Index ("+index+") out of bounds (0, "+(size()-1)+")");
+					"Index ("+index+") out of bounds (0, "+(size-1)+")");
 			
 			return index * step + from;
 		}
+		
+		@Override
+		public Spliterator.OfInt spliterator()
+		{
+			return new IntSpliterator(0, size);
+		}
+		
+		public IntStream intStream()
+		{
+			return StreamSupport.intStream(spliterator(), false);
+		}
+		
+		public IntStream parallelIntStream()
+		{
+			return StreamSupport.intStream(spliterator(), true);
+		}
+		
+		/**
+		 * Returns the elements of this series as an array.
+		 */
+		public int[] toIntArray()
+		{
+			int[] array = new int[size];
+			for(int i = 0; i < size; i++)
+				array[i] = from + i * step;
+			
+			return array;
+		}
+		
+		private final class IntSpliterator implements Spliterator.OfInt
+		{
+			// * The range of indices still to be traversed
+			private int index, end;
+			
+			public IntSpliterator(int index, int end)
+			{
+				this.index = index;
+				this.end = end;
+			}
+
+			@Override
+			public long estimateSize()
+			{
+				return end - index;
+			}
+
+			@Override
+			public int characteristics()
+			{
+				return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL | DISTINCT;
+			}
+
+			@Override
+			public OfInt trySplit()
+			{
+				int mid = (index + end) >>> 1;
+				if(mid <= index)
+					return null;
+				
+				IntSpliterator prefix = new IntSpliterator(index, mid);
+				index = mid;
+				
+				return prefix;
+			}
+
+			@Override
+			public boolean tryAdvance(IntConsumer action)
+			{
+				if(index >= end)
+					return false;
+				
+				action.accept(from + index * step);
+				index++;
+				
+				return true;
+			}
+			
+			@Override
+			public void forEachRemaining(IntConsumer action)
+			{
+				int value = from + index * step;
+				for(; index < end; index++, value += step)
+					action.accept(value);
+			}
+		}
 	}
 	
-	private static final class DoubleSeries extends AbstractList<Double>
+	/**
+	 * <p>
+	 * An arithmetic series of doubles. Besides the list interface (which boxes
+	 * every element), the series can be traversed without boxing through 
+	 * {@link #doubleIterator()} and {@link #doubleStream()}. 
+	 * </p><p>
+	 * The primitive views and the spliterator follow {@link #size()} and 
+	 * {@link #get(int)}: element i is computed as from + i * step, rather than 
+	 * by repeatedly adding the step. 
+	 * </p>
+	 */
+	public static final class DoubleSeries extends AbstractList<Double>
 	{
+		private static final DoubleSeries EMPTY = new DoubleSeries(0.0, 1.0, 0.0);
+		
 		private double from;
 		private double to;
 		private double step;
 
-		public DoubleSeries(double from, double step, double to)
+		private int size;
+
+		private DoubleSeries(double from, double step, double to)
 		{
 			this.from = from;
 			this.to = to;
 			this.step = step;
+			
+			// * Round up, and then correct for rounding errors so that the 
+			//   last element is the last one for which from + i * step lies 
+			//   before the bound
+			double q = Math.ceil((to - from)/step);
+			int n = q > 0 ? (int) Math.min(q, Integer.MAX_VALUE) : 0;
+			while(n > 0 && ! before(n - 1))
+				n--;
+			while(n < Integer.MAX_VALUE && before(n))
+				n++;
+			
+			this.size = n;
+		}
+		
+		/**
+		 * Whether element i lies before the bound.
+		 */
+		private boolean before(int i)
+		{
+			double value = i * step + from;
+			return step >= 0 ? value < to : value > to;
 		}
 
 		@Override
 		public int size()
 		{
-			return (int) Math.floor((to - from)/step);
+			return size;
 		}
 
 		@Override
 		public boolean isEmpty()
 		{
-			// * The static factory methods return an empty list if the parameters
-			//   require one, so this type of list is never empty			
-			return false;
+			return size() == 0;
 		}
 
 		@Override
@@ -352,23 +515,20 @@ public class Series
 		
 		private class Iterator implements java.util.Iterator<Double>
 		{
-			private double next = from;
+			private int next = 0;
 
 			public boolean hasNext()
 			{
-				if(step >= 0)
-					return next < to;
-				else
-					return next > to;
+				return next < size;
 			}
 
 			@Override
 			public Double next()
 			{
-				double result = next;
-				next += step;
+				if(! hasNext())
+					throw new NoSuchElementException();
 				
-				return result;
+				return (next++) * step + from;
 			}
 
 			@Override
@@ -381,6 +541,11 @@ public class Series
 
 		@Override
 		public Double get(int index)
+		{
+			return getDouble(index);
+		}
+		
+		public double getDouble(int index)
 		{
 			if(index > size() -1 || index < 0)
 				throw new IndexOutOfBoundsException(
@@ -388,6 +553,85 @@ public class Series
 			
 			return index * step + from;
 		}
+		
+		/**
+		 * An iterator over the elements of this series as primitive doubles.
+		 */
+		public PrimitiveIterator.OfDouble doubleIterator()
+		{
+			return Spliterators.iterator(spliterator());
+		}
+		
+		@Override
+		public Spliterator.OfDouble spliterator()
+		{
+			return new DoubleSpliterator(0, size());
+		}
+		
+		public DoubleStream doubleStream()
+		{
+			return StreamSupport.doubleStream(spliterator(), false);
+		}
+		
+		public DoubleStream parallelDoubleStream()
+		{
+			return StreamSupport.doubleStream(spliterator(), true);
+		}
+		
+		private final class DoubleSpliterator implements Spliterator.OfDouble
+		{
+			private int index, end;
+			
+			public DoubleSpliterator(int index, int end)
+			{
+				this.index = index;
+				this.end = end;
+			}
+
+			@Override
+			public long estimateSize()
+			{
+				return end - index;
+			}
+
+			@Override
+			public int characteristics()
+			{
+				return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+			}
+
+			@Override
+			public OfDouble trySplit()
+			{
+				int mid = (index + end) >>> 1;
+				if(mid <= index)
+					return null;
+				
+				DoubleSpliterator prefix = new DoubleSpliterator(index, mid);
+				index = mid;
+				
+				return prefix;
+			}
+
+			@Override
+			public boolean tryAdvance(DoubleConsumer action)
+			{
+				if(index >= end)
+					return false;
+				
+				action.accept(index * step + from);
+				index++;
+				
+				return true;
+			}
+			
+			@Override
+			public void forEachRemaining(DoubleConsumer action)
+			{
+				for(; index < end; index++)
+					action.accept(index * step + from);
+			}
+		}
 	}	
 
 	/**
@@ -0,0 +1,633 @@
+package nl.peterbloem.kit;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>
+ * Sorting by index: instead of moving the elements of one or more parallel
+ * columns around, these methods sort an array of indices, which can then be
+ * used to permute any number of columns in place (see
+ * {@link #permute(int[], double[]...)} and its siblings).
+ * </p><p>
+ * All sorts are stable merge sorts on a primitive int array. Doubles and
+ * integers are compared by primitive keys, other orders through an
+ * {@link IndexComparator}. Above {@link #PARALLEL_THRESHOLD} elements, the
+ * halves of the sort are sorted in parallel on {@link Global#pool()}, in the
+ * same manner as {@link java.util.Arrays#parallelSort(double[])}.
+ * </p><p>
+ * Doubles are ordered as by {@link Double#compare(double, double)}: -0.0
+ * comes before 0.0 and NaN comes last.
+ * </p>
+ *
+ * @author Peter
+ */
+public class Sorting
+{
+	/**
+	 * Below this number of elements, sorts are done in a single thread.
+	 */
+	public static int PARALLEL_THRESHOLD = 1 << 13;
+
+	/**
+	 * Below this number of elements, ranges are sorted by insertion sort.
+	 */
+	private static final int INSERTION_THRESHOLD = 16;
+
+	/**
+	 * Compares two elements of some collection by their indices.
+	 */
+	public static interface IndexComparator
+	{
+		public int compare(int i, int j);
+	}
+
+	/**
+	 * Returns the indices of the given values in order of increasing value.
+	 * That is, values[result[0]] is the smallest value. Equal values are kept
+	 * in their original order.
+	 */
+	public static int[] argsort(double[] values)
+	{
+		long[] keys = new long[values.length];
+		for(int i = 0; i < values.length; i++)
+			keys[i] = key(values[i]);
+
+		return argsort(keys);
+	}
+
+	/**
+	 * Returns the indices of the given values in order of increasing value.
+	 * That is, values[result[0]] is the smallest value. Equal values are kept
+	 * in their original order.
+	 */
+	public static int[] argsort(int[] values)
+	{
+		long[] keys = new long[values.length];
+		for(int i = 0; i < values.length; i++)
+			keys[i] = values[i];
+
+		return argsort(keys);
+	}
+
+	/**
+	 * Returns the indices of the given values in order of increasing value.
+	 * That is, values[result[0]] is the smallest value. Equal values are kept
+	 * in their original order.
+	 */
+	public static int[] argsort(long[] values)
+	{
+		int n = values.length;
+		int[] indices = identity(n), buffer = indices.clone();
+
+		if(n < PARALLEL_THRESHOLD || Global.numThreads() < 2)
+			sort(buffer, indices, values, 0, n);
+		else
+			Global.pool().invoke(new KeyTask(buffer, indices, values, 0, n));
+
+		return indices;
+	}
+
+	/**
+	 * Returns the indices of the given values in the order defined by the
+	 * given comparator. Equal values are kept in their original order.
+	 *
+	 * The values are copied to an array first, so this takes O(n log n) time
+	 * for any list. For n above {@link #PARALLEL_THRESHOLD}, the comparator is
+	 * called from multiple threads.
+	 */
+	public static <V> int[] argsort(List<V> values, Comparator<? super V> comp)
+	{
+		return argsort(values, comp, true);
+	}
+
+	/**
+	 * Returns the indices of the given values in the order defined by the
+	 * given comparator. Equal values are kept in their original order.
+	 *
+	 * @param parallel If false, the comparator is only called from the
+	 * 	calling thread.
+	 */
+	public static <V> int[] argsort(List<V> values, final Comparator<? super V> comp, boolean parallel)
+	{
+		final Object[] array = values.toArray();
+
+		return argsort(array.length, new IndexComparator() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public int compare(int i, int j)
+			{
+				return comp.compare((V) array[i], (V) array[j]);
+			}
+		}, parallel);
+	}
+
+	/**
+	 * Returns the integers 0, ..., n-1 sorted by the given comparator. Equal
+	 * indices are kept in their original order.
+	 *
+	 * For n above {@link #PARALLEL_THRESHOLD}, the comparator is called from
+	 * multiple threads.
+	 */
+	public static int[] argsort(int n, IndexComparator comp)
+	{
+		return argsort(n, comp, true);
+	}
+
+	/**
+	 * Returns the integers 0, ..., n-1 sorted by the given comparator. Equal
+	 * indices are kept in their original order.
+	 *
+	 * @param parallel If false, the comparator is only called from the
+	 * 	calling thread.
+	 */
+	public static int[] argsort(int n, IndexComparator comp, boolean parallel)
+	{
+		int[] indices = identity(n), buffer = indices.clone();
+
+		if(! parallel || n < PARALLEL_THRESHOLD || Global.numThreads() < 2)
+			sort(buffer, indices, comp, 0, n);
+		else
+			Global.pool().invoke(new ComparatorTask(buffer, indices, comp, 0, n));
+
+		return indices;
+	}
+
+	/**
+	 * The indices of the k largest values, from largest to smallest. Of equal
+	 * values, the one with the lowest index comes first. This takes
+	 * O(n log k) time.
+	 */
+	public static int[] top(double[] values, int k)
+	{
+		long[] keys = new long[values.length];
+		for(int i = 0; i < values.length; i++)
+			keys[i] = key(values[i]);
+
+		return top(keys, k);
+	}
+
+	/**
+	 * The indices of the k largest values, from largest to smallest. Of equal
+	 * values, the one with the lowest index comes first. This takes
+	 * O(n log k) time.
+	 */
+	public static int[] top(int[] values, int k)
+	{
+		long[] keys = new long[values.length];
+		for(int i = 0; i < values.length; i++)
+			keys[i] = values[i];
+
+		return top(keys, k);
+	}
+
+	/**
+	 * The indices of the k largest values, from largest to smallest. Of equal
+	 * values, the one with the lowest index comes first. This takes
+	 * O(n log k) time.
+	 */
+	public static int[] top(final long[] values, int k)
+	{
+		return top(values.length, k, new IndexComparator() {
+			@Override
+			public int compare(int i, int j)
+			{
+				return Long.compare(values[i], values[j]);
+			}
+		});
+	}
+
+	/**
+	 * The k largest of the integers 0, ..., n-1 under the given comparator,
+	 * from largest to smallest. Of equal elements, the lowest index comes
+	 * first.
+	 *
+	 * The elements are kept in a heap of size k, so this takes O(n log k)
+	 * time and O(k) memory.
+	 */
+	public static int[] top(int n, int k, IndexComparator comp)
+	{
+		k = Math.min(k, n);
+		if(k <= 0)
+			return new int[0];
+
+		// * A heap of the k best elements so far, with the worst at the root
+		int[] heap = new int[k];
+		int size = 0;
+
+		for(int i = 0; i < n; i++)
+			if(size < k)
+			{
+				// * sift up
+				int c = size++;
+				while(c > 0)
+				{
+					int parent = (c - 1) >>> 1;
+					if(! worse(i, heap[parent], comp))
+						break;
+					heap[c] = heap[parent];
+					c = parent;
+				}
+				heap[c] = i;
+			} else if(comp.compare(i, heap[0]) > 0)
+			{
+				// * i is better than the worst element in the heap (and since
+				//   it comes later, strictly so)
+				siftDown(heap, i, size, comp);
+			}
+
+		// * Repeatedly remove the worst element
+		int[] result = new int[k];
+		for(int r = k - 1; r >= 0; r--)
+		{
+			result[r] = heap[0];
+			size--;
+			if(size > 0)
+				siftDown(heap, heap[size], size, comp);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Places element at the root of the heap, and moves it down to its place.
+	 */
+	private static void siftDown(int[] heap, int element, int size, IndexComparator comp)
+	{
+		int c = 0;
+		while(true)
+		{
+			int child = 2 * c + 1;
+			if(child >= size)
+				break;
+			if(child + 1 < size && worse(heap[child + 1], heap[child], comp))
+				child++;
+			if(! worse(heap[child], element, comp))
+				break;
+
+			heap[c] = heap[child];
+			c = child;
+		}
+		heap[c] = element;
+	}
+
+	/**
+	 * Whether element i is worse than element j in a top-k selection: it is
+	 * smaller, or equal and with a higher index.
+	 */
+	private static boolean worse(int i, int j, IndexComparator comp)
+	{
+		int c = comp.compare(i, j);
+		return c < 0 || (c == 0 && i > j);
+	}
+
+	/**
+	 * Permutes the given columns in place so that afterwards column[i] holds
+	 * the value that was at column[order[i]] before. With the result of an
+	 * argsort as the order, this sorts the columns.
+	 *
+	 * The permutation follows the cycles of the order, so each element is
+	 * moved only once, and no copies of the columns are made.
+	 */
+	public static void permute(int[] order, double[]... columns)
+	{
+		for(double[] column : columns)
+			check(order, column.length);
+
+		boolean[] done = new boolean[order.length];
+		for(int start = 0; start < order.length; start++)
+		{
+			if(done[start])
+				continue;
+
+			for(double[] column : columns)
+			{
+				double first = column[start];
+				int i = start;
+				while(order[i] != start)
+				{
+					column[i] = column[order[i]];
+					i = order[i];
+				}
+				column[i] = first;
+			}
+
+			markCycle(order, start, done);
+		}
+	}
+
+	/**
+	 * Permutes the given columns in place so that afterwards column[i] holds
+	 * the value that was at column[order[i]] before.
+	 */
+	public static void permute(int[] order, int[]... columns)
+	{
+		for(int[] column : columns)
+			check(order, column.length);
+
+		boolean[] done = new boolean[order.length];
+		for(int start = 0; start < order.length; start++)
+		{
+			if(done[start])
+				continue;
+
+			for(int[] column : columns)
+			{
+				int first = column[start];
+				int i = start;
+				while(order[i] != start)
+				{
+					column[i] = column[order[i]];
+					i = order[i];
+				}
+				column[i] = first;
+			}
+
+			markCycle(order, start, done);
+		}
+	}
+
+	/**
+	 * Permutes the given columns in place so that afterwards column[i] holds
+	 * the value that was at column[order[i]] before.
+	 */
+	public static void permute(int[] order, long[]... columns)
+	{
+		for(long[] column : columns)
+			check(order, column.length);
+
+		boolean[] done = new boolean[order.length];
+		for(int start = 0; start < order.length; start++)
+		{
+			if(done[start])
+				continue;
+
+			for(long[] column : columns)
+			{
+				long first = column[start];
+				int i = start;
+				while(order[i] != start)
+				{
+					column[i] = column[order[i]];
+					i = order[i];
+				}
+				column[i] = first;
+			}
+
+			markCycle(order, start, done);
+		}
+	}
+
+	/**
+	 * Permutes the given columns in place so that afterwards column[i] holds
+	 * the value that was at column[order[i]] before.
+	 */
+	public static void permute(int[] order, Object[]... columns)
+	{
+		for(Object[] column : columns)
+			check(order, column.length);
+
+		boolean[] done = new boolean[order.length];
+		for(int start = 0; start < order.length; start++)
+		{
+			if(done[start])
+				continue;
+
+			for(Object[] column : columns)
+			{
+				Object first = column[start];
+				int i = start;
+				while(order[i] != start)
+				{
+					column[i] = column[order[i]];
+					i = order[i];
+				}
+				column[i] = first;
+			}
+
+			markCycle(order, start, done);
+		}
+	}
+
+	/**
+	 * Permutes the given lists so that afterwards list.get(i) returns the
+	 * element that was at list.get(order[i]) before. Each list is copied to an
+	 * array, permuted, and written back with a list iterator, so this takes
+	 * linear time for any list that supports set.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static void permute(int[] order, List... lists)
+	{
+		Object[][] columns = new Object[lists.length][];
+		for(int j = 0; j < lists.length; j++)
+			columns[j] = lists[j].toArray();
+
+		permute(order, columns);
+
+		for(int j = 0; j < lists.length; j++)
+		{
+			ListIterator iterator = lists[j].listIterator();
+			for(Object element : columns[j])
+			{
+				iterator.next();
+				iterator.set(element);
+			}
+		}
+	}
+
+	private static void check(int[] order, int length)
+	{
+		if(length != order.length)
+			throw new IllegalArgumentException("Column of length "+length+" does not match order of length "+order.length+".");
+	}
+
+	private static void markCycle(int[] order, int start, boolean[] done)
+	{
+		int i = start;
+		do {
+			done[i] = true;
+			i = order[i];
+		} while(i != start);
+	}
+
+	/**
+	 * A long that sorts in the same order as the given double.
+	 */
+	private static long key(double value)
+	{
+		long bits = Double.doubleToLongBits(value);
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+	private static int[] identity(int n)
+	{
+		int[] indices = new int[n];
+		for(int i = 0; i < n; i++)
+			indices[i] = i;
+		return indices;
+	}
+
+	/**
+	 * Sorts the indices in dst[from, to) by their keys. Both arrays should
+	 * hold the same values in this range to start with. src is used as a
+	 * buffer.
+	 */
+	private static void sort(int[] src, int[] dst, long[] keys, int from, int to)
+	{
+		if(to - from <= INSERTION_THRESHOLD)
+		{
+			for(int i = from + 1; i < to; i++)
+			{
+				int index = dst[i];
+				long key = keys[index];
+				int j = i;
+				while(j > from && keys[dst[j - 1]] > key)
+				{
+					dst[j] = dst[j - 1];
+					j--;
+				}
+				dst[j] = index;
+			}
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		sort(dst, src, keys, from, mid);
+		sort(dst, src, keys, mid, to);
+
+		merge(src, dst, keys, from, mid, to);
+	}
+
+	/**
+	 * Merges the sorted ranges src[from, mid) and src[mid, to) into dst.
+	 */
+	private static void merge(int[] src, int[] dst, long[] keys, int from, int mid, int to)
+	{
+		if(keys[src[mid - 1]] <= keys[src[mid]])
+		{
+			System.arraycopy(src, from, dst, from, to - from);
+			return;
+		}
+
+		for(int i = from, a = from, b = mid; i < to; i++)
+			if(b >= to || (a < mid && keys[src[a]] <= keys[src[b]]))
+				dst[i] = src[a++];
+			else
+				dst[i] = src[b++];
+	}
+
+	private static void sort(int[] src, int[] dst, IndexComparator comp, int from, int to)
+	{
+		if(to - from <= INSERTION_THRESHOLD)
+		{
+			for(int i = from + 1; i < to; i++)
+			{
+				int index = dst[i];
+				int j = i;
+				while(j > from && comp.compare(dst[j - 1], index) > 0)
+				{
+					dst[j] = dst[j - 1];
+					j--;
+				}
+				dst[j] = index;
+			}
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		sort(dst, src, comp, from, mid);
+		sort(dst, src, comp, mid, to);
+
+		merge(src, dst, comp, from, mid, to);
+	}
+
+	private static void merge(int[] src, int[] dst, IndexComparator comp, int from, int mid, int to)
+	{
+		if(comp.compare(src[mid - 1], src[mid]) <= 0)
+		{
+			System.arraycopy(src, from, dst, from, to - from);
+			return;
+		}
+
+		for(int i = from, a = from, b = mid; i < to; i++)
+			if(b >= to || (a < mid && comp.compare(src[a], src[b]) <= 0))
+				dst[i] = src[a++];
+			else
+				dst[i] = src[b++];
+	}
+
+	/**
+	 * Sorts the two halves of a range in parallel, and merges them.
+	 */
+	private static class KeyTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = -4473226331227011542L;
+
+		private final int[] src, dst;
+		private final long[] keys;
+		private final int from, to;
+
+		public KeyTask(int[] src, int[] dst, long[] keys, int from, int to)
+		{
+			this.src = src;
+			this.dst = dst;
+			this.keys = keys;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from < PARALLEL_THRESHOLD)
+			{
+				sort(src, dst, keys, from, to);
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(
+					new KeyTask(dst, src, keys, from, mid),
+					new KeyTask(dst, src, keys, mid, to));
+
+			merge(src, dst, keys, from, mid, to);
+		}
+	}
+
+	private static class ComparatorTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 5906335117005693457L;
+
+		private final int[] src, dst;
+		private final IndexComparator comp;
+		private final int from, to;
+
+		public ComparatorTask(int[] src, int[] dst, IndexComparator comp, int from, int to)
+		{
+			this.src = src;
+			this.dst = dst;
+			this.comp = comp;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from < PARALLEL_THRESHOLD)
+			{
+				sort(src, dst, comp, from, to);
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(
+					new ComparatorTask(dst, src, comp, from, mid),
+					new ComparatorTask(dst, src, comp, mid, to));
+
+			merge(src, dst, comp, from, mid, to);
+		}
+	}
+}
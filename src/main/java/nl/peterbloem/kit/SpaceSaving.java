@@ -0,0 +1,328 @@
+package nl.peterbloem.kit;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Tracks the most frequent tokens of a stream in a fixed amount of memory, 
+ * using the Space-Saving algorithm (Metwally et al.).
+ * </p><p>
+ * The model monitors at most k tokens, each with a counter. When a token that 
+ * is not monitored arrives and all k counters are in use, it replaces the 
+ * token with the smallest counter, and inherits that count (which is recorded 
+ * as the token's error). As a result, the count of a monitored token 
+ * overestimates its true frequency by at most its error, and any token with 
+ * a true frequency greater than total/k is guaranteed to be monitored.
+ * </p><p>
+ * Tokens that are not monitored have frequency 0 under this model: their true 
+ * frequency is at most {@link #minimum()}. This is the weighted equivalent of
+ * the Misra-Gries summary, shifted up by the minimum.
+ * </p><p>
+ * The counters are kept in an indexed min-heap, so that each update takes 
+ * O(log k) time. Summaries can be merged (following Agarwal et al., 
+ * "Mergeable summaries"), so that a stream can be processed by multiple 
+ * threads, each with its own summary. This class is not thread-safe.
+ * </p>
+ * 
+ * @author Peter
+ *
+ * @param <T>
+ */
+public class SpaceSaving<T> implements ProbabilityModel<T>, Serializable
+{
+	private static final long serialVersionUID = -4418419395557311045L;
+
+	private int capacity;
+	
+	// * A min-heap of counters, ordered by count
+	private List<T> tokens;
+	private double[] counts, errors;
+	private Map<T, Integer> index;
+	
+	private double total = 0.0;
+	
+	/**
+	 * @param capacity The number of tokens to monitor. The frequency of any 
+	 * 	token is overestimated by at most total/capacity.
+	 */
+	public SpaceSaving(int capacity)
+	{
+		if(capacity < 1)
+			throw new IllegalArgumentException("Capacity ("+capacity+") should be positive.");
+		
+		this.capacity = capacity;
+		
+		tokens = new ArrayList<T>(capacity);
+		counts = new double[capacity];
+		errors = new double[capacity];
+		index = new HashMap<T, Integer>(capacity * 2);
+	}
+	
+	public void add(T token)
+	{
+		add(token, 1.0);
+	}
+	
+	public void add(T token, double weight)
+	{
+		if(weight < 0.0)
+			throw new IllegalArgumentException("Weight ("+weight+") cannot be negative.");
+		
+		total += weight;
+		
+		Integer i = index.get(token);
+		if(i != null)
+		{
+			counts[i] += weight;
+			down(i);
+			return;
+		}
+		
+		if(tokens.size() < capacity)
+		{
+			int n = tokens.size();
+			tokens.add(token);
+			counts[n] = weight;
+			errors[n] = 0.0;
+			index.put(token, n);
+			
+			up(n);
+			return;
+		}
+		
+		// * Replace the token with the lowest count
+		index.remove(tokens.get(0));
+		
+		tokens.set(0, token);
+		errors[0] = counts[0];
+		counts[0] += weight;
+		index.put(token, 0);
+		
+		down(0);
+	}
+	
+	/**
+	 * The estimated frequency of the given token: its count if it is 
+	 * monitored, and 0 otherwise. The count of a monitored token is never lower 
+	 * than its true frequency, and exceeds it by at most {@link #error(Object)}.
+	 */
+	public double frequency(T token)
+	{
+		Integer i = index.get(token);
+		
+		return i == null ? 0.0 : counts[i];
+	}
+	
+	/**
+	 * The maximal overestimate of the frequency of the given token. For 
+	 * tokens that are not monitored, this is the maximal true frequency.  
+	 */
+	public double error(T token)
+	{
+		Integer i = index.get(token);
+		
+		return i == null ? minimum() : errors[i];
+	}
+	
+	/**
+	 * A lower bound for the true frequency of the given token.
+	 */
+	public double guaranteed(T token)
+	{
+		Integer i = index.get(token);
+		
+		return i == null ? 0.0 : counts[i] - errors[i];
+	}
+	
+	/**
+	 * The smallest count among the monitored tokens, or 0 if fewer than 
+	 * capacity tokens have been seen. No token that is not monitored has a 
+	 * higher frequency. This value is at most total/capacity.
+	 */
+	public double minimum()
+	{
+		return tokens.size() < capacity ? 0.0 : counts[0];
+	}
+	
+	public double total()
+	{
+		return total;
+	}
+	
+	/**
+	 * The number of monitored tokens. This is a lower bound for the number of 
+	 * distinct tokens seen.
+	 */
+	public double distinct()
+	{
+		return tokens.size();
+	}
+	
+	public double probability(T token)
+	{
+		return frequency(token) / total;
+	}
+	
+	public int capacity()
+	{
+		return capacity;
+	}
+	
+	/**
+	 * Whether the given token is currently monitored.
+	 */
+	public boolean monitored(T token)
+	{
+		return index.containsKey(token);
+	}
+	
+	/**
+	 * The monitored tokens, sorted by estimated frequency, highest first.
+	 * 
+	 * @return A new list, which can be freely modified.
+	 */
+	public List<T> sorted()
+	{
+		List<T> sorted = new ArrayList<T>(tokens);
+		Collections.sort(sorted, new java.util.Comparator<T>() 
+		{
+			public int compare(T first, T second)
+			{
+				return - Double.compare(frequency(first), frequency(second));
+			}
+		});
+		
+		return sorted;
+	}
+	
+	/**
+	 * The k tokens with the highest estimated frequency (or fewer if fewer 
+	 * are monitored). 
+	 */
+	public List<T> top(int k)
+	{
+		List<T> sorted = sorted();
+		
+		return new ArrayList<T>(sorted.subList(0, Math.min(k, sorted.size())));
+	}
+	
+	/**
+	 * Adds the counts of another summary to this one. Tokens monitored by only
+	 * one of the two summaries are assumed to have the other's minimum as count
+	 * and error in the other. Of the combined tokens, the 
+	 * {@link #capacity()} with the highest counts are kept. The result has 
+	 * the same guarantees as a single summary that has seen both streams.
+	 *  
+	 * @param other
+	 * @return This summary
+	 */
+	public SpaceSaving<T> merge(SpaceSaving<T> other)
+	{
+		double thisMin = minimum(), otherMin = other.minimum();
+		
+		final Map<T, double[]> merged = new HashMap<T, double[]>();
+		for(int i = 0; i < tokens.size(); i++)
+			merged.put(tokens.get(i), new double[]{
+					counts[i] + otherMin, errors[i] + otherMin});
+		
+		for(int i = 0; i < other.tokens.size(); i++)
+		{
+			T token = other.tokens.get(i);
+			double[] entry = merged.get(token);
+			if(entry == null)
+				merged.put(token, new double[]{
+						other.counts[i] + thisMin, other.errors[i] + thisMin});
+			else
+			{
+				// * Replace the assumed count and error with the true ones
+				entry[0] += other.counts[i] - otherMin;
+				entry[1] += other.errors[i] - otherMin;
+			}
+		}
+		
+		List<T> all = new ArrayList<T>(merged.keySet());
+		Collections.sort(all, new java.util.Comparator<T>() 
+		{
+			public int compare(T first, T second)
+			{
+				return Double.compare(merged.get(first)[0], merged.get(second)[0]);
+			}
+		});
+		
+		// * Keep the highest counts. An ascending list is a valid min-heap.
+		tokens.clear();
+		index.clear();
+		for(T token : all.subList(Math.max(0, all.size() - capacity), all.size()))
+		{
+			int n = tokens.size();
+			tokens.add(token);
+			counts[n] = merged.get(token)[0];
+			errors[n] = merged.get(token)[1];
+			index.put(token, n);
+		}
+		
+		total += other.total;
+		
+		return this;
+	}
+	
+	private void up(int i)
+	{
+		while(i > 0)
+		{
+			int parent = (i - 1) / 2;
+			if(counts[parent] <= counts[i])
+				break;
+			
+			swap(i, parent);
+			i = parent;
+		}
+	}
+	
+	private void down(int i)
+	{
+		int n = tokens.size();
+		while(true)
+		{
+			int left = 2 * i + 1, right = left + 1, smallest = i;
+			if(left < n && counts[left] < counts[smallest])
+				smallest = left;
+			if(right < n && counts[right] < counts[smallest])
+				smallest = right;
+			
+			if(smallest == i)
+				break;
+			
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+	
+	private void swap(int i, int j)
+	{
+		T ti = tokens.get(i), tj = tokens.get(j);
+		tokens.set(i, tj);
+		tokens.set(j, ti);
+		index.put(tj, i);
+		index.put(ti, j);
+		
+		double c = counts[i];
+		counts[i] = counts[j];
+		counts[j] = c;
+		
+		double e = errors[i];
+		errors[i] = errors[j];
+		errors[j] = e;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "[space-saving, capacity=" + capacity + ", total=" + total + ", top=" + top(10) + "]";
+	}
+}
@@ -0,0 +1,225 @@
+package nl.peterbloem.kit.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import nl.peterbloem.kit.AbstractGenerator;
+import nl.peterbloem.kit.Global;
+
+/**
+ * Base class for batch generators. Subclasses implement 
+ * {@link #generate(Random, double[], int)}, which writes a single point. The 
+ * static methods implement the seeded, parallel methods of 
+ * {@link BatchGenerator} for generators that cannot extend this class.
+ * 
+ * @author Peter
+ */
+public abstract class AbstractBatchGenerator extends AbstractGenerator<Point>
+	implements BatchGenerator
+{
+	/**
+	 * The number of points in one chunk of the seeded methods. 
+	 */
+	public static final int CHUNK = 1024;
+	
+	protected final int dimension;
+	
+	public AbstractBatchGenerator(int dimension)
+	{
+		this.dimension = dimension;
+	}
+	
+	/**
+	 * Writes a single point to out, starting at out[offset].
+	 */
+	protected abstract void generate(Random random, double[] out, int offset);
+	
+	@Override
+	public int dimension()
+	{
+		return dimension;
+	}
+	
+	@Override
+	public Point generate()
+	{
+		double[] values = new double[dimension];
+		generate(Global.random(), values, 0);
+		
+		return Point.fromRaw(values);
+	}
+	
+	@Override
+	public void generate(Random random, double[] out, int offset, int n)
+	{
+		for(int i = 0; i < n; i++)
+			generate(random, out, offset + i * dimension);
+	}
+	
+	@Override
+	public double[] generateBlock(int n, long seed)
+	{
+		return generateBlock(this, n, seed);
+	}
+	
+	@Override
+	public List<Point> generate(int n, long seed)
+	{
+		return generate(this, n, seed);
+	}
+	
+	@Override
+	public Stream<Point> stream(long seed)
+	{
+		return stream(this, seed);
+	}
+	
+	/**
+	 * Generates n points into a flat array, in chunks of {@link #CHUNK} 
+	 * points that are divided over {@link Global#numThreads()} tasks. The 
+	 * calling thread generates the first chunk before the others are 
+	 * submitted, so that any lazily initialized state of the generator is 
+	 * set up before it is shared. 
+	 * 
+	 * The block is a single array, so n * dimension may not exceed 
+	 * Integer.MAX_VALUE. For more points, use {@link #stream(BatchGenerator, long)}.
+	 */
+	public static double[] generateBlock(final BatchGenerator generator, int n, final long seed)
+	{
+		final int d = generator.dimension();
+		if(n < 0)
+			throw new IllegalArgumentException("Number of points ("+n+") cannot be negative.");
+		if((long) n * d > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(n+" points of dimension "+d+" do not fit in a single array. Use stream(seed) instead.");
+		
+		final double[] out = new double[n * d];
+		
+		final int chunks = (n + CHUNK - 1) / CHUNK;
+		if(chunks == 0)
+			return out;
+		
+		generateChunk(generator, out, 0, n, seed);
+		
+		int threads = Math.min(Global.numThreads(), chunks - 1);
+		if(threads < 2)
+		{
+			for(int c = 1; c < chunks; c++)
+				generateChunk(generator, out, c, n, seed);
+			return out;
+		}
+		
+		final int total = n;
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(threads);
+		for(int t = 0; t < threads; t++)
+		{
+			final int from = 1 + (chunks - 1) * t / threads,
+			          to = 1 + (chunks - 1) * (t + 1) / threads;
+			
+			tasks.add(new Callable<Void>() {
+				public Void call()
+				{
+					for(int c = from; c < to; c++)
+						generateChunk(generator, out, c, total, seed);
+					return null;
+				}
+			});
+		}
+		
+		try {
+			for(Future<Void> future : Global.pool().invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+		
+		return out;
+	}
+	
+	/**
+	 * Generates n points in parallel (see 
+	 * {@link #generateBlock(BatchGenerator, int, long)}).
+	 */
+	public static List<Point> generate(BatchGenerator generator, int n, long seed)
+	{
+		int d = generator.dimension();
+		double[] block = generateBlock(generator, n, seed);
+		
+		List<Point> points = new ArrayList<Point>(n);
+		for(int i = 0; i < n; i++)
+		{
+			double[] values = new double[d];
+			System.arraycopy(block, i * d, values, 0, d);
+			points.add(Point.fromRaw(values));
+		}
+		
+		return points;
+	}
+	
+	/**
+	 * An infinite stream of points, generated a chunk at a time.
+	 */
+	public static Stream<Point> stream(final BatchGenerator generator, final long seed)
+	{
+		final int d = generator.dimension();
+		
+		Spliterator<Point> spliterator = new Spliterators.AbstractSpliterator<Point>(
+				Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL)
+		{
+			private final double[] buffer = new double[CHUNK * d];
+			private int chunk = 0, next = CHUNK;
+			
+			@Override
+			public boolean tryAdvance(Consumer<? super Point> action)
+			{
+				if(next == CHUNK)
+				{
+					generator.generate(new Random(seed(seed, chunk++)), buffer, 0, CHUNK);
+					next = 0;
+				}
+				
+				double[] values = new double[d];
+				System.arraycopy(buffer, next * d, values, 0, d);
+				next++;
+				
+				action.accept(Point.fromRaw(values));
+				return true;
+			}
+		};
+		
+		return StreamSupport.stream(spliterator, false);
+	}
+	
+	private static void generateChunk(BatchGenerator generator, double[] out, int chunk, int n, long seed)
+	{
+		int from = chunk * CHUNK, to = Math.min(from + CHUNK, n);
+		
+		generator.generate(new Random(seed(seed, chunk)), out, from * generator.dimension(), to - from);
+	}
+	
+	/**
+	 * Derives the seed for a chunk from the base seed (with the finalizer of 
+	 * SplitMix64), so that nearby chunks get unrelated random streams.
+	 */
+	static long seed(long seed, int chunk)
+	{
+		long z = seed + (chunk + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		
+		return z ^ (z >>> 31);
+	}
+}
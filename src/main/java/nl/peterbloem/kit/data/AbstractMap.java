@@ -22,4 +22,12 @@ public abstract class AbstractMap implements Map
 		// * return this(other(x))
 		return new CompositeMap(this, other);
 	}
+	
+	protected static void check(double[] in, double[] out, int dim)
+	{
+		if(in.length % dim != 0)
+			throw new IllegalArgumentException("Length of the input ("+in.length+") should be a multiple of the dimension ("+dim+").");
+		if(out.length < in.length)
+			throw new IllegalArgumentException("Output array (length "+out.length+") is smaller than the input array (length "+in.length+").");
+	}
 }
@@ -7,15 +7,17 @@ import java.util.*;
 
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.DecompositionSolver;
-import org.apache.commons.math3.linear.QRDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.SingularMatrixException;
 
+import nl.peterbloem.kit.Dense;
+import nl.peterbloem.kit.DenseMatrix;
+import nl.peterbloem.kit.Events;
 import nl.peterbloem.kit.MatrixFunctions;
 import nl.peterbloem.kit.Series;
-import nl.peterbloem.kit.search.Builder;
 import nl.peterbloem.kit.search.Parametrizable;
+import nl.peterbloem.kit.search.Rebuilder;
 
 /**
  * Represents an affine transformation 
@@ -24,6 +26,12 @@ public class AffineMap extends AbstractMap implements Parametrizable, Serializab
 {
 	public static int MAX_SVD_RETRIES = 50;
 	
+	/**
+	 * The number of points that are transformed together when a block of 
+	 * points is mapped.
+	 */
+	public static int BLOCK_SIZE = 256;
+	
 	private static final long serialVersionUID = 7470030390150319468L;
 	
 	protected int dim = -1;
@@ -35,6 +43,18 @@ public class AffineMap extends AbstractMap implements Parametrizable, Serializab
 	protected AffineMap inverse = null;
 	
 	protected List<Double> parameters = null;
+	
+	// * Flat (row-major) copies of the transformation and translation, used 
+	//   when mapping points. These are derived lazily from the fields above.
+	private transient double[] flatTransformation = null;
+	private transient double[] flatTranslation = null;
+	
+	// * Scratch space for rebuilding
+	private transient double[] work = null;
+	
+	// * The log of the absolute determinant of the transformation, if known
+	private transient boolean hasLogDeterminant = false;
+	private transient double logDeterminant;
 
 	protected AffineMap()
 	{
@@ -159,14 +179,19 @@ public class AffineMap extends AbstractMap implements Parametrizable, Serializab
 	{
 		if(inverse == null)
 		{
-			RealMatrix invTransform = MatrixFunctions.inverse(transformation);
+			int d = dimension();
+			double[] flatInverse = Dense.inverse(flatTransformation(), d);
+			if(flatInverse == null)
+				throw new SingularMatrixException();
 			
-			RealVector invTranslate = invTransform.operate(translation);
-			invTranslate = invTranslate.mapMultiply(-1.0);
+			double[] invTranslate = new double[d];
+			Dense.gemv(d, d, -1.0, flatInverse, flatTranslation(), 0.0, invTranslate);
+			
+			RealMatrix invTransform = new DenseMatrix(flatInverse, d, d);
 			
 			inverse = new AffineMap();
 			inverse.transformation = invTransform;
-			inverse.translation    = invTranslate;
+			inverse.translation    = new ArrayRealVector(invTranslate, false);
 			inverse.invertible = true;
 			inverse.dim = this.dim;		
 			inverse.inverse = this;
@@ -175,6 +200,33 @@ public class AffineMap extends AbstractMap implements Parametrizable, Serializab
 		return inverse;
 	}
 	
+	/**
+	 * The natural logarithm of the absolute value of the determinant of the 
+	 * transformation matrix (negative infinity if it is singular). This is 
+	 * computed once and cached.
+	 */
+	public double logAbsDeterminant()
+	{
+		if(! hasLogDeterminant)
+		{
+			int d = dimension();
+			double[] lu = flatTransformation().clone();
+			
+			double sum = Double.NEGATIVE_INFINITY;
+			if(Dense.lu(lu, d, null) != 0)
+			{
+				sum = 0.0;
+				for(int i = 0; i < d; i++)
+					sum += Math.log(Math.abs(lu[i * d + i]));
+			}
+			
+			logDeterminant = sum;
+			hasLogDeterminant = true;
+		}
+		
+		return logDeterminant;
+	}
+	
 	public int dimension()
 	{
 		return dim;
@@ -271,12 +323,12 @@ public class AffineMap extends AbstractMap implements Parametrizable, Serializab
 		return (int) ddim; 
 	}
 
-	public static Builder<AffineMap> affineMapBuilder(int dimension)
+	public static Rebuilder<AffineMap> affineMapBuilder(int dimension)
 	{
 		return new AMBuilder(dimension);
 	}
 	
-	private static class AMBuilder implements Builder<AffineMap>
+	private static class AMBuilder implements Rebuilder<AffineMap>
 	{
 		private int dimension;
 
@@ -290,6 +342,24 @@ public class AffineMap extends AbstractMap implements Parametrizable, Serializab
 		{
 			return new AffineMap(parameters);
 		}
+		
+		@Override
+		public AffineMap rebuild(AffineMap map, double[] parameters, int offset)
+		{
+			check(map, parameters, offset);
+			
+			map.set(parameters, offset);
+			return map;
+		}
+		
+		@Override
+		public void check(AffineMap map, double[] parameters, int offset)
+		{
+			Rebuilder.super.check(map, parameters, offset);
+			
+			if(map.getClass() != AffineMap.class || map.dimension() != dimension)
+				throw new IllegalArgumentException("Map ("+map+") was not created by this builder (dimension "+dimension+").");
+		}
 
 		@Override
 		public int numParameters() 
@@ -301,13 +371,205 @@ public class AffineMap extends AbstractMap implements Parametrizable, Serializab
 	@Override
 	public Point map(Point in)
 	{
-		RealVector vector = in.getVector(); //optimize here
-		RealVector out = transformation.operate(vector);
-		out = out.add(translation); // here
+		check(in);
 		
-		return new Point(out); // and here
+		double[] out = new double[dimension()];
+		apply(in.getBackingData(), 0, out, 0);
+		
+		return Point.fromRaw(out);
+	}
+	
+	@Override
+	public List<Point> map(List<Point> in)
+	{
+		int d = dimension();
+		
+		List<Point> out = new ArrayList<Point>(in.size());
+		for(Point p : in)
+		{
+			check(p);
+			
+			double[] values = new double[d];
+			apply(p.getBackingData(), 0, values, 0);
+			out.add(Point.fromRaw(values));
+		}
+		
+		return out;
+	}
+	
+	/**
+	 * Maps the block of points as a matrix multiplication followed by a 
+	 * translation. The points are copied {@link #BLOCK_SIZE} at a time into a
+	 * local buffer and multiplied by the transposed transformation with 
+	 * {@link Dense#gemm(int, int, int, double, double[], double[], double, double[])}, 
+	 * so in and out may be the same array, and the map may be used from 
+	 * several threads at once.
+	 */
+	@Override
+	public void map(double[] in, double[] out)
+	{
+		int d = dimension();
+		check(in, out, d);
+		
+		double[] transposed = Dense.transpose(flatTransformation(), d, d), 
+		         s = flatTranslation();
+		
+		int blockLength = Math.min(BLOCK_SIZE, in.length / d) * d;
+		double[] x = new double[blockLength], y = new double[blockLength];
+		
+		for(int from = 0; from < in.length; from += blockLength)
+		{
+			int to = Math.min(from + blockLength, in.length);
+			int n = (to - from) / d;
+			
+			System.arraycopy(in, from, x, 0, to - from);
+			for(int p = 0; p < n; p++)
+				System.arraycopy(s, 0, y, p * d, d);
+			
+			// * y = x T^T + y, with the points as the rows of x and y
+			Dense.gemm(n, d, d, 1.0, x, transposed, 1.0, y);
+			
+			System.arraycopy(y, 0, out, from, to - from);
+		}
+	}
+	
+	/**
+	 * Maps the single point starting at in[inOffset] to the dimension() 
+	 * values starting at out[outOffset]. The two regions should not overlap.
+	 */
+	public void map(double[] in, int inOffset, double[] out, int outOffset)
+	{
+		int d = dimension();
+		if(inOffset < 0 || inOffset + d > in.length || outOffset < 0 || outOffset + d > out.length)
+			throw new IndexOutOfBoundsException("Point of dimension "+d+" does not fit at the given offsets.");
+		
+		apply(in, inOffset, out, outOffset);
+	}
+	
+	private void check(Point point)
+	{
+		if(point.dimensionality() != dimension())
+			throw new IllegalArgumentException("Dimension of the point ("+point.dimensionality()+") does not match the dimension of the map ("+dimension()+").");
+	}
+	
+	/**
+	 * Maps the single point starting at in[inOffset] to out[outOffset]. The 
+	 * two regions should not overlap. Two and three dimensions are unrolled.
+	 */
+	private void apply(double[] in, int inOffset, double[] out, int outOffset)
+	{
+		int d = dimension();
+		double[] t = flatTransformation(), s = flatTranslation();
+		
+		if(d == 2)
+		{
+			double x = in[inOffset], y = in[inOffset + 1];
+			out[outOffset]     = s[0] + t[0] * x + t[1] * y;
+			out[outOffset + 1] = s[1] + t[2] * x + t[3] * y;
+			return;
+		}
+		
+		if(d == 3)
+		{
+			double x = in[inOffset], y = in[inOffset + 1], z = in[inOffset + 2];
+			out[outOffset]     = s[0] + t[0] * x + t[1] * y + t[2] * z;
+			out[outOffset + 1] = s[1] + t[3] * x + t[4] * y + t[5] * z;
+			out[outOffset + 2] = s[2] + t[6] * x + t[7] * y + t[8] * z;
+			return;
+		}
+		
+		for(int r = 0; r < d; r++)
+		{
+			double sum = s[r];
+			int rd = r * d;
+			for(int c = 0; c < d; c++)
+				sum += t[rd + c] * in[inOffset + c];
+			out[outOffset + r] = sum;
+		}
+	}
+	
+	private double[] flatTransformation()
+	{
+		if(flatTransformation == null)
+		{
+			int d = dimension();
+			double[] flat = new double[d * d];
+			for(int r = 0; r < d; r++)
+				for(int c = 0; c < d; c++)
+					flat[r * d + c] = transformation.getEntry(r, c);
+			
+			flatTransformation = flat;
+		}
+		
+		return flatTransformation;
+	}
+	
+	private double[] flatTranslation()
+	{
+		if(flatTranslation == null)
+			flatTranslation = translation.toArray();
+		
+		return flatTranslation;
+	}
+	
+	/**
+	 * Sets the transformation and translation of this map in place from the 
+	 * given parameters (in the order of {@link #parameters()}).
+	 */
+	void set(double[] parameters, int offset)
+	{
+		int d = dimension();
+		
+		for(int i = 0; i < d; i++)
+			for(int j = 0; j < d; j++)
+				transformation.setEntry(i, j, parameters[offset + i * d + j]);
+		
+		for(int i = 0; i < d; i++)
+			translation.setEntry(i, parameters[offset + d * d + i]);
+		
+		changed();
+		
+		invertible = MatrixFunctions.isInvertible(flatTransformation(), d, work());
+	}
+	
+	/**
+	 * Should be called after the transformation or translation have been 
+	 * changed in place. Refreshes the flat copies, and clears the cached 
+	 * inverse and parameters, so that they are recomputed when next 
+	 * requested.
+	 */
+	protected void changed()
+	{
+		int d = dimension();
+		
+		if(flatTransformation != null)
+			for(int r = 0; r < d; r++)
+				for(int c = 0; c < d; c++)
+					flatTransformation[r * d + c] = transformation.getEntry(r, c);
+		
+		if(flatTranslation != null)
+			for(int r = 0; r < d; r++)
+				flatTranslation[r] = translation.getEntry(r);
+		
+		// * The old inverse stays valid for the old map
+		if(inverse != null && inverse.inverse == this)
+			inverse.inverse = null;
+		
+		inverse = null;
+		parameters = null;
+		hasLogDeterminant = false;
+	}
+	
+	/**
+	 * A d by d scratch array for rebuilding this map in place.
+	 */
+	protected double[] work()
+	{
+		if(work == null)
+			work = new double[dimension() * dimension()];
+		
+		return work;
 	}
-
 
 	/**
 	 * Returns the least squares solution mapping set x into set y
@@ -319,56 +581,32 @@ public class AffineMap extends AbstractMap implements Parametrizable, Serializab
 	 */
 	public static AffineMap find(List<Point> xSet, List<Point> ySet)
 	{
-		if(xSet.size() == 0)
-			return null;
-		
-		// * create data matrices x and y
-		//   (each point is a row)
-		RealMatrix y = new Array2DRowRealMatrix(ySet.size(), ySet.get(0).size());
-		for(int rowIndex : series(ySet.size()))
-			y.setRow(rowIndex, ySet.get(rowIndex).getBackingData());
-		
-		// -- with x we add an extra 'bias node' entry
-		RealMatrix x = new Array2DRowRealMatrix(ySet.size(), ySet.get(0).size() + 1);
-		for(int rowIndex : series(xSet.size()))
-		{
-			Point rowPoint = xSet.get(rowIndex); 
-			for(int columnIndex : series(rowPoint.size()))
-				x.setEntry(rowIndex, columnIndex, rowPoint.get(columnIndex));
-			x.setEntry(rowIndex, rowPoint.size(), 1.0); // bias node
+		Object event = Events.begin(Events.AFFINE_MAP_FIND);
+		
+		AffineMap result = null;
+		try {
+			return result = AffineMapSolver.find(xSet, ySet);
+		} finally {
+			Events.end(event, xSet.size(), result == null ? 0 : result.dimension(), 0, result != null);
 		}
+	}
+	
+	/**
+	 * Returns the weighted least squares solution mapping set x into set y.
+	 * 
+	 * @param weights A nonnegative weight for each pair of points.
+	 * @return An affine map, or null if such a map could not be found.
+	 */
+	public static AffineMap find(List<Point> xSet, List<Point> ySet, List<Double> weights)
+	{
+		Object event = Events.begin(Events.AFFINE_MAP_FIND);
 		
-		// * Compute the SVD of x, to find the pseudoinverse 
-//		int retries = 0;
-//		boolean success = false;
-//		SingularValueDecomposition svd = null;
-//		while(! success)
-//		{
-//			try 
-//			{
-//				svd = new SingularValueDecompositionImpl(x);
-//				success = true;
-//			} catch (InvalidMatrixException e)
-//			{
-//				retries++;
-//				if(retries > MAX_SVD_RETRIES)
-//					return null;
-//			}
-//		}
-		
-		QRDecomposition qr = new QRDecomposition(x);
-		
-		DecompositionSolver solver = qr.getSolver();
-		RealMatrix weightsT = solver.solve(y);
-		
-		RealMatrix weights = weightsT.transpose();
-				
-		int d = ySet.get(0).size();
-		
-		RealMatrix transform = weights.getSubMatrix(0, d-1, 0, d-1);
-		RealVector translate = weights.getColumnVector(d);
-		
-		return new AffineMap(transform, translate);
+		AffineMap result = null;
+		try {
+			return result = AffineMapSolver.find(xSet, ySet, weights);
+		} finally {
+			Events.end(event, xSet.size(), result == null ? 0 : result.dimension(), 0, result != null);
+		}
 	}
 
 }
@@ -0,0 +1,359 @@
+package nl.peterbloem.kit.data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+import nl.peterbloem.kit.Global;
+
+/**
+ * <p>
+ * Finds the least squares affine map between two sets of corresponding points
+ * in a single pass over the data, without storing the points.
+ * </p><p>
+ * Instead of solving the full n x (d+1) system, the solver accumulates the
+ * (weighted) means of x and y, and the centered second moments
+ * S_xx = sum_i w_i (x_i - mx)(x_i - mx)^T and
+ * S_xy = sum_i w_i (x_i - mx)(y_i - my)^T. The solution of the least squares
+ * problem is then A = S_xy^T S_xx^-1 and t = my - A mx. Centering the moments
+ * (with Welford-style updates) avoids most of the loss of precision that
+ * comes with accumulating the raw normal equations.
+ * </p><p>
+ * Memory use is O(d^2), regardless of the number of points. Points can be
+ * added one by one or in batches, and the map can be retrieved at any time.
+ * Solvers that have seen different parts of the data can be merged, so that
+ * the accumulation can be split over multiple threads.
+ * </p><p>
+ * This class is not thread-safe: use one solver per thread, and merge them
+ * afterwards.
+ * </p>
+ *
+ * @author Peter
+ */
+public class AffineMapSolver implements Serializable
+{
+	private static final long serialVersionUID = -3000426000981536537L;
+
+	/**
+	 * Below this number of points, {@link #find(List, List)} does not split
+	 * the work over multiple threads.
+	 */
+	public static int PARALLEL_THRESHOLD = 100000;
+
+	private int dim;
+
+	private double weightSum = 0.0;
+	private long n = 0;
+
+	private double[] xMean, yMean;
+	// * Centered second moments, flat and row-major
+	private double[] sxx, sxy;
+
+	// * Buffers for the per-point update
+	private transient double[] dx, dy;
+
+	public AffineMapSolver(int dim)
+	{
+		this.dim = dim;
+
+		xMean = new double[dim];
+		yMean = new double[dim];
+		sxx = new double[dim * dim];
+		sxy = new double[dim * dim];
+	}
+
+	public void add(Point x, Point y)
+	{
+		add(x.getBackingData(), y.getBackingData(), 1.0);
+	}
+
+	public void add(Point x, Point y, double weight)
+	{
+		add(x.getBackingData(), y.getBackingData(), weight);
+	}
+
+	/**
+	 * Adds a batch of corresponding points.
+	 */
+	public void add(List<Point> xs, List<Point> ys)
+	{
+		if(xs.size() != ys.size())
+			throw new IllegalArgumentException("Number of x points ("+xs.size()+") should match the number of y points ("+ys.size()+").");
+
+		for(int i = 0; i < xs.size(); i++)
+			add(xs.get(i).getBackingData(), ys.get(i).getBackingData(), 1.0);
+	}
+
+	/**
+	 * Adds a batch of weighted corresponding points.
+	 */
+	public void add(List<Point> xs, List<Point> ys, List<Double> weights)
+	{
+		if(xs.size() != ys.size() || xs.size() != weights.size())
+			throw new IllegalArgumentException("Number of x points ("+xs.size()+"), y points ("+ys.size()+") and weights ("+weights.size()+") should match.");
+
+		for(int i = 0; i < xs.size(); i++)
+			add(xs.get(i).getBackingData(), ys.get(i).getBackingData(), weights.get(i));
+	}
+
+	/**
+	 * Adds a single correspondence x -> y with the given weight.
+	 *
+	 * @param x
+	 * @param y
+	 * @param weight A nonnegative weight. Correspondences with weight 0 are
+	 * 	ignored.
+	 */
+	public void add(double[] x, double[] y, double weight)
+	{
+		if(weight < 0.0)
+			throw new IllegalArgumentException("Weight ("+weight+") cannot be negative.");
+		if(weight == 0.0)
+			return;
+
+		if(dx == null)
+		{
+			dx = new double[dim];
+			dy = new double[dim];
+		}
+
+		n++;
+		weightSum += weight;
+		double r = weight / weightSum;
+
+		// * Update the means, keeping the difference with the old mean for x
+		//   and the difference with the new mean for y
+		for(int i = 0; i < dim; i++)
+		{
+			dx[i] = x[i] - xMean[i];
+			xMean[i] += dx[i] * r;
+
+			yMean[i] += (y[i] - yMean[i]) * r;
+			dy[i] = y[i] - yMean[i];
+		}
+
+		for(int i = 0; i < dim; i++)
+		{
+			double wdx = weight * dx[i];
+			int id = i * dim;
+			for(int j = 0; j < dim; j++)
+			{
+				sxx[id + j] += wdx * (x[j] - xMean[j]);
+				sxy[id + j] += wdx * dy[j];
+			}
+		}
+	}
+
+	/**
+	 * Adds the statistics accumulated by another solver to this one. After the
+	 * merge, this solver is equivalent to one that has seen the data of
+	 * both.
+	 *
+	 * @param other
+	 * @return This solver
+	 */
+	public AffineMapSolver merge(AffineMapSolver other)
+	{
+		if(other.dim != dim)
+			throw new IllegalArgumentException("Dimension of other solver ("+other.dim+") does not match this solver's ("+dim+").");
+		if(other.weightSum == 0.0)
+			return this;
+
+		double total = weightSum + other.weightSum;
+		double r = other.weightSum / total;
+		double c = weightSum * other.weightSum / total;
+
+		double[] deltaX = new double[dim], deltaY = new double[dim];
+		for(int i = 0; i < dim; i++)
+		{
+			deltaX[i] = other.xMean[i] - xMean[i];
+			deltaY[i] = other.yMean[i] - yMean[i];
+		}
+
+		for(int i = 0; i < dim; i++)
+			for(int j = 0; j < dim; j++)
+			{
+				int k = i * dim + j;
+				sxx[k] += other.sxx[k] + c * deltaX[i] * deltaX[j];
+				sxy[k] += other.sxy[k] + c * deltaX[i] * deltaY[j];
+			}
+
+		for(int i = 0; i < dim; i++)
+		{
+			xMean[i] += deltaX[i] * r;
+			yMean[i] += deltaY[i] * r;
+		}
+
+		weightSum = total;
+		n += other.n;
+
+		return this;
+	}
+
+	/**
+	 * Resets the solver to its state before any points were added.
+	 */
+	public void clear()
+	{
+		weightSum = 0.0;
+		n = 0;
+
+		for(int i = 0; i < dim; i++)
+		{
+			xMean[i] = 0.0;
+			yMean[i] = 0.0;
+		}
+
+		for(int i = 0; i < dim * dim; i++)
+		{
+			sxx[i] = 0.0;
+			sxy[i] = 0.0;
+		}
+	}
+
+	/**
+	 * The number of correspondences (with nonzero weight) seen so far.
+	 */
+	public long size()
+	{
+		return n;
+	}
+
+	public double weightSum()
+	{
+		return weightSum;
+	}
+
+	public int dimension()
+	{
+		return dim;
+	}
+
+	/**
+	 * Returns the least squares affine map for the correspondences seen so
+	 * far.
+	 *
+	 * @return An affine map, or null if no map could be found (ie. if no points
+	 * 	have been added or the x points do not span the space).
+	 */
+	public AffineMap solve()
+	{
+		if(n == 0)
+			return null;
+
+		RealMatrix xx = new Array2DRowRealMatrix(dim, dim);
+		RealMatrix xy = new Array2DRowRealMatrix(dim, dim);
+		for(int i = 0; i < dim; i++)
+			for(int j = 0; j < dim; j++)
+			{
+				xx.setEntry(i, j, sxx[i * dim + j]);
+				xy.setEntry(i, j, sxy[i * dim + j]);
+			}
+
+		RealMatrix transform;
+		try {
+			// * S_xx A^T = S_xy. The singularity threshold is relative to the 
+			//   scale of S_xx, so that nearly degenerate x points are rejected
+			//   whatever their units.
+			double threshold = MVN.THRESHOLD * xx.getNorm();
+			transform = new QRDecomposition(xx, threshold).getSolver().solve(xy).transpose();
+		} catch(SingularMatrixException e)
+		{
+			return null;
+		}
+
+		RealVector translate = new ArrayRealVector(yMean).subtract(
+				transform.operate(new ArrayRealVector(xMean)));
+
+		return new AffineMap(transform, translate);
+	}
+
+	/**
+	 * Finds the least squares affine map from xSet to ySet. For large inputs
+	 * the accumulation is split over {@link Global#numThreads()} threads.
+	 *
+	 * @return An affine map, or null if no map could be found.
+	 */
+	public static AffineMap find(List<Point> xSet, List<Point> ySet)
+	{
+		return find(xSet, ySet, null);
+	}
+
+	/**
+	 * Finds the weighted least squares affine map from xSet to ySet. For large
+	 * inputs the accumulation is split over {@link Global#numThreads()} threads.
+	 *
+	 * @param weights A nonnegative weight for each correspondence, or null
+	 * 	for uniform weights.
+	 * @return An affine map, or null if no map could be found.
+	 */
+	public static AffineMap find(
+			final List<Point> xSet, final List<Point> ySet, final List<Double> weights)
+	{
+		if(xSet.size() != ySet.size())
+			throw new IllegalArgumentException("Number of x points ("+xSet.size()+") should match the number of y points ("+ySet.size()+").");
+		if(weights != null && weights.size() != xSet.size())
+			throw new IllegalArgumentException("Number of weights ("+weights.size()+") should match the number of points ("+xSet.size()+").");
+		if(xSet.size() == 0)
+			return null;
+
+		final int dim = xSet.get(0).dimensionality();
+		final int size = xSet.size();
+		int threads = Global.numThreads();
+
+		if(size < PARALLEL_THRESHOLD || threads < 2)
+			return accumulate(xSet, ySet, weights, 0, size, dim).solve();
+
+		List<Callable<AffineMapSolver>> tasks = new ArrayList<Callable<AffineMapSolver>>(threads);
+		for(int t = 0; t < threads; t++)
+		{
+			final int from = (int)((long) size * t / threads),
+			          to = (int)((long) size * (t + 1) / threads);
+
+			tasks.add(new Callable<AffineMapSolver>() {
+				public AffineMapSolver call()
+				{
+					return accumulate(xSet, ySet, weights, from, to, dim);
+				}
+			});
+		}
+
+		AffineMapSolver result = new AffineMapSolver(dim);
+		try {
+			for(Future<AffineMapSolver> future : Global.pool().invokeAll(tasks))
+				result.merge(future.get());
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+
+		return result.solve();
+	}
+
+	private static AffineMapSolver accumulate(
+			List<Point> xSet, List<Point> ySet, List<Double> weights,
+			int from, int to, int dim)
+	{
+		AffineMapSolver solver = new AffineMapSolver(dim);
+		for(int i = from; i < to; i++)
+			solver.add(
+					xSet.get(i).getBackingData(), ySet.get(i).getBackingData(),
+					weights == null ? 1.0 : weights.get(i));
+
+		return solver;
+	}
+}
@@ -0,0 +1,47 @@
+package nl.peterbloem.kit.data;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import nl.peterbloem.kit.Generator;
+
+/**
+ * A generator of points that can fill flat arrays in bulk.
+ * 
+ * The seeded methods are reproducible: the points are generated in chunks of 
+ * {@link AbstractBatchGenerator#CHUNK} points, each drawn from its own random 
+ * generator with a seed derived from the given seed and the index of the 
+ * chunk. The chunks can therefore be generated in parallel, and the result 
+ * depends only on the seed, not on the number of threads. A stream with a 
+ * given seed starts with the same points as a batch with that seed. 
+ * 
+ * @author Peter
+ */
+public interface BatchGenerator extends Generator<Point>
+{
+	public int dimension();
+	
+	/**
+	 * Writes n points to out, as a flat row-major array starting at 
+	 * out[offset], drawing from the given random generator. Implementations 
+	 * should draw only from the given generator, and should be safe to call 
+	 * from several threads at once (with different random generators).
+	 */
+	public void generate(Random random, double[] out, int offset, int n);
+	
+	/**
+	 * Generates n points in parallel into a flat row-major array.
+	 */
+	public double[] generateBlock(int n, long seed);
+	
+	/**
+	 * Generates n points in parallel.
+	 */
+	public List<Point> generate(int n, long seed);
+	
+	/**
+	 * An infinite, lazily generated stream of points.
+	 */
+	public Stream<Point> stream(long seed);
+}
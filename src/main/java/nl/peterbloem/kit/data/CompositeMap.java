@@ -6,6 +6,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
 import nl.peterbloem.kit.Series;
 
 /**
@@ -14,6 +17,11 @@ import nl.peterbloem.kit.Series;
  * </p><p>
  * A CompositeMaps made with the functions (f, g, h) will represent the function
  * f(g(h(x)))).
+ * </p><p>
+ * Consecutive affine components are fused into a single affine map when the 
+ * composite is created, so later changes to those components (for instance 
+ * by a {@link nl.peterbloem.kit.search.Rebuilder}) are not reflected in the 
+ * composite.
  * </p>
  * 
  * 
@@ -45,6 +53,47 @@ public class CompositeMap extends AbstractMap
 		}
 		
 		Collections.reverse(components);
+		
+		components = fuse(components);
+	}
+	
+	/**
+	 * Replaces every run of consecutive affine maps by a single affine map, so
+	 * that a chain of affine maps costs a single matrix multiplication per 
+	 * point. The maps are fused by multiplying their matrices into a plain 
+	 * AffineMap, rather than through compose(), since subclasses like 
+	 * Similitude compose their parameters, which is only exact in two 
+	 * dimensions.
+	 * 
+	 * @param components The components in the order that they are applied
+	 * @return
+	 */
+	private static List<Map> fuse(List<Map> components)
+	{
+		List<Map> fused = new ArrayList<Map>(components.size());
+		
+		for(Map map : components)
+		{
+			int last = fused.size() - 1;
+			if(last >= 0 && map instanceof AffineMap && fused.get(last) instanceof AffineMap)
+				fused.set(last, fuse((AffineMap) map, (AffineMap) fused.get(last)));
+			else
+				fused.add(map);
+		}
+		
+		return fused;
+	}
+	
+	/**
+	 * The affine map x -> second(first(x)).
+	 */
+	private static AffineMap fuse(AffineMap second, AffineMap first)
+	{
+		RealMatrix transformation = second.getTransformation().multiply(first.getTransformation());
+		RealVector translation = second.getTransformation()
+				.operate(first.getTranslation()).add(second.getTranslation());
+		
+		return new AffineMap(transformation, translation);
 	}
 
 	@Override
@@ -57,6 +106,19 @@ public class CompositeMap extends AbstractMap
 		return p;
 	}
 
+	@Override
+	public void map(double[] in, double[] out)
+	{
+		check(in, out, dimension());
+		
+		double[] source = in;
+		for(Map map : components)
+		{
+			map.map(source, out);
+			source = out;
+		}
+	}
+
 	@Override
 	public boolean invertible()
 	{
@@ -1,14 +1,20 @@
 package nl.peterbloem.kit.data;
 
 import static java.lang.Math.max;
-import static nl.peterbloem.kit.Series.series;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -16,13 +22,28 @@ import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
 
@@ -30,10 +51,11 @@ import au.com.bytecode.opencsv.CSVParser;
 import au.com.bytecode.opencsv.CSVReader;
 import au.com.bytecode.opencsv.CSVWriter;
 import nl.peterbloem.kit.AbstractGenerator;
+import nl.peterbloem.kit.Events;
 import nl.peterbloem.kit.Generator;
 import nl.peterbloem.kit.Global;
 import nl.peterbloem.kit.Pair;
-import nl.peterbloem.kit.Series;
+import nl.peterbloem.kit.Sampling;
 import nl.peterbloem.kit.distance.SquaredEuclideanDistance;
 
 /**
@@ -45,6 +67,9 @@ public class Datasets
 {
 	public static double distance(Point point, List<Point> data)
 	{
+		if(data instanceof FloatPoints)
+			return ((FloatPoints) data).distance(point);
+		
 		double d = Double.POSITIVE_INFINITY;
 		for(Point p : data)
 			d = Math.min(d, SquaredEuclideanDistance.dist(point, p));
@@ -73,7 +98,7 @@ public class Datasets
 	{
 		List<P> res = new ArrayList<P>(n);
 		
-		for(int i : series(n))
+		for(int i = 0; i < n; i++)
 			res.add(data.get(Global.random().nextInt(data.size())));
 		
 		return res;
@@ -86,22 +111,17 @@ public class Datasets
 	 */
 	public static <P> List<P> sampleWithoutReplacement(List<P> data, int n)
 	{
+		if(n > data.size())
+			throw new IllegalArgumentException("Cannot sample "+n+" elements without replacement from "+data.size()+".");
 		
-		// *  Shuffle the list and copy the first n items
-		List<P> res = new ArrayList<P>(data);
-		Collections.shuffle(res);
-		
+		// * Sample the indices, rather than shuffling a copy of the data
+		int[] indices = Sampling.sample(n, data.size());
 		
-		List<P> res2 = null;
-		try {
-			// * Copy the sublist over, so the gc can clean up the shuffled list.
-			res2 = new ArrayList<P>(res.subList(0, n));
-		} catch(IndexOutOfBoundsException e)
-		{
-			throw new RuntimeException("Data.size: " + data.size(), e);
-		}
+		List<P> res = new ArrayList<P>(n);
+		for(int index : indices)
+			res.add(data.get(index));
 		
-		return res2;
+		return res;
 	}
 	
 	/**
@@ -121,7 +141,7 @@ public class Datasets
 		
 		List<P> first = new ArrayList<P>(nFirst);
 		
-		for(int i : Series.series(nFirst))
+		for(int i = 0; i < nFirst; i++)
 		{
 			int draw = Global.random().nextInt(dataset.size());
 			first.add(dataset.get(draw));
@@ -135,7 +155,7 @@ public class Datasets
 	 * Creates a generator for random points on the bi-unit cube of the given 
 	 * dimension
 	 */
-	public static Generator<Point> cube(int dimension)
+	public static BatchGenerator cube(int dimension)
 	{
 		return new Cube(dimension);
 	}
@@ -145,34 +165,31 @@ public class Datasets
 	 * dimension. The radius is the radius of the inscribed sphere (ie. the distance
 	 * from the origin to one of the sides of the cube)
 	 */
-	public static Generator<Point> cube(int dimension, double radius)
+	public static BatchGenerator cube(int dimension, double radius)
 	{
 		return new Cube(dimension, radius);
 	}
 	
-	private static class Cube extends AbstractGenerator<Point>
+	private static class Cube extends AbstractBatchGenerator
 	{
-		protected int dim;
 		protected double rad = 1.0;
 		
 		public Cube(int dim)
 		{
-			this.dim = dim;
+			super(dim);
 		}
 
 		public Cube(int dim, double rad)
 		{
-			this.dim = dim;
+			super(dim);
 			this.rad = rad;
 		}
 		
-		public Point generate()
+		@Override
+		protected void generate(Random random, double[] out, int offset)
 		{
-			double[] vector = new double[dim];
-			for(int i = 0; i < dim; i++)
-				vector[i] = Global.random().nextDouble()*(2 * rad) - rad;
-			
-			return new Point(vector);
+			for(int i = 0; i < dimension; i++)
+				out[offset + i] = random.nextDouble()*(2 * rad) - rad;
 		}
 	}
 	
@@ -182,23 +199,24 @@ public class Datasets
 	 * 
 	 * From this description: http://people.cs.uchicago.edu/~dinoj/manifold/swissroll.html
 	 */
-	public static Generator<Point> swiss()
+	public static BatchGenerator swiss()
 	{
 		return new Swiss(0.0);
 	}
 
-	public static Generator<Point> swiss(double noise)
+	public static BatchGenerator swiss(double noise)
 	{
 		return new Swiss(noise);
 	}
 	
-	private static class Swiss extends AbstractGenerator<Point>
+	private static class Swiss extends AbstractBatchGenerator
 	{		
 		List<MVN> mvns = new ArrayList<MVN>();
 		MVN noise;
 		
 		public Swiss(double noise)
 		{
+			super(3);
 			this.noise = noise == 0.0 ? null : new MVN(3, noise);
 			
 			mvns.add(new MVN(new Point( 7.5,   7.5), 1.0));
@@ -208,53 +226,92 @@ public class Datasets
 			
 		}
 
-		public Point generate()
+		@Override
+		public void generate(Random random, double[] out, int offset, int n)
+		{
+			// * one noise buffer per call (ie. per chunk), rather than per point
+			double[] buffer = new double[3];
+			for(int i = 0; i < n; i++)
+				point(random, out, offset + i * 3, buffer);
+		}
+
+		@Override
+		protected void generate(Random random, double[] out, int offset)
+		{
+			point(random, out, offset, new double[3]);
+		}
+		
+		private void point(Random random, double[] out, int offset, double[] buffer)
 		{
-			int i = Global.random().nextInt(mvns.size());
+			int i = random.nextInt(mvns.size());
 	
 			// * 2D point
-			Point p = mvns.get(i).generate();
-
-			if(noise == null)
-				return new Point(
-					p.get(0) * Math.cos(p.get(0)),
-					p.get(1),
-					p.get(0) * Math.cos(p.get(0)));
+			mvns.get(i).generate(random, out, offset, 1);
+			double x = out[offset], y = out[offset + 1];
 			
-			Point n = noise.generate();
-			return new Point(
-					p.get(0) * Math.cos(p.get(0)) + n.get(0),
-					p.get(1) + n.get(1),
-					p.get(0) * Math.cos(p.get(0)) + n.get(2));
+			out[offset]     = x * Math.cos(x);
+			out[offset + 1] = y;
+			out[offset + 2] = x * Math.cos(x);
+
+			if(noise != null)
+			{
+				noise.generate(random, buffer, 0, 1);
+				for(int j = 0; j < 3; j++)
+					out[offset + j] += buffer[j];
+			}
 		}
 	}	
 
-	public static Generator<Point> addNoise(Generator<Point> base, double var)
+	public static BatchGenerator addNoise(Generator<Point> base, double var)
 	{
 		return new Noisy(base, var);
 	}
 	
-	private static class Noisy extends AbstractGenerator<Point> 
+	/**
+	 * The seeded methods are only reproducible if the master generator is a 
+	 * {@link BatchGenerator}. Otherwise, its points come from 
+	 * {@link Global#random()}.
+	 */
+	private static class Noisy extends AbstractBatchGenerator 
 	{
 		Generator<Point> master;
 		MVN noise;
 
 		public Noisy(Generator<Point> master, double var)
 		{
+			super(master instanceof BatchGenerator ? 
+					((BatchGenerator) master).dimension() : 
+					master.generate().dimensionality());
+			
 			this.master = master;
-			noise = new MVN(master.generate().dimensionality(), var);
+			noise = new MVN(dimension, var);
 		}
 
 		@Override
-		public Point generate()
+		public void generate(Random random, double[] out, int offset, int n)
 		{
-			Point base = master.generate();
-			Point n = noise.generate();
-			double [] b = base.getBackingData();
-			for(int i = 0; i < b.length; i++)
-				b[i] += n.get(i);
+			// * one noise buffer per call (ie. per chunk), rather than per point
+			double[] buffer = new double[dimension];
+			for(int i = 0; i < n; i++)
+				point(random, out, offset + i * dimension, buffer);
+		}
+
+		@Override
+		protected void generate(Random random, double[] out, int offset)
+		{
+			point(random, out, offset, new double[dimension]);
+		}
+		
+		private void point(Random random, double[] out, int offset, double[] buffer)
+		{
+			if(master instanceof BatchGenerator)
+				((BatchGenerator) master).generate(random, out, offset, 1);
+			else
+				System.arraycopy(master.generate().getBackingData(), 0, out, offset, dimension);
 			
-			return Point.fromRaw(b);
+			noise.generate(random, buffer, 0, 1);
+			for(int i = 0; i < dimension; i++)
+				out[offset + i] += buffer[i];
 		}
 	}
 	
@@ -266,50 +323,48 @@ public class Datasets
 	 * @param tMax
 	 * @return
 	 */
-	public static Generator<Point> spiral(double tMin, double tMax)
+	public static BatchGenerator spiral(double tMin, double tMax)
 	{
 		return new LogSpiral(tMin, tMax);
 	}	
 	
-	public static class LogSpiral extends AbstractGenerator<Point>
+	public static class LogSpiral extends AbstractBatchGenerator
 	{
 		double tMin, tMax;
 
 		public LogSpiral(double tMin, double tMax)
 		{
-			super();
+			super(2);
 			this.tMin = tMin;
 			this.tMax = tMax;
 		}
 
 		@Override
-		public Point generate()
+		protected void generate(Random random, double[] out, int offset)
 		{
-			double t = Global.random().nextDouble();
+			double t = random.nextDouble();
 			t = t * (tMax - tMin) + tMin;
 			
-			
-			double x = Math.exp(0.1 * t) * Math.cos(t),
-			       y = Math.exp(0.1 * t) * Math.sin(t);
-			
-			return new Point(x, y);
+			out[offset]     = Math.exp(0.1 * t) * Math.cos(t);
+			out[offset + 1] = Math.exp(0.1 * t) * Math.sin(t);
 		}
 	}
 	
 	/**
 	 * Three small MVNs in R^2
 	 */
-	public static Generator<Point> three()
+	public static BatchGenerator three()
 	{
 		return new Three();
 	}
 	
-	private static class Three extends AbstractGenerator<Point>
+	private static class Three extends AbstractBatchGenerator
 	{		
 		List<MVN> mvns = new ArrayList<MVN>();
 		
 		public Three()
 		{
+			super(2);
 			
 			mvns.add(new MVN(new Point(-0.5, -0.5), 0.1));
 			mvns.add(new MVN(new Point(-0.5,  0.5), 0.1));
@@ -317,11 +372,12 @@ public class Datasets
 			
 		}
 
-		public Point generate()
+		@Override
+		protected void generate(Random random, double[] out, int offset)
 		{
-			int i = Global.random().nextInt(3);
+			int i = random.nextInt(3);
 	
-			return mvns.get(i).generate();
+			mvns.get(i).generate(random, out, offset, 1);
 		}
 	}
 	
@@ -329,7 +385,7 @@ public class Datasets
 	 * Creates a generator for random points on a sphere of the given dimension 
 	 * with radius 1.0
 	 */
-	public static Generator<Point> sphere(int dimension)
+	public static BatchGenerator sphere(int dimension)
 	{
 		return new Sphere(dimension, 1.0);
 	}
@@ -339,57 +395,53 @@ public class Datasets
 	 * Creates a generator for random points on a sphere of the given dimension 
 	 * and radius
 	 */
-	public static Generator<Point> sphere(int dimension, double radius)
+	public static BatchGenerator sphere(int dimension, double radius)
 	{
 		return new Sphere(dimension, radius);
 	}	
 	
-	private static class Sphere extends AbstractGenerator<Point>
+	private static class Sphere extends AbstractBatchGenerator
 	{
-		protected int dim;
 		protected double radius;
 		
 		public Sphere(int dim, double radius)
 		{
-			this.dim = dim;
+			super(dim);
 			this.radius = radius;
 		}
 
-		public Point generate()
+		@Override
+		protected void generate(Random random, double[] out, int offset)
 		{
 			// ** Draw a vector with standard normal random entries 
-			double[] vector = new double[dim];
-			for(int i = 0; i < dim; i++)
-				vector[i] = Global.random().nextGaussian();
-			
+			for(int i = 0; i < dimension; i++)
+				out[offset + i] = random.nextGaussian();
 			
 			double length = 0;
-			for(int i = 0; i < dim; i++)
-				length += vector[i]*vector[i];
+			for(int i = 0; i < dimension; i++)
+				length += out[offset + i]*out[offset + i];
 			length = Math.sqrt(length);
 			
 			// ** Normalize it (the distribution is now uniform over the
 			//    unit sphere)
 			if(length != 0.0)
-				for(int i = 0; i < dim; i++)
-					vector[i] /= length;
+				for(int i = 0; i < dimension; i++)
+					out[offset + i] /= length;
 			
 			// ** Extend to the required radius
 			if(radius != 1.0)
-				for(int i = 0; i < dim; i++)
-					vector[i] *= radius;
-			
-			return new Point(vector);
+				for(int i = 0; i < dimension; i++)
+					out[offset + i] *= radius;
 		}
 	}
 	
-	public static Generator<Point> ball(int dim, double radius)
+	public static BatchGenerator ball(int dim, double radius)
 	{
 		return new Ball(dim, radius);
 	}	
 	
 	
-	public static Generator<Point> ball(int dim)
+	public static BatchGenerator ball(int dim)
 	{
 		return new Ball(dim, 1.0);
 	}	
@@ -403,24 +455,22 @@ public class Datasets
 			this.ballRadius = radius;
 		}
 
-		public Point generate()
+		@Override
+		protected void generate(Random random, double[] out, int offset)
 		{
 			// * draw a random point on the unit sphere
-			Point point = super.generate();
-			double[] p = point.getBackingData();
+			super.generate(random, out, offset);
 			
 			// * multiply it by a unirandom point from the unit interval
 			//   raised to the power of 1/d
-			double r = Global.random().nextDouble();
-			for(int i = 0; i < dim; i++)
-				p[i] *= Math.pow(r, 1.0/dim);
+			double r = random.nextDouble();
+			for(int i = 0; i < dimension; i++)
+				out[offset + i] *= Math.pow(r, 1.0/dimension);
 			
 			// ** Extend to the required radius
 			if(ballRadius != 1.0)
-				for(int i = 0; i < dim; i++)
-					p[i] *= ballRadius;
-			
-			return new Point(p);
+				for(int i = 0; i < dimension; i++)
+					out[offset + i] *= ballRadius;
 		}
 	}
 	
@@ -488,19 +538,102 @@ public class Datasets
 	 */
 	public static List<Point> readCSV(File file) throws IOException
 	{
-		List<Point> data = new ArrayList<Point>();
+		final List<Point> data = new ArrayList<Point>();
+		Object event = Events.begin(Events.READ_CSV);
+		boolean success = false;
 		
+		try {
+			parseCSV(file, new Rows() {
+				@Override
+				public void row(double[] values)
+				{
+					data.add(new Point(values));
+				}
+			});
+		    
+		    success = true;
+		    return data;
+		} finally {
+			Events.end(event, data.size(), data.isEmpty() ? 0 : data.get(0).dimensionality(), 0, success);
+		}
+	}
+	
+	/**
+	 * Reads a CSV file containing numerical values into single precision 
+	 * storage. All rows should have the same number of values.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static FloatPoints readCSVFloats(File file) throws IOException
+	{
+		FloatRows rows = new FloatRows();
+		Object event = Events.begin(Events.READ_CSV);
+		boolean success = false;
+		
+		try {
+			parseCSV(file, rows);
+		    
+		    if(rows.data == null)
+		    	throw new IllegalArgumentException("File "+file+" contains no data.");
+		    
+		    success = true;
+		    return rows.data;
+		} finally {
+			Events.end(event, rows.data == null ? 0 : rows.data.size(), rows.data == null ? 0 : rows.data.dimension(), 0, success);
+		}
+	}
+	
+	/**
+	 * Receives the rows of a CSV file, as parsed by 
+	 * {@link Datasets#parseCSV(File, Rows)}. The array passed to row() may be 
+	 * reused for the next row, so it should be copied if it is kept.
+	 */
+	private static abstract class Rows
+	{
+		public abstract void row(double[] values);
+	}
+	
+	private static class FloatRows extends Rows
+	{
+		FloatPoints data = null;
+
+		@Override
+		public void row(double[] values)
+		{
+	    	if(data == null)
+	    		data = new FloatPoints(values.length);
+	    	
+	    	if(values.length != data.dimension())
+	    		throw new IllegalArgumentException("Row "+(data.size()+1)+" has "+values.length+" values, should have "+data.dimension()+".");
+	    	
+	    	data.add(values, 0);
+		}
+	}
+	
+	/**
+	 * Parses each line of a CSV file into doubles and passes them to the given
+	 * rows. The reader is closed afterwards, also if parsing fails.
+	 */
+	private static void parseCSV(File file, Rows rows) throws IOException
+	{
 	    CSVReader reader = new CSVReader(new FileReader(file));
-	    String [] nextLine;
-	    while ((nextLine = reader.readNext()) != null) 
-	    {
-	    	double[] values = new double[nextLine.length];
-	    	for(int i = 0; i < nextLine.length; i++)
-	    		values[i] = Double.parseDouble(nextLine[i]);
-	    	data.add(new Point(values));
+	    try {
+		    String [] nextLine;
+		    double[] values = new double[0];
+		    while ((nextLine = reader.readNext()) != null) 
+		    {
+		    	if(nextLine.length != values.length)
+		    		values = new double[nextLine.length];
+		    	
+		    	for(int i = 0; i < nextLine.length; i++)
+		    		values[i] = Double.parseDouble(nextLine[i]);
+		    	rows.row(values);
+		    }
+	    } finally {
+	    	reader.close();
 	    }
-	    
-	    return data;
 	}
 	
 	/**
@@ -515,7 +648,7 @@ public class Datasets
 		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
 		for(Point point : data)
 	    {
-			for(int i : series(point.size()))
+			for(int i = 0; i < point.size(); i++)
 				writer.write((i==0 ? "" : ", ") + point.get(i));
 			
 			writer.write("\n");
@@ -537,51 +670,161 @@ public class Datasets
 	{
 		BufferedImage image = read(imageFile);
 	
+		int size = image.getWidth() * image.getHeight();
+		double[] values = new double[gray ? size : size * 3];
+		
+		pixels(image, gray, values, 0);
+		
+		return Point.fromRaw(values);
+	}
+	
+	/**
+	 * Writes the pixel values of the image into the given array, starting at 
+	 * the given offset. The layout is the one described in 
+	 * {@link #readImage(File, boolean)}: pixel (x, y) is stored at 
+	 * x * height + y, and for color images, the green and blue channels follow 
+	 * the red channel.
+	 */
+	static void pixels(BufferedImage image, boolean gray, double[] out, int offset)
+	{
 		int width = image.getWidth();
 		int height = image.getHeight();
-
+		int size = width * height;
 		
-		double[] values;
+		Scanlines scanlines = new Scanlines(image);
+		int[] row = new int[width];
 		
-		if(gray) {
-			values = new double[width * height];
+		for(int y = 0; y < height; y++)
+		{
+			scanlines.read(y, row);
 			
-			int h = 0;
-			for(int i = 0; i < width; i++)
-				for(int j = 0; j < height; j++)
+			for(int x = 0; x < width; x++)
+			{
+				int rgb = row[x];
+				int r = (rgb >> 16) & 0xff, 
+				    g = (rgb >> 8) & 0xff, 
+				    b = rgb & 0xff;
+				
+				int h = offset + x * height + y;
+				if(gray)
 				{
-
-					Color color = new Color(image.getRGB(i, j));
-					double value = color.getRed() + color.getGreen() + color.getBlue();
-					value = value / (255.0 * 3.0);
-					values[h] = value; 
-					
-					h++;
+					double value = r + g + b;
+					out[h] = value / (255.0 * 3.0);
+				} else
+				{
+					out[h] = r / 255.0;
+					out[h + size] = g / 255.0;
+					out[h + 2 * size] = b / 255.0;
 				}
-		} else 
+			}
+		}
+	}
+	
+	/**
+	 * Reads rows of pixels from an image as packed (A)RGB integers (the format 
+	 * of {@link BufferedImage#getRGB(int, int)}). 
+	 * 
+	 * For the common image types produced by ImageIO (packed integer RGB and 
+	 * interleaved 8-bit sRGB), the values are read directly from the 
+	 * DataBuffer. For any other type, we fall back on BufferedImage's own 
+	 * color conversion.
+	 */
+	static class Scanlines 
+	{
+		static final int FALLBACK = 0, PACKED = 1, INTERLEAVED = 2;
+		
+		private BufferedImage image;
+		private int mode = FALLBACK;
+		
+		private int[] ints;
+		private byte[] bytes;
+		private int scanlineStride, pixelStride;
+		private int rOffset, gOffset, bOffset;
+		
+		public Scanlines(BufferedImage image)
 		{
-			values = new double[width * height * 3];
+			this.image = image;
 			
-			int h = 0;
-			for(int c = 0; c < 3; c++)
+			WritableRaster raster = image.getRaster();
+			if(raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0)
+				return;
+			
+			DataBuffer buffer = raster.getDataBuffer();
+			SampleModel model = raster.getSampleModel();
+			
+			if(buffer.getNumBanks() != 1 || buffer.getOffset() != 0)
+				return;
+			
+			int type = image.getType();
+			if((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+					&& buffer instanceof DataBufferInt 
+					&& model instanceof SinglePixelPackedSampleModel)
 			{
-				for(int i = 0; i < width; i++)
-					for(int j = 0; j < height; j++)
-					{
-						Color color = new Color(image.getRGB(i, j));
-						if(c == 0)
-							values[h] = color.getRed() / 255.0;
-						if(c == 1)
-							values[h] = color.getGreen() / 255.0;
-						if(c == 2)
-							values[h] = color.getBlue() / 255.0;
-						
-						h ++;
-					}
+				ints = ((DataBufferInt) buffer).getData();
+				scanlineStride = ((SinglePixelPackedSampleModel) model).getScanlineStride();
+				mode = PACKED;
+				
+				return;
+			}
+			
+			ColorModel colorModel = image.getColorModel();
+			if(buffer instanceof DataBufferByte 
+					&& model instanceof ComponentSampleModel
+					&& colorModel instanceof ComponentColorModel
+					&& colorModel.getColorSpace().isCS_sRGB()
+					&& colorModel.getNumColorComponents() == 3
+					&& ! colorModel.isAlphaPremultiplied())
+			{
+				ComponentSampleModel components = (ComponentSampleModel) model;
+				int[] bandOffsets = components.getBandOffsets();
+				int[] banks = components.getBankIndices();
+				
+				for(int bank : banks)
+					if(bank != 0)
+						return;
+				
+				bytes = ((DataBufferByte) buffer).getData();
+				scanlineStride = components.getScanlineStride();
+				pixelStride = components.getPixelStride();
+				rOffset = bandOffsets[0];
+				gOffset = bandOffsets[1];
+				bOffset = bandOffsets[2];
+				mode = INTERLEAVED;
 			}
 		}
 		
-		return Point.fromRaw(values);
+		/**
+		 * Which of the three ways of reading is used for this image.
+		 */
+		int mode()
+		{
+			return mode;
+		}
+		
+		public void read(int y, int[] row)
+		{
+			int width = row.length;
+			
+			if(mode == PACKED)
+			{
+				System.arraycopy(ints, y * scanlineStride, row, 0, width);
+			} else if(mode == INTERLEAVED)
+			{
+				int index = y * scanlineStride;
+				for(int x = 0; x < width; x++)
+				{
+					row[x] = 
+						((bytes[index + rOffset] & 0xff) << 16) |
+						((bytes[index + gOffset] & 0xff) << 8) |
+						 (bytes[index + bOffset] & 0xff);
+					
+					index += pixelStride;
+				}
+			} else 
+			{
+				image.getRGB(0, y, width, 1, row, 0, width);
+			}
+		}
 	}
 	
 	private static BufferedImage read(File file) throws IOException
@@ -630,24 +873,241 @@ public class Datasets
 	 * 
 	 * The images are not resized, so if they have different dimensions then the 
 	 * points in the returned list will have different dimensionality.
+	 * 
+	 * The files are decoded concurrently, on a pool of IO threads that is 
+	 * separate from {@link Global#pool()}.
+	 * 
 	 * @param dir
 	 * @param gray
 	 * @return
 	 */
 	public static List<Point> readImages(File dir, boolean gray)
 		throws IOException
+	{
+		List<File> files = imageFiles(dir);
+		List<Point> dataset = new ArrayList<Point>(files.size());
+		
+		try {
+			Iterator<Point> images = new ImageIterator(files, gray);
+			while(images.hasNext())
+				dataset.add(images.next());
+		} catch(UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+		
+		return dataset;
+	}
+	
+	/**
+	 * Returns an iterator over the images in the given directory, for 
+	 * directories that are too large to hold in memory. The files are decoded 
+	 * concurrently, a bounded number of images ahead of the iterator.
+	 * 
+	 * If a file cannot be read, the iterator throws an 
+	 * {@link UncheckedIOException}. 
+	 * 
+	 * @param dir
+	 * @param gray
+	 * @return
+	 */
+	public static Iterator<Point> imageIterator(File dir, boolean gray)
+	{
+		return new ImageIterator(imageFiles(dir), gray);
+	}
+	
+	/**
+	 * Reads a directory of images of equal size into a single contiguous array. 
+	 * Image i occupies the elements from i * d up to (i + 1) * d (exclusive), 
+	 * where d is the number of values per image (width * height, or three 
+	 * times that for color images), in the layout described in 
+	 * {@link #readImage(File, boolean)}.
+	 * 
+	 * The files are decoded concurrently, directly into the result, on a pool 
+	 * of IO threads that is separate from {@link Global#pool()}.
+	 * 
+	 * @param dir
+	 * @param gray
+	 * @return
+	 * @throws IOException
+	 * @throws IllegalArgumentException If the images are not all of the same 
+	 * 	size.
+	 */
+	public static double[] readImagesBlock(File dir, final boolean gray)
+		throws IOException
+	{
+		List<File> files = imageFiles(dir);
+		if(files.isEmpty())
+			return new double[0];
+		
+		BufferedImage first = read(files.get(0));
+		final int width = first.getWidth(), height = first.getHeight();
+		final int d = width * height * (gray ? 1 : 3);
+		
+		if((long) d * files.size() > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Directory contains too many values ("+d+" per image, "+files.size()+" images) to fit in a single array.");
+		
+		final double[] block = new double[d * files.size()];
+		
+		Deque<Future<?>> pending = new ArrayDeque<Future<?>>();
+		int window = 2 * Global.numThreads();
+		
+		try {
+			for(int i = 0; i < files.size(); i++)
+			{
+				final File file = files.get(i);
+				final int offset = i * d;
+				
+				pending.add(ioPool().submit(new Callable<Void>() {
+					public Void call() throws IOException
+					{
+						BufferedImage image = read(file);
+						if(image.getWidth() != width || image.getHeight() != height)
+							throw new IllegalArgumentException("Image "+file+" ("+image.getWidth()+"x"+image.getHeight()+") does not have the same size as the first image ("+width+"x"+height+").");
+						
+						pixels(image, gray, block, offset);
+						return null;
+					}
+				}));
+				
+				if(pending.size() >= window)
+					pending.poll().get();
+			}
+			
+			while(! pending.isEmpty())
+				pending.poll().get();
+			
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch(ExecutionException e)
+		{
+			for(Future<?> future : pending)
+				future.cancel(true);
+			
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+		
+		return block;
+	}
+	
+	private static ExecutorService ioPool = null;
+	
+	/**
+	 * The pool on which image files are read and decoded. This is separate 
+	 * from {@link Global#pool()}, so that threads blocked on file IO do not 
+	 * hold up the computations that use the shared pool. The number of 
+	 * concurrent reads is bounded by the callers (to 2 * numThreads()), and 
+	 * idle threads are released after a minute. The threads are daemon 
+	 * threads, so they do not keep the JVM alive.
+	 */
+	static synchronized ExecutorService ioPool()
+	{
+		if(ioPool == null)
+		{
+			ioPool = new ThreadPoolExecutor(
+					0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, 
+					new SynchronousQueue<Runnable>(), 
+					new ThreadFactory() {
+						private ThreadFactory factory = Executors.defaultThreadFactory();
+						
+						public Thread newThread(Runnable runnable)
+						{
+							Thread thread = factory.newThread(runnable);
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		
+		return ioPool;
+	}
+	
+	/**
+	 * The (non-hidden) files in the given directory.
+	 */
+	private static List<File> imageFiles(File dir)
 	{
 		File[] files = dir.listFiles();
 		if(files == null)
 			throw new IllegalArgumentException("Argument ("+dir+") is not a directory.");
 		
-		List<Point> dataset = new ArrayList<Point>(files.length);
-		
+		List<File> result = new ArrayList<File>(files.length);
 		for(File file : files)
 			if(!file.isDirectory() && !file.isHidden())
-				dataset.add(readImage(file, gray));
+				result.add(file);
 		
-		return dataset;
+		return result;
+	}
+	
+	/**
+	 * Decodes a list of image files on the IO pool, keeping at most 
+	 * 2 * numThreads() decoded images ahead of the consumer.
+	 */
+	private static class ImageIterator implements Iterator<Point>
+	{
+		private List<File> files;
+		private boolean gray;
+		
+		private int next = 0;
+		private int window = 2 * Global.numThreads();
+		private Deque<Future<Point>> pending = new ArrayDeque<Future<Point>>();
+		
+		public ImageIterator(List<File> files, boolean gray)
+		{
+			this.files = files;
+			this.gray = gray;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return next < files.size() || ! pending.isEmpty();
+		}
+
+		@Override
+		public Point next()
+		{
+			if(! hasNext())
+				throw new NoSuchElementException();
+			
+			while(pending.size() < window && next < files.size())
+			{
+				final File file = files.get(next++);
+				pending.add(ioPool().submit(new Callable<Point>() {
+					public Point call() throws IOException
+					{
+						return readImage(file, gray);
+					}
+				}));
+			}
+			
+			try {
+				return pending.poll().get();
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e)
+			{
+				if(e.getCause() instanceof IOException)
+					throw new UncheckedIOException((IOException) e.getCause());
+				if(e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
 	}
 	
 	/**
@@ -0,0 +1,290 @@
+package nl.peterbloem.kit.data;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * A growable list of points of the same dimension, stored in single
+ * precision in one flat float array (point i occupies elements
+ * i * dimension to (i + 1) * dimension). This halves the memory of a dataset
+ * compared to a list of Points, and avoids an object per point.
+ * </p><p>
+ * Points are widened to double precision when they are read. The scanning
+ * kernels ({@link #sqDistance(int, double[])}, {@link #nearest(Point)},
+ * {@link #distance(Point)} and {@link #get(int, double[], int)}) read the
+ * floats directly and accumulate in double precision. Code that accepts a
+ * List&lt;Point&gt; ({@link Datasets#distance(Point, List)},
+ * {@link MOG#logDensity(java.util.Collection)},
+ * {@link MVN#logDensities(List, double[])} and
+ * {@link nl.peterbloem.kit.data.classification.DistanceClassifier}) uses
+ * these kernels when it is given a FloatPoints. Everything else sees a
+ * normal list of (newly created) Points.
+ * </p><p>
+ * Values are rounded to the nearest float when they are added. This is
+ * meant for data that has no more than single precision to begin with, like
+ * pixel values or sensor readings.
+ * </p>
+ *
+ * @author Peter
+ */
+public class FloatPoints extends AbstractList<Point>
+	implements RandomAccess, Serializable
+{
+	private static final long serialVersionUID = -4702546227640432183L;
+
+	private final int dimension;
+	private float[] data;
+	private int size = 0;
+
+	public FloatPoints(int dimension)
+	{
+		this(dimension, 16);
+	}
+
+	/**
+	 * @param dimension The dimension of the points.
+	 * @param capacity The initial capacity, in points.
+	 */
+	public FloatPoints(int dimension, int capacity)
+	{
+		if(dimension < 1)
+			throw new IllegalArgumentException("Dimension ("+dimension+") should be positive.");
+
+		this.dimension = dimension;
+		this.data = new float[Math.max(capacity, 1) * dimension];
+	}
+
+	/**
+	 * Copies the given points into single precision storage.
+	 */
+	public static FloatPoints of(List<Point> points)
+	{
+		if(points.isEmpty())
+			throw new IllegalArgumentException("Cannot determine the dimension of an empty list.");
+
+		FloatPoints result = new FloatPoints(points.get(0).dimensionality(), points.size());
+		result.addAll(points);
+
+		return result;
+	}
+
+	/**
+	 * Wraps a flat array of floats, without copying it.
+	 */
+	public static FloatPoints wrap(float[] data, int dimension)
+	{
+		if(data.length % dimension != 0)
+			throw new IllegalArgumentException("Array length ("+data.length+") is not a multiple of the dimension ("+dimension+").");
+
+		FloatPoints result = new FloatPoints(dimension, 0);
+		result.data = data;
+		result.size = data.length / dimension;
+
+		return result;
+	}
+
+	public int dimension()
+	{
+		return dimension;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * The backing array. Only the first size() * dimension() elements are in
+	 * use.
+	 */
+	public float[] data()
+	{
+		return data;
+	}
+
+	@Override
+	public boolean add(Point point)
+	{
+		check(point);
+		add(point.getBackingData(), 0);
+		return true;
+	}
+
+	/**
+	 * Adds the point of dimension() values starting at values[offset].
+	 */
+	public void add(double[] values, int offset)
+	{
+		if(offset + dimension > values.length)
+			throw new IllegalArgumentException("Point should have dimension "+dimension+".");
+
+		ensure(size + 1);
+
+		int base = size * dimension;
+		for(int j = 0; j < dimension; j++)
+			data[base + j] = (float) values[offset + j];
+
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Point get(int index)
+	{
+		double[] values = new double[dimension];
+		get(index, values, 0);
+
+		return Point.fromRaw(values);
+	}
+
+	/**
+	 * Widens point i into out, starting at out[offset].
+	 */
+	public void get(int i, double[] out, int offset)
+	{
+		check(i);
+
+		int base = i * dimension;
+		for(int j = 0; j < dimension; j++)
+			out[offset + j] = data[base + j];
+	}
+
+	/**
+	 * Widens the points from (inclusive) to to (exclusive) into out, as a
+	 * flat row-major array starting at out[0].
+	 */
+	public void get(int from, int to, double[] out)
+	{
+		if(from < 0 || to > size || from > to)
+			throw new IndexOutOfBoundsException("Range ["+from+", "+to+") out of bounds for size "+size+".");
+
+		int n = (to - from) * dimension, base = from * dimension;
+		for(int k = 0; k < n; k++)
+			out[k] = data[base + k];
+	}
+
+	@Override
+	public Point set(int index, Point point)
+	{
+		check(index);
+		check(point);
+		Point old = get(index);
+
+		double[] values = point.getBackingData();
+		int base = index * dimension;
+		for(int j = 0; j < dimension; j++)
+			data[base + j] = (float) values[j];
+
+		return old;
+	}
+
+	@Override
+	public Point remove(int index)
+	{
+		Point old = get(index);
+
+		System.arraycopy(data, (index + 1) * dimension, data, index * dimension, (size - index - 1) * dimension);
+		size--;
+		modCount++;
+
+		return old;
+	}
+
+	@Override
+	public void clear()
+	{
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * The squared euclidean distance between point i and the given query
+	 * (of length dimension()).
+	 */
+	public double sqDistance(int i, double[] query)
+	{
+		check(i);
+		return sqDistanceUnchecked(i * dimension, query);
+	}
+
+	/**
+	 * The index of the point closest to the query, or -1 if this list is
+	 * empty.
+	 */
+	public int nearest(Point query)
+	{
+		double[] q = query(query);
+
+		double min = Double.POSITIVE_INFINITY;
+		int index = -1;
+		for(int i = 0; i < size; i++)
+		{
+			double d = sqDistanceUnchecked(i * dimension, q);
+			if(d < min)
+			{
+				min = d;
+				index = i;
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * The euclidean distance from the query to the closest point in this list
+	 * (positive infinity if the list is empty).
+	 */
+	public double distance(Point query)
+	{
+		double[] q = query(query);
+
+		double min = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < size; i++)
+			min = Math.min(min, sqDistanceUnchecked(i * dimension, q));
+
+		return Math.sqrt(min);
+	}
+
+	private double sqDistanceUnchecked(int base, double[] query)
+	{
+		double sum = 0.0;
+		for(int j = 0; j < dimension; j++)
+		{
+			double d = data[base + j] - query[j];
+			sum += d * d;
+		}
+
+		return sum;
+	}
+
+	private double[] query(Point query)
+	{
+		if(query.dimensionality() != dimension)
+			throw new IllegalArgumentException("Query ("+query.dimensionality()+") should have dimension "+dimension+".");
+
+		return query.getBackingData();
+	}
+
+	private void ensure(int capacity)
+	{
+		if(capacity * dimension > data.length)
+			data = Arrays.copyOf(data, Math.max(capacity, 2 * data.length / dimension) * dimension);
+	}
+
+	private void check(Point point)
+	{
+		if(point.dimensionality() != dimension)
+			throw new IllegalArgumentException("Point dimension ("+point.dimensionality()+") should be "+dimension+".");
+	}
+
+	private void check(int i)
+	{
+		if(i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Index "+i+" out of bounds for size "+size+".");
+	}
+}
@@ -1,23 +1,21 @@
 package nl.peterbloem.kit.data;
 
 import static nl.peterbloem.kit.Functions.choose;
-import static nl.peterbloem.kit.Series.series;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.RealVector;
 
+import nl.peterbloem.kit.Dense;
+import nl.peterbloem.kit.DenseMatrix;
 import nl.peterbloem.kit.Functions;
 import nl.peterbloem.kit.Generator;
 import nl.peterbloem.kit.Global;
-import nl.peterbloem.kit.MatrixFunctions;
-import nl.peterbloem.kit.Series;
 import nl.peterbloem.kit.search.Parameters;
 
 
@@ -35,7 +33,7 @@ public class MOG extends MapModel<AffineMap> implements Generator<Point>, Densit
 	{
 		double density = 0.0; 
 		
-		for(int i : series(size()))
+		for(int i = 0; i < size(); i++)
 			density += probability(i) * mvn(i).density(p);
 		
 		return density;
@@ -46,14 +44,23 @@ public class MOG extends MapModel<AffineMap> implements Generator<Point>, Densit
 		double density = 0.0; 
 		
 		List<Double> terms = new ArrayList<Double>(this.size());
-		for(int i : series(this.size()))
+		for(int i = 0; i < this.size(); i++)
 			terms.add(Math.log(probability(i)) + mvn(i).logDensity(p));
 		
 		return Functions.logSum(Math.E, terms);
 	}
 	
+	/**
+	 * The total log density of the points. For a {@link FloatPoints}, the 
+	 * log densities are computed per component with 
+	 * {@link MVN#logDensities(List, double[])}, and combined per point with 
+	 * a running log-sum-exp.
+	 */
 	public double logDensity(Collection<Point> points)
 	{
+		if(points instanceof FloatPoints)
+			return logDensity((FloatPoints) points);
+		
 		double ld = 0.0;
 		for(Point p : points)
 			ld += logDensity(p);
@@ -62,6 +69,42 @@ public class MOG extends MapModel<AffineMap> implements Generator<Point>, Densit
 	}
 	
 	
+	private double logDensity(FloatPoints points)
+	{
+		int n = points.size();
+		double[] component = new double[n];
+		
+		// * The terms for each point are summed scaled by their maximum
+		double[] max = new double[n], sum = new double[n];
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		
+		for(int i = 0; i < size(); i++)
+		{
+			double logPrior = Math.log(probability(i));
+			mvn(i).logDensities(points, component);
+			
+			for(int p = 0; p < n; p++)
+			{
+				double term = logPrior + component[p];
+				if(term == Double.NEGATIVE_INFINITY)
+					continue;
+				
+				if(term > max[p])
+				{
+					sum[p] = sum[p] * Math.exp(max[p] - term) + 1.0;
+					max[p] = term;
+				} else
+					sum[p] += Math.exp(term - max[p]);
+			}
+		}
+		
+		double ld = 0.0;
+		for(int p = 0; p < n; p++)
+			ld += max[p] + Math.log(sum[p]);
+		
+		return ld;
+	}
+	
 	public MVN mvn(int i)
 	{
 		return new MVN(get(i));
@@ -70,7 +113,7 @@ public class MOG extends MapModel<AffineMap> implements Generator<Point>, Densit
 	public List<Double> code(Point p)
 	{
 		List<Double> probs = new ArrayList<Double>(size());
-		for(int i : series(size()))
+		for(int i = 0; i < size(); i++)
 			probs.add(probability(i) * mvn(i).density(p));
 		
 		normalize(probs);
@@ -126,7 +169,7 @@ public class MOG extends MapModel<AffineMap> implements Generator<Point>, Densit
 	public static List<List<Double>> initial(int size, int k)
 	{
 		List<List<Double>> result = new ArrayList<List<Double>>(size);
-		for(int i : series(size))
+		for(int i = 0; i < size; i++)
 		{
 			List<Double> code = new Point(k);
 			code.set(Global.random().nextInt(k), (Double)1.0);
@@ -152,38 +195,40 @@ public class MOG extends MapModel<AffineMap> implements Generator<Point>, Densit
 		
 		int dim = data.get(0).dimensionality();
 		
-		for(int k : series(numComponents))
+		for(int k = 0; k < numComponents; k++)
 		{
 			components.add(null);
 			priors.add(null);
 		}
 		
-		for(int k : series(numComponents))
+		for(int k = 0; k < numComponents; k++)
 		{
 			double sum = 0.0;
-			for(int i : series(data.size()))
+			for(int i = 0; i < data.size(); i++)
 				sum += codes.get(i).get(k);	
 			
 			// * Calculate the mean
 			double[] mean = new double[dim];
-			for(int i : series(data.size()))
-				for(int j : series(dim))
+			for(int i = 0; i < data.size(); i++)
+				for(int j = 0; j < dim; j++)
 					mean[j] += data.get(i).get(j) * (codes.get(i).get(k) / sum);
 				
-			// * Calculate the covariance
-			RealMatrix cov = MatrixFunctions.identity(dim);
+			// * Calculate the covariance, as in-place rank-one updates
+			double[] flat = Dense.identity(dim), difference = new double[dim];
 			
-			for(int i : series(data.size()))
+			for(int i = 0; i < data.size(); i++)
 			{
 				Point x = data.get(i);
-				RealVector difference = 
-						x.getVector().subtract(new ArrayRealVector(mean));
-				difference.mapMultiplyToSelf(codes.get(i).get(k));
+				double code = codes.get(i).get(k);
+				for(int j = 0; j < dim; j++)
+					difference[j] = (x.get(j) - mean[j]) * code;
 				
-				cov = cov.add(difference.outerProduct(difference));
+				Dense.ger(dim, dim, 1.0, difference, difference, flat);
 			}
 			
-			cov = cov.scalarMultiply(1.0/sum);
+			for(int j = 0; j < flat.length; j++)
+				flat[j] /= sum;
+			RealMatrix cov = new DenseMatrix(flat, dim, dim);
 			
 			if(containsNaN(cov) )
 			{
@@ -214,7 +259,7 @@ public class MOG extends MapModel<AffineMap> implements Generator<Point>, Densit
 			              bad = new ArrayList<Integer>(numComponents);
 			
 			
-			for(int k : series(numComponents))
+			for(int k = 0; k < numComponents; k++)
 				if(components.get(k) != null)
 					good.add(k);
 				else
@@ -224,7 +269,7 @@ public class MOG extends MapModel<AffineMap> implements Generator<Point>, Densit
 			
 			// * Assign each bad component to a good one
 			Map<Integer, List<Integer>> map = new LinkedHashMap<Integer, List<Integer>>();
-			for(int k : series(numComponents))
+			for(int k = 0; k < numComponents; k++)
 				if(components.get(k) == null)
 				{
 					int rGood = choose(good);
@@ -255,7 +300,7 @@ public class MOG extends MapModel<AffineMap> implements Generator<Point>, Densit
 		}
 		
 		MOG mog = null;
-		for(int k : series(numComponents))
+		for(int k = 0; k < numComponents; k++)
 			if(mog == null)
 				mog = new MOG(components.get(k).map(), priors.get(k));
 			else
@@ -285,8 +330,8 @@ public class MOG extends MapModel<AffineMap> implements Generator<Point>, Densit
 	
 	private static boolean containsNaN(RealMatrix cov)
 	{
-		for(int i : series(cov.getRowDimension()))
-			for(int j : series(cov.getColumnDimension()))
+		for(int i = 0; i < cov.getRowDimension(); i++)
+			for(int j = 0; j < cov.getColumnDimension(); j++)
 				if(Double.isNaN(cov.getEntry(i, j)))
 					return true;
 		
@@ -297,7 +342,7 @@ public class MOG extends MapModel<AffineMap> implements Generator<Point>, Densit
 	{
 		String out = "[";
 		
-		for(int i : Series.series(this.size()))
+		for(int i = 0; i < this.size(); i++)
 		{
 			if(i != 0)
 				out += ", ";
@@ -1,29 +1,26 @@
 package nl.peterbloem.kit.data;
 
-import static java.lang.Math.PI;
-import static java.lang.Math.abs;
 import static java.lang.Math.exp;
-import static java.lang.Math.log;
-import static java.lang.Math.pow;
 import static nl.peterbloem.kit.Series.series;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.Stream;
 
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
-import org.apache.commons.math3.linear.SingularMatrixException;
 
-import nl.peterbloem.kit.Generator;
+import nl.peterbloem.kit.Dense;
+import nl.peterbloem.kit.DenseMatrix;
 import nl.peterbloem.kit.Global;
 import nl.peterbloem.kit.MatrixFunctions;
 import nl.peterbloem.kit.Series;
-import nl.peterbloem.kit.search.Builder;
 import nl.peterbloem.kit.search.Parametrizable;
+import nl.peterbloem.kit.search.Rebuilder;
 
 /**
  * A multivariate normal distribution
@@ -40,7 +37,7 @@ import nl.peterbloem.kit.search.Parametrizable;
  *   </li>
  * </ul>
  */
-public class MVN extends AbstractDensity implements Generator<Point>, Parametrizable
+public class MVN extends AbstractDensity implements BatchGenerator, Parametrizable
 {
 	private static final long serialVersionUID = 2741764705947779052L;
 
@@ -110,16 +107,13 @@ public class MVN extends AbstractDensity implements Generator<Point>, Parametriz
 	
 	public MVN(Point mean, RealMatrix covariance)
 	{
-		CholeskyDecomposition decomp;
-		try
-		{
-			decomp = new CholeskyDecomposition(covariance, THRESHOLD, THRESHOLD);
-		} catch (Exception e)
-		{
-			throw new RuntimeException("Could not perform Cholesky decomposition on matrix " + covariance, e);
-		}
+		int d = covariance.getRowDimension();
+		double[] l = DenseMatrix.flat(covariance);
+		
+		if(! MatrixUtils.isSymmetric(covariance, THRESHOLD) || ! Dense.cholesky(l, d, THRESHOLD))
+			throw new RuntimeException("Could not perform Cholesky decomposition on matrix " + covariance);
 		
-		transform = new AffineMap(decomp.getL(), mean.getVector());
+		transform = new AffineMap(new DenseMatrix(l, d, d), mean.getVector());
 
 		inverse = transform.inverse();
 	}	
@@ -132,25 +126,50 @@ public class MVN extends AbstractDensity implements Generator<Point>, Parametriz
 		this.transform = transform;
 	}	
 
+	@Override
+	public Point generate()
+	{
+		double[] out = new double[dimension()];
+		generate(Global.random(), out, 0, 1);
+		
+		return Point.fromRaw(out);
+	}
+	
 	/**
-	 * Draw a random vector with all elements ~ N(0, 1)
-	 * 
-	 * @return
+	 * Draws a standard normal vector per point, and maps it by the 
+	 * transformation.
 	 */
-	private Point drawBase()
-	{	
-		Point base = new Point(dimension());
-		for(int i = 0; i < dimension(); i++)
-			base.set(i, Global.random().nextGaussian());
+	@Override
+	public void generate(Random random, double[] out, int offset, int n)
+	{
+		int d = dimension();
+		double[] base = new double[d];
 		
-		return base;
-	}	
+		for(int i = 0; i < n; i++)
+		{
+			for(int j = 0; j < d; j++)
+				base[j] = random.nextGaussian();
+			
+			transform.map(base, 0, out, offset + i * d);
+		}
+	}
 	
 	@Override
-	public Point generate()
+	public double[] generateBlock(int n, long seed)
+	{
+		return AbstractBatchGenerator.generateBlock(this, n, seed);
+	}
+	
+	@Override
+	public List<Point> generate(int n, long seed)
+	{
+		return AbstractBatchGenerator.generate(this, n, seed);
+	}
+	
+	@Override
+	public Stream<Point> stream(long seed)
 	{
-		Point p = drawBase();
-		return transform.map(p);
+		return AbstractBatchGenerator.stream(this, seed);
 	}
 
 	@Override
@@ -166,53 +185,72 @@ public class MVN extends AbstractDensity implements Generator<Point>, Parametriz
 	@Override
 	public double density(Point p)
 	{
-		double det = abs( MatrixFunctions.getDeterminant(covariance()));
-		if(MatrixFunctions.isSingular(covariance()))
+		if(! transform.invertible())
 			return 0.0;
 		
-		RealMatrix covInv = null;
-		try {
-			covInv = MatrixFunctions.inverse(covariance());
-		} catch(SingularMatrixException e)
-		{
-			System.out.println(covariance());
-			System.out.println(MatrixFunctions.isSingular(covariance));
-			
-			throw e;
-		}
+		return exp(logDensity(p));
+	}
+	
+	/**
+	 * With covariance A A^T for the transformation A, the log determinant of 
+	 * the covariance is 2 log |det A| and the squared Mahalanobis distance of 
+	 * p is the squared norm of A^-1 (p - mean), which is the inverse map 
+	 * applied to p. Both the determinant and the inverse are cached by the 
+	 * map, so no matrix decompositions are computed per point.
+	 */
+	public double logDensity(Point p)
+	{
+		if(! transform.invertible())
+			return 0.0;
 		
-		RealVector diff = p.getVector().subtract(mean().getVector());
+		if(inverse == null)
+			inverse = transform.inverse();
 		
-		double scalar = 1.0 / (pow(2.0 * PI, dimension()/2.0) * pow(det, 0.5)) ;
-		double exponent = -0.5 * diff.dotProduct( covInv.operate(diff) ); 
+		double[] z = inverse.map(p).getBackingData();
+		
+		double scalar = - (dimension()*0.5) * LOG2PI - transform.logAbsDeterminant();
+		double exponent = -0.5 * Dense.dot(z.length, z, 0, z, 0);
 
-		return scalar * exp(exponent);	
+		return scalar + exponent;	
 	}
 	
-	public double logDensity(Point p)
+	/**
+	 * Writes the log density of each point to out. For a 
+	 * {@link FloatPoints}, the points are widened a block at a time and mapped 
+	 * by the inverse as a block, without creating a Point per point. 
+	 */
+	public void logDensities(List<Point> points, double[] out)
 	{
-		double det = abs( MatrixFunctions.getDeterminant(covariance()));
+		int n = points.size();
+		if(! (points instanceof FloatPoints) || ! transform.invertible())
+		{
+			for(int i = 0; i < n; i++)
+				out[i] = logDensity(points.get(i));
+			return;
+		}
 		
-		if(MatrixFunctions.isSingular(covariance()))
-			return 0.0;
+		if(inverse == null)
+			inverse = transform.inverse();
+		
+		FloatPoints data = (FloatPoints) points;
+		int d = dimension(), block = AffineMap.BLOCK_SIZE;
+		double scalar = - (d*0.5) * LOG2PI - transform.logAbsDeterminant();
 		
-		RealMatrix covInv = null;
-		try {
-			covInv = MatrixFunctions.inverse(covariance());
-		} catch(SingularMatrixException e)
+		double[] buffer = new double[Math.min(block, n) * d];
+		for(int from = 0; from < n; from += block)
 		{
-			System.out.println(covariance());
-			System.out.println(MatrixFunctions.isSingular(covariance()));
+			int to = Math.min(from + block, n);
+			double[] z = to - from == block ? buffer : new double[(to - from) * d];
 			
-			throw e;
+			data.get(from, to, z);
+			inverse.map(z, z);
+			
+			for(int i = from; i < to; i++)
+			{
+				int offset = (i - from) * d;
+				out[i] = scalar - 0.5 * Dense.dot(d, z, offset, z, offset);
+			}
 		}
-		
-		RealVector diff = p.getVector().subtract(mean().getVector());
-		
-		double scalar = - (dimension()*0.5) * log (2.0 * PI) - 0.5 * log(det);
-		double exponent = -0.5 * diff.dotProduct( covInv.operate(diff) );
-
-		return scalar + exponent;	
 	}
 	
 	public AffineMap map()
@@ -292,40 +330,25 @@ public class MVN extends AbstractDensity implements Generator<Point>, Parametriz
 	 */
 	public static MVN find(List<Point> points, boolean biased)
 	{
-		int dim = points.get(0).dimensionality();
-		int size = points.size();
+		Moments moments = new Moments(points.get(0).dimensionality());
+		moments.addAll(points);
 		
-		// * Calculate the mean
-		//  (optimize by doing in place summation manually on a double[]
-		RealVector mean = new ArrayRealVector(dim);
-		for(Point x : points)
-			mean = mean.add(x.getVector());
-		mean.mapMultiplyToSelf(1.0/size);
-	
-		// * Calculate the covariance
-		RealVector difference;
-		RealMatrix cov = new Array2DRowRealMatrix(dim, dim);
-		
-		for(Point x : points)
-		{
-			difference = x.getVector().subtract(mean);
-			cov = cov.add(difference.outerProduct(difference));
-		}
-		
-		cov = cov.scalarMultiply(1.0/(size-(biased?0:1)));
-		
-//		RealMatrix data = new Array2DRowRealMatrix(size, dim);
-//		for(int i : series(size))
-//			data.setRow(i, points.get(i).getBackingData());
-//		
-//		Covariance covComp = new Covariance(data);
-//		RealMatrix covCompare = covComp.getCovarianceMatrix();
-//		
-//		System.out.println(covCompare);
-//		System.out.println(cov);
-		
-		
-		return new MVN(new Point(mean), cov);
+		return find(moments, biased);
+	}
+	
+	/**
+	 * Estimates a multivariate normal distribution from the statistics 
+	 * collected by the given accumulator. This allows an MVN to be fitted to 
+	 * a stream of points that does not fit in memory.
+	 * 
+	 * @param moments An accumulator that tracks the full covariance.
+	 * @param biased Whether to use the biased or the unbiased estimate of the 
+	 * 	covariance.
+	 * @return
+	 */
+	public static MVN find(Moments moments, boolean biased)
+	{
+		return new MVN(moments.mean(), moments.covariance(biased));
 	}
 	
 	/**
@@ -347,39 +370,10 @@ public class MVN extends AbstractDensity implements Generator<Point>, Parametriz
 	
 	public static MVN find(Weighted<Point> points)
 	{			
-		double sum = points.sum();
+		Moments moments = new Moments(points.get(0).dimensionality());
+		moments.addAll(points);
 		
-		double sqSum = 0.0;
-		for(int i : series(points.size()))
-			sqSum += points.weight(i) * points.weight(i);	
-		
-		int dim = points.get(0).dimensionality();
-		
-		// * Calculate the mean
-		double[] mean = new double[dim];
-		for(int i : series(points.size()))
-			for(int j : series(dim))
-				mean[j] += points.get(i).get(j) * (points.weight(i));
-		for(int i : series(dim))
-			mean[i] /= sum;
-			
-		// * Calculate the covariance
-		RealVector difference;
-		RealMatrix cov = new Array2DRowRealMatrix(dim, dim);
-		
-		for(int i : series(points.size()))
-		{
-			Point x = points.get(i);
-			difference = x.getVector().subtract(new ArrayRealVector(mean));
-			
-			cov = cov.add(
-					difference.outerProduct(difference).scalarMultiply(points.weight(i))
-					);
-		}
-		
-		cov = cov.scalarMultiply(1.0/sum);
-		
-		return new MVN(new Point(mean), cov);
+		return find(moments, true);
 	}
 		
 	/**
@@ -393,29 +387,10 @@ public class MVN extends AbstractDensity implements Generator<Point>, Parametriz
 	 */
 	public static MVN findSpherical(List<Point> points)
 	{
-		int dim = points.get(0).dimensionality();
-		int size = points.size();
-		
-		// * Calculate the mean
-		//  (optimize by doing in place summation manually on a double[]
-		RealVector mean = new ArrayRealVector(dim);
-		for(Point x : points)
-			mean = mean.add(x.getVector());
-		mean.mapMultiplyToSelf(1.0/size);
-	
-		// * Calculate s
-		RealVector difference;
-		double sumQuadrance = 0.0;
-		
-		for(Point x : points)
-		{
-			difference = x.getVector().subtract(mean);
-			sumQuadrance += difference.dotProduct(difference);
-		}
-		
-		double s = sumQuadrance / (size * dim);
+		Moments moments = new Moments(points.get(0).dimensionality(), false);
+		moments.addAll(points);
 		
-		return new MVN(new Point(mean), MatrixFunctions.identity(dim).scalarMultiply(s));
+		return findSpherical(moments);
 	}
 	
 	/**
@@ -429,30 +404,26 @@ public class MVN extends AbstractDensity implements Generator<Point>, Parametriz
 	 */
 	public static MVN findSpherical(Weighted<Point> points)
 	{
-		int dim = points.get(0).dimensionality();
-		int size = points.size();
+		Moments moments = new Moments(points.get(0).dimensionality(), false);
+		moments.addAll(points);
 		
-		// * Calculate the mean
-		//  (optimize by doing in place summation manually on a double[]
-		RealVector mean = new ArrayRealVector(dim);
-		for(int i : series(points.size()))
-			mean = mean.add(points.get(i).getVector().mapMultiply(points.weight(i)));
-		mean.mapMultiplyToSelf(1.0/points.sum());
-	
-		// * Calculate s
-		RealVector difference;
-		double sumQuadrance = 0.0;
-		
-		for(int i : series(points.size()))
-		{
-			difference = points.get(i).getVector().subtract(mean);
-			sumQuadrance += difference.dotProduct(difference) * points.weight(i);
-		}
-		
-		double s = sumQuadrance / (points.sum() * dim);
+		return findSpherical(moments);
+	}
+	
+	/**
+	 * Estimates a spherical multivariate normal distribution from the 
+	 * statistics collected by the given accumulator. 
+	 * 
+	 * @param moments
+	 * @return
+	 */
+	public static MVN findSpherical(Moments moments)
+	{
+		int dim = moments.dimension();
+		double s = moments.sphericalVariance(true);
 		
-		return new MVN(new Point(mean), MatrixFunctions.identity(dim).scalarMultiply(s));
-	}	
+		return new MVN(moments.mean(), MatrixFunctions.identity(dim).scalarMultiply(s));
+	}
 
 	@Override
 	public List<Double> parameters()
@@ -465,19 +436,19 @@ public class MVN extends AbstractDensity implements Generator<Point>, Parametriz
 		return dim * dim + dim;
 	}
 	
-	public static Builder<MVN> builder(int dim)
+	public static Rebuilder<MVN> builder(int dim)
 	{
 		return new MVNBuilder(dim);
 	}
 	
-	private static class MVNBuilder implements Builder<MVN>
+	private static class MVNBuilder implements Rebuilder<MVN>
 	{	
 		/**
 		 * 
 		 */
 		private static final long serialVersionUID = 2614087937675063246L;
 		int dimension;
-		Builder<AffineMap> mapBuilder;
+		Rebuilder<AffineMap> mapBuilder;
 		
 		public MVNBuilder(int dimension)
 		{
@@ -494,6 +465,37 @@ public class MVN extends AbstractDensity implements Generator<Point>, Parametriz
 			AffineMap map = mapBuilder.build(parameters);
 			return new MVN(map);
 		}
+		
+		@Override
+		public MVN rebuild(MVN mvn, double[] parameters, int offset)
+		{
+			check(mvn, parameters, offset);
+			
+			mapBuilder.rebuild(mvn.transform, parameters, offset);
+			
+			mvn.inverse = null;
+			mvn.covariance = null;
+			mvn.mean = null;
+			
+			return mvn;
+		}
+
+		/**
+		 * Also checks that the parameters describe an invertible 
+		 * transformation.
+		 */
+		@Override
+		public void check(MVN mvn, double[] parameters, int offset)
+		{
+			mapBuilder.check(mvn.transform, parameters, offset);
+			
+			// * The LU decomposition is computed in the scratch space of the 
+			//   map, which is about to be overwritten anyway
+			double[] work = mvn.transform.work();
+			System.arraycopy(parameters, offset, work, 0, dimension * dimension);
+			if(Dense.lu(work, dimension, null) == 0)
+				throw new IllegalArgumentException("Parameters must describe an invertible transformation.");
+		}
 
 		@Override
 		public int numParameters()
@@ -29,6 +29,39 @@ public interface Map extends Serializable {
 	
 	public List<Point> map(List<Point> points);
 	
+	/**
+	 * <p>
+	 * Maps a block of points stored in a flat array. The points are stored 
+	 * row by row: point i occupies the elements from i * dimension() up to 
+	 * (i + 1) * dimension() (exclusive). The number of points is determined by 
+	 * the length of the input array.
+	 * </p><p>
+	 * The results are written to the output array, which should be at least 
+	 * as long as the input. The input and output may be the same array, in 
+	 * which case the points are mapped in place.
+	 * </p><p>
+	 * The default implementation maps the points one by one through 
+	 * {@link #map(Point)}.
+	 * </p>
+	 * 
+	 * @param in
+	 * @param out
+	 */
+	public default void map(double[] in, double[] out)
+	{
+		int d = dimension();
+		if(in.length % d != 0)
+			throw new IllegalArgumentException("Length of the input ("+in.length+") should be a multiple of the dimension ("+d+").");
+		if(out.length < in.length)
+			throw new IllegalArgumentException("Output array (length "+out.length+") is smaller than the input array (length "+in.length+").");
+		
+		for(int from = 0; from < in.length; from += d)
+		{
+			Point p = map(Point.fromRaw(Arrays.copyOfRange(in, from, from + d)));
+			System.arraycopy(p.getBackingData(), 0, out, from, d);
+		}
+	}
+	
 	/**
 	 * <p>
 	 * Returns a map whose function is equal to applying the other map and then 
@@ -3,12 +3,14 @@ package nl.peterbloem.kit.data;
 import java.io.Serializable;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import nl.peterbloem.kit.Functions;
 import nl.peterbloem.kit.search.Builder;
 import nl.peterbloem.kit.search.Parametrizable;
+import nl.peterbloem.kit.search.Rebuilder;
 
 /**
  * <p>
@@ -48,6 +50,9 @@ public class MapModel<M extends Map & Parametrizable>
 	
 	// * A flat representation of the above parameters	
 	protected ArrayList<Double> parametersFlat = new ArrayList<Double>();
+	// * True if the model has been rebuilt since parametersFlat was last 
+	//   filled
+	private transient boolean stale = false;
 
 	public MapModel(M map, double weight)
 	{
@@ -190,8 +195,50 @@ public class MapModel<M extends Map & Parametrizable>
 	@Override
 	public List<Double> parameters() 
 	{
+		if(stale)
+		{
+			parametersFlat.clear();
+			for(int i = 0; i < maps.size(); i++)
+			{
+				parametersFlat.addAll(maps.get(i).parameters());
+				parametersFlat.add(weights.get(i));
+			}
+			
+			stale = false;
+		}
+		
 		return Collections.unmodifiableList(parametersFlat);
 	}	
+	
+	/**
+	 * Replaces the map and weight of component i, as part of a rebuild. 
+	 * {@link #rebuilt()} should be called after all components have been 
+	 * replaced.
+	 */
+	protected void set(int i, M map, double weight)
+	{
+		maps.set(i, map);
+		weights.set(i, Math.abs(weight));
+	}
+	
+	/**
+	 * Recomputes the properties derived from the maps and weights after a 
+	 * rebuild. The flat parameters are recomputed when next requested, and 
+	 * the inverses of the maps are left to the maps themselves.
+	 */
+	protected void rebuilt()
+	{
+		weightSum = 0.0;
+		invertible = true;
+		for(int i = 0; i < maps.size(); i++)
+		{
+			weightSum += weights.get(i);
+			invertible = invertible && maps.get(i).invertible();
+		}
+		
+		inverseMaps.clear();
+		stale = true;
+	}
 
 	/**
 	 * The number of parameters required to represent a MapModel.
@@ -201,12 +248,17 @@ public class MapModel<M extends Map & Parametrizable>
 		return (perMap + 1) * size;
 	}
 	
-	public static <M extends Map & Parametrizable> Builder<? extends MapModel<M>> builder(int size, Builder<M> mapBuilder)
+	/**
+	 * A builder for models of the given size. If the map builder is a 
+	 * {@link Rebuilder}, the components of a model are rebuilt in place, 
+	 * otherwise new components are built.
+	 */
+	public static <M extends Map & Parametrizable> Rebuilder<MapModel<M>> builder(int size, Builder<M> mapBuilder)
 	{
 		return new MMBuilder<M>(size, mapBuilder);
 	}
 	
-	protected static class MMBuilder<M extends Map & Parametrizable> implements Builder<MapModel<M>>
+	protected static class MMBuilder<M extends Map & Parametrizable> implements Rebuilder<MapModel<M>>
 	{
 		/**
 		 * 
@@ -226,6 +278,51 @@ public class MapModel<M extends Map & Parametrizable>
 		{
 			return MapModel.build(parameters, mapBuilder);
 		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public MapModel<M> rebuild(MapModel<M> model, double[] parameters, int offset)
+		{
+			check(model, parameters, offset);
+			
+			int n = mapBuilder.numParameters();
+			for(int i = 0; i < size; i++)
+			{
+				int from = offset + i * (n + 1);
+				
+				M map;
+				if(mapBuilder instanceof Rebuilder<?>)
+					map = ((Rebuilder<M>) mapBuilder).rebuild(model.get(i), parameters, from);
+				else
+					map = mapBuilder.build(Point.fromRaw(Arrays.copyOfRange(parameters, from, from + n)));
+				
+				model.set(i, map, parameters[from + n]);
+			}
+			model.rebuilt();
+			
+			return model;
+		}
+
+		/**
+		 * Also checks every component against the map builder, so that no 
+		 * component is changed if any of them would fail.
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public void check(MapModel<M> model, double[] parameters, int offset)
+		{
+			Rebuilder.super.check(model, parameters, offset);
+			
+			if(model.size() != size)
+				throw new IllegalArgumentException("Model has "+model.size()+" components, builder requires "+size+".");
+			
+			if(mapBuilder instanceof Rebuilder<?>)
+			{
+				int n = mapBuilder.numParameters();
+				for(int i = 0; i < size; i++)
+					((Rebuilder<M>) mapBuilder).check(model.get(i), parameters, offset + i * (n + 1));
+			}
+		}
 
 		@Override
 		public int numParameters() 
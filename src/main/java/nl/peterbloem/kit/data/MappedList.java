@@ -2,8 +2,21 @@ package nl.peterbloem.kit.data;
 
 import java.io.Serializable;
 import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * A list that represents the image of a base list of points under a given map.
+ * 
+ * By default, points are mapped every time they are requested. If the list is 
+ * created in memoising mode, each mapped point is stored the first time it is 
+ * requested, so that the map is applied at most once per point (at the cost of
+ * memory for the stored points).
+ * 
+ * NOTE: In memoising mode, changes to the base list are not reflected in points 
+ * that have already been requested. Points appended to the base list are 
+ * mapped (and stored) when they are first requested.
+ */
 public class MappedList extends AbstractList<Point>
 	implements Serializable
 {
@@ -11,16 +24,41 @@ public class MappedList extends AbstractList<Point>
 	private List<Point> base;
 	private Map map;
 	
+	private Point[] memo = null;
+	
 	public MappedList(List<Point> base, Map map)
+	{
+		this(base, map, false);
+	}
+	
+	/**
+	 * @param base
+	 * @param map
+	 * @param memoise Whether to store mapped points after they are first 
+	 * 	requested.
+	 */
+	public MappedList(List<Point> base, Map map, boolean memoise)
 	{
 		this.base = base;
 		this.map = map;
+		
+		if(memoise)
+			memo = new Point[base.size()];
 	}
 
 	@Override
 	public Point get(int index)
 	{
-		return map.map(base.get(index));
+		if(memo == null)
+			return map.map(base.get(index));
+		
+		if(index >= memo.length && index < base.size())
+			memo = Arrays.copyOf(memo, Math.max(base.size(), 2 * memo.length));
+		
+		if(memo[index] == null)
+			memo[index] = map.map(base.get(index));
+		
+		return memo[index];
 	}
 	
 	@Override
@@ -1,8 +1,6 @@
 package nl.peterbloem.kit.data;
 
 import static java.lang.Math.max;
-import static java.lang.Math.min;
-import static nl.peterbloem.kit.Series.series;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -10,14 +8,12 @@ import java.util.List;
 
 import javax.management.RuntimeErrorException;
 
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.linear.SingularValueDecomposition;
 
 import nl.peterbloem.kit.MatrixFunctions;
-import nl.peterbloem.kit.Series;
 
 public class Maps
 {
@@ -115,21 +111,13 @@ public class Maps
 	
 		// * Calculate the covariance martix
 	
-		RealVector xDifference, yDifference;
-		
-		RealMatrix covariance = new Array2DRowRealMatrix(dim, dim);
+		double[] flat = new double[dim * dim], work = new double[2 * dim];
+		double[] xm = xMean.toArray(), ym = yMean.toArray();
 		
 		for(int i = 0; i < size;i++)
-		{
-			xDifference = xSet.get(i).getVector().subtract(xMean);
-			yDifference = ySet.get(i).getVector().subtract(yMean);
-			
-			
-			RealMatrix term = yDifference.outerProduct(xDifference); 
-			covariance =  covariance.add(term);
-		}
+			Similitude.addCrossTerm(xSet.get(i), xm, ySet.get(i), ym, 1.0, work, flat);
 		
-		covariance = covariance.scalarMultiply(1.0/size);
+		RealMatrix covariance = Similitude.scale(flat, 1.0/size, dim);
 		
 		// * Find U, V and S
 		int retries = 0;
@@ -262,26 +250,25 @@ public class Maps
 		if(data.size() == 0)
 			throw new IllegalArgumentException("Cannot find centering map for empty dataset");
 		
-		int dim = data.get(0).dimensionality();
+		return centered(moments(data));
+	}
+	
+	/**
+	 * Returns a map that scales the data seen by the given accumulator to fit 
+	 * the bi-unit square exactly.
+	 * 
+	 * @param moments
+	 * @return
+	 */
+	public static AffineMap centered(Moments moments)
+	{
+		int dim = moments.dimension();
 		
-		double min[]  = new double[dim],
-		       max[]   = new double[dim],
+		double min[]   = moments.min().getBackingData(),
+		       max[]   = moments.max().getBackingData(),
 		       scale[] = new double[dim];
 		
-		for(int i : series(dim))
-		{
-			min[i] = Double.MAX_VALUE;
-			max[i] = Double.MIN_VALUE;
-		}
-		
-		for(Point p : data)
-			for(int i : Series.series(dim))
-			{
-				min[i] = min(min[i], p.get(i));
-				max[i] = max(max[i], p.get(i));
-			}
-		
-		for(int i : Series.series(dim))
+		for(int i = 0; i < dim; i++)
 			scale[i] = 1.0/(max[i] - min[i]);
 		
 		RealVector t = new ArrayRealVector(min);
@@ -307,34 +294,33 @@ public class Maps
 		if(data.size() == 0)
 			throw new IllegalArgumentException("Cannot find centering map for empty dataset");
 		
-		int dim = data.get(0).dimensionality();
+		return centerUniform(moments(data));
+	}
+	
+	/**
+	 * Returns a map that scales the data seen by the given accumulator 
+	 * uniformly to fit the bi-unit cube
+	 * 
+	 * @param moments
+	 * @return
+	 */
+	public static AffineMap centerUniform(Moments moments)
+	{
+		int dim = moments.dimension();
 		
-		double min[]  = new double[dim],
-		       max[]   = new double[dim],
+		double min[]   = moments.min().getBackingData(),
+		       max[]   = moments.max().getBackingData(),
 		       range[] = new double[dim],
 		       rmax = Double.NEGATIVE_INFINITY;
 		
-		for(int i : Series.series(dim))
-		{
-			min[i] = Double.POSITIVE_INFINITY;
-			max[i] = Double.NEGATIVE_INFINITY; 
-		}
-		
-		for(Point p : data)
-			for(int i : series(dim))
-			{
-				min[i] = min(min[i], p.get(i));
-				max[i] = max(max[i], p.get(i));
-			}
-		
-		for(int i : series(dim))
+		for(int i = 0; i < dim; i++)
 		{
 			range[i] = max[i] - min[i];
 			rmax = max(range[i], rmax);
 		}
 		
 		List<Double> t = new ArrayList<Double>(dim);
-		for(int i : series(dim))
+		for(int i = 0; i < dim; i++)
 			t.add(
 					(- (min[i] + 0.5 * range[i])) * (2.0 / rmax)
 				);
@@ -352,33 +338,27 @@ public class Maps
 	 */
 	public static AffineMap centeredWeighted(List<Point> data)
 	{
-		int dim = data.get(0).dimensionality();
-		
-		double[] mean = new double[dim];
+		return centeredWeighted(moments(data));
+	}
+	
+	/**
+	 * Returns a map that centers the center of mass of the data seen by the 
+	 * given accumulator at the origin and scales everything to fit in the 
+	 * bi-unit cube.
+	 * 
+	 * @param moments
+	 * @return
+	 */
+	public static AffineMap centeredWeighted(Moments moments)
+	{
+		int dim = moments.dimension();
 		
-		double min[]   = new double[dim],
-		       max[]   = new double[dim],
+		double mean[]  = moments.mean().getBackingData(),
+		       min[]   = moments.min().getBackingData(),
+		       max[]   = moments.max().getBackingData(),
 		       scale[] = new double[dim];
 		
-		for(int i : Series.series(dim))
-		{
-			mean[i] = 0.0;
-			min[i] = Double.MAX_VALUE;
-			max[i] = Double.MIN_VALUE;
-		}
-		
-		for(Point p : data)
-			for(int i : Series.series(dim))
-			{
-				mean[i] += p.get(i);
-				min[i] = min(min[i], p.get(i));
-				max[i] = max(max[i], p.get(i));
-			}
-		
-		for(int i : Series.series(dim))
-			mean[i] /= (double) data.size();
-		
-		for(int i : Series.series(dim))
+		for(int i = 0; i < dim; i++)
 			scale[i] = 1.0 / Math.max(Math.abs(min[i] - mean[i]), Math.abs(max[i] - mean[i]));
 		
 		// * Subtract the mean
@@ -394,6 +374,16 @@ public class Maps
 		return new AffineMap(rot, t);
 	}
 	
+	/**
+	 * Collects the mean and range of the data in a single pass.
+	 */
+	private static Moments moments(List<Point> data)
+	{
+		Moments moments = new Moments(data.get(0).dimensionality(), false);
+		moments.addAll(data);
+		
+		return moments;
+	}
 	
 	public static Map logistic(double r)
 	{
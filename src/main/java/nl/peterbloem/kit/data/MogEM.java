@@ -2,10 +2,15 @@ package nl.peterbloem.kit.data;
 
 import java.util.List;
 
+import nl.peterbloem.kit.Events;
+import nl.peterbloem.kit.Metrics;
+
 public class MogEM
 {
 	private static final double PERTURB_VAR = 0.03;
 	
+	private static final Metrics.Timer ITERATE = Metrics.timer("MogEM.iterate");
+	
 	private List<Point> data;
 	private MOG model;
 	
@@ -18,8 +23,19 @@ public class MogEM
 	
 	public void iterate()
 	{
-		List<List<Double>> codes = model.expectation(data);
-		model = MOG.maximization(codes, data);
+		long start = ITERATE.start();
+		Object event = Events.begin(Events.EM_ITERATION);
+		
+		boolean success = false;
+		try {
+			List<List<Double>> codes = model.expectation(data);
+			model = MOG.maximization(codes, data);
+			
+			success = true;
+		} finally {
+			Events.end(event, data.size(), model.dimension(), model.size(), success);
+			ITERATE.stop(start, data.size());
+		}
 	}
 	
 	public MOG model()
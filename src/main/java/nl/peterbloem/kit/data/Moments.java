@@ -0,0 +1,379 @@
+package nl.peterbloem.kit.data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * <p>
+ * Accumulates the (weighted) mean, the covariance or variance, and the
+ * per-dimension minimum and maximum of a sequence of points in a single pass.
+ * </p><p>
+ * The mean and the centered second moments are updated incrementally (using
+ * Welford's method, extended to weights by West), which avoids the
+ * cancellation errors of accumulating raw sums of squares. Two accumulators
+ * that have seen different parts of the data can be merged (using the
+ * method by Chan et al.), so that the data can be split over threads or
+ * chunks. Memory use is O(d^2) when the full covariance is tracked and O(d)
+ * otherwise, regardless of the number of points.
+ * </p><p>
+ * This class is not thread-safe: use one accumulator per thread and merge
+ * them afterwards.
+ * </p>
+ *
+ * @author Peter
+ */
+public class Moments implements Serializable
+{
+	private static final long serialVersionUID = -2127565549981052373L;
+
+	private int dim;
+	private boolean full;
+
+	private long n = 0;
+	private double weightSum = 0.0;
+
+	private double[] mean;
+	// * The centered second moments. If full, this is the upper triangle of a
+	//   flat, row-major d x d matrix, otherwise it's the diagonal.
+	private double[] sq;
+
+	private double[] min, max;
+
+	private transient double[] diff;
+
+	/**
+	 * Creates an accumulator that tracks the full covariance matrix.
+	 *
+	 * @param dim
+	 */
+	public Moments(int dim)
+	{
+		this(dim, true);
+	}
+
+	/**
+	 * @param dim
+	 * @param covariance Whether to track the full covariance matrix. If false,
+	 * 	only the variances per dimension are tracked.
+	 */
+	public Moments(int dim, boolean covariance)
+	{
+		this.dim = dim;
+		this.full = covariance;
+
+		mean = new double[dim];
+		sq = new double[covariance ? dim * dim : dim];
+
+		min = new double[dim];
+		max = new double[dim];
+		Arrays.fill(min, Double.POSITIVE_INFINITY);
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+	}
+
+	public void add(double x)
+	{
+		add(x, 1.0);
+	}
+
+	/**
+	 * Adds a single value to a one-dimensional accumulator.
+	 */
+	public void add(double x, double weight)
+	{
+		if(dim != 1)
+			throw new IllegalStateException("Single values can only be added to a one-dimensional accumulator (dimension is "+dim+").");
+
+		if(weight < 0.0)
+			throw new IllegalArgumentException("Weight ("+weight+") cannot be negative.");
+		if(weight == 0.0)
+			return;
+
+		n++;
+		weightSum += weight;
+
+		double d = x - mean[0];
+		mean[0] += d * (weight / weightSum);
+		sq[0] += weight * d * (x - mean[0]);
+
+		min[0] = Math.min(min[0], x);
+		max[0] = Math.max(max[0], x);
+	}
+
+	public void add(Point point)
+	{
+		add(point.getBackingData(), 1.0);
+	}
+
+	public void add(Point point, double weight)
+	{
+		add(point.getBackingData(), weight);
+	}
+
+	public void add(double[] x)
+	{
+		add(x, 1.0);
+	}
+
+	/**
+	 * Adds a single point with the given weight.
+	 *
+	 * @param x
+	 * @param weight A nonnegative weight. Points with weight zero are ignored.
+	 */
+	public void add(double[] x, double weight)
+	{
+		if(weight < 0.0)
+			throw new IllegalArgumentException("Weight ("+weight+") cannot be negative.");
+		if(weight == 0.0)
+			return;
+
+		if(diff == null)
+			diff = new double[dim];
+
+		n++;
+		weightSum += weight;
+		double r = weight / weightSum;
+
+		for(int i = 0; i < dim; i++)
+		{
+			diff[i] = x[i] - mean[i];
+			mean[i] += diff[i] * r;
+
+			if(x[i] < min[i]) min[i] = x[i];
+			if(x[i] > max[i]) max[i] = x[i];
+		}
+
+		if(full)
+		{
+			for(int i = 0; i < dim; i++)
+			{
+				double wd = weight * diff[i];
+				int id = i * dim;
+				for(int j = i; j < dim; j++)
+					sq[id + j] += wd * (x[j] - mean[j]);
+			}
+		} else
+		{
+			for(int i = 0; i < dim; i++)
+				sq[i] += weight * diff[i] * (x[i] - mean[i]);
+		}
+	}
+
+	/**
+	 * Adds all points returned by the given iterator. The points are not
+	 * stored, so the iterator may be backed by a stream that does not fit into
+	 * memory.
+	 */
+	public void addAll(Iterator<? extends Point> points)
+	{
+		while(points.hasNext())
+			add(points.next().getBackingData(), 1.0);
+	}
+
+	public void addAll(Iterable<? extends Point> points)
+	{
+		addAll(points.iterator());
+	}
+
+	public void addAll(Weighted<? extends Point> points)
+	{
+		for(int i = 0; i < points.size(); i++)
+			add(points.get(i).getBackingData(), points.weight(i));
+	}
+
+	/**
+	 * Adds the statistics of another accumulator to this one. After the merge
+	 * this accumulator is equivalent to one that has seen the data of both.
+	 *
+	 * If one of the two does not track the full covariance, the result will
+	 * only track the variances.
+	 *
+	 * @param other
+	 * @return This accumulator
+	 */
+	public Moments merge(Moments other)
+	{
+		if(other.dim != dim)
+			throw new IllegalArgumentException("Dimension of other accumulator ("+other.dim+") does not match this one's ("+dim+").");
+		if(other.weightSum == 0.0)
+			return this;
+
+		if(full && ! other.full)
+		{
+			double[] diagonal = new double[dim];
+			for(int i = 0; i < dim; i++)
+				diagonal[i] = sq[i * dim + i];
+
+			sq = diagonal;
+			full = false;
+		}
+
+		double total = weightSum + other.weightSum;
+		double r = other.weightSum / total;
+		double c = weightSum * other.weightSum / total;
+
+		double[] delta = new double[dim];
+		for(int i = 0; i < dim; i++)
+			delta[i] = other.mean[i] - mean[i];
+
+		if(full)
+		{
+			for(int i = 0; i < dim; i++)
+				for(int j = i; j < dim; j++)
+					sq[i * dim + j] += other.sq[i * dim + j] + c * delta[i] * delta[j];
+		} else
+		{
+			for(int i = 0; i < dim; i++)
+				sq[i] += other.sq(i) + c * delta[i] * delta[i];
+		}
+
+		for(int i = 0; i < dim; i++)
+		{
+			mean[i] += delta[i] * r;
+			min[i] = Math.min(min[i], other.min[i]);
+			max[i] = Math.max(max[i], other.max[i]);
+		}
+
+		weightSum = total;
+		n += other.n;
+
+		return this;
+	}
+
+	/**
+	 * The centered second moment of dimension i.
+	 */
+	private double sq(int i)
+	{
+		return full ? sq[i * dim + i] : sq[i];
+	}
+
+	public int dimension()
+	{
+		return dim;
+	}
+
+	/**
+	 * The number of points (with nonzero weight) seen so far.
+	 */
+	public long size()
+	{
+		return n;
+	}
+
+	public double weightSum()
+	{
+		return weightSum;
+	}
+
+	/**
+	 * Whether this accumulator tracks the full covariance matrix.
+	 */
+	public boolean covariance()
+	{
+		return full;
+	}
+
+	/**
+	 * The weighted mean of the points seen so far (the zero vector if no
+	 * points have been seen).
+	 */
+	public Point mean()
+	{
+		return new Point(mean);
+	}
+
+	/**
+	 * The mean of a one-dimensional accumulator.
+	 */
+	public double mean(int dimension)
+	{
+		return mean[dimension];
+	}
+
+	public Point min()
+	{
+		return new Point(min);
+	}
+
+	public Point max()
+	{
+		return new Point(max);
+	}
+
+	/**
+	 * The weighted variance of the given dimension.
+	 *
+	 * @param dimension
+	 * @param biased If true, the centered sum of squares is divided by the sum
+	 * 	of the weights. If false, it is divided by the sum of weights minus
+	 * 	one (which gives the sample variance when all weights are 1).
+	 * @return The variance, or 0.0 if the divisor is not positive
+	 */
+	public double variance(int dimension, boolean biased)
+	{
+		double div = biased ? weightSum : weightSum - 1.0;
+		if(div <= 0.0)
+			return 0.0;
+
+		return sq(dimension) / div;
+	}
+
+	/**
+	 * The mean of the variances over all dimensions (ie. the variance s of the
+	 * spherical normal distribution with covariance sI that best fits the
+	 * data).
+	 *
+	 * @param biased
+	 * @return
+	 */
+	public double sphericalVariance(boolean biased)
+	{
+		double sum = 0.0;
+		for(int i = 0; i < dim; i++)
+			sum += variance(i, biased);
+
+		return sum / dim;
+	}
+
+	/**
+	 * The weighted covariance matrix.
+	 *
+	 * @param biased If true, the centered sum of squares is divided by the sum
+	 * 	of the weights. If false, it is divided by the sum of weights minus
+	 * 	one.
+	 * @throws IllegalStateException If this accumulator does not track the
+	 * 	full covariance.
+	 */
+	public RealMatrix covariance(boolean biased)
+	{
+		if(! full)
+			throw new IllegalStateException("This accumulator does not track the full covariance matrix.");
+
+		double div = biased ? weightSum : weightSum - 1.0;
+
+		RealMatrix cov = new Array2DRowRealMatrix(dim, dim);
+		if(div <= 0.0)
+			return cov;
+
+		for(int i = 0; i < dim; i++)
+			for(int j = i; j < dim; j++)
+			{
+				double value = sq[i * dim + j] / div;
+				cov.setEntry(i, j, value);
+				cov.setEntry(j, i, value);
+			}
+
+		return cov;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[n=" + n + ", weight=" + weightSum + ", mean=" + mean() + "]";
+	}
+}
@@ -0,0 +1,471 @@
+package nl.peterbloem.kit.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * An append-only store of points of the same dimension, kept outside the
+ * Java heap and indexed by long, so that it can hold more than 2^31 
+ * coordinates without adding to the heap (or to the work of the garbage 
+ * collector).
+ * </p><p>
+ * The points are stored in a temporary file (in java.io.tmpdir), which is 
+ * memory-mapped. The operating system keeps the pages it needs in memory and
+ * writes the rest back to the file. Unlike buffers from 
+ * ByteBuffer.allocateDirect, which are capped by -XX:MaxDirectMemorySize 
+ * (by default, the maximum heap size), mapped files are not limited by the 
+ * JVM's settings, only by the address space and the disk.
+ * </p><p>
+ * The store is made up of segments of at most 2^27 doubles (1 GiB) each,
+ * which are allocated as points are added. The first segment holds
+ * {@link #INITIAL_SEGMENT} points, and each new segment doubles the capacity
+ * of the store, up to the maximum segment size. A point never spans two
+ * segments.
+ * </p><p>
+ * The store works with the kit's estimators through the following views:
+ * </p>
+ * <ul>
+ * <li>{@link #iterator()} is a sequential scan, for instance for
+ * {@link Moments#addAll(Iterable)} or {@link OnlineMogEM#run(Iterator)}.
+ * {@link #moments()} scans without creating Points, for {@link MVN#find(Moments, boolean)}.</li>
+ * <li>{@link #view(long, int)} is a random-access List&lt;Point&gt; over a
+ * range of the store, for code that needs a list, like
+ * {@link MOG#logDensity(java.util.Collection)}.</li>
+ * <li>{@link #nearest(Point)} and {@link #distance(Point)} scan the
+ * buffers directly.</li>
+ * </ul>
+ * <p>
+ * Points returned by the store are copies. Once the store is
+ * {@link #close() closed}, it unmaps its buffers and deletes the file, and 
+ * every operation throws an IllegalStateException. On Java 8, the mappings 
+ * can only be released when the buffers are collected, so there the memory 
+ * is not freed deterministically.
+ * </p><p>
+ * The store is not thread-safe. Several threads may read from it at once, 
+ * but adding points or closing the store while other threads use it must be 
+ * synchronized externally.
+ * </p>
+ *
+ * @author Peter
+ */
+public class OffHeapPoints implements Iterable<Point>, Closeable
+{
+	/**
+	 * The largest number of doubles in one segment.
+	 */
+	public static final int MAX_SEGMENT = 1 << 27;
+
+	/**
+	 * The number of points in the first segment.
+	 */
+	public static final int INITIAL_SEGMENT = 1024;
+
+	private final int dimension;
+	private final int segmentPoints;
+
+	private List<DoubleBuffer> segments = new ArrayList<DoubleBuffer>();
+	// * The mapped regions behind the segments, kept so they can be unmapped
+	private List<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+
+	private File file = null;
+	private FileChannel channel = null;
+	// * The index of the first point of each segment
+	private long[] starts = new long[8];
+	private long size = 0, capacity = 0;
+
+	public OffHeapPoints(int dimension)
+	{
+		this(dimension, Math.max(1, MAX_SEGMENT / dimension));
+	}
+
+	/**
+	 * @param dimension The dimension of the points.
+	 * @param segmentPoints The maximum number of points per segment. The
+	 * 	segments should not exceed {@link #MAX_SEGMENT} doubles.
+	 */
+	public OffHeapPoints(int dimension, int segmentPoints)
+	{
+		if(dimension < 1)
+			throw new IllegalArgumentException("Dimension ("+dimension+") should be positive.");
+		if(segmentPoints < 1 || (long) segmentPoints * dimension > MAX_SEGMENT)
+			throw new IllegalArgumentException("Segment size ("+segmentPoints+" points) should be positive and at most "+MAX_SEGMENT+" values.");
+
+		this.dimension = dimension;
+		this.segmentPoints = segmentPoints;
+	}
+
+	public int dimension()
+	{
+		return dimension;
+	}
+
+	public long size()
+	{
+		checkOpen();
+		return size;
+	}
+
+	/**
+	 * The number of points for which memory has been allocated.
+	 */
+	public long capacity()
+	{
+		checkOpen();
+		return capacity;
+	}
+
+	public void add(Point point)
+	{
+		add(point.getBackingData(), 0);
+	}
+
+	/**
+	 * Appends the point of dimension() values starting at values[offset].
+	 */
+	public void add(double[] values, int offset)
+	{
+		checkOpen();
+		if(offset + dimension > values.length)
+			throw new IllegalArgumentException("Point should have dimension "+dimension+".");
+
+		if(size == capacity)
+			grow();
+
+		int segment = segments.size() - 1;
+		DoubleBuffer buffer = segments.get(segment);
+		int base = (int) (size - starts[segment]) * dimension;
+		for(int j = 0; j < dimension; j++)
+			buffer.put(base + j, values[offset + j]);
+
+		size++;
+	}
+
+	public void addAll(Iterable<? extends Point> points)
+	{
+		for(Point point : points)
+			add(point);
+	}
+
+	public Point get(long i)
+	{
+		double[] values = new double[dimension];
+		get(i, values, 0);
+
+		return Point.fromRaw(values);
+	}
+
+	/**
+	 * Copies point i into out, starting at out[offset].
+	 */
+	public void get(long i, double[] out, int offset)
+	{
+		check(i);
+
+		int segment = segment(i);
+		DoubleBuffer buffer = segments.get(segment);
+		int base = (int) (i - starts[segment]) * dimension;
+		for(int j = 0; j < dimension; j++)
+			out[offset + j] = buffer.get(base + j);
+	}
+
+	/**
+	 * The squared euclidean distance between point i and the query (of length
+	 * dimension()).
+	 */
+	public double sqDistance(long i, double[] query)
+	{
+		check(i);
+
+		int segment = segment(i);
+		return sqDistance(segments.get(segment), (int) (i - starts[segment]) * dimension, query);
+	}
+
+	/**
+	 * The index of the point closest to the query, or -1 if the store is
+	 * empty.
+	 */
+	public long nearest(Point query)
+	{
+		double[] q = query(query);
+
+		double min = Double.POSITIVE_INFINITY;
+		long index = -1, i = 0;
+		for(DoubleBuffer buffer : segments)
+			for(int p = 0, n = buffer.capacity() / dimension; p < n && i < size; p++, i++)
+			{
+				double d = sqDistance(buffer, p * dimension, q);
+				if(d < min)
+				{
+					min = d;
+					index = i;
+				}
+			}
+
+		return index;
+	}
+
+	/**
+	 * The euclidean distance from the query to the closest point in the store
+	 * (positive infinity if the store is empty).
+	 */
+	public double distance(Point query)
+	{
+		long nearest = nearest(query);
+		return nearest < 0 ? Double.POSITIVE_INFINITY : Math.sqrt(sqDistance(nearest, query.getBackingData()));
+	}
+
+	/**
+	 * The mean, covariance, minimum and maximum of all points, computed in one
+	 * scan without creating Points.
+	 */
+	public Moments moments()
+	{
+		checkOpen();
+
+		Moments moments = new Moments(dimension);
+		double[] buffer = new double[dimension];
+		for(long i = 0; i < size; i++)
+		{
+			get(i, buffer, 0);
+			moments.add(buffer);
+		}
+
+		return moments;
+	}
+
+	/**
+	 * A read-only, random-access list view of the n points starting at from.
+	 * Each call to get() creates a new Point.
+	 */
+	public List<Point> view(long from, int n)
+	{
+		checkOpen();
+		if(from < 0 || n < 0 || from + n > size)
+			throw new IndexOutOfBoundsException("Range ["+from+", "+(from + n)+") out of bounds for size "+size+".");
+
+		return new View(from, n);
+	}
+
+	/**
+	 * A sequential scan over all points. Each call to next() creates a new
+	 * Point.
+	 */
+	@Override
+	public Iterator<Point> iterator()
+	{
+		checkOpen();
+
+		return new Iterator<Point>()
+		{
+			private long next = 0;
+
+			@Override
+			public boolean hasNext()
+			{
+				return next < size();
+			}
+
+			@Override
+			public Point next()
+			{
+				if(! hasNext())
+					throw new NoSuchElementException();
+
+				return get(next++);
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Unmaps the buffers and deletes the file. The store cannot be used 
+	 * afterwards. Closing a closed store has no effect.
+	 */
+	@Override
+	public void close()
+	{
+		if(closed())
+			return;
+
+		segments = null;
+		size = 0;
+		capacity = 0;
+
+		for(MappedByteBuffer region : regions)
+			unmap(region);
+		regions = null;
+
+		try {
+			if(channel != null)
+				channel.close();
+		} catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		} finally {
+			if(file != null)
+				file.delete();
+		}
+	}
+
+	public boolean closed()
+	{
+		return segments == null;
+	}
+
+	/**
+	 * Allocates a new segment, doubling the capacity up to the maximum segment
+	 * size.
+	 */
+	private void grow()
+	{
+		int n = (int) Math.min(segmentPoints, Math.max(INITIAL_SEGMENT, capacity));
+
+		int segment = segments.size();
+		if(segment == starts.length)
+			starts = Arrays.copyOf(starts, 2 * segment);
+		starts[segment] = capacity;
+
+		MappedByteBuffer region;
+		try {
+			if(channel == null)
+			{
+				file = File.createTempFile("points", ".bin");
+				file.deleteOnExit();
+				channel = new RandomAccessFile(file, "rw").getChannel();
+			}
+
+			region = channel.map(FileChannel.MapMode.READ_WRITE, capacity * dimension * 8, (long) n * dimension * 8);
+		} catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+
+		regions.add(region);
+		segments.add(region
+				.order(ByteOrder.nativeOrder())
+				.asDoubleBuffer());
+		capacity += n;
+	}
+
+	/**
+	 * The file that holds the points (null until the first point is added).
+	 */
+	File file()
+	{
+		return file;
+	}
+
+	/**
+	 * Releases a mapped buffer through Unsafe.invokeCleaner (Java 9 and up). 
+	 * If that is not available, the mapping is released when the buffer is 
+	 * collected. The buffer must not be used afterwards.
+	 */
+	private static void unmap(ByteBuffer buffer)
+	{
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+
+			Method cleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			cleaner.invoke(field.get(null), buffer);
+		} catch(Exception e)
+		{
+			// * Java 8, or no access to Unsafe: leave it to the garbage 
+			//   collector
+		}
+	}
+
+	/**
+	 * The segment that contains point i.
+	 */
+	private int segment(long i)
+	{
+		int segment = Arrays.binarySearch(starts, 0, segments.size(), i);
+		return segment >= 0 ? segment : - segment - 2;
+	}
+
+	private double sqDistance(DoubleBuffer buffer, int base, double[] query)
+	{
+		double sum = 0.0;
+		for(int j = 0; j < dimension; j++)
+		{
+			double d = buffer.get(base + j) - query[j];
+			sum += d * d;
+		}
+
+		return sum;
+	}
+
+	private double[] query(Point query)
+	{
+		checkOpen();
+		if(query.dimensionality() != dimension)
+			throw new IllegalArgumentException("Query ("+query.dimensionality()+") should have dimension "+dimension+".");
+
+		return query.getBackingData();
+	}
+
+	private void check(long i)
+	{
+		checkOpen();
+		if(i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Index "+i+" out of bounds for size "+size+".");
+	}
+
+	private void checkOpen()
+	{
+		if(segments == null)
+			throw new IllegalStateException("The store has been closed.");
+	}
+
+	private class View extends AbstractList<Point> implements RandomAccess
+	{
+		private final long from;
+		private final int n;
+
+		public View(long from, int n)
+		{
+			this.from = from;
+			this.n = n;
+		}
+
+		@Override
+		public Point get(int index)
+		{
+			if(index < 0 || index >= n)
+				throw new IndexOutOfBoundsException("Index "+index+" out of bounds for size "+n+".");
+
+			return OffHeapPoints.this.get(from + index);
+		}
+
+		@Override
+		public int size()
+		{
+			return n;
+		}
+	}
+}
@@ -0,0 +1,439 @@
+package nl.peterbloem.kit.data;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.log;
+import static java.lang.Math.pow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import nl.peterbloem.kit.Dense;
+import nl.peterbloem.kit.Global;
+
+/**
+ * <p>
+ * Stepwise (online) EM for mixtures of Gaussians, for data that arrives as a
+ * stream and does not fit into memory.
+ * </p><p>
+ * Where {@link MogEM} iterates over the full dataset, this class consumes the
+ * data in mini-batches. For each batch, it computes the responsibilities of
+ * the components under the current model (the E step), and moves the
+ * sufficient statistics of each component (its weight, the weighted sum of
+ * the points and the weighted sum of their outer products) towards the
+ * statistics of the batch, with a step size that decays as
+ * (t + 2)^-alpha for the t-th batch. The model is then re-estimated from the
+ * statistics (the M step). This is the algorithm described by Cappé and
+ * Moulines in "Online expectation-maximization algorithm for latent data
+ * models".
+ * </p><p>
+ * Memory use is O(k d^2) for k components in d dimensions, regardless of the
+ * length of the stream. The current model can be retrieved at any time with
+ * {@link #model()}.
+ * </p>
+ *
+ * @author Peter
+ */
+public class OnlineMogEM
+{
+	/**
+	 * Added to the diagonal of each covariance matrix to keep it positive
+	 * definite.
+	 */
+	public static double REGULARIZATION = 10E-8;
+
+	private static final double LOG2PI = log(2.0 * Math.PI);
+
+	private int k, dim, batchSize;
+	private double alpha;
+
+	// * The exponentially weighted sufficient statistics per component
+	private double[] s0;
+	private double[][] s1, s2;
+
+	// * The current model, derived from the statistics
+	private double[] logPriors;
+	private double[][] means;
+	private double[][] chol; // lower triangular, flat and row-major
+	private double[] logNorm;
+
+	private long batches = 0, points = 0;
+	private long nanos = 0;
+
+	// * Buffers
+	private double[] resp, diff, z;
+	private double[] b0;
+	private double[][] b1, b2;
+
+	/**
+	 * Creates an online EM learner with a step size decay of 0.6
+	 *
+	 * @param numComponents The number of components in the mixture
+	 * @param dim The dimension of the data
+	 * @param batchSize The number of points per mini-batch
+	 */
+	public OnlineMogEM(int numComponents, int dim, int batchSize)
+	{
+		this(numComponents, dim, batchSize, 0.6);
+	}
+
+	/**
+	 *
+	 * @param numComponents The number of components in the mixture
+	 * @param dim The dimension of the data
+	 * @param batchSize The number of points per mini-batch
+	 * @param alpha The decay of the step size. For convergence, this should be
+	 * 	in (0.5, 1]. Smaller values make the model adapt faster to recent data.
+	 */
+	public OnlineMogEM(int numComponents, int dim, int batchSize, double alpha)
+	{
+		if(alpha <= 0.5 || alpha > 1.0)
+			throw new IllegalArgumentException("Step size decay ("+alpha+") should be in (0.5, 1].");
+
+		this.k = numComponents;
+		this.dim = dim;
+		this.batchSize = batchSize;
+		this.alpha = alpha;
+
+		s0 = new double[k];
+		s1 = new double[k][dim];
+		s2 = new double[k][dim * dim];
+
+		b0 = new double[k];
+		b1 = new double[k][dim];
+		b2 = new double[k][dim * dim];
+
+		logPriors = new double[k];
+		means = new double[k][dim];
+		chol = new double[k][dim * dim];
+		logNorm = new double[k];
+
+		resp = new double[k];
+		diff = new double[dim];
+		z = new double[dim];
+	}
+
+	/**
+	 * Consumes a single mini-batch from the given iterator, and updates the
+	 * model.
+	 *
+	 * @param data
+	 * @return The number of points consumed. This is less than the batch size
+	 * 	only if the iterator ran out.
+	 */
+	public int iterate(Iterator<? extends Point> data)
+	{
+		List<Point> batch = new ArrayList<Point>(batchSize);
+		while(batch.size() < batchSize && data.hasNext())
+			batch.add(data.next());
+
+		if(! batch.isEmpty())
+			update(batch);
+
+		return batch.size();
+	}
+
+	/**
+	 * Consumes the given iterator completely, one mini-batch at a time.
+	 *
+	 * @param data
+	 * @return The number of points consumed.
+	 */
+	public long run(Iterator<? extends Point> data)
+	{
+		long n = 0;
+		while(data.hasNext())
+			n += iterate(data);
+
+		return n;
+	}
+
+	/**
+	 * Performs a single step of stepwise EM on the given batch of points.
+	 *
+	 * @param batch
+	 */
+	public void update(List<? extends Point> batch)
+	{
+		long t0 = System.nanoTime();
+
+		for(int c = 0; c < k; c++)
+		{
+			b0[c] = 0.0;
+			Arrays.fill(b1[c], 0.0);
+			Arrays.fill(b2[c], 0.0);
+		}
+
+		// * E step: accumulate the responsibility-weighted statistics of the
+		//   batch.
+		//   The first batch is assigned to the components at random, as in
+		//   MOG.initial()
+		for(Point point : batch)
+		{
+			double[] x = point.getBackingData();
+
+			if(batches == 0)
+			{
+				Arrays.fill(resp, 0.0);
+				resp[Global.random().nextInt(k)] = 1.0;
+			} else
+				responsibilities(x);
+
+			for(int c = 0; c < k; c++)
+			{
+				double r = resp[c];
+				if(r == 0.0)
+					continue;
+
+				b0[c] += r;
+				double[] b1c = b1[c], b2c = b2[c];
+				for(int i = 0; i < dim; i++)
+				{
+					double rx = r * x[i];
+					b1c[i] += rx;
+					int id = i * dim;
+					for(int j = 0; j <= i; j++)
+						b2c[id + j] += rx * x[j];
+				}
+			}
+		}
+
+		// * Move the statistics towards those of the batch
+		double step = batches == 0 ? 1.0 : pow(batches + 2, -alpha);
+		double n = batch.size();
+		for(int c = 0; c < k; c++)
+		{
+			s0[c] = (1.0 - step) * s0[c] + step * b0[c] / n;
+			for(int i = 0; i < dim; i++)
+				s1[c][i] = (1.0 - step) * s1[c][i] + step * b1[c][i] / n;
+			for(int i = 0; i < dim * dim; i++)
+				s2[c][i] = (1.0 - step) * s2[c][i] + step * b2[c][i] / n;
+		}
+
+		maximization(batch);
+
+		batches ++;
+		points += batch.size();
+		nanos += System.nanoTime() - t0;
+	}
+
+	/**
+	 * Computes the responsibilities of the components for the given point
+	 * into the resp buffer.
+	 */
+	private void responsibilities(double[] x)
+	{
+		double max = Double.NEGATIVE_INFINITY;
+		for(int c = 0; c < k; c++)
+		{
+			resp[c] = logPriors[c] + logDensity(c, x);
+			max = Math.max(max, resp[c]);
+		}
+
+		double sum = 0.0;
+		for(int c = 0; c < k; c++)
+		{
+			resp[c] = exp(resp[c] - max);
+			sum += resp[c];
+		}
+
+		for(int c = 0; c < k; c++)
+			resp[c] /= sum;
+	}
+
+	/**
+	 * The log density of component c at x.
+	 */
+	private double logDensity(int c, double[] x)
+	{
+		double[] mean = means[c], l = chol[c];
+
+		for(int i = 0; i < dim; i++)
+			diff[i] = x[i] - mean[i];
+
+		// * Solve L z = x - mean by forward substitution
+		double quad = 0.0;
+		for(int i = 0; i < dim; i++)
+		{
+			double sum = diff[i];
+			int id = i * dim;
+			for(int j = 0; j < i; j++)
+				sum -= l[id + j] * z[j];
+			z[i] = sum / l[id + i];
+
+			quad += z[i] * z[i];
+		}
+
+		return logNorm[c] - 0.5 * quad;
+	}
+
+	/**
+	 * Derives the model parameters from the sufficient statistics. Components
+	 * that have lost all their weight, or whose covariance has become
+	 * degenerate, are restarted on a random point of the current batch.
+	 */
+	private void maximization(List<? extends Point> batch)
+	{
+		double total = 0.0;
+		for(int c = 0; c < k; c++)
+			total += s0[c];
+
+		for(int c = 0; c < k; c++)
+		{
+			boolean good = s0[c] > 0.0;
+
+			if(good)
+			{
+				for(int i = 0; i < dim; i++)
+					means[c][i] = s1[c][i] / s0[c];
+
+				double[] cov = new double[dim * dim];
+				for(int i = 0; i < dim; i++)
+					for(int j = 0; j <= i; j++)
+					{
+						double value = s2[c][i * dim + j] / s0[c] - means[c][i] * means[c][j];
+						if(i == j)
+							value += REGULARIZATION;
+
+						cov[i * dim + j] = value;
+						cov[j * dim + i] = value;
+					}
+
+				good = cholesky(c, cov);
+			}
+
+			if(! good)
+			{
+				Global.log().info("Restarting component " + c + " of online MOG.");
+				restart(c, batch, total);
+			}
+		}
+
+		// * Restarts change the weights, so the priors are normalized
+		//   afterwards
+		total = 0.0;
+		for(int c = 0; c < k; c++)
+			total += s0[c];
+
+		for(int c = 0; c < k; c++)
+			logPriors[c] = log(s0[c] / total);
+	}
+
+	/**
+	 * Places component c at a random point from the batch, with unit
+	 * covariance and a small weight.
+	 */
+	private void restart(int c, List<? extends Point> batch, double total)
+	{
+		double[] x = batch.get(Global.random().nextInt(batch.size())).getBackingData();
+
+		s0[c] = Math.max(total, 1.0) / (k * k);
+		for(int i = 0; i < dim; i++)
+		{
+			means[c][i] = x[i];
+			s1[c][i] = s0[c] * x[i];
+			for(int j = 0; j < dim; j++)
+				s2[c][i * dim + j] = s0[c] * ((i == j ? 1.0 : 0.0) + x[i] * x[j]);
+		}
+
+		cholesky(c, Dense.identity(dim));
+	}
+
+	/**
+	 * Stores the cholesky decomposition of the given covariance (a flat, 
+	 * symmetric matrix, which is overwritten) for component c, and the 
+	 * corresponding normalization constant.
+	 *
+	 * @return false if the decomposition failed.
+	 */
+	private boolean cholesky(int c, double[] cov)
+	{
+		if(! Dense.cholesky(cov, dim, MVN.THRESHOLD))
+			return false;
+
+		System.arraycopy(cov, 0, chol[c], 0, dim * dim);
+
+		double logDet = 0.0;
+		for(int i = 0; i < dim; i++)
+			logDet += 2.0 * log(cov[i * dim + i]);
+
+		logNorm[c] = -0.5 * (dim * LOG2PI + logDet);
+
+		return true;
+	}
+
+	/**
+	 * Returns a snapshot of the current model. The snapshot is not affected by
+	 * subsequent updates.
+	 *
+	 * @return null if no data has been seen yet.
+	 */
+	public MOG model()
+	{
+		if(batches == 0)
+			return null;
+
+		MOG mog = null;
+		for(int c = 0; c < k; c++)
+		{
+			RealMatrix l = new Array2DRowRealMatrix(dim, dim);
+			for(int i = 0; i < dim; i++)
+				for(int j = 0; j <= i; j++)
+					l.setEntry(i, j, chol[c][i * dim + j]);
+
+			AffineMap map = new AffineMap(l, new ArrayRealVector(means[c]));
+			double prior = exp(logPriors[c]);
+
+			if(mog == null)
+				mog = new MOG(map, prior);
+			else
+				mog.addMap(map, prior);
+		}
+
+		return mog;
+	}
+
+	/**
+	 * The current prior probability of component c. The priors sum to one.
+	 */
+	public double prior(int c)
+	{
+		return exp(logPriors[c]);
+	}
+
+	/**
+	 * The number of mini-batches processed so far.
+	 */
+	public long batches()
+	{
+		return batches;
+	}
+
+	/**
+	 * The number of points processed so far.
+	 */
+	public long points()
+	{
+		return points;
+	}
+
+	/**
+	 * The number of points processed per second, measured over the time spent
+	 * in {@link #update(List)}. Since the updates run in the calling thread,
+	 * this is the throughput per core.
+	 *
+	 * @return
+	 */
+	public double throughput()
+	{
+		if(nanos == 0)
+			return 0.0;
+
+		return points / (nanos * 1E-9);
+	}
+}
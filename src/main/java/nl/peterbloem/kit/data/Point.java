@@ -12,7 +12,6 @@ import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealVector;
 
 import nl.peterbloem.kit.Global;
-import nl.peterbloem.kit.Series;
 import nl.peterbloem.kit.distance.Metrizable;
 
 public class Point 
@@ -91,7 +90,7 @@ public class Point
 	 */
 	public void set(List<Double> values)
 	{
-		for(int i : Series.series(Math.min(size(), values.size())))
+		for(int i = 0; i < Math.min(size(), values.size()); i++)
 			set(i, values.get(i));
 	}
 	
@@ -168,6 +167,22 @@ public class Point
 
 	public static double sqDistance(Point a, Point b)
 	{
+		double[] x = a.values, y = b.values;
+		if(x.length == y.length)
+		{
+			// * Unrolled for the common low-dimensional cases
+			if(x.length == 2)
+			{
+				double d0 = x[0] - y[0], d1 = x[1] - y[1];
+				return d0 * d0 + d1 * d1;
+			}
+			if(x.length == 3)
+			{
+				double d0 = x[0] - y[0], d1 = x[1] - y[1], d2 = x[2] - y[2];
+				return d0 * d0 + d1 * d1 + d2 * d2;
+			}
+		}
+		
 		Point mi, ma;
 		if(a.values.length < b.values.length)
 		{
@@ -8,12 +8,13 @@ import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 
 import nl.peterbloem.kit.MatrixFunctions;
-import nl.peterbloem.kit.search.Builder;
 import nl.peterbloem.kit.search.Parametrizable;
+import nl.peterbloem.kit.search.Rebuilder;
 /**
  * A similitude (or similarity transform) consists of rotation, a uniform 
  * scaling and a translation. 
@@ -29,9 +30,7 @@ public class Rotation extends AffineMap implements Parametrizable
 	public static double ACCURACY = 10E-12;
 	
 
-	protected List<Double> angles;
-	
-	protected RealMatrix transformation;
+	protected Point angles;
 		
 	public Rotation(List<Double> parameters)
 	{
@@ -43,10 +42,13 @@ public class Rotation extends AffineMap implements Parametrizable
 		if((dimension*dimension - dimension)/2  != s)
 			throw new IllegalArgumentException("Number of parameters ("+s+") should satisfy (d^2 - d)/2 (d="+ddim+", " + dimension + ")");
 		
-		this.angles = new ArrayList<Double>(parameters);
+		this.angles = new Point(parameters);
 		
 		RealMatrix rotation = toRotationMatrix(angles);
 		this.transformation = rotation;
+		this.translation = new ArrayRealVector(dimension);
+		this.invertible = true;
+		this.dim = dimension;
 	}
 
 	
@@ -70,14 +72,6 @@ public class Rotation extends AffineMap implements Parametrizable
 		return transformation.copy();
 	}
 
-	@Override
-	public Point map(Point in)
-	{
-		RealVector result = transformation.operate(in.getVector());
-		
-		return new Point(result);
-	}
-
 	public static int numParameters(int dimension)
 	{
 		return (dimension * dimension - dimension) / 2;
@@ -122,12 +116,28 @@ public class Rotation extends AffineMap implements Parametrizable
 		return dimension;
 	}
 	
-	public static Builder<Rotation> rotationBuilder(int dimension)
+	@Override
+	void set(double[] parameters, int offset)
+	{
+		double[] values = angles.getBackingData();
+		System.arraycopy(parameters, offset, values, 0, values.length);
+		
+		double[] rotation = work();
+		toRotationMatrix(values, 0, dimension, rotation);
+		
+		for(int i = 0; i < dimension; i++)
+			for(int j = 0; j < dimension; j++)
+				transformation.setEntry(i, j, rotation[i * dimension + j]);
+		
+		changed();
+	}
+	
+	public static Rebuilder<Rotation> rotationBuilder(int dimension)
 	{
 		return new SBuilder(dimension);
 	}
 	
-	private static class SBuilder implements Builder<Rotation>
+	private static class SBuilder implements Rebuilder<Rotation>
 	{
 		private int dimension;
 
@@ -141,6 +151,24 @@ public class Rotation extends AffineMap implements Parametrizable
 		{
 			return new Rotation(parameters);
 		}
+		
+		@Override
+		public Rotation rebuild(Rotation rotation, double[] parameters, int offset)
+		{
+			check(rotation, parameters, offset);
+			
+			rotation.set(parameters, offset);
+			return rotation;
+		}
+		
+		@Override
+		public void check(Rotation rotation, double[] parameters, int offset)
+		{
+			Rebuilder.super.check(rotation, parameters, offset);
+			
+			if(rotation.getClass() != Rotation.class || rotation.dimension() != dimension)
+				throw new IllegalArgumentException("Rotation ("+rotation+") was not created by this builder (dimension "+dimension+").");
+		}
 
 		@Override
 		public int numParameters() 
@@ -167,53 +195,94 @@ public class Rotation extends AffineMap implements Parametrizable
 		double dimDouble = (1.0 + sqrt(1.0 + 8.0 * angles.size()))/2.0;
 		int dim = (int)Math.floor(dimDouble);
 		
-		RealMatrix left, right;
-//		
-//		double[] cosa = new double[angles.size()];
-//		double[] sina = new double[angles.size()];		
-//		for(int i = 0; i < angles.size(); i++)
-//		{
-//			cosa[i] = cos(angles.get(i));
-//			sina[i] = sin(angles.get(i));
-//		}
-//		
-
-		left   = MatrixFunctions.identity(dim);
-		right  = new Array2DRowRealMatrix(dim, dim);
+		double[] values = new double[angles.size()];
+		for(int k = 0; k < values.length; k++)
+			values[k] = angles.get(k);
+		
+		double[] flat = new double[dim * dim];
+		toRotationMatrix(values, 0, dim, flat);
+		
+		RealMatrix result = new Array2DRowRealMatrix(dim, dim);
+		for(int i = 0; i < dim; i++)
+			for(int j = 0; j < dim; j++)
+				result.setEntry(i, j, flat[i * dim + j]);
+	
+		return result;
+	}
+	
+	/**
+	 * Writes the rotation matrix for the (d^2-d)/2 angles starting at 
+	 * angles[offset] to out (row-major, of length at least d^2). 
+	 * 
+	 * The product of the elementary rotations is computed by applying each 
+	 * one to the two columns it affects, which takes O(d^3) time rather than 
+	 * the O(d^5) of a full matrix multiplication per elementary rotation.
+	 */
+	public static void toRotationMatrix(double[] angles, int offset, int dim, double[] out)
+	{
+		if(dim == 2)
+		{
+			double s = sin(angles[offset]), c = cos(angles[offset]);
+			out[0] =  c; out[1] = s;
+			out[2] = -s; out[3] = c;
+			return;
+		}
+		
+		if(dim == 3)
+		{
+			toRotationMatrix3(angles, offset, out);
+			return;
+		}
+		
+		for(int i = 0; i < dim; i++)
+			for(int j = 0; j < dim; j++)
+				out[i * dim + j] = i == j ? 1.0 : 0.0;
 		
 		// * The columns iterate from high to low, and the rows from low to 
 		//   high, to facilitate the inverse operation of retrieving the angles 
 		//   from a rotation matrix
 		
-		int k = 0;
+		int k = offset;
 		for(int j = dim-2; j >= 0; j--) // - columns
 			for(int i = j+1; i < dim; i++) // rows
 			{
-//				// Reset the elementary rotation matrix (this should be faster
-//				// than generating a new eye(dim) )
-//				MatrixTools.zero(right);
-//				for(int m = 0; m < dim; m++)
-//					right.setEntry(m, m, 1.0);
-//
-//				// k = (((2 * dim - i - 1) * (i + 2))/2) - 2 * dim + j; 
-//				// This is just a bloody counter!
-//
-//				right.setEntry(i, i,  cosa[k]);
-//				right.setEntry(j, j,  cosa[k]);				
-//				right.setEntry(i, j, -sina[k]);
-//				right.setEntry(j, i,  sina[k]);
-
-				right = elementary(dim, i, j, angles.get(k));
-	
-				// Multiply
-				left = left.multiply(right);
-				// TODO: It is inefficient to use full matrix multiplication for
-				// givens matrices
+				// * Multiply by elementary(dim, i, j, angle) on the right
+				double s = sin(angles[k]), c = cos(angles[k]);
+				
+				for(int r = 0; r < dim; r++)
+				{
+					double lj = out[r * dim + j], li = out[r * dim + i];
+					
+					out[r * dim + j] = lj * c + li * -s;
+					out[r * dim + i] = lj * s + li * c;
+				}
 				
 				k++;
 			}
+	}
 	
-		return left;
+	/**
+	 * The product of the three elementary rotations of 
+	 * {@link #toRotationMatrix(double[], int, int, double[])} for d = 3, 
+	 * multiplied out.
+	 */
+	private static void toRotationMatrix3(double[] angles, int offset, double[] out)
+	{
+		double s0 = sin(angles[offset]),     c0 = cos(angles[offset]);
+		double s1 = sin(angles[offset + 1]), c1 = cos(angles[offset + 1]);
+		double s2 = sin(angles[offset + 2]), c2 = cos(angles[offset + 2]);
+		
+		out[0] = c1 * c2;
+		out[1] = s1;
+		out[2] = c1 * s2;
+		
+		out[3] = - c0 * s1 * c2 - s0 * s2;
+		out[4] = c0 * c1;
+		out[5] = - c0 * s1 * s2 + s0 * c2;
+		
+		out[6] = s0 * s1 * c2 - c0 * s2;
+		out[7] = - s0 * c1;
+		out[8] = s0 * s1 * s2 + c0 * c2;
 	}
 	
 	/**
@@ -231,6 +300,14 @@ public class Rotation extends AffineMap implements Parametrizable
 			throw new IllegalArgumentException("Matrix ("+matrix+") not invertible");
 		
 		int d = matrix.getColumnDimension();
+		
+		// * Closed forms for proper rotations in two and three dimensions
+		if(d == 2)
+			return new ArrayList<Double>(Arrays.asList(
+					atan2(matrix.getEntry(0, 1), matrix.getEntry(0, 0))));
+		if(d == 3)
+			return findAngles3(matrix);
+		
 		int num = (d*d - d) / 2;
 		List<Double> angles = new ArrayList<Double>(num);
 		
@@ -270,6 +347,32 @@ public class Rotation extends AffineMap implements Parametrizable
 		return angles;
 	}
 	
+	/**
+	 * Reads the angles off the closed form of 
+	 * {@link #toRotationMatrix3(double[], int, double[])}. The middle angle is 
+	 * taken in [-pi/2, pi/2]. If it is close to either end, the first and 
+	 * last rotations share an axis, and the last angle is set to zero.
+	 */
+	private static List<Double> findAngles3(RealMatrix m)
+	{
+		double s1 = m.getEntry(0, 1);
+		double c1 = sqrt(m.getEntry(0, 0) * m.getEntry(0, 0) + m.getEntry(0, 2) * m.getEntry(0, 2));
+		
+		double a0, a1 = atan2(s1, c1), a2;
+		if(c1 > ACCURACY)
+		{
+			a0 = atan2(- m.getEntry(2, 1), m.getEntry(1, 1));
+			a2 = atan2(m.getEntry(0, 2), m.getEntry(0, 0));
+		} else
+		{
+			double sign = s1 < 0.0 ? -1.0 : 1.0;
+			a0 = atan2(sign * m.getEntry(2, 0), - sign * m.getEntry(1, 0));
+			a2 = 0.0;
+		}
+		
+		return new ArrayList<Double>(Arrays.asList(a0, a1, a2));
+	}
+	
 	/**
 	 * Returns an elementary rotation matrix in R^d (also known as a Givens 
 	 * matrix).
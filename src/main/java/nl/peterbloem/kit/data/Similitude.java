@@ -4,7 +4,6 @@ import static java.lang.Math.E;
 import static nl.peterbloem.kit.MatrixFunctions.diag;
 import static nl.peterbloem.kit.MatrixFunctions.ones;
 import static nl.peterbloem.kit.MatrixFunctions.outer;
-import static nl.peterbloem.kit.Series.series;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -13,18 +12,20 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.linear.SingularValueDecomposition;
 
+import nl.peterbloem.kit.Dense;
+import nl.peterbloem.kit.DenseMatrix;
 import nl.peterbloem.kit.Functions;
+import nl.peterbloem.kit.Events;
 import nl.peterbloem.kit.Global;
 import nl.peterbloem.kit.MatrixFunctions;
+import nl.peterbloem.kit.Metrics;
 import nl.peterbloem.kit.Pair;
-import nl.peterbloem.kit.Series;
-import nl.peterbloem.kit.search.Builder;
+import nl.peterbloem.kit.search.Rebuilder;
 
 /**
  * A similitude (or similarity transform) consists of rotation, a uniform 
@@ -39,11 +40,13 @@ import nl.peterbloem.kit.search.Builder;
 public class Similitude extends AffineMap
 {
 	private static final long serialVersionUID = 3717926722178382627L;
+	
+	private static final Metrics.Timer FIND = Metrics.timer("Similitude.find");
 
 	protected int dimension;
 	
 	protected double scalar;
-	protected List<Double> angles; // in radians
+	protected Point angles; // in radians
 	
 	protected RealMatrix rotation;
 	
@@ -101,7 +104,7 @@ public class Similitude extends AffineMap
 		this.scalar	= scalar;
 		this.translation = MatrixFunctions.toVector(translation);
 		
-		this.angles = new ArrayList<Double>(angles);
+		this.angles = new Point(angles);
 		
 		this.rotation = Rotation.toRotationMatrix(angles);
 		this.transformation = rotation.scalarMultiply(scalar);
@@ -162,14 +165,6 @@ public class Similitude extends AffineMap
 		return new Point(translation);
 	}
 
-	@Override
-	public Point map(Point in)
-	{
-		RealVector result = transformation.operate(in.getVector());
-		
-		return new Point(result.add(translation));
-	}
-
 	public static int numParameters(int dimension)
 	{
 		return 1 + dimension + (dimension * dimension - dimension)/2;
@@ -226,7 +221,33 @@ public class Similitude extends AffineMap
 		return dimension;
 	}
 	
-	public static Builder<Similitude> similitudeBuilder(int dimension)
+	@Override
+	void set(double[] parameters, int offset)
+	{
+		int d = dimension;
+		
+		scalar = parameters[offset];
+		for(int i = 0; i < d; i++)
+			translation.setEntry(i, parameters[offset + 1 + i]);
+		
+		double[] values = angles.getBackingData();
+		for(int k = 0; k < values.length; k++)
+			values[k] = parameters[offset + 1 + d + k] * (2.0 * Math.PI);
+		
+		double[] flat = work();
+		Rotation.toRotationMatrix(values, 0, d, flat);
+		
+		for(int i = 0; i < d; i++)
+			for(int j = 0; j < d; j++)
+			{
+				rotation.setEntry(i, j, flat[i * d + j]);
+				transformation.setEntry(i, j, flat[i * d + j] * scalar);
+			}
+		
+		changed();
+	}
+	
+	public static Rebuilder<Similitude> similitudeBuilder(int dimension)
 	{
 		return new SBuilder(dimension);
 	}
@@ -236,7 +257,7 @@ public class Similitude extends AffineMap
 		return new Similitude(1.0, new Point(dim), new Point((dim*dim - dim)/2));
 	}
 	
-	private static class SBuilder implements Builder<Similitude>
+	private static class SBuilder implements Rebuilder<Similitude>
 	{
 		private int dimension;
 
@@ -250,6 +271,24 @@ public class Similitude extends AffineMap
 		{
 			return new Similitude(parameters);
 		}
+		
+		@Override
+		public Similitude rebuild(Similitude map, double[] parameters, int offset)
+		{
+			check(map, parameters, offset);
+			
+			map.set(parameters, offset);
+			return map;
+		}
+		
+		@Override
+		public void check(Similitude map, double[] parameters, int offset)
+		{
+			Rebuilder.super.check(map, parameters, offset);
+			
+			if(map.getClass() != Similitude.class || map.dimension() != dimension)
+				throw new IllegalArgumentException("Map ("+map+") was not created by this builder (dimension "+dimension+").");
+		}
 
 		@Override
 		public int numParameters() 
@@ -291,6 +330,20 @@ public class Similitude extends AffineMap
 	}
 	
 	public static Similitude find(List<Point> xSet, List<Point> ySet)
+	{
+		long start = FIND.start();
+		Object event = Events.begin(Events.SIMILITUDE_FIND);
+		
+		Similitude result = null;
+		try {
+			return result = findSVD(xSet, ySet, event);
+		} finally {
+			Events.end(event, xSet.size(), result == null ? 0 : result.dimension(), 0, result != null);
+			FIND.stop(start, xSet.size());
+		}
+	}
+	
+	private static Similitude findSVD(List<Point> xSet, List<Point> ySet, Object event)
 	{
 		if(xSet.size() == 0)
 			return null;
@@ -334,65 +387,23 @@ public class Similitude extends AffineMap
 	
 		// * Calculate the covariance martix
 	
-		RealVector xDifference, yDifference;
-		
-		RealMatrix covariance = new Array2DRowRealMatrix(dim, dim);
+		double[] flat = new double[dim * dim], work = new double[2 * dim];
+		double[] xm = xMean.toArray(), ym = yMean.toArray();
 		
 		for(int i = 0; i < size;i++)
-		{
-			xDifference = xSet.get(i).getVector().subtract(xMean);
-			yDifference = ySet.get(i).getVector().subtract(yMean);
-			
-			
-			RealMatrix term = yDifference.outerProduct(xDifference); 
-			covariance =  covariance.add(term);
-		}
+			addCrossTerm(xSet.get(i), xm, ySet.get(i), ym, 1.0, work, flat);
 		
-		covariance = covariance.scalarMultiply(1.0/size);
-		
-		// * Find U, V and S
-		int retries = 0;
-		boolean success = false;
-		SingularValueDecomposition svd = null;
-		while(! success)
-		{
-			try 
-			{
-				svd = new SingularValueDecomposition(covariance);
-				success = true;
-			} catch (Exception e)
-			{
-				retries++;
-				if(retries > MAX_SVD_RETRIES)
-					return null;
-			}
-		}
+		RealMatrix covariance = scale(flat, 1.0/size, dim);
 		
-	
-		RealMatrix u  = svd.getU();
-		RealMatrix vt = svd.getVT();
-		
-		RealMatrix s = MatrixFunctions.identity(dim);
-		double det = MatrixFunctions.getDeterminant(covariance);	
-		if(det < 0)
-			s.setEntry(dim-1, dim-1, -1.0);
+		// * Find the rotation R, and the trace of DS
+		Pair<RealMatrix, Double> rotation = rotation(flat, dim);
+		if(rotation == null)
+			return null;
 		
-		// * Calculate R
-		RealMatrix r =  u.multiply(s).multiply(vt);
+		RealMatrix r = rotation.first();
+		double trace = rotation.second();
 		
-		double detU = MatrixFunctions.getDeterminant(u);	
-		//   a matrix and it's trans have the same det
-		double detV = MatrixFunctions.getDeterminant(vt); 
-				
 		// * Calculate c
-		double trace = 0.0;
-		//   obtain the non-ordered singular values
-		RealVector values = MatrixFunctions.diag(svd.getS()); 
-		//   trace of DS
-		for(int i = 0; i < dim-1; i++)
-			trace += values.getEntry(i);
-		trace += detU*detV < 0 ? -values.getEntry(dim-1) : values.getEntry(dim-1);
-		
 		double c = (1.0 / xStdDev) * trace;
 		
 		// * Calculate t
@@ -413,12 +424,26 @@ public class Similitude extends AffineMap
 	}
 	
 	public static Similitude find(List<Point> xSet, List<Point> ySet, List<Double> weights, HashMap<String, Double> extra)
+	{
+		long start = FIND.start();
+		Object event = Events.begin(Events.SIMILITUDE_FIND);
+		
+		Similitude result = null;
+		try {
+			return result = findSVD(xSet, ySet, weights, extra, event);
+		} finally {
+			Events.end(event, xSet.size(), result == null ? 0 : result.dimension(), 0, result != null);
+			FIND.stop(start, xSet.size());
+		}
+	}
+	
+	private static Similitude findSVD(List<Point> xSet, List<Point> ySet, List<Double> weights, HashMap<String, Double> extra, Object event)
 	{
 		List<Point> xs = new ArrayList<Point>(xSet.size());
 		List<Point> ys = new ArrayList<Point>(ySet.size());
 		List<Double> ws = new ArrayList<Double>(weights.size());
 		
-		for(int i : series(xSet.size()))
+		for(int i = 0; i < xSet.size(); i++)
 			if(weights.get(i) > 0.0)
 			{
 				xs.add(xSet.get(i));
@@ -443,7 +468,7 @@ public class Similitude extends AffineMap
 		// * Calculate the means
 		//  (optimize by doing in place summation manually on a double[]
 		RealVector xMean = new ArrayRealVector(dim);
-		for(int i : series(xSet.size()))
+		for(int i = 0; i < xSet.size(); i++)
 		{
 			Point x = xSet.get(i);
 			xMean = xMean.add(x.getVector().mapMultiply(weights.get(i)));
@@ -451,7 +476,7 @@ public class Similitude extends AffineMap
 		xMean.mapMultiplyToSelf(1.0/weightSum);
 		
 		RealVector yMean = new ArrayRealVector(dim);
-		for(int i : series(ySet.size()))
+		for(int i = 0; i < ySet.size(); i++)
 		{
 			Point y = ySet.get(i);
 			yMean = yMean.add(y.getVector().mapMultiply(weights.get(i)));
@@ -460,7 +485,7 @@ public class Similitude extends AffineMap
 				
 		// * Calculate the standard deviations		
 		double xStdDev = 0.0;
-		for(int i : series(xSet.size()))
+		for(int i = 0; i < xSet.size(); i++)
 		{
 			Point x = xSet.get(i);
 			RealVector difference = x.getVector().subtract(xMean);
@@ -471,7 +496,7 @@ public class Similitude extends AffineMap
 		xStdDev = xStdDev / weightSum;
 		
 		double yStdDev = 0.0;
-		for(int i : series(ySet.size()))
+		for(int i = 0; i < ySet.size(); i++)
 		{
 			Point y = ySet.get(i);
 			RealVector difference = y.getVector().subtract(yMean);
@@ -483,65 +508,23 @@ public class Similitude extends AffineMap
 	
 		// * Calculate the covariance martix
 	
-		RealVector xDifference, yDifference;
-		
-		RealMatrix covariance = new Array2DRowRealMatrix(dim, dim);
+		double[] flat = new double[dim * dim], work = new double[2 * dim];
+		double[] xm = xMean.toArray(), ym = yMean.toArray();
 		
 		for(int i = 0; i < size;i++)
-		{
-			xDifference = xSet.get(i).getVector().subtract(xMean);
-			yDifference = ySet.get(i).getVector().subtract(yMean);
-			
-			
-			RealMatrix term = yDifference.outerProduct(xDifference).scalarMultiply(weights.get(i)); 
-			covariance =  covariance.add(term);
-		}
+			addCrossTerm(xSet.get(i), xm, ySet.get(i), ym, weights.get(i), work, flat);
 		
-		covariance = covariance.scalarMultiply(1.0/weightSum); // I think we can leave this one out ....
-		
-		// * Find U, V and S
-		int retries = 0;
-		boolean success = false;
-		SingularValueDecomposition svd = null;
-		while(! success)
-		{
-			try 
-			{
-				svd = new SingularValueDecomposition(covariance);
-				success = true;
-			} catch (Exception e)
-			{
-				retries++;
-				if(retries > MAX_SVD_RETRIES)
-					return null;
-			}
-		}
-	
-		RealMatrix u  = svd.getU();
-		RealMatrix vt = svd.getVT();
+		RealMatrix covariance = scale(flat, 1.0/weightSum, dim); // I think we can leave this one out ....
 		
-		RealMatrix s = MatrixFunctions.identity(dim);
-		double det = MatrixFunctions.getDeterminant(covariance);	
-		if(det < 0)
-			s.setEntry(dim-1, dim-1, -1.0);
+		// * Find the rotation R, and the trace of DS
+		Pair<RealMatrix, Double> rotation = rotation(flat, dim);
+		if(rotation == null)
+			return null;
 		
-		// * Calculate R
-		RealMatrix r =  u.multiply(s).multiply(vt);
+		RealMatrix r = rotation.first();
+		double trace = rotation.second();
 		
-		double detU = MatrixFunctions.getDeterminant(u);
-		//   a matrix and it's trans have the same det
-		double detV = MatrixFunctions.getDeterminant(vt); 
-				
 		// * Calculate c
-		double trace = 0.0;
-		//   obtain the non-ordered singular values
-		
-		RealVector values = MatrixFunctions.diag(svd.getS()); 
-		//   trace of DS
-		for(int i = 0; i < dim-1; i++)
-			trace += values.getEntry(i);
-		trace += detU*detV < 0 ? - values.getEntry(dim-1) : values.getEntry(dim-1);
-		
 		double c = (trace / xStdDev);
 		
 		// * Calculate t
@@ -576,6 +559,20 @@ public class Similitude extends AffineMap
 	 * @return
 	 */
 	public static Similitude find(List<Point> from, List<Point> to, RealMatrix cor, HashMap<String, Double> extra)
+	{
+		long start = FIND.start();
+		Object event = Events.begin(Events.SIMILITUDE_FIND);
+		
+		Similitude result = null;
+		try {
+			return result = findSVD(from, to, cor, extra, event);
+		} finally {
+			Events.end(event, from.size() * to.size(), result == null ? 0 : result.dimension(), 0, result != null);
+			FIND.stop(start, from.size() * to.size());
+		}
+	}
+	
+	private static Similitude findSVD(List<Point> from, List<Point> to, RealMatrix cor, HashMap<String, Double> extra, Object event)
 	{
 		// TODO Implement as a series of matrix multiplications
 		
@@ -586,8 +583,8 @@ public class Similitude extends AffineMap
 		int size = from.size();
 		
 		double weightSum = 0.0;
-		for(int row : series(cor.getRowDimension()))
-			for(int column : series(cor.getColumnDimension()))
+		for(int row = 0; row < cor.getRowDimension(); row++)
+			for(int column = 0; column < cor.getColumnDimension(); column++)
 				weightSum += cor.getEntry(row, column);
 		
 		RealVector fromWeights = cor.preMultiply(new ArrayRealVector(cor.getRowDimension(), 1.0));
@@ -596,7 +593,7 @@ public class Similitude extends AffineMap
 		// * Calculate the means
 		//  (optimize by doing in place summation manually on a double[]
 		RealVector fromMean = new ArrayRealVector(dim);
-		for(int i : series(from.size()))
+		for(int i = 0; i < from.size(); i++)
 		{
 			Point f = from.get(i);
 			fromMean = fromMean.add(f.getVector().mapMultiply(fromWeights.getEntry(i)));
@@ -604,7 +601,7 @@ public class Similitude extends AffineMap
 		fromMean.mapMultiplyToSelf(1.0/weightSum);
 		
 		RealVector toMean = new ArrayRealVector(dim);
-		for(int i : series(to.size()))
+		for(int i = 0; i < to.size(); i++)
 		{
 			Point t = to.get(i);
 			toMean = toMean.add(t.getVector().mapMultiply(toWeights.getEntry(i)));
@@ -613,7 +610,7 @@ public class Similitude extends AffineMap
 				
 		// * Calculate the standard deviations		
 		double fromStdDev = 0.0;
-		for(int i : series(from.size()))
+		for(int i = 0; i < from.size(); i++)
 		{
 			Point x = from.get(i);
 			RealVector difference = x.getVector().subtract(fromMean);
@@ -624,7 +621,7 @@ public class Similitude extends AffineMap
 		fromStdDev = fromStdDev / weightSum;
 		
 		double toStdDev = 0.0;
-		for(int i : series(to.size()))
+		for(int i = 0; i < to.size(); i++)
 		{
 			Point y = to.get(i);
 			RealVector difference = y.getVector().subtract(toMean);
@@ -636,70 +633,28 @@ public class Similitude extends AffineMap
 	
 		// * Calculate the covariance martix
 	
-		RealVector fDifference, tDifference;
-		
-		RealMatrix covariance = new Array2DRowRealMatrix(dim, dim);
+		double[] flat = new double[dim * dim], work = new double[2 * dim];
+		double[] fm = fromMean.toArray(), tm = toMean.toArray();
 		
-		for(int f : series(from.size()))
-			for(int t : series(to.size()))
-			{
-				fDifference = from.get(f).getVector().subtract(fromMean);
-				tDifference = to.get(t).getVector().subtract(toMean);
-				
-				
-				RealMatrix term = tDifference.outerProduct(fDifference).scalarMultiply(cor.getEntry(t, f)); 
-				covariance =  covariance.add(term);
-			}
+		for(int f = 0; f < from.size(); f++)
+			for(int t = 0; t < to.size(); t++)
+				addCrossTerm(from.get(f), fm, to.get(t), tm, cor.getEntry(t, f), work, flat);
 		
-		covariance = covariance.scalarMultiply(1.0/weightSum); // I think we can leave this one out ....
+		RealMatrix covariance = scale(flat, 1.0/weightSum, dim); // I think we can leave this one out ....
 		
-		// * Find U, V and S
-		int retries = 0;
-		boolean success = false;
-		SingularValueDecomposition svd = null;
-		while(! success)
+		// * Find the rotation R, and the trace of DS
+		Pair<RealMatrix, Double> rotation = rotation(flat, dim);
+		if(rotation == null)
 		{
-			try 
-			{
-				svd = new SingularValueDecomposition(covariance);
-				success = true;
-			} catch (Exception e)
-			{
-				retries++;
-				if(retries > MAX_SVD_RETRIES)
-				{
-					Global.log().warning("Could not find SVD decomposition for matrix: " + covariance);
-					
-					return null;
-				}
-			}
+			Global.log().warning("Could not find SVD decomposition for matrix: " + covariance);
+			
+			return null;
 		}
-	
-		RealMatrix u  = svd.getU();
-		RealMatrix vt = svd.getVT();
-		
-		RealMatrix s = MatrixFunctions.identity(dim);
-		double det = MatrixFunctions.getDeterminant(covariance);	
-		if(det < 0)
-			s.setEntry(dim-1, dim-1, -1.0);
 		
-		// * Calculate R
-		RealMatrix r =  u.multiply(s).multiply(vt);
+		RealMatrix r = rotation.first();
+		double trace = rotation.second();
 		
-		double detU = MatrixFunctions.getDeterminant(u);
-		//   a matrix and it's trans have the same det
-		double detV = MatrixFunctions.getDeterminant(vt);
-				
 		// * Calculate c
-		double trace = 0.0;
-		//   obtain the non-ordered singular values
-		
-		RealVector values = MatrixFunctions.diag(svd.getS()); 
-		//   trace of DS
-		for(int i = 0; i < dim-1; i++)
-			trace += values.getEntry(i);
-		trace += detU*detV < 0 ? - values.getEntry(dim-1) : values.getEntry(dim-1);
-		
 		double c = (trace / fromStdDev);
 		
 		// * Calculate t
@@ -734,7 +689,7 @@ public class Similitude extends AffineMap
 		RealMatrix t = MatrixFunctions.matrix(means);
 		
 		RealVector z = new ArrayRealVector(means.size());
-		for(int i : Series.series(means.size()))
+		for(int i = 0; i < means.size(); i++)
 		{
 			double s = scalars.get(i);
 			z.setEntry(i, 1.0/(s * s));
@@ -814,7 +769,7 @@ public class Similitude extends AffineMap
 	public static double inTrace(RealMatrix left, RealVector weights, RealMatrix right)
 	{
 		double sum = 0.0;
-		for(int i : series(left.getColumnDimension()))
+		for(int i = 0; i < left.getColumnDimension(); i++)
 		{
 			double in = left.getColumnVector(i).dotProduct(right.getColumnVector(i));
 			sum += weights.getEntry(i) * in;
@@ -845,4 +800,195 @@ public class Similitude extends AffineMap
 		
 		return Double.NaN;
 	}
+	
+	/**
+	 * Finds the rotation R that maximizes tr(R^T C) for the given covariance 
+	 * C (the sum of (y - yMean)(x - xMean)^T), together with that maximum 
+	 * (the trace of DS in Umeyama's notation). Two and three dimensions use 
+	 * closed forms; other dimensions use an SVD of C.
+	 * 
+	 * @param flat The covariance as a row-major flat array.
+	 * @return The rotation and the trace, or null if the SVD failed.
+	 */
+	private static Pair<RealMatrix, Double> rotation(double[] flat, int dim)
+	{
+		if(dim == 2 || dim == 3)
+		{
+			double[] r = new double[dim * dim];
+			double trace = procrustes(flat, dim, r);
+			
+			return new Pair<RealMatrix, Double>(new DenseMatrix(r, dim, dim), trace);
+		}
+		
+		for(double value : flat)
+			if(Double.isNaN(value) || Double.isInfinite(value))
+				return null;
+		
+		double[] u = new double[dim * dim], values = new double[dim], v = new double[dim * dim];
+		Dense.svd(flat, dim, dim, u, values, v);
+		complete(u, dim);
+		
+		//   r = U S V^T, with S the identity, except for a -1 in the last 
+		//   position if U V^T is a reflection. This is the sign of the 
+		//   determinant of the covariance, but it is also defined when the 
+		//   covariance is singular.
+		boolean reflection = Dense.determinant(u, dim) * Dense.determinant(v, dim) < 0;
+		
+		double[] us = u.clone();
+		if(reflection)
+			for(int i = 0; i < dim; i++)
+				us[i * dim + dim - 1] *= -1.0;
+		
+		double[] r = Dense.multiply(us, Dense.transpose(v, dim, dim), dim, dim, dim);
+		
+		double trace = 0.0;
+		//   trace of DS
+		for(int i = 0; i < dim-1; i++)
+			trace += values[i];
+		trace += reflection ? - values[dim-1] : values[dim-1];
+		
+		return new Pair<RealMatrix, Double>(new DenseMatrix(r, dim, dim), trace);
+	}
+	
+	/**
+	 * Replaces the zero columns of the n by n matrix u (which 
+	 * {@link Dense#svd(double[], int, int, double[], double[], double[])} 
+	 * returns for zero singular values) by unit vectors orthogonal to the 
+	 * other columns, so that u is orthogonal.
+	 */
+	private static void complete(double[] u, int n)
+	{
+		for(int j = 0; j < n; j++)
+		{
+			if(norm(u, n, j) > 0.0)
+				continue;
+			
+			// * Of the standard basis vectors, take the one with the largest 
+			//   component orthogonal to the nonzero columns
+			double[] best = null;
+			double bestNorm = 0.0;
+			for(int k = 0; k < n; k++)
+			{
+				double[] e = new double[n];
+				e[k] = 1.0;
+				for(int c = 0; c < n; c++)
+				{
+					double dot = 0.0;
+					for(int i = 0; i < n; i++)
+						dot += u[i * n + c] * e[i];
+					for(int i = 0; i < n; i++)
+						e[i] -= dot * u[i * n + c];
+				}
+				
+				double norm = Dense.dot(n, e, 0, e, 0);
+				if(norm > bestNorm)
+				{
+					best = e;
+					bestNorm = norm;
+				}
+			}
+			
+			bestNorm = Math.sqrt(bestNorm);
+			for(int i = 0; i < n; i++)
+				u[i * n + j] = best[i] / bestNorm;
+		}
+	}
+	
+	private static double norm(double[] a, int n, int column)
+	{
+		double sum = 0.0;
+		for(int i = 0; i < n; i++)
+			sum += a[i * n + column] * a[i * n + column];
+		return Math.sqrt(sum);
+	}
+	
+	/**
+	 * The closed-form Procrustes solution for two and three dimensions. 
+	 * Writes the rotation R maximizing tr(R^T C) to r, and returns the 
+	 * maximum.
+	 * 
+	 * In two dimensions, R is the rotation by the angle of the vector 
+	 * (C00 + C11, C10 - C01), and the maximum is the length of that vector. 
+	 * In three dimensions, this is Horn's method: the rotation is given by 
+	 * the quaternion that is the principal eigenvector of a symmetric 4x4 
+	 * matrix built from C, and the maximum is the principal eigenvalue.  
+	 */
+	static double procrustes(double[] c, int dim, double[] r)
+	{
+		if(dim == 2)
+		{
+			double x = c[0] + c[3], y = c[2] - c[1];
+			double norm = Math.sqrt(x * x + y * y);
+			
+			double cos = norm == 0.0 ? 1.0 : x / norm, sin = norm == 0.0 ? 0.0 : y / norm;
+			r[0] = cos; r[1] = - sin;
+			r[2] = sin; r[3] = cos;
+			
+			return norm;
+		}
+		
+		if(dim != 3)
+			throw new IllegalArgumentException("Dimension ("+dim+") should be 2 or 3.");
+		
+		// * S_ab is the sum of x_a y_b
+		double sxx = c[0], sxy = c[3], sxz = c[6],
+		       syx = c[1], syy = c[4], syz = c[7],
+		       szx = c[2], szy = c[5], szz = c[8];
+		
+		double[] n = {
+			sxx + syy + szz, syz - szy,       szx - sxz,       sxy - syx,
+			syz - szy,       sxx - syy - szz, sxy + syx,       szx + sxz,
+			szx - sxz,       sxy + syx,       - sxx + syy - szz, syz + szy,
+			sxy - syx,       szx + sxz,       syz + szy,       - sxx - syy + szz};
+		
+		double[] values = new double[4], vectors = new double[16];
+		Dense.eigenSymmetric(n, 4, values, vectors);
+		
+		double q0 = vectors[0], qx = vectors[4], qy = vectors[8], qz = vectors[12];
+		
+		r[0] = q0*q0 + qx*qx - qy*qy - qz*qz;
+		r[1] = 2.0 * (qx*qy - q0*qz);
+		r[2] = 2.0 * (qx*qz + q0*qy);
+		
+		r[3] = 2.0 * (qy*qx + q0*qz);
+		r[4] = q0*q0 - qx*qx + qy*qy - qz*qz;
+		r[5] = 2.0 * (qy*qz - q0*qx);
+		
+		r[6] = 2.0 * (qz*qx - q0*qy);
+		r[7] = 2.0 * (qz*qy + q0*qx);
+		r[8] = q0*q0 - qx*qx - qy*qy + qz*qz;
+		
+		return values[0];
+	}
+	
+	/**
+	 * Adds weight * (y - yMean)(x - xMean)^T to the flat d by d matrix 
+	 * covariance, as an in-place rank-one update.
+	 * 
+	 * @param work A scratch array of length at least 2d.
+	 */
+	static void addCrossTerm(Point x, double[] xMean, Point y, double[] yMean, double weight, double[] work, double[] covariance)
+	{
+		int d = xMean.length;
+		for(int j = 0; j < d; j++)
+		{
+			work[j] = x.get(j) - xMean[j];
+			work[d + j] = y.get(j) - yMean[j];
+		}
+		
+		for(int r = 0; r < d; r++)
+			Dense.axpy(d, weight * work[d + r], work, 0, covariance, r * d);
+	}
+	
+	/**
+	 * Wraps the flat d by d matrix in a RealMatrix, after scaling it in 
+	 * place.
+	 */
+	static RealMatrix scale(double[] flat, double factor, int d)
+	{
+		for(int i = 0; i < flat.length; i++)
+			flat[i] *= factor;
+		
+		return new DenseMatrix(flat, d, d);
+	}
 }
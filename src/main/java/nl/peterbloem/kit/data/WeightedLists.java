@@ -1,6 +1,5 @@
 package nl.peterbloem.kit.data;
 
-import static nl.peterbloem.kit.Series.series;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -11,7 +10,6 @@ import java.util.List;
 import java.util.ListIterator;
 
 import nl.peterbloem.kit.Global;
-import nl.peterbloem.kit.Series;
 
 public class WeightedLists
 {
@@ -255,7 +253,7 @@ public class WeightedLists
 			double draw = Global.random().nextDouble();
 			double total = 0.0;
 			int elem = 0;
-			for(int i : series(size()))
+			for(int i = 0; i < size(); i++)
 			{
 				total += probability(i);
 				if(total > draw)
@@ -337,7 +335,7 @@ public class WeightedLists
 			String res = "[";
 			
 			
-			for(int i : Series.series(size()))
+			for(int i = 0; i < size(); i++)
 				res += (i==0 ? ", " : "") + get(i) + "("+probability(i)+")"; 
 				
 			return res+ "]";
@@ -352,7 +350,7 @@ public class WeightedLists
 		@Override
 		public boolean addAll(Weighted<? extends T> other)
 		{
-			for(int i : Series.series(other.size()))
+			for(int i = 0; i < other.size(); i++)
 				add(other.get(i), other.weight(i));
 			
 			return true;
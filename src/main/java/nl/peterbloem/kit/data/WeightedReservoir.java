@@ -0,0 +1,262 @@
+package nl.peterbloem.kit.data;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.peterbloem.kit.Global;
+import nl.peterbloem.kit.Reservoir;
+
+/**
+ * <p>
+ * A weighted sample of k elements without replacement from a sequence of
+ * unknown length, in O(k) memory.
+ * </p><p>
+ * This is algorithm A-ExpJ by Efraimidis and Spirakis. Each element i is
+ * given the random key u_i^(1/w_i), and the sample consists of the k elements
+ * with the largest keys. Instead of drawing a key for every element, the
+ * algorithm draws the total weight to skip before the next element enters the
+ * sample (an "exponential jump"), so that the number of random draws is
+ * O(k log(n/k)). Keys are stored as logarithms, so that small weights do not
+ * underflow.
+ * </p><p>
+ * Since the sample is defined by the keys, two reservoirs over disjoint
+ * parts of the data can be merged exactly by keeping the k largest keys of
+ * both (see {@link #merge(WeightedReservoir)}).
+ * </p><p>
+ * For unweighted sampling, see {@link Reservoir}. This class is not
+ * thread-safe.
+ * </p>
+ *
+ * @author Peter
+ */
+public class WeightedReservoir<T>
+{
+	private final int k;
+	private final Random random;
+
+	// * A min-heap of the elements by their log-keys
+	private final Object[] elements;
+	private final double[] keys;
+	private int size = 0;
+
+	private long seen = 0;
+	private double weightSum = 0.0;
+
+	// * The weight remaining until the next element enters the sample
+	private double jump;
+
+	/**
+	 * Creates a reservoir with a random generator seeded from
+	 * {@link Global#random()}.
+	 */
+	public WeightedReservoir(int k)
+	{
+		this(k, new Random(Global.random().nextLong()));
+	}
+
+	public WeightedReservoir(int k, Random random)
+	{
+		if(k < 1)
+			throw new IllegalArgumentException("Sample size ("+k+") must be positive.");
+
+		this.k = k;
+		this.random = random;
+
+		elements = new Object[k];
+		keys = new double[k];
+	}
+
+	/**
+	 * Adds an element with the given weight. Elements with weight zero are
+	 * never sampled.
+	 */
+	public void add(T element, double weight)
+	{
+		if(weight < 0.0)
+			throw new IllegalArgumentException("Weight ("+weight+") cannot be negative.");
+
+		seen++;
+		weightSum += weight;
+
+		if(weight == 0.0)
+			return;
+
+		if(size < k)
+		{
+			offer(element, log(uniform()) / weight);
+
+			if(size == k)
+				jump();
+
+			return;
+		}
+
+		jump -= weight;
+		if(jump > 0.0)
+			return;
+
+		// * The element enters the sample. Its key is drawn uniformly from the
+		//   keys that are larger than the current threshold.
+		double threshold = exp(keys[0] * weight);
+		double r = threshold + (1.0 - threshold) * uniform();
+
+		replaceMin(element, log(r) / weight);
+		jump();
+	}
+
+	/**
+	 * Adds all elements of the given weighted list, with their weights.
+	 */
+	public void addAll(Weighted<? extends T> elements)
+	{
+		for(int i = 0; i < elements.size(); i++)
+			add(elements.get(i), elements.weight(i));
+	}
+
+	/**
+	 * Merges another reservoir, which has sampled from a different part of the
+	 * data, into this one. Afterwards, this reservoir holds a weighted sample
+	 * from the elements seen by both, and more elements can be added to it.
+	 *
+	 * @return This reservoir
+	 */
+	@SuppressWarnings("unchecked")
+	public WeightedReservoir<T> merge(WeightedReservoir<T> other)
+	{
+		if(other.k != k)
+			throw new IllegalArgumentException("Sample size of other reservoir ("+other.k+") does not match this one's ("+k+").");
+
+		for(int i = 0; i < other.size; i++)
+			offer((T) other.elements[i], other.keys[i]);
+
+		seen += other.seen;
+		weightSum += other.weightSum;
+
+		// * The jumps are memoryless, so we can draw a fresh one for the new
+		//   threshold.
+		if(size == k)
+			jump();
+
+		return this;
+	}
+
+	/**
+	 * Adds an element with a given key, if it is among the k largest.
+	 */
+	private void offer(T element, double key)
+	{
+		if(size < k)
+		{
+			// * sift up
+			int c = size++;
+			while(c > 0)
+			{
+				int parent = (c - 1) >>> 1;
+				if(keys[parent] <= key)
+					break;
+
+				elements[c] = elements[parent];
+				keys[c] = keys[parent];
+				c = parent;
+			}
+
+			elements[c] = element;
+			keys[c] = key;
+		} else if(key > keys[0])
+			replaceMin(element, key);
+	}
+
+	/**
+	 * Replaces the element with the smallest key.
+	 */
+	private void replaceMin(T element, double key)
+	{
+		int c = 0;
+		while(true)
+		{
+			int child = 2 * c + 1;
+			if(child >= size)
+				break;
+			if(child + 1 < size && keys[child + 1] < keys[child])
+				child++;
+			if(keys[child] >= key)
+				break;
+
+			elements[c] = elements[child];
+			keys[c] = keys[child];
+			c = child;
+		}
+
+		elements[c] = element;
+		keys[c] = key;
+	}
+
+	private void jump()
+	{
+		jump = log(uniform()) / keys[0];
+	}
+
+	/**
+	 * A uniform random value in (0, 1).
+	 */
+	private double uniform()
+	{
+		double u;
+		do {
+			u = random.nextDouble();
+		} while(u == 0.0);
+
+		return u;
+	}
+
+	/**
+	 * The sample so far (a copy). If fewer than k elements with positive weight
+	 * have been seen, it contains all of them. The order of the elements is not
+	 * random.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> sample()
+	{
+		List<T> result = new ArrayList<T>(size);
+		for(int i = 0; i < size; i++)
+			result.add((T) elements[i]);
+
+		return result;
+	}
+
+	/**
+	 * The number of elements seen.
+	 */
+	public long seen()
+	{
+		return seen;
+	}
+
+	/**
+	 * The total weight of the elements seen.
+	 */
+	public double weightSum()
+	{
+		return weightSum;
+	}
+
+	public int k()
+	{
+		return k;
+	}
+
+	/**
+	 * Samples k elements without replacement from the given weighted list,
+	 * where the probability of each draw is proportional to the weights.
+	 */
+	public static <T> List<T> sample(Weighted<? extends T> elements, int k)
+	{
+		WeightedReservoir<T> reservoir = new WeightedReservoir<T>(k);
+		reservoir.addAll(elements);
+		return reservoir.sample();
+	}
+}
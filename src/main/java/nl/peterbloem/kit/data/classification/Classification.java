@@ -1,7 +1,6 @@
 package nl.peterbloem.kit.data.classification;
 
 import static java.lang.Math.max;
-import static nl.peterbloem.kit.Series.series;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -20,7 +19,6 @@ import au.com.bytecode.opencsv.CSVWriter;
 import nl.peterbloem.kit.FrequencyModel;
 import nl.peterbloem.kit.Global;
 import nl.peterbloem.kit.Pair;
-import nl.peterbloem.kit.Series;
 import nl.peterbloem.kit.data.Point;
 
 /**
@@ -364,7 +362,7 @@ public class Classification
 		List<Point> resData = new ArrayList<Point>(n);
 		List<Integer> resCls = new ArrayList<Integer>(n);
 		
-		for(int i : series(n))
+		for(int i = 0; i < n; i++)
 		{
 			int draw = Global.random().nextInt(in.size());
 
@@ -395,7 +393,8 @@ public class Classification
 		
 		Classified<M> first = Classification.empty(max(16, nFirst));
 		
-		for(int i : Series.series((int)(dataset.size() * split)))
+		int n = (int)(dataset.size() * split);
+		for(int i = 0; i < n; i++)
 		{
 			int draw = Global.random().nextInt(dataset.size());
 			first.add(dataset.get(draw), dataset.cls(draw));
@@ -451,7 +450,7 @@ public class Classification
 		List<M> instances = new ArrayList<M>(classified);
 		List<Integer> classes = new ArrayList<Integer>(classified.size());
 		
-		for(int i : series(classified.size()))
+		for(int i = 0; i < classified.size(); i++)
 			classes.add(classified.cls(i));
 		
 		
@@ -465,13 +464,13 @@ public class Classification
 	{
 		CSVWriter writer = new CSVWriter(new BufferedWriter(new FileWriter(file)));
 		
-		for(int i : series(classified.size()))
+		for(int i = 0; i < classified.size(); i++)
 		{
 			Point point = classified.get(i);
 			int cls = classified.cls(i);
 			
 			String[] line = new String[point.size()+1];
-			for(int j : series(point.size()))
+			for(int j = 0; j < point.size(); j++)
 				line[j] = Double.toString(point.get(j));
 			line[point.size()] = Integer.toString(cls);
 			
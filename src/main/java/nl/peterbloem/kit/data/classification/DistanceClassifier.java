@@ -2,6 +2,7 @@ package nl.peterbloem.kit.data.classification;
 
 import java.util.*;
 
+import nl.peterbloem.kit.data.FloatPoints;
 import nl.peterbloem.kit.data.Point;
 import nl.peterbloem.kit.distance.Distance;
 import nl.peterbloem.kit.distance.SquaredEuclideanDistance;
@@ -58,6 +59,30 @@ public class DistanceClassifier extends AbstractClassifier {
 		return index;
 	}
 
+	/**
+	 * For {@link FloatPoints}, each point is widened into a reused buffer 
+	 * rather than created as a new Point.
+	 */
+	@Override
+	public List<Integer> classify(List<Point> points)
+	{
+		if(! (points instanceof FloatPoints))
+			return super.classify(points);
+		
+		FloatPoints data = (FloatPoints) points;
+		double[] buffer = new double[data.dimension()];
+		Point point = Point.fromRaw(buffer);
+		
+		List<Integer> classes = new ArrayList<Integer>(data.size());
+		for(int i = 0; i < data.size(); i++)
+		{
+			data.get(i, buffer, 0);
+			classes.add(classify(point));
+		}
+		
+		return classes;
+	}
+
 	@Override
 	public int dimension()
 	{
@@ -0,0 +1,514 @@
+package nl.peterbloem.kit.data.classification;
+
+import static java.lang.Math.max;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import au.com.bytecode.opencsv.CSVReader;
+import nl.peterbloem.kit.data.Moments;
+import nl.peterbloem.kit.data.Point;
+
+/**
+ * <p>
+ * A classified list of points that stores the labels in an int[] column,
+ * and keeps, for every class, the (sorted) indices of its points. The index
+ * arrays are maintained as points are added, so that
+ * {@link #count(int)} and {@link #numClasses()} take constant time, and
+ * {@link #points(int)} is a view over the points of one class rather than a
+ * scan over the whole list.
+ * </p><p>
+ * Appending is amortized constant time. Inserting, removing and relabeling
+ * a point take time linear in the size of the list, as they do for an
+ * ArrayList.
+ * </p>
+ *
+ * @author Peter
+ */
+public class LabeledPoints extends AbstractList<Point>
+	implements Classified<Point>, RandomAccess, java.io.Serializable
+{
+	private static final long serialVersionUID = 3034226102867339715L;
+
+	private Point[] points;
+	private int[] labels;
+	private int size = 0;
+
+	// * members[c][0 .. counts[c]] are the indices of class c, in order
+	private int[][] members = new int[0][];
+	private int[] counts = new int[0];
+	private int maxClass = -1;
+
+	public LabeledPoints()
+	{
+		this(16);
+	}
+
+	public LabeledPoints(int capacity)
+	{
+		points = new Point[max(capacity, 1)];
+		labels = new int[points.length];
+	}
+
+	/**
+	 * Copies the given classified list.
+	 */
+	public static LabeledPoints copy(Classified<Point> data)
+	{
+		LabeledPoints copy = new LabeledPoints(data.size());
+		for(int i = 0; i < data.size(); i++)
+			copy.add(data.get(i), data.cls(i));
+
+		copy.setMaxClass(data.numClasses() - 1);
+		return copy;
+	}
+
+	@Override
+	public Point get(int i)
+	{
+		check(i);
+		return points[i];
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public int cls(int i)
+	{
+		check(i);
+		return labels[i];
+	}
+
+	/**
+	 * A read-only view of the labels.
+	 */
+	@Override
+	public List<Integer> classes()
+	{
+		return new AbstractList<Integer>()
+		{
+			@Override
+			public Integer get(int index)
+			{
+				return cls(index);
+			}
+
+			@Override
+			public int size()
+			{
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public int numClasses()
+	{
+		return maxClass + 1;
+	}
+
+	/**
+	 * The number of points with the given class.
+	 */
+	public int count(int cls)
+	{
+		return cls < counts.length ? counts[cls] : 0;
+	}
+
+	/**
+	 * The index (in this list) of the k-th point of the given class.
+	 */
+	public int index(int cls, int k)
+	{
+		if(k < 0 || k >= count(cls))
+			throw new IndexOutOfBoundsException("Index "+k+" out of bounds for class "+cls+" with "+count(cls)+" points.");
+
+		return members[cls][k];
+	}
+
+	/**
+	 * A read-only view of the points of the given class, in the order of
+	 * this list. The view reflects later changes to this list.
+	 */
+	@Override
+	public List<Point> points(final int cls)
+	{
+		return new ClassView(cls);
+	}
+
+	/**
+	 * The mean and covariance of the points of the given class, computed
+	 * from the index array of the class.
+	 */
+	public Moments moments(int cls)
+	{
+		Moments moments = new Moments(dimension());
+		for(int k = 0; k < count(cls); k++)
+			moments.add(points[members[cls][k]]);
+
+		return moments;
+	}
+
+	private int dimension()
+	{
+		if(size == 0)
+			throw new IllegalStateException("The list is empty.");
+
+		return points[0].dimensionality();
+	}
+
+	@Override
+	public boolean add(Point item, int cls)
+	{
+		return add(size, item, cls);
+	}
+
+	@Override
+	public boolean add(int index, Point item, int cls)
+	{
+		if(index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index "+index+" out of bounds for size "+size+".");
+		if(cls < 0)
+			throw new IllegalArgumentException("Class ("+cls+") cannot be negative.");
+
+		if(size == points.length)
+		{
+			points = Arrays.copyOf(points, size * 2);
+			labels = Arrays.copyOf(labels, size * 2);
+		}
+
+		if(index < size)
+		{
+			System.arraycopy(points, index, points, index + 1, size - index);
+			System.arraycopy(labels, index, labels, index + 1, size - index);
+			shift(index, 1);
+		}
+
+		points[index] = item;
+		labels[index] = cls;
+		size++;
+
+		insertMember(cls, index);
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Point> c, int cls)
+	{
+		if(c.isEmpty())
+			return false;
+
+		for(Point item : c)
+			add(item, cls);
+		return true;
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<? extends Point> c, int cls)
+	{
+		if(c.isEmpty())
+			return false;
+
+		for(Point item : c)
+			add(index++, item, cls);
+		return true;
+	}
+
+	@Override
+	public Point set(int i, Point item, int cls)
+	{
+		Point old = get(i);
+
+		points[i] = item;
+		setClass(i, cls);
+
+		return old;
+	}
+
+	@Override
+	public void setClass(int i, int cls)
+	{
+		check(i);
+		if(cls < 0)
+			throw new IllegalArgumentException("Class ("+cls+") cannot be negative.");
+
+		if(labels[i] == cls)
+			return;
+
+		removeMember(labels[i], i);
+		labels[i] = cls;
+		insertMember(cls, i);
+	}
+
+	@Override
+	public Point remove(int i)
+	{
+		Point old = get(i);
+		removeMember(labels[i], i);
+
+		System.arraycopy(points, i + 1, points, i, size - i - 1);
+		System.arraycopy(labels, i + 1, labels, i, size - i - 1);
+		size--;
+		points[size] = null;
+
+		shift(i + 1, -1);
+		modCount++;
+
+		return old;
+	}
+
+	@Override
+	public void clear()
+	{
+		Arrays.fill(points, 0, size, null);
+		Arrays.fill(counts, 0);
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public boolean add(Point item)
+	{
+		throw new UnsupportedOperationException("Items can only be added together with a class");
+	}
+
+	@Override
+	public void add(int i, Point item)
+	{
+		throw new UnsupportedOperationException("Items can only be added together with a class");
+	}
+
+	@Override
+	public Point set(int i, Point item)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Classified<Point> subClassified(int from, int to)
+	{
+		if(from < 0 || to > size || from > to)
+			throw new IndexOutOfBoundsException("Range ["+from+", "+to+") out of bounds for size "+size+".");
+
+		LabeledPoints sub = new LabeledPoints(to - from);
+		for(int i = from; i < to; i++)
+			sub.add(points[i], labels[i]);
+
+		return sub;
+	}
+
+	@Override
+	public void setMaxClass(int max)
+	{
+		if(max < this.maxClass)
+			throw new IllegalArgumentException("Argument ("+max+") cannot be less than current maxClass ("+maxClass+").");
+
+		ensureClass(max);
+	}
+
+	/**
+	 * Adds index i to the members of class cls, keeping them sorted.
+	 */
+	private void insertMember(int cls, int i)
+	{
+		ensureClass(cls);
+
+		int n = counts[cls];
+		if(n == members[cls].length)
+			members[cls] = Arrays.copyOf(members[cls], max(4, 2 * n));
+
+		int[] m = members[cls];
+		int at = n;
+		if(n > 0 && m[n - 1] > i)
+			at = -(Arrays.binarySearch(m, 0, n, i) + 1);
+
+		System.arraycopy(m, at, m, at + 1, n - at);
+		m[at] = i;
+		counts[cls]++;
+	}
+
+	private void removeMember(int cls, int i)
+	{
+		int[] m = members[cls];
+		int n = counts[cls];
+		int at = Arrays.binarySearch(m, 0, n, i);
+
+		System.arraycopy(m, at + 1, m, at, n - at - 1);
+		counts[cls]--;
+	}
+
+	/**
+	 * Adds delta to every member index of at least from.
+	 */
+	private void shift(int from, int delta)
+	{
+		for(int c = 0; c < counts.length; c++)
+		{
+			int[] m = members[c];
+			for(int k = counts[c] - 1; k >= 0 && m[k] >= from; k--)
+				m[k] += delta;
+		}
+	}
+
+	private void ensureClass(int cls)
+	{
+		if(cls >= counts.length)
+		{
+			int old = counts.length;
+			members = Arrays.copyOf(members, cls + 1);
+			counts = Arrays.copyOf(counts, cls + 1);
+			for(int c = old; c <= cls; c++)
+				members[c] = new int[4];
+		}
+
+		maxClass = max(maxClass, cls);
+	}
+
+	private void check(int i)
+	{
+		if(i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Index "+i+" out of bounds for size "+size+".");
+	}
+
+	private class ClassView extends AbstractList<Point> implements RandomAccess
+	{
+		private final int cls;
+
+		public ClassView(int cls)
+		{
+			this.cls = cls;
+		}
+
+		@Override
+		public Point get(int k)
+		{
+			return points[index(cls, k)];
+		}
+
+		@Override
+		public int size()
+		{
+			return count(cls);
+		}
+	}
+
+	/**
+	 * Reads a CSV file with the values of a point on each line, followed by
+	 * its class, in a single pass. As in
+	 * {@link Classification#readCSV(File)}, the classes are renumbered
+	 * 0, 1, 2, ... in the order in which they first occur.
+	 */
+	public static LabeledPoints readCSV(File file) throws IOException
+	{
+		LabeledPoints data = new LabeledPoints();
+		Map<Integer, Integer> numbers = new LinkedHashMap<Integer, Integer>();
+
+		CSVReader reader = new CSVReader(new FileReader(file));
+		try {
+			String [] nextLine;
+			while ((nextLine = reader.readNext()) != null)
+			{
+				double[] values = new double[nextLine.length - 1];
+				for(int i = 0; i < nextLine.length - 1; i++)
+					values[i] = Double.parseDouble(nextLine[i].trim());
+
+				int cls = Integer.parseInt(nextLine[nextLine.length - 1].trim());
+				data.add(Point.fromRaw(values), number(numbers, cls));
+			}
+		} finally {
+			reader.close();
+		}
+
+		return data;
+	}
+
+	/**
+	 * Reads the binary format written by {@link #writeBinary(Classified, File)}.
+	 * The classes are read as stored, and the number of classes (including
+	 * empty ones) is restored.
+	 */
+	public static LabeledPoints readBinary(File file) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			int dimension = in.readInt();
+			int numClasses = in.readInt();
+
+			LabeledPoints data = new LabeledPoints();
+			data.setMaxClass(numClasses - 1);
+
+			while(true)
+			{
+				int cls;
+				try {
+					cls = in.readInt();
+				} catch(EOFException e)
+				{
+					return data;
+				}
+
+				double[] values = new double[dimension];
+				for(int j = 0; j < dimension; j++)
+					values[j] = in.readDouble();
+
+				data.add(Point.fromRaw(values), cls);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the data as the dimension and the number of classes (ints),
+	 * followed by the class (an int) and the values (doubles) of each point,
+	 * in big-endian order.
+	 */
+	public static void writeBinary(Classified<Point> data, File file) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(data.isEmpty() ? 0 : data.get(0).dimensionality());
+			out.writeInt(data.numClasses());
+			for(int i = 0; i < data.size(); i++)
+			{
+				out.writeInt(data.cls(i));
+				for(double value : data.get(i).getBackingData())
+					out.writeDouble(value);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static int number(Map<Integer, Integer> numbers, int cls)
+	{
+		Integer number = numbers.get(cls);
+		if(number == null)
+		{
+			number = numbers.size();
+			numbers.put(cls, number);
+		}
+
+		return number;
+	}
+}
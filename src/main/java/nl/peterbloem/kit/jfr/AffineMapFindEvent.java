@@ -0,0 +1,12 @@
+package nl.peterbloem.kit.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.peterbloem.kit.AffineMapFind")
+@Label("Affine Map Fit")
+@Description("A least-squares fit of an affine map.")
+public class AffineMapFindEvent extends KitEvent
+{
+}
@@ -0,0 +1,12 @@
+package nl.peterbloem.kit.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.peterbloem.kit.EMIteration")
+@Label("EM Iteration")
+@Description("One iteration of expectation-maximization for a mixture of Gaussians.")
+public class EMIterationEvent extends KitEvent
+{
+}
@@ -0,0 +1,29 @@
+package nl.peterbloem.kit.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * The fields shared by all kit events.
+ * 
+ * @author Peter
+ */
+@Category("Kit")
+public abstract class KitEvent extends Event
+{
+	@Label("Size")
+	public long size;
+	
+	@Label("Dimension")
+	public int dimension;
+	
+	@Label("Components")
+	public int components;
+	
+	@Label("Retries")
+	public int retries;
+	
+	@Label("Success")
+	public boolean success;
+}
@@ -0,0 +1,12 @@
+package nl.peterbloem.kit.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.peterbloem.kit.ReadCSV")
+@Label("Read CSV")
+@Description("Reading a list of points from a CSV file.")
+public class ReadCSVEvent extends KitEvent
+{
+}
@@ -0,0 +1,62 @@
+package nl.peterbloem.kit.jfr;
+
+import nl.peterbloem.kit.Events;
+
+/**
+ * Creates and commits the events for {@link Events}. This class should only
+ * be used through that class, which makes sure that it is only loaded when 
+ * events are enabled.
+ * 
+ * @author Peter
+ */
+public class Recorder
+{
+	public static Object begin(int type)
+	{
+		KitEvent event;
+		switch(type)
+		{
+			case Events.EM_ITERATION: 
+				event = new EMIterationEvent();
+				break;
+			case Events.SIMILITUDE_FIND: 
+				event = new SimilitudeFindEvent();
+				break;
+			case Events.AFFINE_MAP_FIND: 
+				event = new AffineMapFindEvent();
+				break;
+			case Events.READ_CSV: 
+				event = new ReadCSVEvent();
+				break;
+			case Events.STORE_INTEGERS_OPT: 
+				event = new StoreIntegersOptEvent();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown event type: " + type);
+		}
+		
+		event.begin();
+		return event;
+	}
+	
+	public static void retry(Object event)
+	{
+		((KitEvent) event).retries++;
+	}
+	
+	public static void end(Object object, long size, int dimension, int components, boolean success)
+	{
+		KitEvent event = (KitEvent) object;
+		event.end();
+		
+		if(event.shouldCommit())
+		{
+			event.size = size;
+			event.dimension = dimension;
+			event.components = components;
+			event.success = success;
+			
+			event.commit();
+		}
+	}
+}
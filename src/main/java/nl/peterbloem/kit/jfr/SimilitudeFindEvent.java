@@ -0,0 +1,12 @@
+package nl.peterbloem.kit.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.peterbloem.kit.SimilitudeFind")
+@Label("Similitude Fit")
+@Description("A least-squares fit of a similitude, retried when the SVD fails.")
+public class SimilitudeFindEvent extends KitEvent
+{
+}
@@ -0,0 +1,12 @@
+package nl.peterbloem.kit.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.peterbloem.kit.StoreIntegersOpt")
+@Label("Pitman-Yor Grid Search")
+@Description("The search over the Pitman-Yor hyperparameters for a sequence of integers.")
+public class StoreIntegersOptEvent extends KitEvent
+{
+}
@@ -0,0 +1,9 @@
+/**
+ * Flight recorder event types for the operations instrumented through 
+ * {@link nl.peterbloem.kit.Events}. The classes in this package require a JVM
+ * with JFR support, and are only loaded when events are enabled.
+ * 
+ * @author Peter
+ *
+ */
+package nl.peterbloem.kit.jfr;
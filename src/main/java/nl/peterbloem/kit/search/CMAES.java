@@ -0,0 +1,274 @@
+package nl.peterbloem.kit.search;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.pow;
+import static java.lang.Math.sqrt;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import nl.peterbloem.kit.Global;
+import nl.peterbloem.kit.Sorting;
+
+/**
+ * <p>
+ * The covariance matrix adaptation evolution strategy (CMA-ES) by Hansen and
+ * Ostermeier, with the default parameters from Hansen's tutorial "The CMA
+ * Evolution Strategy".
+ * </p><p>
+ * The search distribution is a multivariate normal N(m, sigma^2 C). Each
+ * generation, lambda points are sampled, the mean moves to the weighted
+ * average of the best mu, and the covariance C and step size sigma are
+ * adapted along the evolution paths of the mean. The eigendecomposition of
+ * C is only recomputed every few generations, so that the cost per
+ * generation is O(lambda n^2).
+ * </p><p>
+ * All state is kept in primitive arrays. CMA-ES is invariant to rotations
+ * and scalings of the parameter space, so it copes well with correlated
+ * parameters (such as those of a {@link nl.peterbloem.kit.data.MapModel}),
+ * at the price of O(n^2) memory.
+ * </p>
+ *
+ * @author Peter
+ */
+public class CMAES<M extends Parametrizable> extends PopulationSearch<M>
+{
+	private static final long serialVersionUID = 6640998419402219449L;
+
+	private final int lambda, mu;
+	private final double[] weights;
+	private final double mueff, cc, cs, c1, cmu, damps, chiN;
+
+	private double sigma;
+	private double[] mean, oldMean;
+	private double[] pc, ps;
+
+	// * The covariance, its eigenvectors B (as columns) and the square
+	//   roots of its eigenvalues D
+	private double[][] c;
+	private double[][] b;
+	private double[] d;
+	private long eigenGeneration = 0;
+
+	// * Buffers
+	private double[][] population, zs, ys;
+	private double[] zMean, tmp;
+
+	/**
+	 * Creates a search with the default population size and a random seed
+	 * from {@link Global#random()}.
+	 *
+	 * @param mean The initial parameters
+	 * @param sigma The initial step size
+	 */
+	public CMAES(Builder<M> builder, Objective<M> objective, double[] mean, double sigma)
+	{
+		this(builder, objective, mean, sigma, 4 + (int)(3.0 * log(builder.numParameters())), Global.random().nextLong());
+	}
+
+	/**
+	 * @param mean The initial parameters
+	 * @param sigma The initial step size
+	 * @param lambda The population size. The default is 4 + 3 ln(n). Larger
+	 * 	populations make the search more global, and parallelize better.
+	 * @param seed The seed for the random number generator
+	 */
+	public CMAES(Builder<M> builder, Objective<M> objective, double[] mean, double sigma, int lambda, long seed)
+	{
+		super(builder, objective, seed);
+		check(mean, n);
+
+		if(lambda < 2)
+			throw new IllegalArgumentException("Population size ("+lambda+") should be at least 2.");
+
+		this.lambda = lambda;
+		this.mu = lambda / 2;
+
+		// * Recombination weights
+		weights = new double[mu];
+		double sum = 0.0, sumSq = 0.0;
+		for(int i = 0; i < mu; i++)
+		{
+			weights[i] = log(mu + 0.5) - log(i + 1);
+			sum += weights[i];
+		}
+		for(int i = 0; i < mu; i++)
+		{
+			weights[i] /= sum;
+			sumSq += weights[i] * weights[i];
+		}
+		mueff = 1.0 / sumSq;
+
+		// * Adaptation rates
+		cc = (4.0 + mueff / n) / (n + 4.0 + 2.0 * mueff / n);
+		cs = (mueff + 2.0) / (n + mueff + 5.0);
+		c1 = 2.0 / ((n + 1.3) * (n + 1.3) + mueff);
+		cmu = min(1.0 - c1, 2.0 * (mueff - 2.0 + 1.0 / mueff) / ((n + 2.0) * (n + 2.0) + mueff));
+		damps = 1.0 + 2.0 * max(0.0, sqrt((mueff - 1.0) / (n + 1.0)) - 1.0) + cs;
+		chiN = sqrt(n) * (1.0 - 1.0 / (4.0 * n) + 1.0 / (21.0 * n * n));
+
+		this.sigma = sigma;
+		this.mean = mean.clone();
+		oldMean = new double[n];
+		pc = new double[n];
+		ps = new double[n];
+
+		c = new double[n][n];
+		b = new double[n][n];
+		d = new double[n];
+		for(int i = 0; i < n; i++)
+		{
+			c[i][i] = 1.0;
+			b[i][i] = 1.0;
+			d[i] = 1.0;
+		}
+
+		population = new double[lambda][n];
+		zs = new double[lambda][n];
+		ys = new double[lambda][n];
+		zMean = new double[n];
+		tmp = new double[n];
+	}
+
+	@Override
+	protected double[][] ask()
+	{
+		for(int k = 0; k < lambda; k++)
+		{
+			double[] z = zs[k], y = ys[k], x = population[k];
+			gaussian(z);
+
+			// * y = B D z
+			for(int i = 0; i < n; i++)
+				tmp[i] = d[i] * z[i];
+			for(int i = 0; i < n; i++)
+			{
+				double sum = 0.0;
+				double[] bi = b[i];
+				for(int j = 0; j < n; j++)
+					sum += bi[j] * tmp[j];
+				y[i] = sum;
+				x[i] = mean[i] + sigma * sum;
+			}
+		}
+
+		return population;
+	}
+
+	@Override
+	protected void tell(double[][] population, double[] fitness)
+	{
+		int[] order = Sorting.argsort(fitness);
+		long generations = generation() + 1;
+
+		// * Move the mean
+		System.arraycopy(mean, 0, oldMean, 0, n);
+		for(int i = 0; i < n; i++)
+		{
+			mean[i] = 0.0;
+			zMean[i] = 0.0;
+		}
+		for(int r = 0; r < mu; r++)
+		{
+			double[] x = population[order[r]], z = zs[order[r]];
+			for(int i = 0; i < n; i++)
+			{
+				mean[i] += weights[r] * x[i];
+				zMean[i] += weights[r] * z[i];
+			}
+		}
+
+		// * Update the evolution path for sigma: C^-1/2 (m - m_old) / sigma
+		//   is B zMean
+		double psNorm = 0.0;
+		double csFactor = sqrt(cs * (2.0 - cs) * mueff);
+		for(int i = 0; i < n; i++)
+		{
+			double sum = 0.0;
+			double[] bi = b[i];
+			for(int j = 0; j < n; j++)
+				sum += bi[j] * zMean[j];
+
+			ps[i] = (1.0 - cs) * ps[i] + csFactor * sum;
+			psNorm += ps[i] * ps[i];
+		}
+		psNorm = sqrt(psNorm);
+
+		boolean hsig = psNorm / sqrt(1.0 - pow(1.0 - cs, 2.0 * generations)) / chiN < 1.4 + 2.0 / (n + 1.0);
+
+		// * Update the evolution path for C
+		double ccFactor = sqrt(cc * (2.0 - cc) * mueff);
+		for(int i = 0; i < n; i++)
+			pc[i] = (1.0 - cc) * pc[i] + (hsig ? ccFactor * (mean[i] - oldMean[i]) / sigma : 0.0);
+
+		// * Update C (the lower triangle, then mirror)
+		double decay = 1.0 - c1 - cmu + (hsig ? 0.0 : c1 * cc * (2.0 - cc));
+		for(int i = 0; i < n; i++)
+			for(int j = 0; j <= i; j++)
+			{
+				double rankMu = 0.0;
+				for(int r = 0; r < mu; r++)
+				{
+					double[] y = ys[order[r]];
+					rankMu += weights[r] * y[i] * y[j];
+				}
+
+				c[i][j] = decay * c[i][j] + c1 * pc[i] * pc[j] + cmu * rankMu;
+				c[j][i] = c[i][j];
+			}
+
+		// * Update the step size
+		sigma *= exp((cs / damps) * (psNorm / chiN - 1.0));
+
+		// * Update B and D lazily
+		if(generations - eigenGeneration > lambda / (c1 + cmu) / n / 10.0)
+		{
+			eigenGeneration = generations;
+			decompose();
+		}
+	}
+
+	private void decompose()
+	{
+		RealMatrix matrix = new Array2DRowRealMatrix(c, false);
+		EigenDecomposition eigen = new EigenDecomposition(matrix);
+
+		RealMatrix v = eigen.getV();
+		double[] values = eigen.getRealEigenvalues();
+
+		for(int j = 0; j < n; j++)
+		{
+			d[j] = sqrt(max(values[j], 1E-20));
+			for(int i = 0; i < n; i++)
+				b[i][j] = v.getEntry(i, j);
+		}
+	}
+
+	/**
+	 * The current mean of the search distribution (a copy).
+	 */
+	public double[] mean()
+	{
+		return mean.clone();
+	}
+
+	/**
+	 * The current step size.
+	 */
+	public double sigma()
+	{
+		return sigma;
+	}
+
+	/**
+	 * The population size.
+	 */
+	public int lambda()
+	{
+		return lambda;
+	}
+}
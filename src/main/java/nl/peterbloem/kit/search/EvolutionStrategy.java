@@ -0,0 +1,149 @@
+package nl.peterbloem.kit.search;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.log;
+import static java.lang.Math.sqrt;
+
+import nl.peterbloem.kit.Global;
+import nl.peterbloem.kit.Sorting;
+
+/**
+ * <p>
+ * A (mu/mu, lambda) evolution strategy with self-adaptive step sizes.
+ * </p><p>
+ * Each generation, lambda offspring are sampled around the current mean.
+ * Each offspring has its own step size, drawn log-normally around the current
+ * step size, and its parameters are perturbed by an isotropic Gaussian with
+ * that step size. The mu best offspring are selected (the parents are
+ * discarded), the new mean is their average and the new step size their
+ * geometric mean.
+ * </p><p>
+ * This is simpler and cheaper per generation than {@link CMAES}, but it
+ * does not adapt to correlations between the parameters.
+ * </p>
+ *
+ * @author Peter
+ */
+public class EvolutionStrategy<M extends Parametrizable> extends PopulationSearch<M>
+{
+	private static final long serialVersionUID = -1418366255298108474L;
+
+	private final int mu, lambda;
+	private final double tau;
+
+	private double[] mean;
+	private double sigma;
+
+	private double[][] population;
+	private double[] sigmas;
+
+	/**
+	 * Creates an evolution strategy with lambda = 4 + 3 ln(n), mu = lambda/4
+	 * and a random seed from {@link Global#random()}.
+	 *
+	 * @param mean The initial parameters
+	 * @param sigma The initial step size
+	 */
+	public EvolutionStrategy(Builder<M> builder, Objective<M> objective, double[] mean, double sigma)
+	{
+		this(builder, objective, mean, sigma, defaultLambda(builder.numParameters()), Global.random().nextLong());
+	}
+
+	/**
+	 * @param mean The initial parameters
+	 * @param sigma The initial step size
+	 * @param lambda The number of offspring per generation
+	 * @param seed The seed for the random number generator
+	 */
+	public EvolutionStrategy(
+			Builder<M> builder, Objective<M> objective,
+			double[] mean, double sigma, int lambda, long seed)
+	{
+		this(builder, objective, mean, sigma, Math.max(1, lambda / 4), lambda, seed);
+	}
+
+	/**
+	 * @param mean The initial parameters
+	 * @param sigma The initial step size
+	 * @param mu The number of offspring selected each generation
+	 * @param lambda The number of offspring per generation
+	 * @param seed The seed for the random number generator
+	 */
+	public EvolutionStrategy(
+			Builder<M> builder, Objective<M> objective,
+			double[] mean, double sigma, int mu, int lambda, long seed)
+	{
+		super(builder, objective, seed);
+		check(mean, n);
+
+		if(mu < 1 || mu > lambda)
+			throw new IllegalArgumentException("mu ("+mu+") should be between 1 and lambda ("+lambda+").");
+
+		this.mu = mu;
+		this.lambda = lambda;
+		this.tau = 1.0 / sqrt(2.0 * n);
+
+		this.mean = mean.clone();
+		this.sigma = sigma;
+
+		population = new double[lambda][n];
+		sigmas = new double[lambda];
+	}
+
+	protected static int defaultLambda(int n)
+	{
+		return 4 + (int)(3.0 * log(n));
+	}
+
+	@Override
+	protected double[][] ask()
+	{
+		for(int k = 0; k < lambda; k++)
+		{
+			sigmas[k] = sigma * exp(tau * random.nextGaussian());
+
+			double[] x = population[k];
+			for(int i = 0; i < n; i++)
+				x[i] = mean[i] + sigmas[k] * random.nextGaussian();
+		}
+
+		return population;
+	}
+
+	@Override
+	protected void tell(double[][] population, double[] fitness)
+	{
+		int[] order = Sorting.argsort(fitness);
+
+		double logSigma = 0.0;
+		for(int i = 0; i < n; i++)
+			mean[i] = 0.0;
+
+		for(int r = 0; r < mu; r++)
+		{
+			double[] x = population[order[r]];
+			for(int i = 0; i < n; i++)
+				mean[i] += x[i] / mu;
+
+			logSigma += log(sigmas[order[r]]) / mu;
+		}
+
+		sigma = exp(logSigma);
+	}
+
+	/**
+	 * The current mean of the search distribution (a copy).
+	 */
+	public double[] mean()
+	{
+		return mean.clone();
+	}
+
+	/**
+	 * The current step size.
+	 */
+	public double sigma()
+	{
+		return sigma;
+	}
+}
@@ -0,0 +1,21 @@
+package nl.peterbloem.kit.search;
+
+/**
+ * A function to be minimized by a {@link PopulationSearch}, for instance the
+ * description length of a model.
+ *
+ * Objectives are evaluated from multiple threads at once, so implementations
+ * must be thread-safe.
+ * Instances built by a {@link Rebuilder} are reset after they are
+ * evaluated, so implementations should not keep references to them.
+ *
+ * @author Peter
+ */
+public interface Objective<P extends Parametrizable>
+{
+	/**
+	 * The value of the objective for the given instance. Lower is better. NaN
+	 * is treated as positive infinity.
+	 */
+	public double evaluate(P instance);
+}
@@ -0,0 +1,314 @@
+package nl.peterbloem.kit.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import nl.peterbloem.kit.Global;
+
+/**
+ * <p>
+ * Base class for population-based searches over the parameters of a
+ * {@link Builder}. Each generation, the subclass proposes a population of
+ * parameter vectors, the instances are built and evaluated in parallel over
+ * the threads of {@link Global#pool()}, and the subclass updates its state
+ * from the results.
+ * </p><p>
+ * All random draws are made in the calling thread from the search's own
+ * generator, so a search with a given seed follows the same trajectory
+ * regardless of the number of threads. The state of the search, including
+ * that of the generator, can be written to a file with
+ * {@link #checkpoint(File)} and resumed with {@link #restore(File, Builder,
+ * Objective)}. The builder and the objective are not part of the
+ * checkpoint.
+ * </p><p>
+ * If the builder is a {@link Rebuilder}, each evaluation thread builds a 
+ * single instance, and rebuilds it in place for every subsequent evaluation.
+ * The objective should then not hold on to the instances it is given.
+ * </p>
+ *
+ * @author Peter
+ */
+public abstract class PopulationSearch<M extends Parametrizable> implements Serializable
+{
+	private static final long serialVersionUID = 4300812418924306337L;
+
+	protected transient Builder<M> builder;
+	protected transient Objective<M> objective;
+
+	protected final Random random;
+	protected final int n;
+
+	private long generation = 0;
+	private long evaluations = 0;
+
+	private double[] best = null;
+	private double bestFitness = Double.POSITIVE_INFINITY;
+	
+	// * The reusable instances, one per evaluation thread
+	private transient Object[] instances = null;
+
+	public PopulationSearch(Builder<M> builder, Objective<M> objective, long seed)
+	{
+		this.builder = builder;
+		this.objective = objective;
+
+		this.random = new Random(seed);
+		this.n = builder.numParameters();
+	}
+
+	/**
+	 * Proposes the population for the next generation. The returned arrays
+	 * may be reused between generations.
+	 */
+	protected abstract double[][] ask();
+
+	/**
+	 * Updates the state of the search with the fitnesses of the population
+	 * returned by the last call to {@link #ask()}.
+	 */
+	protected abstract void tell(double[][] population, double[] fitness);
+
+	/**
+	 * Runs a single generation.
+	 */
+	public void iterate()
+	{
+		double[][] population = ask();
+		double[] fitness = evaluate(population);
+
+		for(int i = 0; i < population.length; i++)
+			if(fitness[i] < bestFitness)
+			{
+				bestFitness = fitness[i];
+				best = population[i].clone();
+			}
+
+		tell(population, fitness);
+
+		generation++;
+	}
+
+	/**
+	 * Runs the given number of generations.
+	 */
+	public void run(int generations)
+	{
+		for(int i = 0; i < generations; i++)
+			iterate();
+	}
+
+	/**
+	 * Evaluates the objective for each member of the population. For
+	 * populations larger than one, the evaluations are split over
+	 * {@link Global#numThreads()} threads.
+	 */
+	protected double[] evaluate(final double[][] population)
+	{
+		final double[] fitness = new double[population.length];
+		int threads = Math.min(Global.numThreads(), population.length);
+
+		evaluations += population.length;
+		
+		if(instances == null || instances.length < threads)
+			instances = new Object[Math.max(threads, 1)];
+
+		if(threads < 2)
+		{
+			for(int i = 0; i < population.length; i++)
+				fitness[i] = evaluate(population[i], 0);
+			return fitness;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(threads);
+		for(int t = 0; t < threads; t++)
+		{
+			final int slot = t,
+			          from = population.length * t / threads,
+			          to = population.length * (t + 1) / threads;
+
+			tasks.add(new Callable<Void>() {
+				public Void call()
+				{
+					for(int i = from; i < to; i++)
+						fitness[i] = evaluate(population[i], slot);
+					return null;
+				}
+			});
+		}
+
+		try {
+			for(Future<Void> future : Global.pool().invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+
+		return fitness;
+	}
+
+	@SuppressWarnings("unchecked")
+	private double evaluate(double[] parameters, int slot)
+	{
+		M instance;
+		if(builder instanceof Rebuilder<?>)
+		{
+			instance = instances[slot] == null ? 
+					build(parameters) : 
+					((Rebuilder<M>) builder).rebuild((M) instances[slot], parameters, 0);
+			instances[slot] = instance;
+		} else
+			instance = build(parameters);
+		
+		double value = objective.evaluate(instance);
+		return Double.isNaN(value) ? Double.POSITIVE_INFINITY : value;
+	}
+
+	/**
+	 * Builds an instance from a copy of the given parameters.
+	 */
+	protected M build(double[] parameters)
+	{
+		return builder.build(list(parameters.clone()));
+	}
+
+	/**
+	 * The best instance found so far.
+	 *
+	 * @return null if no generations have been run.
+	 */
+	public M best()
+	{
+		return best == null ? null : build(best);
+	}
+
+	/**
+	 * The parameters of the best instance found so far (a copy).
+	 */
+	public double[] bestParameters()
+	{
+		return best == null ? null : best.clone();
+	}
+
+	public double bestFitness()
+	{
+		return bestFitness;
+	}
+
+	/**
+	 * The number of generations run so far.
+	 */
+	public long generation()
+	{
+		return generation;
+	}
+
+	/**
+	 * The number of times the objective has been evaluated.
+	 */
+	public long evaluations()
+	{
+		return evaluations;
+	}
+
+	/**
+	 * Writes the state of this search to the given file.
+	 */
+	public void checkpoint(File file)
+		throws IOException
+	{
+		ObjectOutputStream out = new ObjectOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeObject(this);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Resumes a search from a checkpoint. Given the same builder and
+	 * objective, the restored search continues exactly as the original would
+	 * have.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <M extends Parametrizable, S extends PopulationSearch<M>> S restore(
+			File file, Builder<M> builder, Objective<M> objective)
+		throws IOException
+	{
+		ObjectInputStream in = new ObjectInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+
+		S search;
+		try {
+			search = (S) in.readObject();
+		} catch (ClassNotFoundException e)
+		{
+			throw new IOException(e);
+		} finally {
+			in.close();
+		}
+
+		if(builder.numParameters() != search.n)
+			throw new IllegalArgumentException("Builder requires "+builder.numParameters()+" parameters, checkpoint has "+search.n+".");
+
+		search.builder = builder;
+		search.objective = objective;
+
+		return search;
+	}
+
+	/**
+	 * A standard normal random vector.
+	 */
+	protected void gaussian(double[] out)
+	{
+		for(int i = 0; i < out.length; i++)
+			out[i] = random.nextGaussian();
+	}
+
+	protected static void check(double[] mean, int n)
+	{
+		if(mean.length != n)
+			throw new IllegalArgumentException("Initial mean has "+mean.length+" parameters, builder requires "+n+".");
+	}
+
+	/**
+	 * A list view of an array.
+	 */
+	protected static List<Double> list(final double[] values)
+	{
+		return new AbstractList<Double>()
+		{
+			@Override
+			public Double get(int index)
+			{
+				return values[index];
+			}
+
+			@Override
+			public int size()
+			{
+				return values.length;
+			}
+		};
+	}
+}
@@ -0,0 +1,53 @@
+package nl.peterbloem.kit.search;
+
+/**
+ * A builder that can also reset an existing instance to new parameters, so
+ * that hot loops (like the evaluations in a {@link PopulationSearch}) do not
+ * need to allocate a new instance for every parameter vector.
+ *
+ * Derived quantities of the instance (like its inverse) are invalidated by a
+ * rebuild, and recomputed lazily when they are next requested.
+ * 
+ * A rebuild changes the instance in place, so an instance that is rebuilt 
+ * should be owned by the code that rebuilds it. It must not be used by other
+ * threads during the rebuild, and it should not be shared with objects that 
+ * copy its state when they are created: for instance, a 
+ * {@link nl.peterbloem.kit.data.CompositeMap} fuses affine components into a
+ * single matrix, which a later rebuild of the components does not change.
+ *
+ * @author Peter
+ */
+public interface Rebuilder<P extends Parametrizable> extends Builder<P>
+{
+	/**
+	 * Resets the given instance to the parameters
+	 * <code>parameters[offset]</code> to
+	 * <code>parameters[offset + numParameters() - 1]</code>. The result is
+	 * equal to what {@link #build(java.util.List)} would return for the same
+	 * parameters. The array is not retained.
+	 *
+	 * If the instance or the parameters are not valid (see 
+	 * {@link #check(Parametrizable, double[], int)}), an 
+	 * IllegalArgumentException is thrown before the instance is changed.
+	 *
+	 * @param instance An instance created by this builder (or by an
+	 * 	equivalent one). Objects derived from the instance earlier (like its
+	 * 	inverse) are not changed.
+	 * @return The instance.
+	 */
+	public P rebuild(P instance, double[] parameters, int offset);
+	
+	/**
+	 * Checks, without changing the instance, that 
+	 * {@link #rebuild(Parametrizable, double[], int)} would succeed for the 
+	 * given arguments. The default implementation checks that the parameters 
+	 * fit in the array.
+	 * 
+	 * @throws IllegalArgumentException If the rebuild would fail.
+	 */
+	public default void check(P instance, double[] parameters, int offset)
+	{
+		if(offset < 0 || offset + numParameters() > parameters.length)
+			throw new IllegalArgumentException("Parameters at offset "+offset+" ("+numParameters()+" values) do not fit in an array of length "+parameters.length+".");
+	}
+}
@@ -0,0 +1,118 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AdaptiveCodeTest
+{
+	/**
+	 * Zipf-like sequence over [0, max]
+	 */
+	private static int[] sequence(int n, int max)
+	{
+		int[] sequence = new int[n];
+		for(int i = 0; i < n; i++)
+			sequence[i] = (int) Math.floor(Math.exp(Global.random().nextDouble() * Math.log(max + 2.0))) - 1;
+		
+		return sequence;
+	}
+	
+	/**
+	 * The size of the code should match the sum of the idealized codelengths 
+	 * to within a fraction of a percent.
+	 */
+	private static void checkSize(long bits, double codelength)
+	{
+		assertTrue(bits + " vs " + codelength, Math.abs(bits - codelength) <= 0.001 * codelength + 32);
+	}
+
+	@Test
+	public void testIntegerModel()
+	{
+		int[] sequence = sequence(100000, 1000);
+		
+		IntegerModel model = new IntegerModel(1000);
+		BitString code = AdaptiveCode.encode(model, sequence);
+		
+		double codelength = 0.0;
+		for(int symbol : sequence)
+			codelength += model.encode(symbol);
+		
+		checkSize(code.size(), codelength);
+		assertArrayEquals(sequence, AdaptiveCode.decode(new IntegerModel(1000), code, sequence.length));
+	}
+	
+	@Test
+	public void testOnlineModel()
+	{
+		List<String> vocabulary = Arrays.asList("a", "b", "c", "d");
+		List<String> sequence = new ArrayList<String>();
+		for(int i = 0; i < 50000; i++)
+			sequence.add(vocabulary.get(Global.random().nextDouble() < 0.9 ? 0 : Global.random().nextInt(4)));
+		
+		BitString code = AdaptiveCode.encode(new OnlineModel<String>(vocabulary), sequence);
+		
+		OnlineModel<String> model = new OnlineModel<String>(vocabulary);
+		double codelength = 0.0;
+		for(String symbol : sequence)
+			codelength += model.encode(symbol);
+		
+		checkSize(code.size(), codelength);
+		assertEquals(sequence, AdaptiveCode.decode(new OnlineModel<String>(vocabulary), code, sequence.size()));
+	}
+	
+	@Test
+	public void testPitmanYor()
+	{
+		List<Integer> sequence = new ArrayList<Integer>();
+		for(int symbol : sequence(100000, 100000))
+			sequence.add(symbol);
+		
+		BitString code = AdaptiveCode.encode(new PitmanYorModel<Integer>(0.5, 0.3), sequence);
+		
+		PitmanYorModel<Integer> model = new PitmanYorModel<Integer>(0.5, 0.3);
+		double codelength = 0.0;
+		for(int symbol : sequence)
+			codelength += model.encode(symbol);
+		
+		checkSize(code.size(), codelength);
+		
+		List<Integer> newTokens = new ArrayList<Integer>(new LinkedHashSet<Integer>(sequence));
+		assertEquals(sequence, AdaptiveCode.decode(
+				new PitmanYorModel<Integer>(0.5, 0.3), code, sequence.size(), newTokens));
+	}
+	
+	@Test
+	public void testStream()
+	{
+		int[] sequence = sequence(20000, 50);
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ArithmeticEncoder encoder = new ArithmeticEncoder(out);
+		AdaptiveCode code = AdaptiveCode.kt(51, 0.5);
+		
+		double codelength = 0.0;
+		for(int symbol : sequence)
+		{
+			codelength += code.codelength(symbol);
+			code.encode(symbol, encoder);
+		}
+		long bits = encoder.finish();
+		
+		checkSize(bits, codelength);
+		assertEquals((bits + 7) / 8, out.size());
+		
+		ArithmeticDecoder decoder = new ArithmeticDecoder(new ByteArrayInputStream(out.toByteArray()));
+		code = AdaptiveCode.kt(51, 0.5);
+		for(int symbol : sequence)
+			assertEquals(symbol, code.decode(decoder));
+	}
+}
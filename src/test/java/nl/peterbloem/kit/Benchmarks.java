@@ -0,0 +1,133 @@
+package nl.peterbloem.kit;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.function.Consumer;
+
+import nl.peterbloem.kit.Series.IntSeries;
+
+/**
+ * Timing benchmarks, kept out of the unit tests (surefire only runs classes 
+ * named *Test). Run the main method with the test classpath, for instance
+ * 
+ * <pre>
+ * java -cp target/classes:target/test-classes:... nl.peterbloem.kit.Benchmarks
+ * </pre>
+ * 
+ * @author Peter
+ */
+public class Benchmarks
+{
+	public static void main(String[] args)
+	{
+		series();
+		permutations();
+		sorting();
+	}
+	
+	/**
+	 * Compares the Steinhaus-Johnson-Trotter iterator with visiting the 
+	 * permutations in the order of Heap's algorithm.
+	 */
+	public static void permutations()
+	{
+		int n = 11;
+		final long[] checksum = new long[1];
+
+		long t0 = System.nanoTime();
+		Iterator<int[]> it = new Permutations(n).johnsonTrotter();
+		while(it.hasNext())
+			checksum[0] += it.next()[0];
+		long sjt = System.nanoTime() - t0;
+
+		long expected = checksum[0];
+		checksum[0] = 0;
+
+		t0 = System.nanoTime();
+		new Permutations(n).visit(new Consumer<int[]>() {
+			@Override
+			public void accept(int[] perm)
+			{
+				checksum[0] += perm[0];
+			}
+		});
+		long heap = System.nanoTime() - t0;
+
+		if(expected != checksum[0])
+			throw new IllegalStateException("Checksums do not match: "+expected+", "+checksum[0]+".");
+
+		System.out.println("Permutations of " + n + ", Johnson-Trotter: " + sjt / 1000000 + " ms, Heap: " + heap / 1000000 + " ms.");
+	}
+	
+	/**
+	 * Compares boxed iteration over an {@link IntSeries} with its primitive 
+	 * iterator and stream.
+	 */
+	public static void series()
+	{
+		int n = 10000000;
+		IntSeries series = Series.series(n);
+
+		long sum = 0;
+		long t0 = System.nanoTime();
+		for(int i : series)
+			sum += i;
+		long boxed = System.nanoTime() - t0;
+
+		long primitive = 0;
+		t0 = System.nanoTime();
+		PrimitiveIterator.OfInt it = series.intIterator();
+		while(it.hasNext())
+			primitive += it.nextInt();
+		long unboxed = System.nanoTime() - t0;
+
+		t0 = System.nanoTime();
+		long streamed = series.intStream().asLongStream().sum();
+		long stream = System.nanoTime() - t0;
+
+		if(sum != primitive || sum != streamed)
+			throw new IllegalStateException("Sums do not match: "+sum+", "+primitive+", "+streamed+".");
+
+		System.out.println("Boxed iteration:     " + boxed / 1000000 + " ms");
+		System.out.println("Primitive iteration: " + unboxed / 1000000 + " ms");
+		System.out.println("Primitive stream:    " + stream / 1000000 + " ms");
+	}
+	
+	/**
+	 * Compares the primitive argsort with sorting boxed lists through 
+	 * {@link Functions#sort(List, List, Comparator)}.
+	 */
+	public static void sorting()
+	{
+		int n = 2000000;
+		double[] values = new double[n];
+		List<Double> boxed = new ArrayList<Double>(n);
+		List<Integer> column = new ArrayList<Integer>(n);
+		for(int i = 0; i < n; i++)
+		{
+			values[i] = Global.random().nextDouble();
+			boxed.add(values[i]);
+			column.add(i);
+		}
+
+		long t0 = System.nanoTime();
+		int[] order = Sorting.argsort(values);
+		Sorting.permute(order, values);
+		long primitive = System.nanoTime() - t0;
+
+		t0 = System.nanoTime();
+		Functions.sort(column, boxed, new Comparator<Double>() {
+			@Override
+			public int compare(Double a, Double b)
+			{
+				return Double.compare(a, b);
+			}
+		});
+		long lists = System.nanoTime() - t0;
+
+		System.out.println("Sorting " + n + " values, argsort: " + primitive / 1000000 + " ms, Functions.sort: " + lists / 1000000 + " ms.");
+	}
+}
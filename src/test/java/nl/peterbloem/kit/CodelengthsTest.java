@@ -0,0 +1,61 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.Codelengths.Code;
+
+public class CodelengthsTest
+{
+
+	@Test
+	public void testStore()
+	{
+		List<int[]> sequences = new ArrayList<int[]>();
+		List<List<Integer>> lists = new ArrayList<List<Integer>>();
+		
+		for(int i = 0; i < 1000; i++)
+		{
+			int length = Global.random().nextInt(30);
+			int max = 1 + Global.random().nextInt(200);
+			
+			int[] sequence = new int[length];
+			List<Integer> list = new ArrayList<Integer>(length);
+			for(int j = 0; j < length; j++)
+			{
+				sequence[j] = Global.random().nextInt(max);
+				list.add(sequence[j]);
+			}
+			
+			sequences.add(sequence);
+			lists.add(list);
+		}
+		
+		double[] kt = Codelengths.store(sequences, Code.KT),
+		         ml = Codelengths.store(sequences, Code.ML),
+		         py = Codelengths.store(sequences, Code.PITMAN_YOR),
+		         integer = Codelengths.store(sequences, Code.INTEGER);
+		
+		double[] ktObjects = Codelengths.storeSequences(lists, Code.KT),
+		         pyObjects = Codelengths.storeSequences(lists, Code.PITMAN_YOR),
+		         integerObjects = Codelengths.storeSequences(lists, Code.INTEGER);
+		
+		for(int i = 0; i < sequences.size(); i++)
+		{
+			List<Integer> list = lists.get(i);
+			
+			assertEquals(OnlineModel.storeSequence(list), kt[i], 0.0);
+			assertEquals(OnlineModel.storeSequenceML(list), ml[i], 0.0);
+			assertEquals(PitmanYorModel.storeSequence(list), py[i], 0.0);
+			assertEquals(IntegerModel.store(list), integer[i], 0.0);
+			
+			assertEquals(kt[i], ktObjects[i], 0.0);
+			assertEquals(py[i], pyObjects[i], 0.0);
+			assertEquals(integer[i], integerObjects[i], 0.0);
+		}
+	}
+}
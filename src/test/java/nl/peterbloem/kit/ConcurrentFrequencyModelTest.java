@@ -0,0 +1,101 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ConcurrentFrequencyModelTest
+{
+
+	@Test
+	public void testConcurrent() throws Exception
+	{
+		final ConcurrentFrequencyModel<Integer> model = new ConcurrentFrequencyModel<Integer>();
+		
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for(int t = 0; t < 8; t++)
+			tasks.add(new Callable<Object>() {
+				public Object call()
+				{
+					for(int i = 0; i < 10000; i++)
+						model.add(i % 10);
+					return null;
+				}
+			});
+		
+		for(Future<Object> future : Global.pool().invokeAll(tasks))
+			future.get();
+		
+		assertEquals(80000.0, model.total(), 0.0);
+		assertEquals(10.0, model.distinct(), 0.0);
+		for(int i = 0; i < 10; i++)
+			assertEquals(8000.0, model.frequency(i), 0.0);
+		
+		assertEquals(Functions.log2(10.0), model.entropy(), 1E-10);
+	}
+	
+	@Test
+	public void testMerge()
+	{
+		FrequencyModel<String> a = new FrequencyModel<String>(), 
+		                       b = new ConcurrentFrequencyModel<String>();
+		a.add("x"); a.add("y", 2.0);
+		b.add("y"); b.add("z", 3.0);
+		
+		a.merge(b);
+		
+		assertEquals(7.0, a.total(), 0.0);
+		assertEquals(3.0, a.frequency("y"), 0.0);
+		assertEquals(3.0, a.frequency("z"), 0.0);
+		assertEquals("x", a.sorted().get(2));
+		
+		b.merge(a);
+		assertEquals(11.0, b.total(), 0.0);
+		assertEquals(new FrequencyModel<String>(b), ((ConcurrentFrequencyModel<String>) b).snapshot());
+	}
+	
+	@Test
+	public void testTies()
+	{
+		FrequencyModel<String> expected = new FrequencyModel<String>();
+		ConcurrentFrequencyModel<String> model = new ConcurrentFrequencyModel<String>();
+		
+		List<String> tokens = new ArrayList<String>();
+		for(int i = 0; i < 50; i++)
+			tokens.add("token" + (49 - i));
+		tokens.add("token10");
+		tokens.add("token30");
+		
+		for(String token : tokens)
+		{
+			expected.add(token);
+			model.add(token);
+		}
+		
+		assertEquals(expected.sorted(), model.sorted());
+		assertEquals("token10", model.sorted().get(1));
+		for(String token : tokens)
+			assertEquals(expected.rank(token), model.rank(token));
+		
+		assertEquals(expected.maxToken(), model.maxToken());
+		assertEquals(expected.entropy(), model.entropy(), 1E-12);
+		
+		// * The sorted list is reused until the model changes
+		List<String> sorted = model.sorted();
+		assertSame(sorted, model.sorted());
+		
+		expected.add("token0", 3.0);
+		model.add("token0", 3.0);
+		assertNotSame(sorted, model.sorted());
+		assertEquals(expected.sorted(), model.sorted());
+		assertEquals("token0", model.maxToken());
+		assertEquals(expected.entropy(), model.entropy(), 1E-12);
+		
+		assertNull(new ConcurrentFrequencyModel<String>().maxToken());
+	}
+}
@@ -0,0 +1,99 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+public class CountMinSketchTest
+{
+	/**
+	 * Zipf-like stream over 10000 tokens
+	 */
+	private static int draw()
+	{
+		return (int) Math.floor(Math.exp(Global.random().nextDouble() * Math.log(10000.0))) - 1;
+	}
+
+	@Test
+	public void testBounds()
+	{
+		CountMinSketch<Integer> sketch = new CountMinSketch<Integer>(0.0001, 0.01);
+		FrequencyModel<Integer> exact = new FrequencyModel<Integer>();
+		
+		for(int i = 0; i < 100000; i++)
+		{
+			int token = draw();
+			sketch.add(token);
+			exact.add(token);
+		}
+		
+		assertEquals(exact.total(), sketch.total(), 0.0);
+		
+		int violations = 0;
+		for(int token : exact.tokens())
+		{
+			assertTrue(sketch.frequency(token) >= exact.frequency(token));
+			if(sketch.frequency(token) > exact.frequency(token) + sketch.error())
+				violations ++;
+		}
+		
+		assertTrue(violations <= 0.01 * exact.distinct());
+		assertEquals(exact.distinct(), sketch.distinct(), 0.05 * exact.distinct());
+	}
+	
+	@Test
+	public void testMerge() throws Exception
+	{
+		CountMinSketch<String> a = new CountMinSketch<String>(100, 4, 7L), 
+		                       b = new CountMinSketch<String>(100, 4, 7L);
+		
+		a.add("x", 3.0); a.add("y");
+		b.add("x"); b.add("z", 2.0);
+		
+		a.merge(b);
+		
+		assertEquals(7.0, a.total(), 0.0);
+		assertTrue(a.frequency("x") >= 4.0);
+		assertTrue(a.frequency("z") >= 2.0);
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new ObjectOutputStream(bytes).writeObject(a);
+		@SuppressWarnings("unchecked")
+		CountMinSketch<String> copy = (CountMinSketch<String>) new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		
+		assertEquals(a.frequency("x"), copy.frequency("x"), 0.0);
+		copy.add("w");
+		assertEquals(8.0, copy.total(), 0.0);
+	}
+	
+	@Test
+	public void testHash()
+	{
+		// * "Aa" and "BB" have the same hashCode, so by default they collide 
+		//   in every row
+		CountMinSketch<String> sketch = new CountMinSketch<String>(1000, 5, 0L);
+		sketch.add("Aa", 100.0);
+		assertEquals(100.0, sketch.frequency("BB"), 0.0);
+		
+		sketch = new CountMinSketch<String>(1000, 5, 0L, new CountMinSketch.Hash<String>() {
+			@Override
+			public long hash(String token)
+			{
+				// * FNV-1a
+				long hash = 0xcbf29ce484222325L;
+				for(int i = 0; i < token.length(); i++)
+					hash = (hash ^ token.charAt(i)) * 0x100000001b3L;
+				return hash;
+			}
+		});
+		sketch.add("Aa", 100.0);
+		assertEquals(100.0, sketch.frequency("Aa"), 0.0);
+		assertEquals(0.0, sketch.frequency("BB"), 0.0);
+	}
+}
@@ -0,0 +1,175 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.Test;
+
+import nl.peterbloem.kit.data.MVN;
+import nl.peterbloem.kit.data.Point;
+
+public class DenseTest
+{
+	private static final double EPSILON = 1E-9;
+
+	@Test
+	public void testGemm()
+	{
+		Random random = new Random(0);
+		int m = 70, k = 130, n = 65;
+		double[] a = random(m * k, random), b = random(k * n, random), c = random(m * n, random);
+
+		RealMatrix expected = matrix(a, m, k).multiply(matrix(b, k, n)).scalarMultiply(2.0)
+				.add(matrix(c, m, n).scalarMultiply(0.5));
+
+		Dense.gemm(m, n, k, 2.0, a, b, 0.5, c);
+		assertClose(expected, c, n);
+
+		// * through the adapter
+		RealMatrix product = new DenseMatrix(a, m, k).multiply(new DenseMatrix(b, k, n));
+		assertClose(matrix(a, m, k).multiply(matrix(b, k, n)), ((DenseMatrix) product).data(), n);
+	}
+
+	@Test
+	public void testCholesky()
+	{
+		Random random = new Random(1);
+		int n = 6;
+		double[] a = spd(n, random), l = a.clone();
+
+		assertTrue(Dense.cholesky(l, n));
+		assertClose(matrix(a, n, n), Dense.multiply(l, Dense.transpose(l, n, n), n, n, n), n);
+
+		double[] negative = Dense.identity(n);
+		negative[2 * n + 2] = -1.0;
+		assertFalse(Dense.cholesky(negative, n));
+	}
+
+	@Test
+	public void testInverse()
+	{
+		Random random = new Random(2);
+		int n = 7;
+		double[] a = random(n * n, random);
+
+		assertEquals(new LUDecomposition(matrix(a, n, n)).getDeterminant(), Dense.determinant(a, n), EPSILON);
+		assertClose(matrix(Dense.identity(n), n, n), Dense.multiply(a, Dense.inverse(a, n), n, n, n), n);
+
+		assertNull(Dense.inverse(new double[n * n], n));
+	}
+
+	@Test
+	public void testEigen()
+	{
+		Random random = new Random(3);
+		int n = 8;
+		double[] a = random(n * n, random);
+		for(int i = 0; i < n; i++)
+			for(int j = 0; j < i; j++)
+				a[i * n + j] = a[j * n + i];
+
+		double[] values = new double[n], vectors = new double[n * n];
+		Dense.eigenSymmetric(a, n, values, vectors);
+
+		for(int i = 1; i < n; i++)
+			assertTrue(values[i - 1] >= values[i]);
+
+		// * V diag(values) V^T
+		double[] scaled = vectors.clone();
+		for(int i = 0; i < n; i++)
+			for(int j = 0; j < n; j++)
+				scaled[i * n + j] *= values[j];
+		assertClose(matrix(a, n, n), Dense.multiply(scaled, Dense.transpose(vectors, n, n), n, n, n), n);
+	}
+
+	@Test
+	public void testSVD()
+	{
+		Random random = new Random(4);
+		for(int[] dims : new int[][]{{9, 4}, {3, 5}, {4, 4}})
+		{
+			int m = dims[0], n = dims[1], r = Math.min(m, n);
+			double[] a = random(m * n, random);
+
+			double[] u = new double[m * r], s = new double[r], v = new double[n * r];
+			Dense.svd(a, m, n, u, s, v);
+
+			for(int i = 1; i < r; i++)
+				assertTrue(s[i - 1] >= s[i]);
+
+			assertClose(matrix(Dense.identity(r), r, r), Dense.multiply(Dense.transpose(u, m, r), u, r, m, r), r);
+			assertClose(matrix(Dense.identity(r), r, r), Dense.multiply(Dense.transpose(v, n, r), v, r, n, r), r);
+
+			double[] us = u.clone();
+			for(int i = 0; i < m; i++)
+				for(int j = 0; j < r; j++)
+					us[i * r + j] *= s[j];
+			assertClose(matrix(a, m, n), Dense.multiply(us, Dense.transpose(v, n, r), m, r, n), n);
+		}
+	}
+
+	@Test
+	public void testMVNDensity()
+	{
+		Random random = new Random(5);
+		int n = 4;
+		double[] cov = spd(n, random);
+		Point mean = new Point(random(n, random));
+		MVN mvn = new MVN(mean, matrix(cov, n, n));
+
+		RealMatrix inverse = new LUDecomposition(matrix(cov, n, n)).getSolver().getInverse();
+		double det = new LUDecomposition(matrix(cov, n, n)).getDeterminant();
+
+		for(int i = 0; i < 10; i++)
+		{
+			double[] x = random(n, random), diff = x.clone();
+			Dense.axpy(n, -1.0, mean.getBackingData(), 0, diff, 0);
+
+			double expected = - 0.5 * n * Math.log(2.0 * Math.PI) - 0.5 * Math.log(det)
+					- 0.5 * Dense.dot(n, diff, 0, inverse.operate(diff), 0);
+
+			assertEquals(expected, mvn.logDensity(new Point(x)), EPSILON);
+			assertEquals(Math.exp(expected), mvn.density(new Point(x)), EPSILON);
+		}
+	}
+
+	private static double[] random(int size, Random random)
+	{
+		double[] values = new double[size];
+		for(int i = 0; i < size; i++)
+			values[i] = random.nextGaussian();
+		return values;
+	}
+
+	/**
+	 * A random symmetric positive definite matrix.
+	 */
+	private static double[] spd(int n, Random random)
+	{
+		double[] a = random(n * n, random);
+		double[] spd = Dense.multiply(a, Dense.transpose(a, n, n), n, n, n);
+		for(int i = 0; i < n; i++)
+			spd[i * n + i] += 1.0;
+		return spd;
+	}
+
+	private static RealMatrix matrix(double[] flat, int rows, int columns)
+	{
+		RealMatrix matrix = new Array2DRowRealMatrix(rows, columns);
+		for(int i = 0; i < rows; i++)
+			for(int j = 0; j < columns; j++)
+				matrix.setEntry(i, j, flat[i * columns + j]);
+		return matrix;
+	}
+
+	private static void assertClose(RealMatrix expected, double[] actual, int columns)
+	{
+		for(int i = 0; i < expected.getRowDimension(); i++)
+			for(int j = 0; j < expected.getColumnDimension(); j++)
+				assertEquals(expected.getEntry(i, j), actual[i * columns + j], EPSILON);
+	}
+}
@@ -0,0 +1,81 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import nl.peterbloem.kit.data.Datasets;
+import nl.peterbloem.kit.data.MogEM;
+import nl.peterbloem.kit.data.Point;
+import nl.peterbloem.kit.data.Similitude;
+
+public class EventsTest
+{
+	@Test
+	public void testDisabled()
+	{
+		assertFalse(Events.enabled());
+		assertNull(Events.begin(Events.EM_ITERATION));
+
+		// * null handles are ignored
+		Events.retry(null);
+		Events.end(null, 0, 0, 0, true);
+	}
+
+	@Test
+	public void testRecording()
+		throws Exception
+	{
+		assumeTrue(Events.available());
+
+		List<Point> data = Datasets.cube(2).generate(100);
+		Similitude target = new Similitude(0.5, new Point(0.1, 0.2), new Point(0.3));
+
+		File file = File.createTempFile("kit", ".jfr");
+		file.deleteOnExit();
+
+		Recording recording = new Recording();
+		recording.enable("nl.peterbloem.kit.EMIteration");
+		recording.enable("nl.peterbloem.kit.SimilitudeFind");
+		recording.start();
+
+		Events.enable();
+		try {
+			new MogEM(data, 3).iterate();
+			Similitude.find(data, target.map(data));
+		} finally {
+			Events.disable();
+			recording.stop();
+		}
+
+		recording.dump(file.toPath());
+		recording.close();
+
+		List<String> names = new ArrayList<String>();
+		for(RecordedEvent event : RecordingFile.readAllEvents(file.toPath()))
+		{
+			String name = event.getEventType().getName();
+			if(! name.startsWith("nl.peterbloem.kit."))
+				continue;
+
+			names.add(name);
+			assertEquals(100L, event.getLong("size"));
+			assertEquals(2, event.getInt("dimension"));
+			assertTrue(event.getBoolean("success"));
+
+			if(name.equals("nl.peterbloem.kit.EMIteration"))
+				assertEquals(3, event.getInt("components"));
+		}
+
+		assertTrue(names.contains("nl.peterbloem.kit.EMIteration"));
+		assertTrue(names.contains("nl.peterbloem.kit.SimilitudeFind"));
+	}
+}
@@ -0,0 +1,79 @@
+package nl.peterbloem.kit;
+
+import static nl.peterbloem.kit.Functions.log2;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FrequencyModelTest
+{
+
+	@Test
+	public void testOrder()
+	{
+		FrequencyModel<Integer> model = new FrequencyModel<Integer>();
+		
+		for(int i = 0; i < 5000; i++)
+		{
+			model.add(Global.random().nextInt(100), Global.random().nextInt(3));
+			
+			if(i % 250 == 0)
+				check(model);
+		}
+		
+		check(model);
+	}
+	
+	@Test
+	public void testFailFast()
+	{
+		FrequencyModel<String> model = new FrequencyModel<String>();
+		model.add("a"); 
+		model.add("b", 2.0);
+		
+		List<String> sorted = model.sorted();
+		assertSame(sorted, model.sorted());
+		assertEquals("b", sorted.get(0));
+		
+		model.add("a", 2.0);
+		try {
+			sorted.get(0);
+			fail();
+		} catch(ConcurrentModificationException e)
+		{
+		}
+		
+		assertEquals("a", model.sorted().get(0));
+	}
+	
+	private static void check(FrequencyModel<Integer> model)
+	{
+		// * Stable sort: ties stay in order of insertion
+		List<Integer> expected = new ArrayList<Integer>(model.tokens());
+		Collections.sort(expected, 
+				Collections.reverseOrder(new FrequencyModel.Comparator<Integer>(model)));
+		
+		assertEquals(expected, model.sorted());
+		for(int i = 0; i < expected.size(); i++)
+			assertEquals(i, model.rank(expected.get(i)));
+		assertEquals(-1, model.rank(-1));
+		
+		if(model.total() > 0.0)
+			assertEquals(expected.get(0), model.maxToken());
+		
+		double entropy = 0.0;
+		for(int token : model.tokens())
+		{
+			double p = model.probability(token);
+			if(p > 0.0)
+				entropy -= p * log2(p);
+		}
+		
+		assertEquals(entropy, model.entropy(), 1E-9);
+	}
+}
@@ -0,0 +1,50 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class GlobalTest
+{
+	@Test
+	public void testResize() throws Exception
+	{
+		int threads = Global.numThreads();
+		final CountDownLatch latch = new CountDownLatch(1);
+		
+		try {
+			ForkJoinPool old = Global.pool();
+			Future<Integer> running = old.submit(new Callable<Integer>() {
+				public Integer call() throws InterruptedException
+				{
+					latch.await();
+					return 1;
+				}
+			});
+			
+			Global.setNumThreads(threads + 1);
+			assertNotSame(old, Global.pool());
+			assertEquals(threads + 1, Global.pool().getParallelism());
+			
+			// * The old pool still accepts and runs tasks
+			Future<Integer> late = old.submit(new Callable<Integer>() {
+				public Integer call()
+				{
+					return 2;
+				}
+			});
+			
+			latch.countDown();
+			assertEquals(1, (int) running.get());
+			assertEquals(2, (int) late.get());
+		} finally {
+			latch.countDown();
+			Global.setNumThreads(threads);
+		}
+	}
+}
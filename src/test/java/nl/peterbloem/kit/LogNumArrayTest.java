@@ -0,0 +1,102 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LogNumArrayTest
+{
+	@Test
+	public void testSum()
+	{
+		Random random = new Random(0);
+		List<LogNum> list = new ArrayList<LogNum>();
+		LogNumArray array = new LogNumArray(2.0);
+		LogNumArray.Accumulator accumulator = new LogNumArray.Accumulator(Math.E);
+
+		for(int i = 0; i < 1000; i++)
+		{
+			LogNum num = new LogNum(random.nextGaussian() * 20.0, random.nextBoolean(), 2.0);
+			list.add(num);
+			array.add(num);
+			accumulator.add(num);
+		}
+
+		assertClose(LogNum.sum(list), array.sum());
+		assertClose(LogNum.sum(list), accumulator.result().toBase(2.0));
+		assertClose(LogNum.mean(list), array.mean());
+		assertClose(LogNum.skewness(list), array.skewness());
+
+		// * through the list view
+		assertClose(LogNum.sum(list), LogNum.sum(array.asList()));
+		assertClose(LogNum.sum(list), LogNum.sum(new LinkedList<LogNum>(list)));
+	}
+
+	@Test
+	public void testCancellation()
+	{
+		LogNumArray array = new LogNumArray(2.0);
+		array.add(2000, true);
+		array.add(2000, true);
+		array.add(2001, false);
+
+		assertEquals(Double.NEGATIVE_INFINITY, array.sum().logMag(), 0.0);
+		assertTrue(array.sum().positive());
+
+		array.add(1999, false);
+		assertEquals(1999.0, array.sum().logMag(), 1E-10);
+		assertFalse(array.sum().positive());
+	}
+
+	@Test
+	public void testElementwise()
+	{
+		Random random = new Random(1);
+		double[] a = new double[100], b = new double[100];
+		for(int i = 0; i < a.length; i++)
+		{
+			a[i] = random.nextGaussian();
+			b[i] = random.nextGaussian();
+		}
+		b[7] = - a[7];
+
+		LogNumArray x = LogNumArray.fromDoubles(a, 2.0);
+		x.plus(LogNumArray.fromDoubles(b, Math.E));
+		for(int i = 0; i < a.length; i++)
+			assertEquals(a[i] + b[i], x.doubleValue(i), 1E-12);
+
+		LogNumArray y = LogNumArray.fromDoubles(a, 2.0);
+		y.times(LogNumArray.fromDoubles(b, 10.0));
+		y.times(LogNum.fromDouble(-3.0, 2.0));
+		for(int i = 0; i < a.length; i++)
+			assertEquals(-3.0 * a[i] * b[i], y.doubleValue(i), 1E-12);
+
+		LogNumArray z = LogNumArray.fromDoubles(a, 2.0);
+		z.pow(3);
+		z.plus(LogNum.fromDouble(1.0, 2.0));
+		for(int i = 0; i < a.length; i++)
+			assertEquals(a[i] * a[i] * a[i] + 1.0, z.doubleValue(i), 1E-12);
+	}
+
+	@Test
+	public void testPowZero()
+	{
+		LogNumArray x = LogNumArray.fromDoubles(new double[]{0.0, -2.0, 3.0}, 2.0);
+		x.pow(0);
+		for(int i = 0; i < x.size(); i++)
+			assertEquals(1.0, x.doubleValue(i), 0.0);
+
+		assertEquals(1.0, LogNum.fromDouble(0.0, 2.0).pow(0).doubleValue(), 0.0);
+	}
+
+	private static void assertClose(LogNum expected, LogNum actual)
+	{
+		assertEquals(expected.positive(), actual.positive());
+		assertEquals(expected.logMag(), actual.toBase(expected.base()).logMag(), 1E-9);
+	}
+}
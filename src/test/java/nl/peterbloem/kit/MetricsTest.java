@@ -0,0 +1,130 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MetricsTest
+{
+	@After
+	public void disable()
+	{
+		Metrics.disable();
+		Metrics.trackAllocation(false);
+	}
+
+	@Test
+	public void testBuckets()
+	{
+		Random random = new Random(0);
+		for(int i = 0; i < 100000; i++)
+		{
+			long value = random.nextLong() >>> (1 + random.nextInt(63));
+			int bucket = Metrics.bucket(value);
+
+			assertTrue(Metrics.lower(bucket) <= value);
+			assertTrue(value <= Metrics.upper(bucket));
+			// * relative error of at most 1/16
+			assertTrue(Metrics.upper(bucket) - Metrics.lower(bucket) <= Metrics.lower(bucket) / 16);
+		}
+
+		assertEquals(Metrics.upper(Metrics.bucket(Long.MAX_VALUE)), Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testDisabled()
+	{
+		Metrics.Counter counter = Metrics.counter("test.disabled.counter");
+		Metrics.Timer timer = Metrics.timer("test.disabled.timer");
+
+		counter.increment();
+		timer.stop(timer.start(), 10);
+
+		Metrics.Snapshot snapshot = Metrics.snapshot();
+		assertEquals(0, snapshot.get("test.disabled.counter").count());
+		assertEquals(0, snapshot.get("test.disabled.timer").count());
+	}
+
+	@Test
+	public void testConcurrent()
+		throws Exception
+	{
+		final Metrics.Counter counter = Metrics.counter("test.concurrent.counter");
+		final Metrics.Histogram histogram = Metrics.histogram("test.concurrent.histogram");
+		Metrics.enable();
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(int t = 0; t < 4; t++)
+			tasks.add(new Callable<Void>() {
+				public Void call()
+				{
+					for(int i = 1; i <= 1000; i++)
+					{
+						counter.increment();
+						histogram.record(i);
+					}
+					return null;
+				}
+			});
+
+		for(Future<Void> future : Global.pool().invokeAll(tasks))
+			future.get();
+
+		Metrics.Stat stat = Metrics.snapshot().get("test.concurrent.histogram");
+
+		assertEquals(4000, Metrics.snapshot().get("test.concurrent.counter").count());
+		assertEquals(4000, stat.count());
+		assertEquals(4 * 500500, stat.sum());
+		assertEquals(1, stat.min());
+		assertEquals(1000, stat.max());
+		assertEquals(500, stat.quantile(0.5), 500 / 16);
+		assertEquals(990, stat.quantile(0.99), 990 / 16);
+	}
+
+	@Test
+	public void testTimer()
+	{
+		Metrics.Timer outer = Metrics.timer("test.timer.outer"),
+		              inner = Metrics.timer("test.timer.inner");
+		Metrics.enable();
+		Metrics.trackAllocation(true);
+
+		long a = outer.start();
+		for(int i = 0; i < 10; i++)
+		{
+			long b = inner.start();
+			double[] garbage = new double[1000];
+			inner.stop(b, garbage.length);
+		}
+		outer.stop(a);
+
+		Metrics.Snapshot snapshot = Metrics.snapshot();
+		Metrics.Stat o = snapshot.get("test.timer.outer"), i = snapshot.get("test.timer.inner");
+
+		assertEquals(1, o.count());
+		assertEquals(10, i.count());
+		assertEquals(10000, i.items());
+		assertTrue(o.sum() >= i.sum());
+		assertTrue(i.itemsPerSecond() > 0.0);
+
+		assertTrue(snapshot.toCSV().contains("\ntest.timer.inner,timer,10,"));
+		assertTrue(snapshot.toJSON().contains("\"test.timer.outer\": {\"type\": \"timer\", \"count\": 1,"));
+
+		Metrics.reset();
+		assertEquals(0, Metrics.snapshot().get("test.timer.inner").count());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testType()
+	{
+		Metrics.counter("test.type");
+		Metrics.timer("test.type");
+	}
+}
@@ -212,4 +212,16 @@ public class OnlineModelTest
 		
 		assertEquals(slow, fast, slow * 0.00001);
 	}
+	
+	@Test
+	public void testEntropy()
+	{
+		OnlineModel<String> model = new OnlineModel<String>(Arrays.asList("a", "b", "c"));
+		for(String symbol : Arrays.asList("a", "b", "a", "a"))
+			model.observe(symbol);
+		
+		// * The entropy of the smoothed probabilities (3.5, 1.5, 0.5) / 5.5, 
+		//   not of the raw frequencies
+		assertEquals(1.2406705316766884, model.entropy(), 1E-12);
+	}
 }
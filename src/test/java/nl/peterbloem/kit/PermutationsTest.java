@@ -0,0 +1,120 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class PermutationsTest
+{
+
+	@Test
+	public void testIterator()
+	{
+		for(int n = 1; n < 8; n++)
+		{
+			Set<List<Integer>> seen = new HashSet<List<Integer>>();
+			for(int[] perm : new Permutations(n))
+				assertTrue(seen.add(list(perm)));
+
+			assertEquals(Permutations.factorial(n), seen.size());
+		}
+
+		assertFalse(new Permutations(0).iterator().hasNext());
+	}
+
+	@Test
+	public void testRank()
+	{
+		int n = 6;
+		int[] perm = Permutations.unrank(0, n);
+
+		long rank = 0;
+		do {
+			assertEquals(rank, Permutations.rank(perm));
+			assertArrayEquals(perm, Permutations.unrank(rank, n));
+			rank++;
+		} while(Permutations.next(perm));
+
+		assertEquals(Permutations.factorial(n), rank);
+
+		int[] large = Permutations.unrank(Permutations.factorial(20) - 1, 20);
+		assertEquals(19, large[0]);
+		assertEquals(0, large[19]);
+		assertEquals(Permutations.factorial(20) - 1, Permutations.rank(large));
+	}
+
+	@Test
+	public void testSpliterator()
+	{
+		Permutations perms = new Permutations(7);
+
+		List<int[]> sequential = perms.stream().collect(Collectors.<int[]>toList());
+		List<int[]> parallel = perms.parallelStream().collect(Collectors.<int[]>toList());
+
+		assertEquals(5040, sequential.size());
+		assertEquals(5040, parallel.size());
+		for(int i = 0; i < sequential.size(); i++)
+		{
+			assertEquals(i, Permutations.rank(sequential.get(i)));
+			assertArrayEquals(sequential.get(i), parallel.get(i));
+		}
+
+		final AtomicLong count = new AtomicLong(), sum = new AtomicLong();
+		perms.visitParallel(new Consumer<int[]>() {
+			@Override
+			public void accept(int[] perm)
+			{
+				count.incrementAndGet();
+				sum.addAndGet(Permutations.rank(perm));
+			}
+		});
+
+		assertEquals(5040, count.get());
+		assertEquals(5039L * 5040L / 2L, sum.get());
+	}
+
+	@Test
+	public void testJohnsonTrotter()
+	{
+		int n = 5;
+		Set<List<Integer>> seen = new HashSet<List<Integer>>();
+		
+		Iterator<int[]> it = new Permutations(n).johnsonTrotter();
+		List<Integer> last = null;
+		while(it.hasNext())
+		{
+			List<Integer> perm = list(it.next());
+			assertTrue(seen.add(perm));
+			
+			// * consecutive permutations differ by a single swap
+			if(last != null)
+			{
+				int diff = 0;
+				for(int i = 0; i < n; i++)
+					if(! perm.get(i).equals(last.get(i)))
+						diff++;
+				assertEquals(2, diff);
+			}
+			last = perm;
+		}
+
+		assertEquals(Permutations.factorial(n), seen.size());
+	}
+
+	private static List<Integer> list(int[] perm)
+	{
+		Integer[] boxed = new Integer[perm.length];
+		for(int i = 0; i < perm.length; i++)
+			boxed[i] = perm[i];
+		return Arrays.asList(boxed);
+	}
+}
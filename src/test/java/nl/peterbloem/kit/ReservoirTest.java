@@ -0,0 +1,115 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class ReservoirTest
+{
+
+	@Test
+	public void testSampling()
+	{
+		for(int n : new int[]{10, 1000, 1000000})
+			for(int k : new int[]{0, 1, 5, 10})
+			{
+				int[] sample = Sampling.sample(k, n);
+				Set<Integer> distinct = new HashSet<Integer>();
+				for(int value : sample)
+				{
+					assertTrue(value >= 0 && value < n);
+					distinct.add(value);
+				}
+				assertEquals(k, distinct.size());
+			}
+
+		long[] large = Sampling.sample(100, 1000000000000L);
+		Set<Long> distinct = new HashSet<Long>();
+		for(long value : large)
+		{
+			assertTrue(value >= 0 && value < 1000000000000L);
+			distinct.add(value);
+		}
+		assertEquals(100, distinct.size());
+
+		// * Each value should appear in about k/n of the samples
+		int n = 50, k = 5, trials = 20000;
+		int[] counts = new int[n];
+		for(int t = 0; t < trials; t++)
+			for(int value : Sampling.sample(k, n))
+				counts[value]++;
+
+		checkUniform(counts, trials * (double) k / n);
+	}
+
+	@Test
+	public void testReservoir()
+	{
+		int n = 100, k = 10, trials = 20000;
+		int[] counts = new int[n];
+
+		for(int t = 0; t < trials; t++)
+		{
+			Reservoir<Integer> reservoir = new Reservoir<Integer>(k);
+			for(int i = 0; i < n; i++)
+				reservoir.add(i);
+
+			List<Integer> sample = reservoir.sample();
+			assertEquals(k, new HashSet<Integer>(sample).size());
+
+			for(int value : sample)
+				counts[value]++;
+		}
+
+		checkUniform(counts, trials * (double) k / n);
+	}
+
+	@Test
+	public void testMerge()
+	{
+		int n = 100, k = 10, trials = 20000;
+		int[] counts = new int[n];
+
+		for(int t = 0; t < trials; t++)
+		{
+			Reservoir<Integer> a = new Reservoir<Integer>(k), b = new Reservoir<Integer>(k);
+			for(int i = 0; i < 30; i++)
+				a.add(i);
+			for(int i = 30; i < 70; i++)
+				b.add(i);
+
+			a.merge(b);
+			// * Keep adding after the merge
+			for(int i = 70; i < n; i++)
+				a.add(i);
+
+			assertEquals(n, a.seen());
+			for(int value : a.sample())
+				counts[value]++;
+		}
+
+		checkUniform(counts, trials * (double) k / n);
+	}
+
+	@Test
+	public void testStream()
+	{
+		List<Integer> sample = Reservoir.sample(IntStream.range(0, 100000).boxed().parallel(), 25);
+		assertEquals(25, new HashSet<Integer>(sample).size());
+
+		List<String> small = Reservoir.sample(Stream.of("a", "b", "c"), 25);
+		assertEquals(3, small.size());
+	}
+
+	private static void checkUniform(int[] counts, double expected)
+	{
+		for(int count : counts)
+			assertEquals(expected, count, 5.0 * Math.sqrt(expected));
+	}
+}
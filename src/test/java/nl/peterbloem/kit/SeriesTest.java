@@ -0,0 +1,102 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.Series.DoubleSeries;
+import nl.peterbloem.kit.Series.IntSeries;
+
+public class SeriesTest
+{
+
+	@Test
+	public void testSize()
+	{
+		assertEquals(3, Series.series(0, 5, 12).size());
+		assertEquals(3, Series.series(0, 5, 15).size());
+		assertEquals(0, Series.series(4, 4).size());
+		assertTrue(Series.series(0).isEmpty());
+
+		int i = 0;
+		for(int value : Series.series(0, 5, 12))
+			assertEquals(5 * i++, value);
+		assertEquals(3, i);
+	}
+
+	@Test
+	public void testStreams()
+	{
+		IntSeries series = Series.series(3, 2, 1001);
+
+		long sum = 0;
+		for(int value : series)
+			sum += value;
+
+		assertEquals(sum, series.intStream().asLongStream().sum());
+		assertEquals(sum, series.parallelIntStream().asLongStream().sum());
+
+		long iterated = 0;
+		PrimitiveIterator.OfInt it = series.intIterator();
+		while(it.hasNext())
+			iterated += it.nextInt();
+		assertEquals(sum, iterated);
+
+		double expected = 0.0;
+		for(double value : Series.series(0.0, 0.25, 10.0))
+			expected += value;
+		assertEquals(expected, Series.series(0.0, 0.25, 10.0).doubleStream().sum(), 1E-10);
+	}
+	
+	@Test
+	public void testDoubleSize()
+	{
+		// * Steps that don't divide the range
+		assertDoubles(Series.series(0.0, 0.3, 1.0), 0.0, 0.3, 0.6, 0.9);
+		assertDoubles(Series.series(1.0, -0.3, 0.0), 1.0, 0.7, 0.4, 0.1);
+		assertDoubles(Series.series(0.0, 0.1, 0.3), 0.0, 0.1, 0.2);
+	}
+	
+	private static void assertDoubles(DoubleSeries series, double... expected)
+	{
+		assertEquals(expected.length, series.size());
+		assertEquals(expected.length, series.doubleStream().count());
+		
+		int i = 0;
+		for(double value : series)
+			assertEquals(expected[i++], value, 1E-12);
+		assertEquals(expected.length, i);
+		
+		i = 0;
+		PrimitiveIterator.OfDouble it = series.doubleIterator();
+		while(it.hasNext())
+			assertEquals(expected[i++], it.nextDouble(), 1E-12);
+		assertEquals(expected.length, i);
+	}
+
+	@Test
+	public void testSplit()
+	{
+		Spliterator.OfInt first = Series.series(1000).spliterator();
+		Spliterator.OfInt second = first.trySplit();
+
+		assertEquals(500, first.estimateSize());
+		assertEquals(500, second.estimateSize());
+		assertTrue(first.hasCharacteristics(Spliterator.SUBSIZED));
+
+		final int[] sum = new int[1];
+		second.forEachRemaining(new IntConsumer() {
+			@Override
+			public void accept(int value)
+			{
+				sum[0] += value;
+			}
+		});
+
+		assertEquals(499 * 500 / 2, sum[0]);
+	}
+}
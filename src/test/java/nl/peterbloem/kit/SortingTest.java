@@ -0,0 +1,163 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SortingTest
+{
+
+	@Test
+	public void testArgsort()
+	{
+		double[] values = new double[1000];
+		for(int i = 0; i < values.length; i++)
+			values[i] = Global.random().nextInt(100) - 50.0;
+		values[3] = -0.0;
+		values[4] = Double.NaN;
+		values[5] = Double.NEGATIVE_INFINITY;
+
+		int[] order = Sorting.argsort(values);
+		for(int i = 1; i < order.length; i++)
+		{
+			int c = Double.compare(values[order[i-1]], values[order[i]]);
+			assertTrue(c < 0 || (c == 0 && order[i-1] < order[i]));
+		}
+		assertEquals(5, order[0]);
+		assertEquals(4, order[order.length - 1]);
+
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int[] index = new int[values.length];
+		for(int i = 0; i < index.length; i++)
+			index[i] = i;
+
+		Sorting.permute(order, values, new double[values.length]);
+		Sorting.permute(order, index);
+
+		for(int i = 0; i < values.length; i++)
+		{
+			assertEquals(sorted[i], values[i], 0.0);
+			assertEquals(order[i], index[i]);
+		}
+	}
+
+	@Test
+	public void testParallel()
+	{
+		int threshold = Sorting.PARALLEL_THRESHOLD, threads = Global.numThreads();
+		Sorting.PARALLEL_THRESHOLD = 100;
+		Global.setNumThreads(4);
+
+		try {
+			int[] values = new int[10000];
+			for(int i = 0; i < values.length; i++)
+				values[i] = Global.random().nextInt(500);
+
+			int[] order = Sorting.argsort(values);
+
+			final int[] copy = values.clone();
+			int[] byComparator = Sorting.argsort(values.length, new Sorting.IndexComparator() {
+				@Override
+				public int compare(int i, int j)
+				{
+					return Integer.compare(copy[i], copy[j]);
+				}
+			});
+
+			assertArrayEquals(order, byComparator);
+
+			for(int i = 1; i < order.length; i++)
+				assertTrue(values[order[i-1]] < values[order[i]] ||
+						(values[order[i-1]] == values[order[i]] && order[i-1] < order[i]));
+		} finally {
+			Sorting.PARALLEL_THRESHOLD = threshold;
+			Global.setNumThreads(threads);
+		}
+	}
+
+	@Test
+	public void testTop()
+	{
+		double[] values = new double[500];
+		for(int i = 0; i < values.length; i++)
+			values[i] = Global.random().nextInt(50);
+
+		int[] order = Sorting.argsort(values);
+
+		for(int k : Arrays.asList(0, 1, 7, 100, 500, 600))
+		{
+			int[] top = Sorting.top(values, k);
+			assertEquals(Math.min(k, values.length), top.length);
+
+			for(int i = 0; i < top.length; i++)
+				assertEquals(values[order[values.length - 1 - i]], values[top[i]], 0.0);
+
+			for(int i = 1; i < top.length; i++)
+				if(values[top[i-1]] == values[top[i]])
+					assertTrue(top[i-1] < top[i]);
+		}
+	}
+
+	@Test
+	public void testFunctionsSort()
+	{
+		List<Integer> values = new ArrayList<Integer>(), expected;
+		List<String> things = new ArrayList<String>();
+
+		for(int i = 0; i < 200; i++)
+		{
+			values.add(Global.random().nextInt(20));
+			things.add("" + i);
+		}
+
+		List<Integer> check = new ArrayList<Integer>();
+		for(String thing : things)
+			check.add(Integer.parseInt(thing));
+
+		expected = new ArrayList<Integer>(values);
+		Collections.sort(expected);
+
+		Functions.sort(things, values, Functions.<Integer>natural());
+		Functions.sort(values, Collections.reverseOrder(Functions.<Integer>natural()), check);
+
+		Collections.reverse(expected);
+		assertEquals(expected, values);
+
+		for(int i = 1; i < check.size(); i++)
+			if(values.get(i - 1).equals(values.get(i)))
+				assertTrue(check.get(i-1) < check.get(i));
+	}
+
+	@Test
+	public void testLinked()
+	{
+		List<Integer> values = new LinkedList<Integer>();
+		for(int i = 0; i < 10000; i++)
+			values.add(Global.random().nextInt(100));
+
+		List<Integer> expected = new ArrayList<Integer>(values);
+		Collections.sort(expected);
+
+		for(boolean parallel : new boolean[]{true, false})
+		{
+			int[] order = Sorting.argsort(values, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b)
+				{
+					return Integer.compare(a, b);
+				}
+			}, parallel);
+
+			for(int i = 0; i < order.length; i++)
+				assertEquals(expected.get(i), values.get(order[i]));
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package nl.peterbloem.kit;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class SpaceSavingTest
+{
+	private static int draw()
+	{
+		return (int) Math.floor(Math.exp(Global.random().nextDouble() * Math.log(10000.0))) - 1;
+	}
+	
+	@Test
+	public void testHeavyHitters()
+	{
+		SpaceSaving<Integer> summary = new SpaceSaving<Integer>(100);
+		FrequencyModel<Integer> exact = new FrequencyModel<Integer>();
+		
+		for(int i = 0; i < 100000; i++)
+		{
+			int token = draw();
+			summary.add(token);
+			exact.add(token);
+		}
+		
+		check(summary, exact);
+		
+		List<Integer> top = summary.top(5);
+		assertEquals(exact.sorted().subList(0, 5), top);
+	}
+
+	@Test
+	public void testMerge()
+	{
+		SpaceSaving<Integer> a = new SpaceSaving<Integer>(50), 
+		                     b = new SpaceSaving<Integer>(50);
+		FrequencyModel<Integer> exact = new FrequencyModel<Integer>();
+		
+		for(int i = 0; i < 50000; i++)
+		{
+			int token = draw();
+			(i % 2 == 0 ? a : b).add(token);
+			exact.add(token);
+		}
+		
+		a.merge(b);
+		
+		assertEquals(exact.total(), a.total(), 0.0);
+		check(a, exact);
+	}
+	
+	private static void check(SpaceSaving<Integer> summary, FrequencyModel<Integer> exact)
+	{
+		assertTrue(summary.minimum() <= exact.total() / summary.capacity());
+		
+		for(int token : exact.tokens())
+			if(summary.monitored(token))
+			{
+				assertTrue(summary.frequency(token) >= exact.frequency(token));
+				assertTrue(summary.guaranteed(token) <= exact.frequency(token));
+			} else
+				assertTrue(exact.frequency(token) <= summary.minimum());
+	}
+}
@@ -0,0 +1,232 @@
+package nl.peterbloem.kit.data;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.Global;
+import nl.peterbloem.kit.search.Parametrizable;
+import nl.peterbloem.kit.search.Rebuilder;
+
+public class AffineMapTest
+{
+
+	@Test
+	public void testBlock()
+	{
+		for(int dim : new int[]{2, 3, 7})
+			testBlock(dim, 1000);
+	}
+	
+	private static void testBlock(int dim, int n)
+	{
+		AffineMap map = new AffineMap(Point.random(AffineMap.numParameters(dim), 1.0));
+		List<Point> points = Datasets.cube(dim).generate(n);
+		
+		double[] block = new double[n * dim];
+		for(int i : series(n))
+			System.arraycopy(points.get(i).getBackingData(), 0, block, i * dim, dim);
+
+		double[] out = new double[n * dim];
+		map.map(block, out);
+		// * in place
+		map.map(block, block);
+		
+		for(int i : series(n))
+		{
+			Point expected = map.map(points.get(i));
+			for(int j : series(dim))
+			{
+				assertEquals(expected.get(j), out[i * dim + j], 1E-12);
+				assertEquals(expected.get(j), block[i * dim + j], 1E-12);
+			}
+		}
+	}
+	
+	@Test
+	public void testFused()
+	{
+		for(int dim : series(2, 5))
+		{
+			Map a = new AffineMap(Point.random(AffineMap.numParameters(dim), 1.0)),
+			    b = similitude(dim), 
+			    c = rotation(dim);
+			
+			assertFuses(dim, a, b, c);
+			
+			// * Runs of similitudes and rotations only
+			assertFuses(dim, similitude(dim), similitude(dim));
+			assertFuses(dim, rotation(dim), rotation(dim), rotation(dim));
+		}
+	}
+	
+	private static void assertFuses(int dim, Map... maps)
+	{
+		Map composite = new CompositeMap(maps);
+		
+		double[] block = new double[100 * dim];
+		for(int i : series(100))
+		{
+			Point p = Point.random(dim, 1.0);
+			System.arraycopy(p.getBackingData(), 0, block, i * dim, dim);
+			
+			Point expected = p;
+			for(int k : series(maps.length - 1, -1))
+				expected = maps[k].map(expected);
+			
+			assertEquals(0.0, expected.distance(composite.map(p)), 1E-10);
+			
+			double[] out = new double[dim];
+			composite.map(p.getBackingData(), out);
+			assertEquals(0.0, expected.distance(new Point(out)), 1E-10);
+		}
+	}
+	
+	private static Map similitude(int dim)
+	{
+		return Similitude.similitudeBuilder(dim).build(Point.random(Similitude.numParameters(dim), 1.0));
+	}
+	
+	private static Map rotation(int dim)
+	{
+		return Rotation.rotationBuilder(dim).build(Point.random(Rotation.numParameters(dim), 1.0));
+	}
+	
+	@Test
+	public void testMemo()
+	{
+		List<Point> base = new ArrayList<Point>();
+		for(int i : series(10))
+			base.add(Point.random(2, 1.0));
+		
+		Map map = Similitude.identity(2);
+		MappedList list = new MappedList(base, map, true);
+		
+		assertSame(list.get(3), list.get(3));
+		assertEquals(base.get(3), list.get(3));
+		
+		// * the base list grows after the mapped list is created
+		for(int i : series(10))
+			base.add(Point.random(2, 1.0));
+		
+		assertEquals(20, list.size());
+		assertSame(list.get(15), list.get(15));
+		assertEquals(base.get(15), list.get(15));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testDimension()
+	{
+		AffineMap map = new AffineMap(Point.random(AffineMap.numParameters(3), 1.0));
+		map.map(Point.random(2, 1.0));
+	}
+	
+	@Test
+	public void testFind()
+	{
+		int dim = 3, n = 5000;
+		
+		AffineMap map = new AffineMap(Point.random(AffineMap.numParameters(dim), 1.0));
+		List<Point> xs = Datasets.cube(dim).generate(n);
+		List<Point> ys = map.map(xs);
+		
+		AffineMap found = AffineMap.find(xs, ys);
+		assertTrue(map.equals(found, 1E-8));
+		
+		// * parallel
+		int threshold = AffineMapSolver.PARALLEL_THRESHOLD;
+		AffineMapSolver.PARALLEL_THRESHOLD = 10;
+		found = AffineMap.find(xs, ys);
+		AffineMapSolver.PARALLEL_THRESHOLD = threshold;
+		
+		assertTrue(map.equals(found, 1E-8));
+		
+		// * in batches
+		AffineMapSolver solver = new AffineMapSolver(dim);
+		solver.add(xs.subList(0, 10), ys.subList(0, 10));
+		solver.add(xs.subList(10, n), ys.subList(10, n));
+		
+		assertTrue(map.equals(solver.solve(), 1E-8));
+	}
+	
+	@Test
+	public void testFindDegenerate()
+	{
+		int dim = 3;
+		AffineMap map = new AffineMap(Point.random(AffineMap.numParameters(dim), 1.0));
+		
+		// * The x points lie in a plane, so no unique map exists, at any scale
+		for(double scale : new double[]{1E-3, 1.0, 1E6})
+		{
+			List<Point> xs = new ArrayList<Point>();
+			for(Point p : Datasets.cube(2).generate(100))
+				xs.add(new Point(scale * p.get(0), scale * p.get(1), scale * (p.get(0) + p.get(1))));
+			
+			assertNull(AffineMap.find(xs, map.map(xs)));
+		}
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testFindWeights()
+	{
+		List<Point> xs = Datasets.cube(2).generate(10);
+		AffineMap.find(xs, xs, Arrays.asList(1.0, 2.0));
+	}
+	
+	@Test
+	public void testRebuild()
+	{
+		int dim = 3;
+		
+		assertRebuilds(AffineMap.affineMapBuilder(dim), dim);
+		
+		// * Invalid parameters fail before the map is changed
+		Rebuilder<AffineMap> builder = AffineMap.affineMapBuilder(dim);
+		AffineMap map = builder.build(Point.random(builder.numParameters(), 1.0));
+		List<Double> parameters = new ArrayList<Double>(map.parameters());
+		try {
+			builder.rebuild(map, new double[builder.numParameters()], 1);
+			fail();
+		} catch(IllegalArgumentException e)
+		{
+		}
+		assertEquals(parameters, map.parameters());
+	}
+	
+	static <M extends Map & Parametrizable> void assertRebuilds(Rebuilder<M> builder, int dim)
+	{
+		int n = builder.numParameters();
+		M instance = builder.build(Point.random(n, 1.0));
+		
+		for(int i : series(10))
+		{
+			// * Rebuild from the middle of a larger array
+			double[] parameters = Point.random(n + 2, 1.0).getBackingData();
+			M expected = builder.build(Point.fromRaw(Arrays.copyOfRange(parameters, 1, n + 1)));
+			
+			// * populate the caches
+			instance.map(Point.random(dim, 1.0));
+			if(instance.invertible())
+				instance.inverse();
+			
+			assertSame(instance, builder.rebuild(instance, parameters, 1));
+			
+			assertEquals(expected.parameters(), instance.parameters());
+			assertEquals(expected.invertible(), instance.invertible());
+			
+			for(int j : series(10))
+			{
+				Point p = Point.random(dim, 1.0);
+				assertEquals(0.0, expected.map(p).distance(instance.map(p)), 1E-12);
+				
+				if(expected.invertible())
+					assertEquals(0.0, expected.inverse().map(p).distance(instance.inverse().map(p)), 1E-9);
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package nl.peterbloem.kit.data;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.Global;
+
+public class BatchGeneratorTest
+{
+	@Test
+	public void testReproducible()
+	{
+		int n = 5 * AbstractBatchGenerator.CHUNK + 17;
+		int threads = Global.numThreads();
+
+		for(BatchGenerator generator : Arrays.asList(
+				Datasets.cube(3), Datasets.ball(4), Datasets.swiss(0.1), 
+				Datasets.spiral(-45, 45), Datasets.addNoise(Datasets.three(), 0.01),
+				new MVN(new Point(1.0, 2.0), 0.5)))
+		{
+			double[] sequential, parallel;
+			try {
+				Global.setNumThreads(1);
+				sequential = generator.generateBlock(n, 42);
+				Global.setNumThreads(4);
+				parallel = generator.generateBlock(n, 42);
+			} finally {
+				Global.setNumThreads(threads);
+			}
+
+			assertEquals(n * generator.dimension(), parallel.length);
+			assertArrayEquals(sequential, parallel, 0.0);
+			assertFalse(Arrays.equals(parallel, generator.generateBlock(n, 43)));
+
+			List<Point> points = generator.generate(n, 42);
+			assertEquals(points, generator.stream(42).limit(n).collect(Collectors.toList()));
+			for(int j = 0; j < generator.dimension(); j++)
+				assertEquals(parallel[(n - 1) * generator.dimension() + j], points.get(n - 1).get(j), 0.0);
+		}
+	}
+
+	@Test
+	public void testSinglePoints()
+	{
+		for(AbstractBatchGenerator generator : Arrays.asList(
+				(AbstractBatchGenerator) Datasets.swiss(0.1), 
+				(AbstractBatchGenerator) Datasets.addNoise(Datasets.three(), 0.01)))
+		{
+			int d = generator.dimension();
+			double[] bulk = new double[100 * d], single = new double[100 * d];
+
+			generator.generate(new Random(7), bulk, 0, 100);
+			Random random = new Random(7);
+			for(int i = 0; i < 100; i++)
+				generator.generate(random, single, i * d);
+
+			assertArrayEquals(single, bulk, 0.0);
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testTooLarge()
+	{
+		Datasets.cube(3).generateBlock(Integer.MAX_VALUE / 2, 0);
+	}
+
+	@Test
+	public void testDistribution()
+	{
+		double[] sphere = Datasets.sphere(3, 2.0).generateBlock(1000, 0);
+		for(int i = 0; i < 1000; i++)
+		{
+			double sq = 0.0;
+			for(int j = 0; j < 3; j++)
+				sq += sphere[i * 3 + j] * sphere[i * 3 + j];
+			assertEquals(4.0, sq, 1E-10);
+		}
+
+		MVN mvn = new MVN(new Point(1.0, -1.0), 0.5);
+		Moments moments = new Moments(2);
+		moments.addAll(mvn.generate(20000, 7));
+
+		assertEquals(0.0, moments.mean().distance(new Point(1.0, -1.0)), 0.05);
+		assertEquals(0.25, moments.variance(0, true), 0.02);
+	}
+}
@@ -0,0 +1,141 @@
+package nl.peterbloem.kit.data;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class DatasetsTest
+{
+	@Test
+	public void testScanlines()
+	{
+		int[] types = {
+				BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, 
+				BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, 
+				BufferedImage.TYPE_BYTE_GRAY};
+		int[] modes = {
+				Datasets.Scanlines.PACKED, Datasets.Scanlines.PACKED, 
+				Datasets.Scanlines.INTERLEAVED, Datasets.Scanlines.INTERLEAVED, 
+				Datasets.Scanlines.FALLBACK};
+		
+		Random random = new Random(0);
+		for(int t = 0; t < types.length; t++)
+		{
+			BufferedImage image = image(7, 5, types[t], random);
+			
+			Datasets.Scanlines scanlines = new Datasets.Scanlines(image);
+			assertEquals(modes[t], scanlines.mode());
+			
+			// * The rows match getRGB (up to the alpha channel, which is not 
+			//   used)
+			int[] row = new int[7], expected = new int[7];
+			for(int y = 0; y < 5; y++)
+			{
+				scanlines.read(y, row);
+				image.getRGB(0, y, 7, 1, expected, 0, 7);
+				
+				for(int x = 0; x < 7; x++)
+					assertEquals(expected[x] & 0xffffff, row[x] & 0xffffff);
+			}
+			
+			for(boolean gray : new boolean[]{true, false})
+			{
+				double[] values = new double[7 * 5 * (gray ? 1 : 3)];
+				Datasets.pixels(image, gray, values, 0);
+				
+				assertArrayEquals(fallback(image, gray), values, 0.0);
+			}
+		}
+	}
+	
+	@Test
+	public void testReadImagesBlock()
+		throws Exception
+	{
+		File dir = Files.createTempDirectory("kit").toFile();
+		
+		try {
+			Random random = new Random(1);
+			for(int i = 0; i < 9; i++)
+			{
+				int type = i % 2 == 0 ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+				ImageIO.write(image(4, 3, type, random), "png", new File(dir, "image" + i + ".png"));
+			}
+			
+			// * The images in the order in which the directory lists them
+			List<Point> expected = new ArrayList<Point>();
+			for(File file : dir.listFiles())
+				expected.add(Datasets.readImage(file, false));
+			
+			int d = 4 * 3 * 3;
+			double[] block = Datasets.readImagesBlock(dir, false);
+			assertEquals(9 * d, block.length);
+			for(int i = 0; i < 9; i++)
+				for(int j = 0; j < d; j++)
+					assertEquals(expected.get(i).get(j), block[i * d + j], 0.0);
+			
+			assertEquals(expected, Datasets.readImages(dir, false));
+			
+			List<Point> iterated = new ArrayList<Point>();
+			Iterator<Point> images = Datasets.imageIterator(dir, false);
+			while(images.hasNext())
+				iterated.add(images.next());
+			assertEquals(expected, iterated);
+		} finally {
+			for(File file : dir.listFiles())
+				file.delete();
+			dir.delete();
+		}
+	}
+	
+	private static BufferedImage image(int width, int height, int type, Random random)
+	{
+		BufferedImage image = new BufferedImage(width, height, type);
+		for(int x = 0; x < width; x++)
+			for(int y = 0; y < height; y++)
+				image.setRGB(x, y, random.nextInt());
+		
+		return image;
+	}
+	
+	/**
+	 * The pixel values in the layout of Datasets.readImage, read through 
+	 * getRGB.
+	 */
+	private static double[] fallback(BufferedImage image, boolean gray)
+	{
+		int width = image.getWidth(), height = image.getHeight(), size = width * height;
+		double[] values = new double[gray ? size : 3 * size];
+		
+		for(int x = 0; x < width; x++)
+			for(int y = 0; y < height; y++)
+			{
+				int rgb = image.getRGB(x, y);
+				int r = (rgb >> 16) & 0xff, g = (rgb >> 8) & 0xff, b = rgb & 0xff;
+				
+				int h = x * height + y;
+				if(gray)
+				{
+					double value = r + g + b;
+					values[h] = value / (255.0 * 3.0);
+				} else
+				{
+					values[h] = r / 255.0;
+					values[h + size] = g / 255.0;
+					values[h + 2 * size] = b / 255.0;
+				}
+			}
+		
+		return values;
+	}
+}
@@ -0,0 +1,123 @@
+package nl.peterbloem.kit.data;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.data.classification.DistanceClassifier;
+
+public class FloatPointsTest
+{
+	@Test
+	public void testStorage()
+	{
+		List<Point> data = Datasets.cube(3).generate(1000);
+		FloatPoints floats = FloatPoints.of(data);
+
+		assertEquals(data.size(), floats.size());
+		assertEquals(3, floats.dimension());
+		for(int i = 0; i < data.size(); i++)
+			for(int j = 0; j < 3; j++)
+				assertEquals((float) (double) data.get(i).get(j), floats.get(i).get(j), 0.0);
+
+		floats.remove(10);
+		assertEquals(widened(data).get(11), floats.get(10));
+	}
+
+	@Test
+	public void testScans()
+	{
+		List<Point> data = widened(Datasets.cube(4).generate(2000));
+		FloatPoints floats = FloatPoints.of(data);
+
+		for(Point query : Datasets.cube(4).generate(20))
+		{
+			double expected = Double.POSITIVE_INFINITY;
+			int nearest = -1;
+			for(int i = 0; i < data.size(); i++)
+				if(data.get(i).sqDistance(query) < expected)
+				{
+					expected = data.get(i).sqDistance(query);
+					nearest = i;
+				}
+
+			assertEquals(nearest, floats.nearest(query));
+			assertEquals(Math.sqrt(expected), Datasets.distance(query, floats), 1E-12);
+		}
+
+		DistanceClassifier classifier = new DistanceClassifier(new Point(0.5, 0.5, 0.5, 0.5));
+		classifier.addPoint(new Point(-0.5, -0.5, -0.5, -0.5));
+		assertEquals(classifier.classify(data), classifier.classify(floats));
+	}
+
+	@Test
+	public void testDensity()
+	{
+		List<Point> data = widened(Datasets.cube(2).generate(1000));
+		FloatPoints floats = FloatPoints.of(data);
+
+		MOG mog = new MOG(new MVN(new Point(0.1, 0.2), 0.5).map(), 1.0);
+		mog.addMap(new MVN(new Point(-0.3, 0.4), 0.2).map(), 2.0);
+
+		assertEquals(mog.logDensity(data), mog.logDensity(floats), 1E-8);
+	}
+
+	@Test
+	public void testReadCSV()
+		throws Exception
+	{
+		File file = File.createTempFile("kit", ".csv");
+		file.deleteOnExit();
+
+		FileWriter writer = new FileWriter(file);
+		writer.write("1.0,2.5\n-3.0,0.25\n");
+		writer.close();
+
+		FloatPoints data = Datasets.readCSVFloats(file);
+		assertEquals(2, data.size());
+		assertEquals(new Point(-3.0, 0.25), data.get(1));
+		assertEquals(Datasets.readCSV(file), data);
+	}
+
+	@Test
+	public void testDimension()
+	{
+		FloatPoints floats = new FloatPoints(2);
+		floats.add(new Point(1.0, 2.0));
+
+		try {
+			floats.add(new Point(1.0, 2.0, 3.0));
+			fail();
+		} catch(IllegalArgumentException e) {}
+
+		try {
+			floats.set(0, new Point(1.0));
+			fail();
+		} catch(IllegalArgumentException e) {}
+
+		assertEquals(1, floats.size());
+		assertEquals(new Point(1.0, 2.0), floats.get(0));
+	}
+
+	/**
+	 * Rounds the points to single precision, so that both representations
+	 * hold the same values.
+	 */
+	private static List<Point> widened(List<Point> points)
+	{
+		List<Point> result = new ArrayList<Point>(points.size());
+		for(Point p : points)
+		{
+			double[] values = new double[p.size()];
+			for(int j = 0; j < values.length; j++)
+				values[j] = (float) (double) p.get(j);
+			result.add(new Point(values));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,65 @@
+package nl.peterbloem.kit.data;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.search.Rebuilder;
+
+public class MVNTest
+{
+	@Test
+	public void testRebuild()
+	{
+		int dim = 3;
+		
+		Rebuilder<MVN> builder = MVN.builder(dim);
+		MVN mvn = builder.build(Point.random(builder.numParameters(), 1.0));
+		
+		for(int i = 0; i < 10; i++)
+		{
+			// * populate the caches
+			mvn.covariance();
+			mvn.logDensity(Point.random(dim, 1.0));
+			
+			Point parameters = Point.random(builder.numParameters(), 1.0);
+			MVN expected = builder.build(parameters);
+			assertSame(mvn, builder.rebuild(mvn, parameters.getBackingData(), 0));
+			
+			assertEquals(expected.parameters(), mvn.parameters());
+			assertEquals(expected.covariance(), mvn.covariance());
+			assertEquals(expected.mean(), mvn.mean());
+			
+			Point p = Point.random(dim, 1.0);
+			assertEquals(expected.logDensity(p), mvn.logDensity(p), 1E-9);
+		}
+	}
+	
+	@Test
+	public void testRebuildSingular()
+	{
+		int dim = 3;
+		
+		Rebuilder<MVN> builder = MVN.builder(dim);
+		MVN mvn = builder.build(Point.random(builder.numParameters(), 1.0));
+		List<Double> parameters = new ArrayList<Double>(mvn.parameters());
+		Point p = Point.random(dim, 1.0);
+		double logDensity = mvn.logDensity(p);
+		
+		// * A zero transformation is not invertible: the rebuild should fail 
+		//   without changing the MVN
+		try {
+			builder.rebuild(mvn, new double[builder.numParameters()], 0);
+			fail();
+		} catch(IllegalArgumentException e)
+		{
+		}
+		
+		assertEquals(parameters, mvn.parameters());
+		assertTrue(mvn.transform.invertible());
+		assertEquals(logDensity, mvn.logDensity(p), 0.0);
+	}
+}
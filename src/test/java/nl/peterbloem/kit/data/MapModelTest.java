@@ -0,0 +1,61 @@
+package nl.peterbloem.kit.data;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.search.Rebuilder;
+
+public class MapModelTest
+{
+	@Test
+	public void testRebuild()
+	{
+		int dim = 3;
+		
+		Rebuilder<MapModel<Similitude>> builder = MapModel.builder(3, Similitude.similitudeBuilder(dim));
+		MapModel<Similitude> model = builder.build(Point.random(builder.numParameters(), 1.0));
+		Similitude first = model.get(0);
+		
+		for(int i = 0; i < 10; i++)
+		{
+			Point parameters = Point.random(builder.numParameters(), 1.0);
+			MapModel<Similitude> expected = builder.build(parameters);
+			assertSame(model, builder.rebuild(model, parameters.getBackingData(), 0));
+			
+			assertSame(first, model.get(0));
+			assertEquals(expected.parameters(), model.parameters());
+			for(int c = 0; c < model.size(); c++)
+			{
+				assertEquals(expected.probability(c), model.probability(c), 0.0);
+				
+				Point p = Point.random(dim, 1.0);
+				assertEquals(0.0, expected.get(c).map(p).distance(model.get(c).map(p)), 1E-12);
+			}
+		}
+	}
+	
+	@Test
+	public void testRebuildInvalid()
+	{
+		int dim = 3;
+		
+		Rebuilder<MapModel<Similitude>> builder = MapModel.builder(3, Similitude.similitudeBuilder(dim));
+		MapModel<Similitude> model = builder.build(Point.random(builder.numParameters(), 1.0));
+		List<Double> parameters = new ArrayList<Double>(model.parameters());
+		
+		// * The array is too short for the last component: no component 
+		//   should change
+		try {
+			builder.rebuild(model, new double[builder.numParameters() - 1], 0);
+			fail();
+		} catch(IllegalArgumentException e)
+		{
+		}
+		
+		assertEquals(parameters, model.parameters());
+	}
+}
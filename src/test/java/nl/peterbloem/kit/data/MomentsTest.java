@@ -0,0 +1,53 @@
+package nl.peterbloem.kit.data;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.stat.correlation.Covariance;
+import org.junit.Test;
+
+import nl.peterbloem.kit.MatrixFunctions;
+
+public class MomentsTest
+{
+
+	@Test
+	public void testCovariance()
+	{
+		int dim = 3, n = 2000;
+		List<Point> data = new MVN(Point.random(dim, 1.0), 2.0).generate(n);
+		
+		Moments moments = new Moments(dim);
+		moments.addAll(data);
+		
+		RealMatrix expected = new Covariance(MatrixFunctions.matrix(data).transpose()).getCovarianceMatrix();
+		assertTrue(MatrixFunctions.equals(expected, moments.covariance(false), 1E-10));
+	}
+	
+	@Test
+	public void testMerge()
+	{
+		int dim = 2, n = 1000;
+		List<Point> data = new MVN(Point.random(dim, 1.0), 2.0).generate(n);
+		
+		Moments all = new Moments(dim), first = new Moments(dim), second = new Moments(dim);
+		all.addAll(data);
+		first.addAll(data.subList(0, 300));
+		second.addAll(data.subList(300, n));
+		
+		first.merge(second);
+		
+		assertEquals(all.size(), first.size());
+		assertEquals(0.0, all.mean().distance(first.mean()), 1E-12);
+		assertTrue(MatrixFunctions.equals(all.covariance(true), first.covariance(true), 1E-10));
+		
+		for(int i : series(dim))
+		{
+			assertEquals(all.min().get(i), first.min().get(i), 0.0);
+			assertEquals(all.max().get(i), first.max().get(i), 0.0);
+		}
+	}
+}
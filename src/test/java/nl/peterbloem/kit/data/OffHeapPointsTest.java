@@ -0,0 +1,96 @@
+package nl.peterbloem.kit.data;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.MatrixFunctions;
+
+public class OffHeapPointsTest
+{
+	@Test
+	public void testStore()
+	{
+		List<Point> data = Datasets.cube(3).generate(100);
+
+		// * Small segments, so that the points span several of them
+		OffHeapPoints store = new OffHeapPoints(3, 7);
+		store.addAll(data);
+
+		assertEquals(100L, store.size());
+		for(int i = 0; i < data.size(); i++)
+			assertEquals(data.get(i), store.get(i));
+
+		List<Point> scanned = new ArrayList<Point>();
+		for(Point p : store)
+			scanned.add(p);
+		assertEquals(data, scanned);
+		assertEquals(data.subList(20, 50), store.view(20, 30));
+
+		for(Point query : Datasets.cube(3).generate(10))
+		{
+			double min = Double.POSITIVE_INFINITY;
+			long nearest = -1;
+			for(int i = 0; i < data.size(); i++)
+				if(data.get(i).sqDistance(query) < min)
+				{
+					min = data.get(i).sqDistance(query);
+					nearest = i;
+				}
+
+			assertEquals(nearest, store.nearest(query));
+			assertEquals(Datasets.distance(query, data), store.distance(query), 0.0);
+		}
+
+		Moments expected = new Moments(3);
+		expected.addAll(data);
+		Moments moments = store.moments();
+
+		assertEquals(0.0, expected.mean().distance(moments.mean()), 1E-12);
+		assertTrue(MatrixFunctions.equals(expected.covariance(true), moments.covariance(true), 1E-12));
+
+		File file = store.file();
+		assertTrue(file.exists());
+
+		store.close();
+		assertTrue(store.closed());
+		assertFalse(file.exists());
+		// * closing twice has no effect
+		store.close();
+		try {
+			store.get(0);
+			fail();
+		} catch(IllegalStateException e)
+		{
+		}
+	}
+
+	@Test
+	public void testGrowth()
+	{
+		// * The default store starts small, and doubles its capacity
+		OffHeapPoints store = new OffHeapPoints(3);
+		store.add(new Point(1.0, 2.0, 3.0));
+		assertEquals(OffHeapPoints.INITIAL_SEGMENT, store.capacity());
+
+		List<Point> data = Datasets.cube(3).generate(5000);
+		store.addAll(data);
+		assertEquals(5001L, store.size());
+		assertEquals(8192L, store.capacity());
+
+		assertEquals(new Point(1.0, 2.0, 3.0), store.get(0));
+		for(int i = 0; i < data.size(); i++)
+			assertEquals(data.get(i), store.get(i + 1));
+		assertEquals(data.get(4999), store.get(store.nearest(data.get(4999))));
+
+		// * Segments are capped at the given maximum
+		store = new OffHeapPoints(2, 3000);
+		store.addAll(Datasets.cube(2).generate(10000));
+		assertEquals(10000L, store.size());
+		assertEquals(4096L + 2 * 3000L, store.capacity());
+	}
+}
@@ -0,0 +1,74 @@
+package nl.peterbloem.kit.data;
+
+import static nl.peterbloem.kit.Series.series;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.Global;
+
+public class OnlineMogEMTest
+{
+	@Test
+	public void testRecover()
+	{
+		Global.setSeed(0);
+		
+		MVN a = new MVN(new Point(-4.0, 0.0), 0.5), 
+		    b = new MVN(new Point(4.0, 1.0), 0.5);
+		
+		Random random = new Random(1);
+		List<Point> data = new ArrayList<Point>();
+		for(int i : series(20000))
+			data.add(random.nextDouble() < 0.3 ? a.generate() : b.generate());
+		
+		OnlineMogEM em = new OnlineMogEM(2, 2, 100);
+		assertEquals(data.size(), em.run(data.iterator()));
+		assertPriors(em, 2);
+		
+		MOG model = em.model();
+		
+		// * Match the components to the truth by their means
+		int ia = model.mvn(0).mean().distance(a.mean()) < model.mvn(1).mean().distance(a.mean()) ? 0 : 1;
+		int ib = 1 - ia;
+		
+		assertEquals(0.0, model.mvn(ia).mean().distance(a.mean()), 0.1);
+		assertEquals(0.0, model.mvn(ib).mean().distance(b.mean()), 0.1);
+		
+		assertEquals(0.3, em.prior(ia), 0.03);
+		assertEquals(0.7, em.prior(ib), 0.03);
+	}
+	
+	@Test
+	public void testRestart()
+	{
+		Global.setSeed(0);
+		
+		// * A single point in the first batch leaves at least two of the three
+		//   components without weight, so these are restarted
+		OnlineMogEM em = new OnlineMogEM(3, 2, 50);
+		em.update(Arrays.asList(new Point(1.0, 1.0)));
+		assertPriors(em, 3);
+		
+		List<Point> data = new MVN(2).generate(1000);
+		em.run(data.iterator());
+		assertPriors(em, 3);
+	}
+	
+	private static void assertPriors(OnlineMogEM em, int k)
+	{
+		double sum = 0.0;
+		for(int c : series(k))
+		{
+			assertTrue(em.prior(c) > 0.0);
+			sum += em.prior(c);
+		}
+		
+		assertEquals(1.0, sum, 1E-10);
+	}
+}
@@ -0,0 +1,161 @@
+package nl.peterbloem.kit.data;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.Test;
+
+import nl.peterbloem.kit.Dense;
+import nl.peterbloem.kit.MatrixFunctions;
+import nl.peterbloem.kit.search.Rebuilder;
+
+public class SimilitudeTest
+{
+	private static final double EPSILON = 1E-9;
+
+	@Test
+	public void testRotationMatrix()
+	{
+		Random random = new Random(0);
+		for(int dim : new int[]{2, 3})
+			for(int rep = 0; rep < 20; rep++)
+			{
+				List<Double> angles = angles(dim, random);
+
+				// * The product of elementary rotations, in the order of the
+				//   general case
+				RealMatrix expected = MatrixFunctions.identity(dim);
+				int k = 0;
+				for(int j = dim - 2; j >= 0; j--)
+					for(int i = j + 1; i < dim; i++)
+						expected = expected.multiply(Rotation.elementary(dim, i, j, angles.get(k++)));
+
+				RealMatrix actual = Rotation.toRotationMatrix(angles);
+				assertClose(expected, actual);
+
+				// * Recovering the angles gives back the same rotation
+				assertClose(actual, Rotation.toRotationMatrix(Rotation.findAngles(actual)));
+			}
+	}
+
+	@Test
+	public void testProcrustes()
+	{
+		Random random = new Random(1);
+		for(int dim : new int[]{2, 3})
+			for(int rep = 0; rep < 20; rep++)
+			{
+				double[] c = new double[dim * dim];
+				for(int i = 0; i < c.length; i++)
+					c[i] = random.nextGaussian();
+
+				double[] r = new double[dim * dim];
+				double trace = Similitude.procrustes(c, dim, r);
+
+				// * The maximum is the sum of the singular values, with the
+				//   smallest negated for a negative determinant
+				double[] u = new double[dim * dim], s = new double[dim], v = new double[dim * dim];
+				Dense.svd(c, dim, dim, u, s, v);
+				double expected = 0.0;
+				for(int i = 0; i < dim; i++)
+					expected += s[i];
+				if(Dense.determinant(c, dim) < 0)
+					expected -= 2.0 * s[dim - 1];
+
+				assertEquals(expected, trace, EPSILON);
+				assertEquals(trace, Dense.dot(dim * dim, r, 0, c, 0), EPSILON);
+				assertEquals(1.0, Dense.determinant(r, dim), EPSILON);
+			}
+	}
+
+	@Test
+	public void testFind()
+	{
+		Random random = new Random(2);
+		for(int dim : new int[]{2, 3, 4, 6})
+			for(boolean flat : new boolean[]{false, true})
+				testFind(dim, flat, random);
+	}
+
+	/**
+	 * @param flat If true, the points lie in a hyperplane, so that the 
+	 * 	covariance has a zero singular value.
+	 */
+	private static void testFind(int dim, boolean flat, Random random)
+	{
+		{
+			Point translation = new Point(dim);
+			for(int i = 0; i < dim; i++)
+				translation.set(i, random.nextGaussian());
+
+			Similitude target = new Similitude(0.7, translation, angles(dim, random));
+
+			List<Point> x = new ArrayList<Point>();
+			for(int i = 0; i < 50; i++)
+			{
+				Point p = new Point(dim);
+				for(int j = 0; j < (flat ? dim - 1 : dim); j++)
+					p.set(j, random.nextGaussian());
+				x.add(p);
+			}
+
+			List<Point> y = target.map(x);
+			Similitude found = Similitude.find(x, y);
+
+			for(int i = 0; i < x.size(); i++)
+				assertEquals(dim + " " + flat, 0.0, found.map(x.get(i)).distance(y.get(i)), 1E-7);
+		}
+	}
+
+	@Test
+	public void testRebuild()
+	{
+		for(int dim : new int[]{2, 3, 4})
+		{
+			AffineMapTest.assertRebuilds(Similitude.similitudeBuilder(dim), dim);
+			AffineMapTest.assertRebuilds(Rotation.rotationBuilder(dim), dim);
+		}
+		
+		// * A map of the wrong dimension is rejected before it is changed
+		Rebuilder<Similitude> builder = Similitude.similitudeBuilder(3);
+		Similitude map = Similitude.similitudeBuilder(2).build(Point.random(Similitude.numParameters(2), 1.0));
+		List<Double> parameters = new ArrayList<Double>(map.parameters());
+		try {
+			builder.rebuild(map, Point.random(builder.numParameters(), 1.0).getBackingData(), 0);
+			fail();
+		} catch(IllegalArgumentException e)
+		{
+		}
+		assertEquals(parameters, map.parameters());
+		
+		Rebuilder<Rotation> rotations = Rotation.rotationBuilder(3);
+		Rotation rotation = rotations.build(Point.random(rotations.numParameters(), 1.0));
+		parameters = new ArrayList<Double>(rotation.parameters());
+		try {
+			rotations.rebuild(rotation, new double[rotations.numParameters() - 1], 0);
+			fail();
+		} catch(IllegalArgumentException e)
+		{
+		}
+		assertEquals(parameters, rotation.parameters());
+	}
+
+	private static List<Double> angles(int dim, Random random)
+	{
+		List<Double> angles = new ArrayList<Double>();
+		for(int i = 0; i < (dim * dim - dim) / 2; i++)
+			angles.add((random.nextDouble() * 2.0 - 1.0) * Math.PI);
+		return angles;
+	}
+
+	private static void assertClose(RealMatrix expected, RealMatrix actual)
+	{
+		for(int i = 0; i < expected.getRowDimension(); i++)
+			for(int j = 0; j < expected.getColumnDimension(); j++)
+				assertEquals(expected.getEntry(i, j), actual.getEntry(i, j), EPSILON);
+	}
+}
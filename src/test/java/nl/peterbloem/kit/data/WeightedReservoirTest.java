@@ -0,0 +1,70 @@
+package nl.peterbloem.kit.data;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class WeightedReservoirTest
+{
+
+	@Test
+	public void testSingle()
+	{
+		int n = 10, trials = 20000;
+		int[] counts = new int[n];
+
+		Weighted<Integer> data = WeightedLists.empty();
+		for(int i = 0; i < n; i++)
+			data.add(i, i + 1.0);
+		data.add(n, 0.0);
+
+		for(int t = 0; t < trials; t++)
+			for(int value : WeightedReservoir.sample(data, 1))
+				counts[value]++;
+
+		for(int i = 0; i < n; i++)
+		{
+			double expected = trials * (i + 1.0) / 55.0;
+			assertEquals(expected, counts[i], 5.0 * Math.sqrt(expected));
+		}
+	}
+
+	@Test
+	public void testMerge()
+	{
+		int n = 10, trials = 20000;
+		int[] counts = new int[n];
+
+		for(int t = 0; t < trials; t++)
+		{
+			WeightedReservoir<Integer> a = new WeightedReservoir<Integer>(1),
+			                           b = new WeightedReservoir<Integer>(1);
+			for(int i = 0; i < n; i++)
+				(i % 2 == 0 ? a : b).add(i, i + 1.0);
+
+			for(int value : a.merge(b).sample())
+				counts[value]++;
+		}
+
+		for(int i = 0; i < n; i++)
+		{
+			double expected = trials * (i + 1.0) / 55.0;
+			assertEquals(expected, counts[i], 5.0 * Math.sqrt(expected));
+		}
+	}
+
+	@Test
+	public void testLarge()
+	{
+		WeightedReservoir<Integer> reservoir = new WeightedReservoir<Integer>(100);
+		for(int i = 0; i < 1000000; i++)
+			reservoir.add(i, i % 7 == 0 ? 1E-300 : 1.0);
+
+		List<Integer> sample = reservoir.sample();
+		assertEquals(100, new HashSet<Integer>(sample).size());
+		assertEquals(1000000, reservoir.seen());
+	}
+}
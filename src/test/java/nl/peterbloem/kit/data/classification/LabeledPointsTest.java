@@ -0,0 +1,114 @@
+package nl.peterbloem.kit.data.classification;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.data.Datasets;
+import nl.peterbloem.kit.data.Point;
+
+public class LabeledPointsTest
+{
+	@Test
+	public void testIndex()
+	{
+		Random random = new Random(0);
+		List<Point> points = new ArrayList<Point>(Datasets.cube(2).generate(200));
+
+		LabeledPoints data = new LabeledPoints();
+		List<Integer> classes = new ArrayList<Integer>();
+		for(Point point : points)
+		{
+			int cls = random.nextInt(4);
+			data.add(point, cls);
+			classes.add(cls);
+		}
+
+		Classified<Point> reference = Classification.combine(points, classes);
+		assertConsistent(reference, data);
+
+		// * Insert, relabel and remove, and check that the index follows
+		for(int rep = 0; rep < 100; rep++)
+		{
+			int i = random.nextInt(data.size());
+			switch(random.nextInt(3))
+			{
+				case 0:
+					Point point = new Point(random.nextGaussian(), random.nextGaussian());
+					int cls = random.nextInt(5);
+					data.add(i, point, cls);
+					points.add(i, point);
+					classes.add(i, cls);
+					break;
+				case 1:
+					cls = random.nextInt(5);
+					data.setClass(i, cls);
+					classes.set(i, cls);
+					break;
+				case 2:
+					data.remove(i);
+					points.remove(i);
+					classes.remove(i);
+					break;
+			}
+		}
+
+		reference = Classification.combine(points, classes);
+		reference.setMaxClass(data.numClasses() - 1);
+		assertConsistent(reference, data);
+	}
+
+	@Test
+	public void testRead()
+		throws Exception
+	{
+		File csv = File.createTempFile("kit", ".csv");
+		csv.deleteOnExit();
+
+		FileWriter writer = new FileWriter(csv);
+		writer.write("1.0,2.5,7\n-3.0,0.25,3\n0.5,0.5,7\n2.0,1.0,5\n");
+		writer.close();
+
+		LabeledPoints data = LabeledPoints.readCSV(csv);
+		assertConsistent(Classification.readCSV(csv), data);
+		assertEquals(3, data.numClasses());
+		assertEquals(2, data.count(0));
+
+		File binary = File.createTempFile("kit", ".bin");
+		binary.deleteOnExit();
+
+		LabeledPoints.writeBinary(data, binary);
+		assertConsistent(data, LabeledPoints.readBinary(binary));
+
+		// * Class ids are kept as they are, including empty classes
+		data = new LabeledPoints();
+		data.add(new Point(1.0, 2.0), 1);
+		data.add(new Point(3.0, 4.0), 0);
+		data.setMaxClass(3);
+
+		LabeledPoints.writeBinary(data, binary);
+		LabeledPoints read = LabeledPoints.readBinary(binary);
+		assertConsistent(data, read);
+		assertEquals(1, read.cls(0));
+		assertEquals(4, read.numClasses());
+	}
+
+	private static void assertConsistent(Classified<Point> expected, LabeledPoints actual)
+	{
+		assertEquals(new ArrayList<Point>(expected), new ArrayList<Point>(actual));
+		assertEquals(new ArrayList<Integer>(expected.classes()), new ArrayList<Integer>(actual.classes()));
+		assertEquals(expected.numClasses(), actual.numClasses());
+
+		for(int c = 0; c < expected.numClasses(); c++)
+		{
+			assertEquals(new ArrayList<Point>(expected.points(c)), new ArrayList<Point>(actual.points(c)));
+			assertEquals(expected.points(c).size(), actual.count(c));
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package nl.peterbloem.kit.search;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import nl.peterbloem.kit.Global;
+import nl.peterbloem.kit.data.Point;
+import nl.peterbloem.kit.data.Similitude;
+
+public class PopulationSearchTest
+{
+	/**
+	 * The squared distance between the mapped xs and the ys.
+	 */
+	private static class Fit implements Objective<Similitude>
+	{
+		private List<Point> xs, ys;
+
+		public Fit(List<Point> xs, List<Point> ys)
+		{
+			this.xs = xs;
+			this.ys = ys;
+		}
+
+		@Override
+		public double evaluate(Similitude map)
+		{
+			double error = 0.0;
+			for(int i = 0; i < xs.size(); i++)
+				error += map.map(xs.get(i)).sqDistance(ys.get(i));
+			return error;
+		}
+	}
+
+	private static Fit problem()
+	{
+		Similitude target = new Similitude(0.7, new Point(0.3, -0.2), new Point(0.4));
+
+		List<Point> xs = new ArrayList<Point>();
+		for(int i = 0; i < 50; i++)
+			xs.add(new Point(Global.random().nextGaussian(), Global.random().nextGaussian()));
+
+		return new Fit(xs, target.map(xs));
+	}
+
+	@Test
+	public void testCMAES()
+	{
+		Fit fit = problem();
+		Builder<Similitude> builder = Similitude.similitudeBuilder(2);
+
+		CMAES<Similitude> search = new CMAES<Similitude>(
+				builder, fit, new double[builder.numParameters()], 0.5);
+		search.run(200);
+
+		assertEquals(0.0, search.bestFitness(), 1E-8);
+		assertEquals(fit.evaluate(search.best()), search.bestFitness(), 1E-12);
+	}
+
+	@Test
+	public void testES()
+	{
+		Fit fit = problem();
+		Builder<Similitude> builder = Similitude.similitudeBuilder(2);
+
+		EvolutionStrategy<Similitude> search = new EvolutionStrategy<Similitude>(
+				builder, fit, new double[builder.numParameters()], 0.5, 20, 7L);
+		search.run(300);
+
+		assertEquals(0.0, search.bestFitness(), 1E-6);
+	}
+
+	@Test
+	public void testDeterminism()
+		throws IOException
+	{
+		Fit fit = problem();
+		Builder<Similitude> builder = Similitude.similitudeBuilder(2);
+		double[] start = new double[builder.numParameters()];
+		int threads = Global.numThreads();
+
+		try {
+			Global.setNumThreads(1);
+			CMAES<Similitude> a = new CMAES<Similitude>(builder, fit, start, 0.5, 12, 42L);
+			a.run(20);
+
+			Global.setNumThreads(4);
+			CMAES<Similitude> b = new CMAES<Similitude>(builder, fit, start, 0.5, 12, 42L);
+			b.run(10);
+
+			// * Checkpoint halfway, and continue both the original and the
+			//   restored search
+			File file = File.createTempFile("cmaes", ".ser");
+			file.deleteOnExit();
+			b.checkpoint(file);
+
+			CMAES<Similitude> c = PopulationSearch.restore(file, builder, fit);
+			b.run(10);
+			c.run(10);
+
+			assertArrayEquals(a.bestParameters(), b.bestParameters(), 0.0);
+			assertArrayEquals(a.bestParameters(), c.bestParameters(), 0.0);
+			assertArrayEquals(a.mean(), c.mean(), 0.0);
+			assertEquals(a.evaluations(), c.evaluations());
+		} finally {
+			Global.setNumThreads(threads);
+		}
+	}
+}